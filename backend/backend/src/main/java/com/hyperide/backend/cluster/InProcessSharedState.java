@@ -0,0 +1,95 @@
+package com.hyperide.backend.cluster;
+
+import com.hyperide.backend.service.LiveDocument;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-instance shared state: plain maps. The live documents in this JVM are the
+ * only copy, so sequencing is already done by the edit lanes and no edit log is kept.
+ */
+@Component
+@ConditionalOnProperty(name = "hyperide.cluster.state", havingValue = "memory", matchIfMissing = true)
+public class InProcessSharedState implements SharedState, MeterBinder {
+
+    private final Map<String, String> locks = new ConcurrentHashMap<>();
+    private final Map<String, String> presence = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    @Override
+    public String claimLock(String path, String user) {
+        String owner = locks.putIfAbsent(path, user);
+        return owner == null ? user : owner;
+    }
+
+    @Override
+    public void releaseLock(String path) {
+        locks.remove(path);
+    }
+
+    @Override
+    public <T> T sequence(String path, Supplier<T> work) {
+        return work.get();
+    }
+
+    @Override
+    public List<LiveDocument.AppliedEdit> editsSince(String path, long version) {
+        return List.of();
+    }
+
+    @Override
+    public void append(String path, LiveDocument.AppliedEdit edit) {
+    }
+
+    @Override
+    public long persistedVersion(String path) {
+        return 0;
+    }
+
+    @Override
+    public void markPersisted(String path, long version) {
+    }
+
+    @Override
+    public void forget(String path) {
+        locks.remove(path);
+    }
+
+    @Override
+    public void putPresence(String user, String file) {
+        presence.put(user, file);
+    }
+
+    @Override
+    public void removePresence(String user) {
+        presence.remove(user);
+    }
+
+    @Override
+    public void refreshPresence(Collection<String> users) {
+        // PresenceService already expires users here; nothing else can go stale
+    }
+
+    @Override
+    public Map<String, String> presence(long ttlMs) {
+        return new HashMap<>(presence);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.edit.locks", locks, Map::size)
+                .description("Files claimed by an editor")
+                .register(registry);
+    }
+}
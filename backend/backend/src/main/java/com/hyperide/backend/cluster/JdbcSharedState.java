@@ -0,0 +1,189 @@
+package com.hyperide.backend.cluster;
+
+import com.hyperide.backend.config.HyperideMetrics;
+import com.hyperide.backend.model.EditOperation;
+import com.hyperide.backend.service.LiveDocument;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Shared state in the application database, for running several instances against one
+ * store. Sequencing takes a row lock on the document's head row, so only one node at a
+ * time can append to its edit log. Locally the H2 file database in AUTO_SERVER mode
+ * serves as the store: every instance started from the same directory shares it.
+ */
+@Component
+@ConditionalOnProperty(name = "hyperide.cluster.state", havingValue = "jdbc")
+public class JdbcSharedState implements SharedState, MeterBinder {
+
+    // Logged edits kept behind the persisted version, so lagging nodes can still catch up
+    private static final int RETAINED_EDITS = 256;
+    private static final TypeReference<List<EditOperation>> OPS = new TypeReference<>() {};
+
+    @Autowired private JdbcTemplate jdbc;
+    @Autowired private TransactionTemplate transactions;
+    @Autowired private JsonMapper jsonMapper;
+
+    @Autowired private HyperideMetrics metrics;
+
+    private final AtomicLong appended = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        jdbc.execute("CREATE TABLE IF NOT EXISTS hyperide_doc_head ("
+                + "path VARCHAR(1024) PRIMARY KEY, version BIGINT NOT NULL, persisted_version BIGINT NOT NULL)");
+        jdbc.execute("CREATE TABLE IF NOT EXISTS hyperide_doc_edit ("
+                + "path VARCHAR(1024) NOT NULL, version BIGINT NOT NULL, base_version BIGINT NOT NULL, "
+                + "ops CLOB NOT NULL, PRIMARY KEY (path, version))");
+        jdbc.execute("CREATE TABLE IF NOT EXISTS hyperide_edit_lock ("
+                + "path VARCHAR(1024) PRIMARY KEY, owner VARCHAR(255) NOT NULL)");
+        jdbc.execute("CREATE TABLE IF NOT EXISTS hyperide_presence ("
+                + "username VARCHAR(255) PRIMARY KEY, file VARCHAR(1024) NOT NULL, refreshed_at BIGINT NOT NULL)");
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    // --- EDIT LOCKS ---
+    @Override
+    public String claimLock(String path, String user) {
+        try {
+            jdbc.update("INSERT INTO hyperide_edit_lock (path, owner) VALUES (?, ?)", path, user);
+            return user;
+        } catch (DuplicateKeyException e) {
+            List<String> owner = jdbc.queryForList("SELECT owner FROM hyperide_edit_lock WHERE path = ?", String.class, path);
+            return owner.isEmpty() ? claimLock(path, user) : owner.get(0); // Released in between
+        }
+    }
+
+    @Override
+    public void releaseLock(String path) {
+        jdbc.update("DELETE FROM hyperide_edit_lock WHERE path = ?", path);
+    }
+
+    // --- DOCUMENT SEQUENCING ---
+    @Override
+    public <T> T sequence(String path, Supplier<T> work) {
+        long start = System.nanoTime();
+        return transactions.execute(status -> {
+            lockHead(path);
+            metrics.recordSequenceWait(System.nanoTime() - start);
+            return work.get();
+        });
+    }
+
+    // SELECT ... FOR UPDATE blocks other nodes sequencing this path until we commit
+    private void lockHead(String path) {
+        String select = "SELECT version FROM hyperide_doc_head WHERE path = ? FOR UPDATE";
+        if (!jdbc.queryForList(select, Long.class, path).isEmpty()) return;
+        try {
+            jdbc.update("INSERT INTO hyperide_doc_head (path, version, persisted_version) VALUES (?, 0, 0)", path);
+        } catch (DuplicateKeyException e) {
+            // Another node created it first
+        }
+        jdbc.queryForList(select, Long.class, path);
+    }
+
+    @Override
+    public List<LiveDocument.AppliedEdit> editsSince(String path, long version) {
+        return jdbc.query("SELECT base_version, version, ops FROM hyperide_doc_edit WHERE path = ? AND version > ? ORDER BY version",
+                (rs, i) -> new LiveDocument.AppliedEdit(rs.getLong(1), rs.getLong(2), jsonMapper.readValue(rs.getString(3), OPS)),
+                path, version);
+    }
+
+    @Override
+    public void append(String path, LiveDocument.AppliedEdit edit) {
+        int moved = jdbc.update("UPDATE hyperide_doc_head SET version = ? WHERE path = ? AND version = ?",
+                edit.version(), path, edit.baseVersion());
+        if (moved == 0) throw new IllegalStateException("Edit to " + path + " is not based on the logged head");
+        jdbc.update("INSERT INTO hyperide_doc_edit (path, version, base_version, ops) VALUES (?, ?, ?, ?)",
+                path, edit.version(), edit.baseVersion(), jsonMapper.writeValueAsString(edit.ops()));
+        appended.incrementAndGet();
+    }
+
+    @Override
+    public long persistedVersion(String path) {
+        List<Long> version = jdbc.queryForList("SELECT persisted_version FROM hyperide_doc_head WHERE path = ?", Long.class, path);
+        return version.isEmpty() ? 0 : version.get(0);
+    }
+
+    @Override
+    public void markPersisted(String path, long version) {
+        jdbc.update("UPDATE hyperide_doc_head SET persisted_version = GREATEST(persisted_version, ?) WHERE path = ?", version, path);
+        jdbc.update("DELETE FROM hyperide_doc_edit WHERE path = ? AND version <= ?", path, version - RETAINED_EDITS);
+    }
+
+    @Override
+    public void forget(String path) {
+        // The head stays, one version on, so copies cached elsewhere can never pass for
+        // a file created again under the same name
+        jdbc.update("DELETE FROM hyperide_doc_edit WHERE path = ?", path);
+        jdbc.update("UPDATE hyperide_doc_head SET version = version + 1, persisted_version = version + 1 WHERE path = ?", path);
+        releaseLock(path);
+    }
+
+    // --- PRESENCE ---
+    @Override
+    public void putPresence(String user, String file) {
+        jdbc.update("MERGE INTO hyperide_presence (username, file, refreshed_at) KEY (username) VALUES (?, ?, ?)",
+                user, file, System.currentTimeMillis());
+    }
+
+    @Override
+    public void removePresence(String user) {
+        jdbc.update("DELETE FROM hyperide_presence WHERE username = ?", user);
+    }
+
+    @Override
+    public void refreshPresence(Collection<String> users) {
+        if (users.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        jdbc.batchUpdate("UPDATE hyperide_presence SET refreshed_at = ? WHERE username = ?",
+                users.stream().map(u -> new Object[] { now, u }).toList());
+    }
+
+    @Override
+    public Map<String, String> presence(long ttlMs) {
+        Map<String, String> present = new HashMap<>();
+        jdbc.query("SELECT username, file FROM hyperide_presence WHERE refreshed_at >= ?",
+                rs -> { present.put(rs.getString(1), rs.getString(2)); },
+                System.currentTimeMillis() - ttlMs);
+        return present;
+    }
+
+    // The counts are queried when metrics are scraped, never on the request path
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.edit.locks", jdbc, j -> count(j, "hyperide_edit_lock"))
+                .description("Files claimed by an editor")
+                .register(registry);
+        Gauge.builder("hyperide.cluster.logged.edits", jdbc, j -> count(j, "hyperide_doc_edit"))
+                .description("Edits kept in the shared log for nodes to catch up from")
+                .register(registry);
+        FunctionCounter.builder("hyperide.cluster.appended", appended, AtomicLong::get)
+                .description("Edits this node appended to the shared log")
+                .register(registry);
+    }
+
+    private static double count(JdbcTemplate jdbc, String table) {
+        Long n = jdbc.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+        return n == null ? 0 : n;
+    }
+}
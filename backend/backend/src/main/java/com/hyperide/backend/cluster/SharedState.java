@@ -0,0 +1,61 @@
+package com.hyperide.backend.cluster;
+
+import com.hyperide.backend.service.LiveDocument;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Collaboration state that every backend instance must agree on: who holds a file's
+ * edit lock, who is present where, and the order of edits to each document. With a
+ * single instance it lives in memory; with several it lives in a store all of them
+ * share, selected by hyperide.cluster.state.
+ */
+public interface SharedState {
+
+    /** False for the in-memory implementation, where there is no other node to catch up with. */
+    boolean isShared();
+
+    // --- EDIT LOCKS ---
+
+    /** Gives path to user unless someone else holds it already; returns the holder either way. */
+    String claimLock(String path, String user);
+
+    void releaseLock(String path);
+
+    // --- DOCUMENT SEQUENCING ---
+
+    /**
+     * Runs work while no other node can sequence edits to path. Inside it, a node catches
+     * up with {@link #editsSince}, applies its own edit and {@link #append}s it, so every
+     * node sees one order of versions.
+     */
+    <T> T sequence(String path, Supplier<T> work);
+
+    /** Edits to path after version, oldest first. */
+    List<LiveDocument.AppliedEdit> editsSince(String path, long version);
+
+    void append(String path, LiveDocument.AppliedEdit edit);
+
+    /** Latest version written to disk by any node, 0 if none. */
+    long persistedVersion(String path);
+
+    void markPersisted(String path, long version);
+
+    /** Drops everything kept for a deleted file. */
+    void forget(String path);
+
+    // --- PRESENCE ---
+
+    void putPresence(String user, String file);
+
+    void removePresence(String user);
+
+    /** Keeps users present on other nodes' views; entries not refreshed within the TTL are ignored. */
+    void refreshPresence(Collection<String> users);
+
+    /** User -> file for everyone refreshed within ttlMs. */
+    Map<String, String> presence(long ttlMs);
+}
@@ -2,6 +2,7 @@ package com.hyperide.backend.config;
 
 import com.hyperide.backend.model.User;
 import com.hyperide.backend.repository.UserRepository;
+import com.hyperide.backend.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -14,6 +15,8 @@ public class AdminSeeder implements CommandLineRunner {
     private UserRepository userRepository;
     @Autowired
     private PasswordEncoder passwordEncoder;
+    @Autowired
+    private UserService userService;
 
     // Inside src/main/java/com/hyperide/backend/config/AdminSeeder.java
     // Inside AdminSeeder.java
@@ -33,7 +36,7 @@ public class AdminSeeder implements CommandLineRunner {
             admin.setUsername("admin");
             admin.setPassword(passwordEncoder.encode(securePass));
             admin.setRole("ADMIN");
-            userRepository.save(admin);
+            userService.save(admin);
             System.out.println("✅ Admin created successfully.");
         }
     }
@@ -2,6 +2,7 @@ package com.hyperide.backend.config;
 
 import com.hyperide.backend.model.User;
 import com.hyperide.backend.repository.UserRepository;
+import com.hyperide.backend.service.UserService;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -17,7 +18,7 @@ public class DataSeeder {
     }
 
     @Bean
-    CommandLineRunner initDatabase(UserRepository repo, PasswordEncoder encoder) {
+    CommandLineRunner initDatabase(UserRepository repo, UserService users, PasswordEncoder encoder) {
         return args -> {
             if (repo.findByUsername("admin").isEmpty()) {
                 User admin = new User();
@@ -25,7 +26,7 @@ public class DataSeeder {
                 admin.setPassword(encoder.encode("admin123"));
                 admin.setRole("ADMIN");
                 admin.setDbAccess(true);
-                repo.save(admin);
+                users.save(admin);
                 System.out.println("✅ DEFAULT ADMIN CREATED");
             }
         };
@@ -0,0 +1,147 @@
+package com.hyperide.backend.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers for the hot paths, exported at /actuator/prometheus. Every timer is built once
+ * and looked up by tag value from a map, so recording on the edit path is a map read and
+ * a few adds, with no allocation.
+ */
+@Component
+public class HyperideMetrics {
+
+    @Autowired private MeterRegistry registry;
+
+    // Publish histogram buckets, so percentiles can be aggregated across instances
+    @Value("${hyperide.metrics.histograms:true}")
+    private boolean histograms;
+
+    private Timer diskWrite;
+    private Timer fileLoad;
+    private Timer fileList;
+    private Timer compile;
+    private Timer queueWait;
+    private Timer build;
+    private Timer flush;
+    private Timer hash;
+    private Timer search;
+    private Timer diagnostics;
+    private Timer sequenceWait;
+    private DistributionSummary fanOut;
+    private final Map<String, Timer> editApply = new ConcurrentHashMap<>();
+    private final Map<String, Timer> run = new ConcurrentHashMap<>();
+    private final Map<String, Timer> workerAcquire = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        diskWrite = timer("hyperide.file.write", "Writing a file to disk (temp file + rename)", Duration.ofSeconds(5));
+        fileLoad = timer("hyperide.file.load", "Serving a file's content, from the document cache or disk", Duration.ofSeconds(5));
+        fileList = timer("hyperide.file.list", "Listing the files a user can see", Duration.ofSeconds(5));
+        compile = timer("hyperide.exec.compile", "Compiling a Java program, cache misses only", Duration.ofSeconds(30));
+        queueWait = timer("hyperide.exec.queue.wait", "Time a run waited in the run queue", Duration.ofSeconds(60));
+        build = timer("hyperide.exec.build", "Bringing a project's classes up to date", Duration.ofSeconds(30));
+        flush = timer("hyperide.persist.flush", "Writing out every dirty file in one write-behind pass", Duration.ofSeconds(10));
+        hash = timer("hyperide.auth.hash", "Hashing or checking a password on the hashing pool", Duration.ofSeconds(5));
+        search = timer("hyperide.search.query", "Answering a search across files", Duration.ofSeconds(5));
+        diagnostics = timer("hyperide.diagnostics.check", "Checking a project for compile errors", Duration.ofSeconds(30));
+        sequenceWait = timer("hyperide.cluster.sequence.wait", "Waiting for a file's row lock to sequence an edit", Duration.ofSeconds(5));
+        fanOut = DistributionSummary.builder("hyperide.files.fanout")
+                .description("Sessions an update to one file was delivered to")
+                .baseUnit("sessions")
+                .register(registry);
+    }
+
+    /** Applying one edit on its lane; outcome is the response type, e.g. DELTA or CONFLICT. */
+    public void recordEdit(String outcome, long nanos) {
+        editApply.computeIfAbsent(outcome, o -> timerBuilder("hyperide.edit.apply", "Applying an edit on the file's edit lane", Duration.ofSeconds(1))
+                .tag("outcome", o)
+                .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Running a compiled program or script, compile excluded. */
+    public void recordRun(String language, long millis) {
+        run.computeIfAbsent(language, l -> timerBuilder("hyperide.exec.run", "Running a program, compile excluded", Duration.ofSeconds(60))
+                .tag("language", l)
+                .register(registry)).record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordDiskWrite(long nanos) {
+        diskWrite.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFileLoad(long nanos) {
+        fileLoad.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFileList(long nanos) {
+        fileList.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordCompile(long millis) {
+        compile.record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordQueueWait(long millis) {
+        queueWait.record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordBuild(long nanos) {
+        build.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Waiting for an idle worker to run a program on, whether one was found or not. */
+    public void recordWorkerAcquire(String language, long nanos) {
+        workerAcquire.computeIfAbsent(language, l -> timerBuilder("hyperide.exec.workers.acquire", "Waiting for an idle worker", Duration.ofSeconds(30))
+                .tag("language", l)
+                .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFlush(long nanos) {
+        flush.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordHash(long nanos) {
+        hash.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSearch(long nanos) {
+        search.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordDiagnostics(long nanos) {
+        diagnostics.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSequenceWait(long nanos) {
+        sequenceWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFanOut(int sessions) {
+        fanOut.record(sessions);
+    }
+
+    private Timer timer(String name, String description, Duration max) {
+        return timerBuilder(name, description, max).register(registry);
+    }
+
+    private Timer.Builder timerBuilder(String name, String description, Duration max) {
+        Timer.Builder builder = Timer.builder(name).description(description);
+        if (histograms) {
+            builder.publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(100_000))
+                    .maximumExpectedValue(max);
+        }
+        return builder;
+    }
+}
@@ -1,26 +1,44 @@
 package com.hyperide.backend.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.util.Arrays;
 import java.util.List;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    // Addresses or CIDR ranges allowed to read the monitoring endpoints
+    @Value("${hyperide.metrics.allowed-addresses:127.0.0.1,::1}")
+    private String[] metricsAddresses;
+
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+        List<IpAddressMatcher> metricsClients = Arrays.stream(metricsAddresses)
+                .map(String::trim)
+                .filter(address -> !address.isEmpty())
+                .map(IpAddressMatcher::new)
+                .toList();
         http
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .csrf(csrf -> csrf.disable()) 
             .headers(headers -> headers.frameOptions(frame -> frame.disable())) 
             .authorizeHttpRequests(auth -> auth
+                .requestMatchers("/actuator/health").permitAll()
+                // Server internals: only for the metrics scraper and operators on the allowed addresses
+                .requestMatchers("/actuator/**")
+                    .access((authentication, context) -> new AuthorizationDecision(
+                            metricsClients.stream().anyMatch(client -> client.matches(context.getRequest()))))
                 .requestMatchers("/**").permitAll() // Open all for dev simplicity
             );
         return http.build();
@@ -0,0 +1,48 @@
+package com.hyperide.backend.config;
+
+import com.hyperide.backend.model.User;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+
+import java.security.Principal;
+import java.util.Map;
+
+/**
+ * Binds a STOMP session to the user logged in to the HTTP session it was opened from, whose
+ * attributes the handshake copied. Set at CONNECT, the user then comes with every message
+ * of the session, over WebSocket and the SockJS fallbacks alike. Handlers take identity
+ * from there, never from a user name the client writes into a payload.
+ */
+public class SessionUserInterceptor implements ChannelInterceptor {
+
+    /** A logged-in user's name; guests' sessions have no user. */
+    public record SessionUser(String name) implements Principal {
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor != null && accessor.getCommand() == StompCommand.CONNECT) {
+            Map<String, Object> attributes = accessor.getSessionAttributes();
+            if (attributes != null && attributes.get("user") instanceof User user) {
+                accessor.setUser(new SessionUser(user.getUsername()));
+            }
+        }
+        return message;
+    }
+
+    /** The session's logged-in user, or null for a guest. */
+    public static String username(SimpMessageHeaderAccessor headers) {
+        Principal user = headers.getUser();
+        return user != null ? user.getName() : null;
+    }
+}
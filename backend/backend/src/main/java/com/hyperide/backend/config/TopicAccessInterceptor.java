@@ -0,0 +1,50 @@
+package com.hyperide.backend.config;
+
+import com.hyperide.backend.service.AccessControlService;
+import com.hyperide.backend.service.DocumentService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+
+/**
+ * Refuses subscriptions to a file's topics, /topic/files/{path}/updates and
+ * /topic/files/{path}/diagnostics, unless the session's user may read the file. Runs after
+ * {@link SessionUserInterceptor}, so the user is the one bound at CONNECT. A refused
+ * SUBSCRIBE is dropped before it reaches the broker, so the session never receives the
+ * file's edits or diagnostics.
+ */
+@Component
+public class TopicAccessInterceptor implements ChannelInterceptor {
+
+    private static final String PREFIX = "/topic/files/";
+
+    @Autowired private AccessControlService accessControlService;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.SUBSCRIBE) return message;
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith(PREFIX)) return message;
+        Principal user = accessor.getUser();
+        String path = pathOf(destination);
+        if (path == null || !accessControlService.canRead(user != null ? user.getName() : null, path)) {
+            // Not an exception: with receive order preserved, Spring would only log it
+            return null;
+        }
+        return message;
+    }
+
+    // The file's path, with the topic's kind (the last segment) dropped
+    private static String pathOf(String destination) {
+        int end = destination.lastIndexOf('/');
+        return end > PREFIX.length() ? DocumentService.normalize(destination.substring(PREFIX.length(), end)) : null;
+    }
+}
@@ -1,23 +1,150 @@
 package com.hyperide.backend.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.support.HttpSessionHandshakeInterceptor;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    @Autowired private WebSocketTransportStats transportStats;
+    @Autowired private TopicAccessInterceptor topicAccess;
+
+    // The broker's own scheduler, which also drives SockJS; lazy since it is defined by the
+    // configuration this class customises
+    @Autowired @Lazy private TaskScheduler messageBrokerTaskScheduler;
+
+    // --- TRANSPORT ---
+    @Value("${hyperide.ws.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    @Value("${hyperide.ws.inbound.threads:0}")
+    private int inboundThreads;
+
+    @Value("${hyperide.ws.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+
+    @Value("${hyperide.ws.outbound.threads:0}")
+    private int outboundThreads;
+
+    @Value("${hyperide.ws.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    @Value("${hyperide.ws.send-time-limit-ms:15000}")
+    private int sendTimeLimitMs;
+
+    @Value("${hyperide.ws.send-buffer-bytes:1048576}")
+    private int sendBufferBytes;
+
+    @Value("${hyperide.ws.message-size-bytes:2097152}")
+    private int messageSizeBytes;
+
+    @Value("${hyperide.ws.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
+    // With several backend instances, topics go through an external STOMP broker so a
+    // message published on one node reaches subscribers connected to any node
+    @Value("${hyperide.broker.relay.enabled:false}")
+    private boolean relayEnabled;
+
+    @Value("${hyperide.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${hyperide.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${hyperide.broker.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${hyperide.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${hyperide.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        if (relayEnabled) {
+            var relay = config.enableStompBrokerRelay("/topic")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setSystemHeartbeatSendInterval(heartbeatMs)
+                    .setSystemHeartbeatReceiveInterval(heartbeatMs);
+            if (!relayVirtualHost.isEmpty()) relay.setVirtualHost(relayVirtualHost);
+        } else {
+            var broker = config.enableSimpleBroker("/topic");
+            if (heartbeatMs > 0) {
+                broker.setHeartbeatValue(new long[] { heartbeatMs, heartbeatMs }).setTaskScheduler(messageBrokerTaskScheduler);
+            }
+        }
         config.setApplicationDestinationPrefixes("/app");
+        // Deliver to each session in publish order; a file's versions are published in order by its edit lane
+        config.setPreservePublishOrder(true);
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // The HTTP session's attributes, the logged-in user among them, go with the WebSocket session
         registry.addEndpoint("/ws")
+                .addInterceptors(new HttpSessionHandshakeInterceptor())
                 .withSockJS();
+        // Handle each session's messages in the order sent, e.g. so its last presence heartbeat wins
+        registry.setPreserveReceiveOrder(true);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Sends to a session are buffered while an earlier send is still in progress; a
+        // client that falls this far behind is disconnected rather than holding up the rest
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferBytes)
+                .setMessageSizeLimit(messageSizeBytes);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        configureChannel(registration, "ws-inbound-", inboundThreads, inboundQueueCapacity);
+        // The session's user first, as the subscription check depends on it
+        registration.interceptors(new SessionUserInterceptor(), topicAccess, transportStats.inbound());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        configureChannel(registration, "ws-outbound-", outboundThreads, outboundQueueCapacity);
+        registration.interceptors(transportStats.outbound());
+    }
+
+    // Bounded either way: a fixed pool with a bounded queue, or virtual threads capped at the
+    // same number of concurrent handlers. Messages beyond that are rejected rather than piling up
+    private void configureChannel(ChannelRegistration registration, String prefix, int threads, int queueCapacity) {
+        int n = threads > 0 ? threads : Runtime.getRuntime().availableProcessors() * 2;
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(prefix);
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(n);
+            executor.setRejectTasksWhenLimitReached(true);
+            registration.executor(executor);
+        } else {
+            ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+            executor.setThreadNamePrefix(prefix);
+            executor.setAllowCoreThreadTimeOut(true);
+            registration.taskExecutor(executor).corePoolSize(n).maxPoolSize(n).queueCapacity(queueCapacity);
+        }
     }
-}
\ No newline at end of file
+}
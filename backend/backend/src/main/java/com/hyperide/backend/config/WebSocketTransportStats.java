@@ -0,0 +1,136 @@
+package com.hyperide.backend.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.config.WebSocketMessageBrokerStats;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * Queue depth and handling time of the client inbound and outbound channels, plus the
+ * session counts Spring keeps, including sessions closed as slow consumers, exported at
+ * /actuator/prometheus.
+ */
+@Component
+public class WebSocketTransportStats implements MeterBinder {
+
+    /**
+     * Counts handler tasks between a message being sent to a channel and handled on its
+     * executor. A message becomes one task per subscribed handler.
+     */
+    public static final class ChannelMetrics implements ExecutorChannelInterceptor {
+
+        private final AtomicLong pending = new AtomicLong();
+        private final LongAdder handled = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder totalHandleNanos = new LongAdder();
+        private final ThreadLocal<Long> handleStart = new ThreadLocal<>();
+
+        @Override
+        public Message<?> preSend(Message<?> message, MessageChannel channel) {
+            pending.addAndGet(tasks(channel));
+            return message;
+        }
+
+        @Override
+        public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+            if (!sent || ex != null) { // Executor queue full, or no handler: never reaches beforeHandle
+                pending.addAndGet(-tasks(channel));
+                rejected.increment();
+            }
+        }
+
+        private static int tasks(MessageChannel channel) {
+            return channel instanceof AbstractSubscribableChannel c ? Math.max(1, c.getSubscribers().size()) : 1;
+        }
+
+        @Override
+        public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+            handleStart.set(System.nanoTime());
+            return message;
+        }
+
+        @Override
+        public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+            Long start = handleStart.get();
+            if (start == null) return;
+            handleStart.remove();
+            totalHandleNanos.add(System.nanoTime() - start);
+            handled.increment();
+            pending.decrementAndGet();
+        }
+
+        /** Handler tasks sent to the channel and not yet handled. */
+        public long pending() {
+            return pending.get();
+        }
+
+        // The adders stay on the message path; Micrometer only reads them when scraped
+        void bindTo(MeterRegistry registry, String name) {
+            Gauge.builder("hyperide.ws.channel.pending", pending, AtomicLong::get)
+                    .description("Messages waiting on a client channel's executor")
+                    .tag("channel", name)
+                    .register(registry);
+            FunctionCounter.builder("hyperide.ws.channel.rejected", rejected, LongAdder::sum)
+                    .description("Messages a client channel's executor refused")
+                    .tag("channel", name)
+                    .register(registry);
+            FunctionTimer.builder("hyperide.ws.channel.handle", this, m -> m.handled.sum(), m -> m.totalHandleNanos.sum(), TimeUnit.NANOSECONDS)
+                    .description("Handling a message on a client channel's executor")
+                    .tag("channel", name)
+                    .register(registry);
+        }
+    }
+
+    private final ChannelMetrics inbound = new ChannelMetrics();
+    private final ChannelMetrics outbound = new ChannelMetrics();
+
+    @Autowired private ObjectProvider<WebSocketMessageBrokerStats> brokerStats;
+
+    public ChannelMetrics inbound() {
+        return inbound;
+    }
+
+    public ChannelMetrics outbound() {
+        return outbound;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        inbound.bindTo(registry, "inbound");
+        outbound.bindTo(registry, "outbound");
+        Gauge.builder("hyperide.stomp.sessions", this, s -> s.sessions(SubProtocolWebSocketHandler.Stats::getTotalSessions))
+                .description("Open STOMP sessions")
+                .register(registry);
+        FunctionCounter.builder("hyperide.stomp.slow.consumer.disconnects", this, s -> s.sessions(SubProtocolWebSocketHandler.Stats::getLimitExceededSessions))
+                .description("Sessions closed for falling too far behind on their messages")
+                .register(registry);
+        FunctionCounter.builder("hyperide.stomp.no.connect.disconnects", this, s -> s.sessions(SubProtocolWebSocketHandler.Stats::getNoMessagesReceivedSessions))
+                .description("Sessions closed for not sending CONNECT in time")
+                .register(registry);
+        FunctionCounter.builder("hyperide.stomp.transport.errors", this, s -> s.sessions(SubProtocolWebSocketHandler.Stats::getTransportErrorSessions))
+                .description("Sessions closed by a transport error")
+                .register(registry);
+    }
+
+    private double sessions(ToIntFunction<SubProtocolWebSocketHandler.Stats> stat) {
+        WebSocketMessageBrokerStats spring = brokerStats.getIfAvailable();
+        SubProtocolWebSocketHandler.Stats sessions = spring == null ? null : spring.getWebSocketSessionStats();
+        return sessions == null ? Double.NaN : stat.applyAsInt(sessions);
+    }
+}
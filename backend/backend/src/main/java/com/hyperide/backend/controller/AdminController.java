@@ -1,9 +1,9 @@
 package com.hyperide.backend.controller;
 
 import com.hyperide.backend.repository.UserRepository;
+import com.hyperide.backend.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 import java.util.Map;
 
@@ -11,7 +11,7 @@ import java.util.Map;
 @RequestMapping("/api/admin")
 public class AdminController {
     @Autowired private UserRepository userRepository;
-    @Autowired private PasswordEncoder passwordEncoder;
+    @Autowired private UserService userService;
 
     // Admin Manually Resets Password
     @PostMapping("/reset-password")
@@ -20,9 +20,9 @@ public class AdminController {
         String newPassword = req.get("newPassword");
         
         return userRepository.findByUsername(username).map(user -> {
-            user.setPassword(passwordEncoder.encode(newPassword));
+            user.setPassword(userService.encode(newPassword));
             user.setPasswordResetRequested(false);
-            userRepository.save(user);
+            userService.save(user);
             return ResponseEntity.ok("Password reset successful for " + username);
         }).orElse(ResponseEntity.badRequest().body("User not found"));
     }
@@ -35,7 +35,7 @@ public class AdminController {
         
         return userRepository.findByUsername(username).map(user -> {
             user.getAccessibleFiles().add(fileName);
-            userRepository.save(user);
+            userService.save(user);
             return ResponseEntity.ok("Access Granted to " + fileName);
         }).orElse(ResponseEntity.badRequest().body("User not found"));
     }
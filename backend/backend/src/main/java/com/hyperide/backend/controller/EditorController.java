@@ -1,237 +1,495 @@
 package com.hyperide.backend.controller;
 
+import com.hyperide.backend.cluster.SharedState;
+import com.hyperide.backend.config.HyperideMetrics;
+import com.hyperide.backend.config.SessionUserInterceptor;
+import com.hyperide.backend.exec.ExecutionJob;
+import com.hyperide.backend.exec.ExecutionService;
+import com.hyperide.backend.exec.InMemoryJavaCompiler;
 import com.hyperide.backend.model.ChatMessage;
 import com.hyperide.backend.model.EditRequest;
 import com.hyperide.backend.model.EditResponse;
+import com.hyperide.backend.model.RunEvent;
 import com.hyperide.backend.model.User;
-import jakarta.annotation.PostConstruct;
+import com.hyperide.backend.service.AccessControlService;
+import com.hyperide.backend.service.ChatService;
+import com.hyperide.backend.service.ContributionService;
+import com.hyperide.backend.service.DiagnosticsService;
+import com.hyperide.backend.service.DocumentService;
+import com.hyperide.backend.service.EditSequencer;
+import com.hyperide.backend.service.FileIndexService;
+import com.hyperide.backend.service.FileTopicService;
+import com.hyperide.backend.service.LargeFileService;
+import com.hyperide.backend.service.LiveDocument;
+import com.hyperide.backend.service.PresenceService;
+import com.hyperide.backend.service.SearchService;
+import com.hyperide.backend.service.WriteBehindPersister;
 import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.handler.annotation.MessageMapping;
-import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.IOException;
 import java.nio.file.*;
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Controller
 public class EditorController {
 
-    private static final Path STORAGE_ROOT = Paths.get("hyperide_files").toAbsolutePath().normalize();
-    
-    private static final Map<String, String> memoryCache = new ConcurrentHashMap<>();
-    private static final Map<String, String> editLocks = new ConcurrentHashMap<>();
-    private static final Map<String, AtomicLong> userContributions = new ConcurrentHashMap<>();
-    private static final Map<String, String> userPresence = new ConcurrentHashMap<>();
+    @Autowired private DocumentService documentService;
+    @Autowired private WriteBehindPersister writeBehindPersister;
+    @Autowired private FileIndexService fileIndexService;
+    @Autowired private ExecutionService executionService;
+    @Autowired private EditSequencer editSequencer;
+    @Autowired private FileTopicService fileTopicService;
+    @Autowired private PresenceService presenceService;
+    @Autowired private SharedState sharedState;
+    @Autowired private ChatService chatService;
+    @Autowired private AccessControlService accessControlService;
+    @Autowired private ContributionService contributionService;
+    @Autowired private LargeFileService largeFileService;
+    @Autowired private SearchService searchService;
+    @Autowired private DiagnosticsService diagnosticsService;
+    @Autowired private HyperideMetrics metrics;
+
+    @Value("${hyperide.exec.build.max-files:1000}")
+    private int maxProjectFiles;
 
-    @PostConstruct
-    public void init() {
+    // --- REST APIs ---
+    @GetMapping("/api/files")
+    @ResponseBody
+    public org.springframework.http.ResponseEntity<List<String>> getFiles(@RequestParam(required = false) String prefix,
+                                                                        @RequestParam(defaultValue = "0") int page,
+                                                                        @RequestParam(defaultValue = "0") int size,
+                                                                        HttpSession session) {
+        long start = System.nanoTime();
         try {
-            Files.createDirectories(STORAGE_ROOT.resolve("admin"));
-            saveFileToDiskSync("admin/welcome.txt", "Welcome to the Admin Dashboard!\n// System operational.");
-        } catch (IOException e) { System.err.println("Failed to init storage."); }
+            return listFiles(prefix, page, size, session);
+        } finally {
+            metrics.recordFileList(System.nanoTime() - start);
+        }
     }
 
-    private void saveFileToDiskSync(String requestedPath, String content) {
-        try {
-            requestedPath = requestedPath.replace("\\", "/");
-            Path targetPath = STORAGE_ROOT.resolve(requestedPath).normalize();
-            if (!targetPath.startsWith(STORAGE_ROOT)) return; 
-            memoryCache.put(requestedPath, content);
-            Files.createDirectories(targetPath.getParent());
-            Files.writeString(targetPath, content);
-        } catch (IOException e) { e.printStackTrace(); }
+    private org.springframework.http.ResponseEntity<List<String>> listFiles(String prefix, int page, int size, HttpSession session) {
+        User user = (User) session.getAttribute("user");
+        String username = (user != null) ? user.getUsername() : null;
+        // The user's visible subtrees from the ACL, each listed as ranges of the sorted file index
+        List<AccessControlService.Region> regions = accessControlService.view(username);
+        if (prefix != null && !prefix.isEmpty() && accessControlService.access(username, prefix) == AccessControlService.Access.NONE
+                && regions.stream().noneMatch(r -> r.path().startsWith(prefix))) {
+            return org.springframework.http.ResponseEntity.status(403).build();
+        }
+        Stream<String> files = regions.stream().flatMap(r -> fileIndexService.listTree(r.path(), r.excluded(), prefix));
+        // size=0 keeps the old behaviour of returning everything in one response
+        if (size <= 0) return org.springframework.http.ResponseEntity.ok(files.collect(Collectors.toList()));
+        int total = regions.stream().mapToInt(r -> fileIndexService.countTree(r.path(), r.excluded(), prefix)).sum();
+        return org.springframework.http.ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(total))
+                .body(files.skip((long) page * size).limit(size).collect(Collectors.toList()));
     }
 
-    private String loadFile(String requestedPath) {
-        if (memoryCache.containsKey(requestedPath)) return memoryCache.get(requestedPath);
-        try {
-            requestedPath = requestedPath.replace("\\", "/");
-            Path targetPath = STORAGE_ROOT.resolve(requestedPath).normalize();
-            if (!targetPath.startsWith(STORAGE_ROOT)) return "// Security Violation";
-            if (Files.exists(targetPath)) {
-                String content = Files.readString(targetPath);
-                memoryCache.put(requestedPath, content);
-                return content;
-            }
-        } catch (IOException e) { e.printStackTrace(); }
-        return "";
+    @GetMapping("/api/editor/content")
+    @ResponseBody
+    public org.springframework.http.ResponseEntity<?> getContent(@RequestParam String path,
+                                                                @RequestHeader(value = "Range", required = false) String range,
+                                                                HttpSession session) {
+        User user = (User) session.getAttribute("user");
+        path = path.replace("\\", "/");
+        if (!accessControlService.canRead(user != null ? user.getUsername() : null, path)) {
+            return org.springframework.http.ResponseEntity.status(403).body("// ERROR: ACCESS DENIED.");
+        }
+        if (documentService.isLarge(path)) {
+            // Streamed from disk; Spring answers a Range header with 206 and just those bytes
+            largeFileService.recordStream(range != null);
+            return org.springframework.http.ResponseEntity.ok()
+                    .header("X-Large-File", "true")
+                    .header(org.springframework.http.HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .contentType(new org.springframework.http.MediaType("text", "plain", java.nio.charset.StandardCharsets.UTF_8))
+                    .body(new org.springframework.core.io.FileSystemResource(documentService.resolve(path)));
+        }
+        LiveDocument.Snapshot snapshot = documentService.loadFile(path);
+        return org.springframework.http.ResponseEntity.ok()
+                .header("X-Doc-Version", String.valueOf(snapshot.version()))
+                .body(snapshot.content());
     }
 
-    // --- REST APIs ---
-    @GetMapping("/api/files")
+    // Large files a page at a time, split at line ends, for the editor to load as it scrolls
+    @GetMapping("/api/editor/page")
     @ResponseBody
-    public List<String> getFiles(HttpSession session) { 
+    public org.springframework.http.ResponseEntity<?> getPage(@RequestParam String path,
+                                                             @RequestParam(defaultValue = "0") long offset,
+                                                             @RequestParam(defaultValue = "0") int size,
+                                                             HttpSession session) {
         User user = (User) session.getAttribute("user");
-        String role = (user != null) ? user.getRole() : "USER";
-        try (Stream<Path> walk = Files.walk(STORAGE_ROOT)) {
-            return walk.filter(Files::isRegularFile)
-                       .map(p -> STORAGE_ROOT.relativize(p).toString().replace("\\", "/"))
-                       .filter(path -> "ADMIN".equalsIgnoreCase(role) || !path.startsWith("admin/"))
-                       .collect(Collectors.toList());
-        } catch (IOException e) { return new ArrayList<>(); }
+        path = path.replace("\\", "/");
+        if (!accessControlService.canRead(user != null ? user.getUsername() : null, path)) {
+            return org.springframework.http.ResponseEntity.status(403).build();
+        }
+        if (!documentService.isLarge(path)) {
+            return org.springframework.http.ResponseEntity.badRequest().body(Map.of("error", "Not a large file; use /api/editor/content."));
+        }
+        try {
+            return org.springframework.http.ResponseEntity.ok(largeFileService.page(documentService.resolve(path), offset, size));
+        } catch (java.io.IOException e) {
+            return org.springframework.http.ResponseEntity.notFound().build();
+        }
     }
 
-    @GetMapping("/api/editor/content")
+    // Compile errors of a Java file as of its current text; updates follow on /topic/files/{path}/diagnostics
+    @GetMapping("/api/diagnostics")
     @ResponseBody
-    public org.springframework.http.ResponseEntity<?> getContent(@RequestParam String path, HttpSession session) {
+    public org.springframework.http.ResponseEntity<?> getDiagnostics(@RequestParam String path, HttpSession session) {
         User user = (User) session.getAttribute("user");
-        String role = (user != null) ? user.getRole() : "USER";
         path = path.replace("\\", "/");
-        if (path.startsWith("admin/") && !"ADMIN".equalsIgnoreCase(role)) {
-            return org.springframework.http.ResponseEntity.status(403).body("// ERROR: ACCESS DENIED.");
+        if (!accessControlService.canRead(user != null ? user.getUsername() : null, path)) {
+            return org.springframework.http.ResponseEntity.status(403).build();
+        }
+        try {
+            DiagnosticsService.FileDiagnostics diagnostics = diagnosticsService.get(path);
+            return diagnostics == null
+                    ? org.springframework.http.ResponseEntity.notFound().build()
+                    : org.springframework.http.ResponseEntity.ok(diagnostics);
+        } catch (java.util.concurrent.TimeoutException e) {
+            return org.springframework.http.ResponseEntity.status(503).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return org.springframework.http.ResponseEntity.status(503).build();
         }
-        return org.springframework.http.ResponseEntity.ok(loadFile(path));
     }
 
+    // Text or symbol search over the files the user can see, best matches first
+    @GetMapping("/api/search")
+    @ResponseBody
+    public org.springframework.http.ResponseEntity<?> search(@RequestParam String q,
+                                                            @RequestParam(defaultValue = "false") boolean regex,
+                                                            @RequestParam(defaultValue = "false") boolean caseSensitive,
+                                                            @RequestParam(defaultValue = "text") String kind,
+                                                            @RequestParam(required = false) String prefix,
+                                                            @RequestParam(defaultValue = "0") int page,
+                                                            @RequestParam(defaultValue = "20") int size,
+                                                            HttpSession session) {
+        User user = (User) session.getAttribute("user");
+        String username = (user != null) ? user.getUsername() : null;
+        String within = prefix == null ? "" : prefix.replace("\\", "/");
+        // Same visibility as /api/files: a file is searched only if it would be listed
+        List<AccessControlService.Region> regions = accessControlService.view(username);
+        if (!within.isEmpty() && accessControlService.access(username, within) == AccessControlService.Access.NONE
+                && regions.stream().noneMatch(r -> r.path().startsWith(within))) {
+            return org.springframework.http.ResponseEntity.status(403).build();
+        }
+        java.util.function.Predicate<String> visible = path -> path.startsWith(within)
+                && regions.stream().anyMatch(r -> r.contains(path));
+        if (!kind.equalsIgnoreCase("text") && !kind.equalsIgnoreCase("symbol")) {
+            return org.springframework.http.ResponseEntity.badRequest().body(Map.of("error", "kind must be text or symbol."));
+        }
+        try {
+            SearchService.Kind searchKind = SearchService.Kind.valueOf(kind.toUpperCase(Locale.ROOT));
+            return org.springframework.http.ResponseEntity.ok(searchService.search(q, regex, caseSensitive, searchKind,
+                    visible, Math.max(0, page), Math.min(Math.max(1, size), 100)));
+        } catch (IllegalArgumentException e) {
+            return org.springframework.http.ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Who is viewing what right now; clients apply /topic/presence changes on top of this
+    @GetMapping("/api/presence")
+    @ResponseBody
+    public Map<String, String> getPresence() {
+        return presenceService.snapshot();
+    }
+
+    // Chat history, oldest first; page back by passing the id of the oldest message shown
+    @GetMapping("/api/chat/{room}/history")
+    @ResponseBody
+    public org.springframework.http.ResponseEntity<List<ChatMessage>> getChatHistory(@PathVariable String room,
+                                                                                 @RequestParam(defaultValue = "0") long before,
+                                                                                 @RequestParam(defaultValue = "50") int limit) {
+        if (!ChatService.isValidRoom(room)) return org.springframework.http.ResponseEntity.badRequest().build();
+        return org.springframework.http.ResponseEntity.ok(chatService.history(room, before, limit));
+    }
+
+    // Edits per user for the contribution chart; window is 5m, 1h, 1d or all, file narrows it to one file
     @GetMapping("/api/stats")
     @ResponseBody
-    public Map<String, Long> getStats() {
-        // Simplified: Just returns raw edit counts for the pie chart
-        return userContributions.entrySet().stream()
-                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().get()));
+    public org.springframework.http.ResponseEntity<Map<String, Long>> getStats(@RequestParam(defaultValue = "all") String window,
+                                                                              @RequestParam(required = false) String file,
+                                                                              HttpSession session) {
+        ContributionService.Window w = ContributionService.Window.of(window);
+        if (w == null && !"all".equalsIgnoreCase(window)) return org.springframework.http.ResponseEntity.badRequest().build();
+        if (file != null) {
+            file = DocumentService.normalize(file);
+            User user = (User) session.getAttribute("user");
+            if (!accessControlService.canRead(user != null ? user.getUsername() : null, file)) {
+                return org.springframework.http.ResponseEntity.status(403).build();
+            }
+        }
+        return org.springframework.http.ResponseEntity.ok(contributionService.edits(w, file));
     }
 
     // --- WEBSOCKETS ---
+    // Broadcast in batches on /topic/chat/{room} by ChatService; dropped if the sender is over their rate.
+    // Sent as the session's user, and limited per user, or per session for a guest
     @MessageMapping("/chat.send")
-    @SendTo("/topic/public")
-    public ChatMessage handleChat(ChatMessage message) {
-        message.setTimestamp(LocalTime.now().format(DateTimeFormatter.ofPattern("HH:mm")));
-        return message;
+    public void handleChat(ChatMessage message, SimpMessageHeaderAccessor headers) {
+        String user = SessionUserInterceptor.username(headers);
+        chatService.post(message.getRoom(), user != null ? user : "guest", user != null ? user : "session:" + headers.getSessionId(),
+                message.getContent());
     }
 
+    // Heartbeat; PresenceService broadcasts batched JOIN/MOVE/LEAVE changes on /topic/presence.
+    // For the session's user, so no one can appear as someone else; guests are not shown
     @MessageMapping("/presence")
-    @SendTo("/topic/presence")
-    public Map<String, String> updatePresence(Map<String, String> payload) {
-        userPresence.put(payload.get("user"), payload.get("file"));
-        return userPresence;
+    public void updatePresence(Map<String, String> payload, SimpMessageHeaderAccessor headers) {
+        presenceService.heartbeat(headers.getSessionId(), SessionUserInterceptor.username(headers), payload.get("file"));
     }
 
+    // File changes are announced on /topic/files by FileIndexService as ADDED/REMOVED events
     @MessageMapping("/files.create")
-    @SendTo("/topic/files")
-    public String handleCreateFile(Map<String, String> payload) {
+    public void handleCreateFile(Map<String, String> payload) {
         String fileName = payload.get("name");
         String creator = payload.get("creator");
         String role = payload.get("role");
-        if ("admin".equalsIgnoreCase(creator) && !"ADMIN".equalsIgnoreCase(role)) return "REJECTED"; 
+        if ("admin".equalsIgnoreCase(creator) && !"ADMIN".equalsIgnoreCase(role)) return;
         String fullPath = creator + "/" + fileName;
-        if (!memoryCache.containsKey(fullPath)) saveFileToDiskSync(fullPath, "");
-        return "UPDATE_NEEDED"; 
+        if (documentService.resolve(fullPath) == null) return;
+        if (!documentService.exists(fullPath)) documentService.saveFileToDiskSync(fullPath, "");
+        fileIndexService.add(fullPath);
     }
     
     @MessageMapping("/files.delete")
-    @SendTo("/topic/files")
-    public String handleDeleteFile(Map<String, String> payload) {
+    public void handleDeleteFile(Map<String, String> payload) {
         String path = payload.get("path");
         String role = payload.get("role");
-        if (!"ADMIN".equalsIgnoreCase(role)) return "REJECTED";
-        try {
-            Path targetPath = STORAGE_ROOT.resolve(path).normalize();
-            if (targetPath.startsWith(STORAGE_ROOT)) {
-                Files.deleteIfExists(targetPath);
-                memoryCache.remove(path);
-                editLocks.remove(path);
+        if (!"ADMIN".equalsIgnoreCase(role)) return;
+        if (documentService.resolve(path) != null) {
+            // On the file's lane, so edits already queued for it are applied (and discarded) first
+            try {
+                editSequencer.submit(path, () -> {
+                    // Also releases the file's edit lock. A failed delete, e.g. of a non-empty
+                    // directory, leaves the index as it is
+                    if (documentService.delete(path)) fileIndexService.remove(path);
+                });
+            } catch (RejectedExecutionException e) {
+                // Lane full: not deleted, and the file stays in the tree for the client to try again
             }
-        } catch (IOException e) { e.printStackTrace(); }
-        return "UPDATE_NEEDED";
+        }
     }
 
+    // Edits to one file are applied one at a time on that file's lane, and the result goes
+    // only to the sessions subscribed to /topic/files/{path}/updates. If the lane is full the
+    // edit is not queued; only the sender hears, with REJECTED, and sends it again later
     @MessageMapping("/edit")
-    @SendTo("/topic/updates")
-    public EditResponse handleEdit(EditRequest request) {
-        String path = request.getFileName().replace("\\", "/"); 
-        String user = request.getUser();
-        String role = request.getRole(); 
-        String owner = editLocks.get(path);
-        
-        if (path.startsWith("admin/") && !"ADMIN".equalsIgnoreCase(role)) {
+    public void handleEdit(EditRequest request, SimpMessageHeaderAccessor headers) {
+        String path = DocumentService.normalize(request.getFileName());
+        // The session's user; request.getUser() is whatever the client chose to write
+        String user = SessionUserInterceptor.username(headers);
+        try {
+            editSequencer.submit(path, () -> {
+                long start = System.nanoTime();
+                EditResponse response = applyEdit(path, request, user);
+                metrics.recordEdit(response.getType(), System.nanoTime() - start);
+                fileTopicService.publishUpdate(path, response);
+            });
+        } catch (RejectedExecutionException e) {
+            EditResponse rejected = new EditResponse("REJECTED", "Server busy: edit not applied, try again.", user, path);
+            rejected.setBaseVersion(request.getBaseVersion() == null ? 0 : request.getBaseVersion());
+            rejected.setClientId(request.getClientId());
+            fileTopicService.reply(headers.getSessionId(), rejected);
+        }
+    }
+
+    private EditResponse applyEdit(String path, EditRequest request, String user) {
+        // Edits need an owner for the file's lock, so guests cannot make them
+        if (user == null || !accessControlService.canWrite(user, path)) {
             return new EditResponse("ERROR", "Access Denied.", user, path);
         }
-        if (owner != null && !owner.equals(user) && !"ADMIN".equalsIgnoreCase(role)) {
+        if (documentService.resolve(path) == null) return new EditResponse("ERROR", "Access Denied.", user, path);
+        if (documentService.isLarge(path)) {
+            largeFileService.recordRejectedEdit();
+            return new EditResponse("ERROR", "Large file: read-only.", user, path);
+        }
+        // First editor claims the file; the claim is atomic, also across nodes, so two racing first edits cannot both win
+        String owner = sharedState.claimLock(path, user);
+        if (!owner.equals(user) && !accessControlService.isAdmin(user)) {
             return new EditResponse("LOCKED", "Locked by " + owner, user, path);
         }
-        if (owner == null) editLocks.put(path, user);
         
-        userContributions.computeIfAbsent(user, k -> new AtomicLong(0)).incrementAndGet();
-        
-        // SYNCHRONOUS FULL PAYLOAD SAVE
-        saveFileToDiskSync(path, request.getContent());
-        
-        return new EditResponse("UPDATE", request.getContent(), user, path);
+        LiveDocument.AppliedEdit applied;
+        try {
+            if (request.getOps() != null) {
+                long base = request.getBaseVersion() == null ? 0 : request.getBaseVersion();
+                applied = documentService.applyEdit(path, base, request.getOps());
+            } else {
+                String content = request.getContent() == null ? "" : request.getContent();
+                applied = request.getBaseVersion() == null
+                        ? documentService.replaceContent(path, content)
+                        : documentService.replaceContent(path, request.getBaseVersion(), content);
+            }
+        } catch (IllegalArgumentException e) {
+            applied = null;
+        }
+
+        if (applied == null) {
+            // Stale or out-of-range write: nothing was applied. The sender gets the current
+            // document to start over from; other clients ignore CONFLICT.
+            LiveDocument.Snapshot snapshot = documentService.loadFile(path);
+            EditResponse conflict = new EditResponse("CONFLICT", snapshot.content(), user, path);
+            conflict.setVersion(snapshot.version());
+            conflict.setBaseVersion(snapshot.version());
+            conflict.setClientId(request.getClientId());
+            return conflict;
+        }
+
+        // Written to disk by the write-behind flusher, coalesced with other edits to this file
+        writeBehindPersister.markDirty(path);
+        contributionService.record(user, path, applied.ops());
+        searchService.changed(path);
+        diagnosticsService.changed(path);
+
+        EditResponse response;
+        if (request.getOps() == null) {
+            response = new EditResponse("FULL", request.getContent(), user, path);
+        } else {
+            response = new EditResponse("DELTA", null, user, path);
+            response.setOps(applied.ops());
+        }
+        response.setBaseVersion(applied.baseVersion());
+        response.setVersion(applied.version());
+        response.setClientId(request.getClientId());
+        return response;
     }
     // --- SERVER-SIDE COMPILER PROXY ---
     // --- SERVER-SIDE COMPILER PROXY (STEALTH MODE) ---
     // --- LOCAL EXECUTION ENGINE (NO EXTERNAL API REQUIRED) ---
+    // Queues a run and returns its job id at once; output streams on /topic/run/{jobId}
+    @PostMapping("/api/run/jobs")
+    @ResponseBody
+    public org.springframework.http.ResponseEntity<?> submitRun(@RequestBody Map<String, Object> payload, HttpSession session) {
+        String language = (String) payload.get("language");
+        String code = codeOf(payload);
+        ProjectRun project = payload.get("project") instanceof String folder ? projectRun(folder, (String) payload.get("main"), session) : null;
+        if (project != null && project.error() != null) {
+            return org.springframework.http.ResponseEntity.status(project.status()).body(Map.of("error", project.error()));
+        }
+        if (project == null && (code == null || !ExecutionService.isSupported(language))) {
+            return org.springframework.http.ResponseEntity.badRequest().body(Map.of("error", "Language not supported by local engine."));
+        }
+        int ahead = executionService.queueDepth();
+        ExecutionJob job = project != null
+                ? executionService.submitProject(runOwner(session), project.folder(), project.sources(), project.mainClass())
+                : executionService.submit(runOwner(session), language, code);
+        if (job == null) {
+            return org.springframework.http.ResponseEntity.status(429)
+                    .header("Retry-After", "2")
+                    .body(Map.of("error", "Too many runs queued, try again shortly."));
+        }
+        RunEvent queued = new RunEvent("QUEUED", job.getId());
+        queued.setQueued(ahead);
+        return org.springframework.http.ResponseEntity.accepted().body(queued);
+    }
+
+    // Output so far and, once finished, the result; for clients that subscribed late. Only
+    // to whoever submitted the run: anyone else's is reported missing, the same as no run
+    @GetMapping("/api/run/jobs/{jobId}")
+    @ResponseBody
+    public org.springframework.http.ResponseEntity<RunEvent> getRun(@PathVariable String jobId, HttpSession session) {
+        ExecutionJob job = executionService.get(jobId);
+        if (job == null || !job.getOwner().equals(runOwner(session))) return org.springframework.http.ResponseEntity.notFound().build();
+        return org.springframework.http.ResponseEntity.ok(executionService.snapshot(job));
+    }
+
+    // Original blocking API, kept for existing clients. It goes through the same queue and
+    // completes asynchronously, so no request thread waits on the program.
     @PostMapping("/api/run")
     @ResponseBody
-    public org.springframework.http.ResponseEntity<?> runCodeLocal(@RequestBody Map<String, Object> payload) {
-        try {
-            String language = (String) payload.get("language");
-            
-            // Extract code from the JSON payload
-            @SuppressWarnings("unchecked")
-            List<Map<String, String>> files = (List<Map<String, String>>) payload.get("files");
-            String code = files.get(0).get("content");
-            String output = "";
-
-            if ("java".equalsIgnoreCase(language)) {
-                // Dynamically find the Java class name (defaults to "Main")
-                String className = "Main";
-                java.util.regex.Matcher m = java.util.regex.Pattern.compile("public\\s+class\\s+([a-zA-Z0-9_]+)").matcher(code);
-                if (m.find()) { className = m.group(1); }
-
-                Path tempDir = Files.createTempDirectory("hyperide_exec");
-                Path sourceFile = tempDir.resolve(className + ".java");
-                Files.writeString(sourceFile, code);
-
-                // 1. Compile the Java code
-                Process compile = new ProcessBuilder("javac", sourceFile.toString())
-                        .redirectErrorStream(true).start();
-                compile.waitFor(5, java.util.concurrent.TimeUnit.SECONDS);
-
-                if (compile.exitValue() != 0) {
-                    output = "COMPILE ERROR:\n" + new String(compile.getInputStream().readAllBytes());
-                } else {
-                    // 2. Run the compiled Java bytecode
-                    Process run = new ProcessBuilder("java", "-cp", tempDir.toString(), className)
-                            .redirectErrorStream(true).start();
-                    run.waitFor(5, java.util.concurrent.TimeUnit.SECONDS);
-                    output = new String(run.getInputStream().readAllBytes());
-                }
-            } else if ("python".equalsIgnoreCase(language)) {
-                Path sourceFile = Files.createTempFile("script", ".py");
-                Files.writeString(sourceFile, code);
-                
-                // Run the Python script natively
-                Process run = new ProcessBuilder("python", sourceFile.toString())
-                        .redirectErrorStream(true).start();
-                run.waitFor(5, java.util.concurrent.TimeUnit.SECONDS);
-                output = new String(run.getInputStream().readAllBytes());
-            } else {
-                output = "Language not supported by local engine.";
+    public CompletableFuture<org.springframework.http.ResponseEntity<?>> runCodeLocal(@RequestBody Map<String, Object> payload, HttpSession session) {
+        String language = (String) payload.get("language");
+        String code = codeOf(payload);
+        ProjectRun project = payload.get("project") instanceof String folder ? projectRun(folder, (String) payload.get("main"), session) : null;
+        if (project != null && project.error() != null) {
+            return CompletableFuture.completedFuture(runResponse(project.status(), project.error()));
+        }
+        if (project == null && (code == null || !ExecutionService.isSupported(language))) {
+            return CompletableFuture.completedFuture(runResponse(200, "Language not supported by local engine."));
+        }
+        ExecutionJob job = project != null
+                ? executionService.submitProject(runOwner(session), project.folder(), project.sources(), project.mainClass())
+                : executionService.submit(runOwner(session), language, code);
+        if (job == null) {
+            return CompletableFuture.completedFuture(runResponse(429, "Too many runs queued, try again shortly."));
+        }
+        return job.completion().thenApply(result -> runResponse(200, result.describe()));
+    }
+
+    // A project run's inputs, or why it cannot run (status and message)
+    private record ProjectRun(String folder, Map<String, String> sources, String mainClass, int status, String error) {
+        static ProjectRun failed(int status, String error) {
+            return new ProjectRun(null, null, null, status, error);
+        }
+    }
+
+    // Project mode: every .java file under the folder the user can read, at its current text,
+    // keyed by its path within the folder. main names the entry file, else one is looked for.
+    private ProjectRun projectRun(String folder, String main, HttpSession session) {
+        User user = (User) session.getAttribute("user");
+        String username = (user != null) ? user.getUsername() : null;
+        String dir = folder.replace("\\", "/").replaceAll("/+$", "");
+        if (dir.isEmpty() || documentService.resolve(dir) == null || !accessControlService.canRead(username, dir)) {
+            return ProjectRun.failed(403, "ACCESS DENIED.");
+        }
+        List<String> files = fileIndexService.list(dir + "/").filter(p -> p.endsWith(".java")).toList();
+        if (files.size() > maxProjectFiles) {
+            return ProjectRun.failed(400, "Project has " + files.size() + " Java files; at most " + maxProjectFiles + " can be built.");
+        }
+        Map<String, String> sources = new TreeMap<>();
+        for (String path : files) {
+            if (!accessControlService.canRead(username, path) || documentService.isLarge(path)) continue;
+            LiveDocument doc = documentService.peek(path);
+            try {
+                sources.put(path.substring(dir.length() + 1), doc != null ? doc.snapshot().content() : Files.readString(documentService.resolve(path)));
+            } catch (java.io.IOException e) {
+                // Deleted since it was listed
             }
+        }
+        if (sources.isEmpty()) return ProjectRun.failed(400, "No Java files in " + dir + ".");
+        String mainClass;
+        if (main != null && !main.isEmpty()) {
+            String entry = main.replace("\\", "/");
+            if (entry.startsWith(dir + "/")) entry = entry.substring(dir.length() + 1);
+            if (!sources.containsKey(entry)) return ProjectRun.failed(400, "Main file " + main + " is not in " + dir + ".");
+            mainClass = InMemoryJavaCompiler.binaryName(entry, sources.get(entry));
+        } else {
+            mainClass = ExecutionService.mainClassOf(sources);
+            if (mainClass == null) return ProjectRun.failed(400, "No main method found in " + dir + ".");
+        }
+        return new ProjectRun(dir, sources, mainClass, 200, null);
+    }
 
-            // Package the output into the exact JSON format the frontend expects
-            Map<String, Object> responseData = new HashMap<>();
-            Map<String, String> runData = new HashMap<>();
-            runData.put("output", output);
-            responseData.put("run", runData);
+    @SuppressWarnings("unchecked")
+    private static String codeOf(Map<String, Object> payload) {
+        List<Map<String, String>> files = (List<Map<String, String>>) payload.get("files");
+        if (files != null && !files.isEmpty()) return files.get(0).get("content");
+        return (String) payload.get("code");
+    }
 
-            return org.springframework.http.ResponseEntity.ok(responseData);
+    // Fair-queue owner: the logged-in user, or the browser session for guests
+    private static String runOwner(HttpSession session) {
+        User user = (User) session.getAttribute("user");
+        return user != null ? user.getUsername() : "session:" + session.getId();
+    }
 
-        } catch (Exception e) {
-            Map<String, Object> errData = new HashMap<>();
-            Map<String, String> runData = new HashMap<>();
-            runData.put("output", "Local Execution Error: " + e.getMessage());
-            errData.put("run", runData);
-            return org.springframework.http.ResponseEntity.status(500).body(errData);
-        }
+    // Package the output into the exact JSON format the frontend expects
+    private static org.springframework.http.ResponseEntity<?> runResponse(int status, String output) {
+        Map<String, Object> responseData = new HashMap<>();
+        Map<String, String> runData = new HashMap<>();
+        runData.put("output", output);
+        responseData.put("run", runData);
+        return org.springframework.http.ResponseEntity.status(status).body(responseData);
     }
-}
\ No newline at end of file
+}
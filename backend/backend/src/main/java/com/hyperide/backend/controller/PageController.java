@@ -1,25 +1,25 @@
 package com.hyperide.backend.controller;
 
 import com.hyperide.backend.model.User;
-import com.hyperide.backend.repository.UserRepository;
+import com.hyperide.backend.service.UserService;
 import jakarta.servlet.http.HttpServletResponse; // ADD THIS
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.regex.Pattern;
 
 @Controller
 public class PageController {
 
-    @Autowired private UserRepository userRepository;
-    @Autowired private PasswordEncoder passwordEncoder;
+    @Autowired private UserService userService;
 
     private static final Pattern PASS_PATTERN = Pattern.compile("^(?=.*[A-Z])(?=.*[!@#$&*])(?=.*[0-9]).{8,}$");
+    private static final String BUSY = "Server busy, please try again in a moment.";
 
     // Map BOTH "/" and "/login" to this method
     @GetMapping({"/", "/login"})
@@ -35,8 +35,14 @@ public class PageController {
 
     @PostMapping("/doLogin")
     public String doLogin(@RequestParam String username, @RequestParam String password, HttpSession session, Model model) {
-        Optional<User> user = userRepository.findByUsername(username);
-        if (user.isPresent() && passwordEncoder.matches(password, user.get().getPassword())) {
+        Optional<User> user;
+        try {
+            user = userService.authenticate(username, password);
+        } catch (RejectedExecutionException e) {
+            model.addAttribute("error", BUSY);
+            return "login";
+        }
+        if (user.isPresent()) {
             session.setAttribute("user", user.get());
             return "redirect:/ide";
         }
@@ -46,7 +52,7 @@ public class PageController {
 
     @PostMapping("/doRegister")
     public String doRegister(@RequestParam String username, @RequestParam String password, Model model) {
-        if (userRepository.findByUsername(username).isPresent()) {
+        if (userService.exists(username)) {
             model.addAttribute("error", "Username already exists!");
             return "login";
         }
@@ -56,9 +62,14 @@ public class PageController {
         }
         User newUser = new User();
         newUser.setUsername(username);
-        newUser.setPassword(passwordEncoder.encode(password));
+        try {
+            newUser.setPassword(userService.encode(password));
+        } catch (RejectedExecutionException e) {
+            model.addAttribute("error", BUSY);
+            return "login";
+        }
         newUser.setRole("USER");
-        userRepository.save(newUser);
+        userService.save(newUser);
         model.addAttribute("success", "Registration successful! Please login.");
         return "login";
     }
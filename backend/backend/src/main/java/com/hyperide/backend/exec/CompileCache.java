@@ -0,0 +1,252 @@
+package com.hyperide.backend.exec;
+
+import com.hyperide.backend.model.CompileDiagnostic;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store of compile results, classes and diagnostics alike, so running
+ * unchanged code again skips the compiler. Entries are keyed by a SHA-256 of language,
+ * compiler version and sources, kept on disk under hyperide_data and evicted least
+ * recently used first once they exceed the byte budget.
+ */
+@Component
+public class CompileCache implements MeterBinder {
+
+    private static final int FORMAT = 1;
+
+    @Autowired private InMemoryJavaCompiler compiler;
+
+    @Value("${hyperide.exec.compile-cache.dir:hyperide_data/compile-cache}")
+    private String dir;
+
+    @Value("${hyperide.exec.compile-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    private Path root;
+    // Key to entry size on disk, in access order; guarded by itself
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(dir).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+        // Rebuild the LRU order from modification times, which a hit refreshes
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(root)) {
+            list.forEach(files::add);
+        }
+        Map<Path, FileTime> modified = new HashMap<>();
+        for (Path p : files) {
+            if (p.getFileName().toString().endsWith(".tmp")) {
+                Files.deleteIfExists(p); // Interrupted write
+                continue;
+            }
+            modified.put(p, Files.getLastModifiedTime(p));
+        }
+        List<Path> ordered = new ArrayList<>(modified.keySet());
+        ordered.sort(Comparator.comparing(modified::get));
+        synchronized (entries) {
+            for (Path p : ordered) {
+                long size = Files.size(p);
+                entries.put(p.getFileName().toString(), size);
+                bytes += size;
+            }
+            evictIfNeeded();
+        }
+    }
+
+    /** Cached result for these sources, or null. */
+    public InMemoryJavaCompiler.Output get(Map<String, String> sources) {
+        String key = key(sources);
+        synchronized (entries) {
+            if (entries.get(key) == null) {
+                misses++;
+                return null;
+            }
+        }
+        Path file = root.resolve(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            InMemoryJavaCompiler.Output output = read(in);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            synchronized (entries) { hits++; }
+            return output;
+        } catch (IOException e) {
+            // Evicted concurrently or unreadable: treat it as a miss
+            synchronized (entries) {
+                misses++;
+                Long size = entries.remove(key);
+                if (size != null) bytes -= size;
+            }
+            return null;
+        }
+    }
+
+    public void put(Map<String, String> sources, InMemoryJavaCompiler.Output output) {
+        String key = key(sources);
+        Path file = root.resolve(key);
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(buffer)) {
+                write(out, output);
+            }
+            if (buffer.size() > maxBytes) return;
+            Path tmp = Files.createTempFile(root, "." + key, ".tmp");
+            try {
+                Files.write(tmp, buffer.toByteArray());
+                try {
+                    Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            synchronized (entries) {
+                Long previous = entries.put(key, (long) buffer.size());
+                bytes += buffer.size() - (previous == null ? 0 : previous);
+                evictIfNeeded();
+            }
+        } catch (IOException e) {
+            System.err.println("Compile cache write failed: " + e.getMessage());
+        }
+    }
+
+    // Caller holds the entries lock
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            try {
+                Files.deleteIfExists(root.resolve(entry.getKey()));
+            } catch (IOException e) {
+                System.err.println("Compile cache eviction failed: " + e.getMessage());
+                continue;
+            }
+            bytes -= entry.getValue();
+            evictions++;
+            eldest.remove();
+        }
+    }
+
+    private String key(Map<String, String> sources) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            update(sha, "java");
+            update(sha, compiler.version());
+            new TreeMap<>(sources).forEach((name, code) -> {
+                update(sha, name);
+                update(sha, code);
+            });
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Length-prefixed, so ("ab", "c") and ("a", "bc") hash differently
+    private static void update(MessageDigest sha, String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        sha.update(new byte[] { (byte) (b.length >>> 24), (byte) (b.length >>> 16), (byte) (b.length >>> 8), (byte) b.length });
+        sha.update(b);
+    }
+
+    // --- ENTRY FORMAT ---
+    private static void write(DataOutputStream out, InMemoryJavaCompiler.Output output) throws IOException {
+        out.writeInt(FORMAT);
+        out.writeBoolean(output.success());
+        writeString(out, output.text());
+        out.writeInt(output.diagnostics().size());
+        for (CompileDiagnostic d : output.diagnostics()) {
+            writeString(out, d.getFile());
+            out.writeLong(d.getLine());
+            out.writeLong(d.getColumn());
+            writeString(out, d.getSeverity());
+            writeString(out, d.getMessage());
+        }
+        out.writeInt(output.classes().size());
+        for (Map.Entry<String, byte[]> c : output.classes().entrySet()) {
+            writeString(out, c.getKey());
+            out.writeInt(c.getValue().length);
+            out.write(c.getValue());
+        }
+    }
+
+    private static InMemoryJavaCompiler.Output read(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT) throw new IOException("Unknown cache entry format");
+        boolean success = in.readBoolean();
+        String text = readString(in);
+        List<CompileDiagnostic> diagnostics = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            diagnostics.add(new CompileDiagnostic(readString(in), in.readLong(), in.readLong(), readString(in), readString(in)));
+        }
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            String name = readString(in);
+            byte[] b = new byte[in.readInt()];
+            in.readFully(b);
+            classes.put(name, b);
+        }
+        return new InMemoryJavaCompiler.Output(success, classes, diagnostics, text);
+    }
+
+    // writeUTF is capped at 64 KB, which long compiler output can exceed
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.exec.compile.cache.entries", this, c -> c.locked(() -> c.entries.size()))
+                .description("Compiled programs kept on disk")
+                .register(registry);
+        Gauge.builder("hyperide.exec.compile.cache.bytes", this, c -> c.locked(() -> c.bytes))
+                .description("Bytes the compile cache holds on disk")
+                .register(registry);
+        FunctionCounter.builder("hyperide.exec.compile.cache.requests", this, c -> c.locked(() -> c.hits))
+                .description("Compile cache lookups, by whether the program was cached")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("hyperide.exec.compile.cache.requests", this, c -> c.locked(() -> c.misses))
+                .description("Compile cache lookups, by whether the program was cached")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("hyperide.exec.compile.cache.evictions", this, c -> c.locked(() -> c.evictions))
+                .description("Compiled programs dropped to stay within the byte budget")
+                .register(registry);
+    }
+
+    private double locked(LongSupplier value) {
+        synchronized (entries) {
+            return value.getAsLong();
+        }
+    }
+}
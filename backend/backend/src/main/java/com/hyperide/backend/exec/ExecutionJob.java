@@ -0,0 +1,63 @@
+package com.hyperide.backend.exec;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/** One submission going through {@link ExecutionService}: queued, running, then done. */
+public final class ExecutionJob {
+
+    public enum State { QUEUED, RUNNING, DONE }
+
+    private final String id;
+    private final String owner;
+    private final String language;
+    private final String code;
+    // Project runs only: the folder, its files (path within it to source text) and the entry point
+    private final String project;
+    private final Map<String, String> sources;
+    private final String mainClass;
+    private final long submittedNanos = System.nanoTime();
+    private final CompletableFuture<ExecutionResult> completion = new CompletableFuture<>();
+
+    volatile State state = State.QUEUED;
+    volatile long queueWaitMs;
+
+    // Guarded by this: output so far, and how much of it subscribers have been sent
+    final StringBuilder output = new StringBuilder();
+    String pendingStream;
+    int published;
+
+    ExecutionJob(String id, String owner, String language, String code) {
+        this(id, owner, language, code, null, null, null);
+    }
+
+    ExecutionJob(String id, String owner, String project, Map<String, String> sources, String mainClass) {
+        this(id, owner, "java", null, project, sources, mainClass);
+    }
+
+    private ExecutionJob(String id, String owner, String language, String code,
+                         String project, Map<String, String> sources, String mainClass) {
+        this.id = id;
+        this.owner = owner;
+        this.language = language;
+        this.code = code;
+        this.project = project;
+        this.sources = sources;
+        this.mainClass = mainClass;
+    }
+
+    public String getId() { return id; }
+    public String getOwner() { return owner; }
+    public String getLanguage() { return language; }
+    String getCode() { return code; }
+    String getProject() { return project; }
+    Map<String, String> getSources() { return sources; }
+    String getMainClass() { return mainClass; }
+    long getSubmittedNanos() { return submittedNanos; }
+    public State getState() { return state; }
+
+    /** Completes with the result once the job has run. */
+    public CompletableFuture<ExecutionResult> completion() {
+        return completion;
+    }
+}
@@ -0,0 +1,41 @@
+package com.hyperide.backend.exec;
+
+import com.hyperide.backend.model.CompileDiagnostic;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ExecutionResult {
+    // OK, COMPILE_ERROR, EXCEPTION, EXITED, TIME_LIMIT, CPU_LIMIT, OUTPUT_LIMIT, MEMORY_LIMIT, CRASHED, BUSY, UNAVAILABLE
+    private String status;
+    private String output = "";
+    private int exitCode;
+    private List<CompileDiagnostic> diagnostics = new ArrayList<>();
+    private long compileMs;
+    private boolean compileCached;
+    private long runMs;
+    private long cpuMs;
+
+    public static ExecutionResult of(String status, String output) {
+        ExecutionResult result = new ExecutionResult();
+        result.setStatus(status);
+        result.setOutput(output);
+        return result;
+    }
+
+    /** Output as shown in the IDE terminal, with a note when a limit cut the run short. */
+    public String describe() {
+        return switch (status) {
+            case "COMPILE_ERROR" -> "COMPILE ERROR:\n" + output;
+            case "TIME_LIMIT" -> output + "\n[Time limit exceeded]";
+            case "CPU_LIMIT" -> output + "\n[CPU limit exceeded]";
+            case "OUTPUT_LIMIT" -> output + "\n[Output limit exceeded]";
+            case "MEMORY_LIMIT" -> output + "\n[Memory limit exceeded]";
+            case "EXITED" -> exitCode == 0 ? output : output + "\n[Exited with code " + exitCode + "]";
+            case "CRASHED" -> output + "\n[Execution worker crashed]";
+            default -> output;
+        };
+    }
+}
@@ -0,0 +1,322 @@
+package com.hyperide.backend.exec;
+
+import com.hyperide.backend.config.HyperideMetrics;
+import com.hyperide.backend.model.RunEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Job-based front end for code execution. Submissions go into a bounded, per-user fair
+ * queue and are picked up by a fixed set of runner threads, so HTTP threads never wait
+ * on a program. Output is streamed to /topic/run/{jobId} while the program runs,
+ * coalesced into one message per stream switch, flush interval or chunk size.
+ */
+@Service
+public class ExecutionService implements MeterBinder {
+
+    private static final Pattern PUBLIC_CLASS = Pattern.compile("public\\s+class\\s+([a-zA-Z0-9_]+)");
+    private static final Pattern MAIN_METHOD = Pattern.compile("\\bstatic\\s+void\\s+main\\s*\\(");
+    private static final int CHUNK_CHARS = 8192;
+
+    @Autowired private JavaExecutionPool javaExecutionPool;
+    @Autowired private PythonExecutionPool pythonExecutionPool;
+    @Autowired private ProjectBuilder projectBuilder;
+    @Autowired private SimpMessagingTemplate messagingTemplate;
+    @Autowired private HyperideMetrics metrics;
+
+    @Value("${hyperide.exec.runners:4}")
+    private int runners;
+
+    @Value("${hyperide.exec.queue.max-jobs:64}")
+    private int maxQueuedJobs;
+
+    @Value("${hyperide.exec.queue.max-jobs-per-user:4}")
+    private int maxQueuedJobsPerUser;
+
+    @Value("${hyperide.exec.jobs.retain:200}")
+    private int retainJobs;
+
+    @Value("${hyperide.exec.stream.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    private FairJobQueue<ExecutionJob> queue;
+    // Recent jobs by id, oldest dropped first, so clients can fetch a result after the fact
+    private final Map<String, ExecutionJob> jobs = new LinkedHashMap<>();
+    private final Set<ExecutionJob> running = ConcurrentHashMap.newKeySet();
+    private final List<Thread> runnerThreads = new ArrayList<>();
+    private ScheduledExecutorService flusher;
+    private volatile boolean closed;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        queue = new FairJobQueue<>(maxQueuedJobs, maxQueuedJobsPerUser);
+        for (int i = 1; i <= runners; i++) {
+            Thread t = new Thread(this::runLoop, "exec-runner-" + i);
+            t.setDaemon(true);
+            t.start();
+            runnerThreads.add(t);
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "exec-output-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushRunning, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        runnerThreads.forEach(Thread::interrupt);
+        flusher.shutdownNow();
+        // Runs that never started would otherwise leave whoever waits on them waiting for good
+        List<ExecutionJob> queued;
+        synchronized (jobs) {
+            queued = jobs.values().stream().filter(job -> job.state == ExecutionJob.State.QUEUED).toList();
+        }
+        queued.forEach(this::cancel);
+    }
+
+    public static boolean isSupported(String language) {
+        return "java".equalsIgnoreCase(language) || "python".equalsIgnoreCase(language);
+    }
+
+    /** Java entry point: the first public class, "Main" if there is none. */
+    public static String mainClassOf(String code) {
+        Matcher m = PUBLIC_CLASS.matcher(code);
+        return m.find() ? m.group(1) : "Main";
+    }
+
+    /** Queues a run. Returns null when the queue, or this owner's share of it, is full. */
+    public ExecutionJob submit(String owner, String language, String code) {
+        return enqueue(owner, new ExecutionJob(UUID.randomUUID().toString(), owner, language.toLowerCase(Locale.ROOT), code));
+    }
+
+    /**
+     * Queues a run of a multi-file Java project: sources maps each file's path within the
+     * project folder to its text, mainClass is the entry point's binary name. Returns null
+     * when the queue, or this owner's share of it, is full.
+     */
+    public ExecutionJob submitProject(String owner, String project, Map<String, String> sources, String mainClass) {
+        return enqueue(owner, new ExecutionJob(UUID.randomUUID().toString(), owner, project, Map.copyOf(sources), mainClass));
+    }
+
+    /** Entry point of a project: the class of a file with a main method, preferring Main.java. */
+    public static String mainClassOf(Map<String, String> sources) {
+        String found = null;
+        for (Map.Entry<String, String> source : new TreeMap<>(sources).entrySet()) {
+            if (!MAIN_METHOD.matcher(source.getValue()).find()) continue;
+            String name = InMemoryJavaCompiler.binaryName(source.getKey(), source.getValue());
+            if (source.getKey().equals("Main.java") || source.getKey().endsWith("/Main.java")) return name;
+            if (found == null) found = name;
+        }
+        return found;
+    }
+
+    private ExecutionJob enqueue(String owner, ExecutionJob job) {
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+            if (jobs.size() > retainJobs) {
+                Iterator<ExecutionJob> oldest = jobs.values().iterator();
+                while (jobs.size() > retainJobs && oldest.hasNext()) {
+                    if (oldest.next().state == ExecutionJob.State.DONE) oldest.remove();
+                }
+            }
+        }
+        if (!queue.offer(owner, job)) {
+            synchronized (jobs) { jobs.remove(job.getId()); }
+            rejected.incrementAndGet();
+            return null;
+        }
+        submitted.incrementAndGet();
+        if (closed) cancel(job); // Queued after shutdown swept the queue
+        return job;
+    }
+
+    // Finishes a job still in the queue without running it; one a runner took is left to it
+    private void cancel(ExecutionJob job) {
+        if (!queue.remove(job.getOwner(), job)) return;
+        try {
+            finish(job, ExecutionResult.of("UNAVAILABLE", "Server shutting down."));
+        } catch (RuntimeException e) {
+            // Completed already; only the DONE broadcast failed, the broker may be gone
+        }
+    }
+
+    public ExecutionJob get(String jobId) {
+        synchronized (jobs) { return jobs.get(jobId); }
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    /** Everything known about a job so far, for clients that subscribed late. */
+    public RunEvent snapshot(ExecutionJob job) {
+        RunEvent event = new RunEvent("SNAPSHOT", job.getId());
+        ExecutionResult result;
+        synchronized (job) {
+            event.setText(job.output.toString());
+            event.setStatus(job.state.name());
+            result = job.completion().getNow(null);
+        }
+        event.setQueueWaitMs(job.queueWaitMs);
+        if (result != null) describe(event, result);
+        return event;
+    }
+
+    // --- RUNNERS ---
+    private void runLoop() {
+        while (!closed) {
+            ExecutionJob job;
+            try {
+                job = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (job != null) execute(job);
+        }
+    }
+
+    private void execute(ExecutionJob job) {
+        long waitMs = (System.nanoTime() - job.getSubmittedNanos()) / 1_000_000;
+        job.queueWaitMs = waitMs;
+        metrics.recordQueueWait(waitMs);
+        job.state = ExecutionJob.State.RUNNING;
+        running.add(job);
+        RunEvent started = new RunEvent("STARTED", job.getId());
+        started.setQueueWaitMs(waitMs);
+        publish(started);
+
+        ExecutionResult result;
+        try {
+            OutputListener listener = (stream, text) -> append(job, stream, text);
+            RunLimits limits = javaExecutionPool.defaultLimits();
+            if (job.getSources() != null) result = runProject(job, limits, listener);
+            else if ("python".equals(job.getLanguage())) result = pythonExecutionPool.run(job.getCode(), limits, listener);
+            else result = javaExecutionPool.run(mainClassOf(job.getCode()), job.getCode(), limits, listener);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = ExecutionResult.of("CRASHED", "Interrupted while building.");
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            result = ExecutionResult.of("CRASHED", "");
+        } finally {
+            running.remove(job);
+        }
+        finish(job, result);
+    }
+
+    // Builds what changed since the project's last run, then runs it like a single-file program
+    private ExecutionResult runProject(ExecutionJob job, RunLimits limits, OutputListener listener) throws InterruptedException {
+        if (!projectBuilder.isAvailable()) return ExecutionResult.of("UNAVAILABLE", "Java compiler not available on this server.");
+        long start = System.nanoTime();
+        ProjectBuilder.Build build = projectBuilder.build(job.getProject(), job.getSources());
+        long compileMs = (System.nanoTime() - start) / 1_000_000;
+        ExecutionResult result = build.success()
+                ? javaExecutionPool.execute(build.classes(), job.getMainClass(), limits, listener)
+                : ExecutionResult.of("COMPILE_ERROR", build.text());
+        result.setCompileMs(compileMs);
+        result.setCompileCached(build.compiledFiles() == 0);
+        result.setDiagnostics(build.diagnostics());
+        return result;
+    }
+
+    private void append(ExecutionJob job, String stream, String text) {
+        synchronized (job) {
+            if (job.pendingStream != null && !job.pendingStream.equals(stream)) flush(job);
+            job.pendingStream = stream;
+            job.output.append(text);
+            if (job.output.length() - job.published >= CHUNK_CHARS) flush(job);
+        }
+    }
+
+    private void flushRunning() {
+        for (ExecutionJob job : running) {
+            synchronized (job) { flush(job); }
+        }
+    }
+
+    // Caller holds the job's lock
+    private void flush(ExecutionJob job) {
+        if (job.published == job.output.length()) return;
+        RunEvent event = new RunEvent("OUTPUT", job.getId());
+        event.setStream(job.pendingStream);
+        event.setOffset(job.published);
+        event.setText(job.output.substring(job.published));
+        job.published = job.output.length();
+        publish(event);
+    }
+
+    private void finish(ExecutionJob job, ExecutionResult result) {
+        RunEvent done = new RunEvent("DONE", job.getId());
+        done.setQueueWaitMs(job.queueWaitMs);
+        describe(done, result);
+        synchronized (job) {
+            flush(job);
+            // Compiler output and limit/exit notes were never streamed; they go out with DONE
+            String full = result.describe();
+            String streamed = job.output.toString();
+            String tail = full.startsWith(streamed) ? full.substring(streamed.length()) : "";
+            done.setStream("system");
+            done.setOffset(job.output.length());
+            done.setText(tail);
+            job.output.append(tail);
+            job.published = job.output.length();
+            job.state = ExecutionJob.State.DONE;
+            job.completion().complete(result);
+        }
+        metrics.recordRun(job.getLanguage(), result.getRunMs());
+        publish(done);
+    }
+
+    private static void describe(RunEvent event, ExecutionResult result) {
+        event.setStatus(result.getStatus());
+        event.setExitCode(result.getExitCode());
+        event.setCompileMs(result.getCompileMs());
+        event.setCompileCached(result.isCompileCached());
+        event.setRunMs(result.getRunMs());
+        event.setCpuMs(result.getCpuMs());
+        event.setDiagnostics(result.getDiagnostics());
+    }
+
+    private void publish(RunEvent event) {
+        messagingTemplate.convertAndSend("/topic/run/" + event.getJobId(), event);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.exec.queued", this, ExecutionService::queueDepth)
+                .description("Runs waiting in the run queue")
+                .register(registry);
+        Gauge.builder("hyperide.exec.running", running, Set::size)
+                .description("Runs in progress")
+                .register(registry);
+        FunctionCounter.builder("hyperide.exec.submitted", submitted, AtomicLong::get)
+                .description("Runs accepted into the run queue")
+                .register(registry);
+        FunctionCounter.builder("hyperide.exec.rejected", rejected, AtomicLong::get)
+                .description("Runs refused because the queue, or the user's share of it, was full")
+                .register(registry);
+    }
+}
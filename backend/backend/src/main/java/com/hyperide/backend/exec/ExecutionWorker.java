@@ -0,0 +1,216 @@
+package com.hyperide.backend.exec;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Main class of a pre-warmed worker JVM started by {@link JavaExecutionPool}. It reads
+ * compiled programs from the pool's socket, runs each in its own class loader and
+ * streams the output back on the same socket:
+ *
+ * <pre>
+ * request:  long token, int classCount, (UTF name, int length, bytes)*, UTF mainClass,
+ *           long cpuLimitMs, long timeLimitMs, int outputLimitBytes
+ * response: 'O'|'E' int length, bytes      stdout / stderr chunk, any number
+ *           'D' long token, UTF status, long cpuNanos, long wallNanos, int strayThreads
+ * </pre>
+ *
+ * The socket is connected before any program runs and only held by this class's locals
+ * and the capped streams, so a program cannot write frames of its own: the process's
+ * real stdout goes nowhere. The token, never stored in a field, lets the pool tell a
+ * done frame of this run from a forged one.
+ *
+ * After a run that hit a limit the worker halts instead of answering again, since the
+ * offending thread cannot be stopped safely; the pool starts a replacement.
+ *
+ * <p>This class is copied to a bare directory and run from there, so it must only use
+ * the JDK and must not declare anonymous classes.
+ */
+public final class ExecutionWorker {
+
+    static final int READY = 'R';
+    static final int STDOUT = 'O';
+    static final int STDERR = 'E';
+    static final int DONE = 'D';
+
+    public static void main(String[] args) throws IOException {
+        SocketChannel socket = SocketChannel.open(UnixDomainSocketAddress.of(args[0]));
+        DataOutputStream protocol = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(socket), 1 << 16));
+        DataInputStream requests = new DataInputStream(new BufferedInputStream(Channels.newInputStream(socket), 1 << 16));
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+        // Output still buffered when a program calls System.exit is flushed here
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> { System.out.flush(); System.err.flush(); }));
+        warmUp();
+        synchronized (protocol) {
+            protocol.writeByte(READY);
+            protocol.flush();
+        }
+
+        while (true) {
+            long token;
+            try {
+                token = requests.readLong();
+            } catch (EOFException e) {
+                return; // Pool closed the socket
+            }
+            int count = requests.readInt();
+            Map<String, byte[]> classes = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String name = requests.readUTF();
+                byte[] bytes = new byte[requests.readInt()];
+                requests.readFully(bytes);
+                classes.put(name, bytes);
+            }
+            String mainClass = requests.readUTF();
+            long cpuLimitMs = requests.readLong();
+            long timeLimitMs = requests.readLong();
+            int outputLimit = requests.readInt();
+            run(protocol, token, classes, mainClass, cpuLimitMs, timeLimitMs, outputLimit);
+        }
+    }
+
+    private static void run(DataOutputStream protocol, long token, Map<String, byte[]> classes, String mainClass,
+                            long cpuLimitMs, long timeLimitMs, int outputLimit) throws IOException {
+        int threadsBefore = Thread.activeCount();
+        long[] budget = { outputLimit };
+        PrintStream out = new PrintStream(new BufferedOutputStream(new Capped(protocol, STDOUT, budget), 8192), true, StandardCharsets.UTF_8);
+        PrintStream err = new PrintStream(new BufferedOutputStream(new Capped(protocol, STDERR, budget), 8192), true, StandardCharsets.UTF_8);
+        System.setOut(out);
+        System.setErr(err);
+
+        Loader loader = new Loader(classes);
+        Throwable[] failure = new Throwable[1];
+        Thread program = new Thread(() -> {
+            try {
+                Method main = loader.loadClass(mainClass).getMethod("main", String[].class);
+                main.invoke(null, (Object) new String[0]);
+            } catch (InvocationTargetException e) {
+                failure[0] = e.getCause();
+            } catch (Throwable e) {
+                failure[0] = e;
+            }
+        }, "main");
+        program.setContextClassLoader(loader);
+
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        long start = System.nanoTime();
+        long cpu = 0;
+        String status = "OK";
+        program.start();
+        while (program.isAlive()) {
+            try {
+                program.join(10);
+            } catch (InterruptedException e) {
+                break;
+            }
+            long threadCpu = mx.getThreadCpuTime(program.threadId());
+            if (threadCpu > 0) cpu = threadCpu;
+            if (cpu > cpuLimitMs * 1_000_000) { status = "CPU_LIMIT"; break; }
+            if (System.nanoTime() - start > timeLimitMs * 1_000_000) { status = "TIME_LIMIT"; break; }
+            if (budget[0] < 0) { status = "OUTPUT_LIMIT"; break; }
+        }
+        long wall = System.nanoTime() - start;
+
+        if ("OK".equals(status) && failure[0] != null) {
+            status = failure[0] instanceof OutOfMemoryError ? "MEMORY_LIMIT" : "EXCEPTION";
+            err.print("Exception in thread \"main\" ");
+            hideWorkerFrames(failure[0]);
+            failure[0].printStackTrace(err);
+        }
+        if ("OK".equals(status) && budget[0] < 0) status = "OUTPUT_LIMIT";
+        out.flush();
+        err.flush();
+
+        synchronized (protocol) {
+            protocol.writeByte(DONE);
+            protocol.writeLong(token);
+            protocol.writeUTF(status);
+            protocol.writeLong(cpu);
+            protocol.writeLong(wall);
+            protocol.writeInt(Math.max(0, Thread.activeCount() - threadsBefore));
+            protocol.flush();
+        }
+        if (program.isAlive() || "MEMORY_LIMIT".equals(status)) Runtime.getRuntime().halt(3);
+    }
+
+    // Cut each trace at the reflective call into the program, like the java launcher shows it
+    private static void hideWorkerFrames(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            StackTraceElement[] frames = t.getStackTrace();
+            int end = 0;
+            while (end < frames.length && !frames[end].getClassName().startsWith("jdk.internal.reflect.")
+                    && !frames[end].getClassName().startsWith("java.lang.reflect.")
+                    && !frames[end].getClassName().equals(ExecutionWorker.class.getName())) end++;
+            if (end > 0) t.setStackTrace(Arrays.copyOf(frames, end));
+        }
+    }
+
+    private static void warmUp() {
+        StringBuilder sb = new StringBuilder();
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < 2_000; i++) {
+            sb.append(String.format("%d", i));
+            map.merge(Integer.toString(i % 50), 1, Integer::sum);
+        }
+        new PrintStream(OutputStream.nullOutputStream(), true, StandardCharsets.UTF_8).println(sb.length() + map.size());
+    }
+
+    /** Frames writes as protocol chunks; drops them once the shared byte budget is spent. */
+    private static final class Capped extends OutputStream {
+        private final DataOutputStream protocol;
+        private final int type;
+        private final long[] budget;
+
+        Capped(DataOutputStream protocol, int type, long[] budget) {
+            this.protocol = protocol;
+            this.type = type;
+            this.budget = budget;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (protocol) {
+                if (budget[0] < 0) return;
+                int allowed = (int) Math.min(len, budget[0]);
+                budget[0] -= len;
+                if (allowed <= 0) return;
+                protocol.writeByte(type);
+                protocol.writeInt(allowed);
+                protocol.write(b, off, allowed);
+                protocol.flush();
+            }
+        }
+    }
+
+    /** Fresh loader per run, parented to the platform loader so programs cannot see us. */
+    private static final class Loader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        Loader(Map<String, byte[]> classes) {
+            super(ClassLoader.getPlatformClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) throw new ClassNotFoundException(name);
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.hyperide.backend.exec;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded queue that hands out items round-robin across owners, so one user queueing
+ * many runs cannot starve everyone else. Offers beyond the total or per-owner bound are
+ * refused rather than blocked, which is the backpressure callers pass on as HTTP 429.
+ */
+public class FairJobQueue<T> {
+
+    private final int maxTotal;
+    private final int maxPerOwner;
+    private final Map<String, ArrayDeque<T>> byOwner = new HashMap<>();
+    // Owners with queued items, in the order they get their next turn
+    private final ArrayDeque<String> turns = new ArrayDeque<>();
+    private int size;
+
+    public FairJobQueue(int maxTotal, int maxPerOwner) {
+        this.maxTotal = maxTotal;
+        this.maxPerOwner = maxPerOwner;
+    }
+
+    /** @return false if the queue or the owner's share of it is full */
+    public synchronized boolean offer(String owner, T item) {
+        if (size >= maxTotal) return false;
+        ArrayDeque<T> queue = byOwner.get(owner);
+        if (queue != null && queue.size() >= maxPerOwner) return false;
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            byOwner.put(owner, queue);
+            turns.addLast(owner);
+        }
+        queue.addLast(item);
+        size++;
+        notify();
+        return true;
+    }
+
+    /** Next item in round-robin order, or null if none arrived within the timeout. */
+    public synchronized T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (size == 0) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) return null;
+            TimeUnit.NANOSECONDS.timedWait(this, left);
+        }
+        String owner = turns.removeFirst();
+        ArrayDeque<T> queue = byOwner.get(owner);
+        T item = queue.removeFirst();
+        if (queue.isEmpty()) byOwner.remove(owner);
+        else turns.addLast(owner);
+        size--;
+        return item;
+    }
+
+    public synchronized boolean remove(String owner, T item) {
+        ArrayDeque<T> queue = byOwner.get(owner);
+        if (queue == null || !queue.remove(item)) return false;
+        if (queue.isEmpty()) {
+            byOwner.remove(owner);
+            turns.remove(owner);
+        }
+        size--;
+        return true;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int size(String owner) {
+        ArrayDeque<T> queue = byOwner.get(owner);
+        return queue == null ? 0 : queue.size();
+    }
+}
@@ -0,0 +1,289 @@
+package com.hyperide.backend.exec;
+
+import com.hyperide.backend.model.CompileDiagnostic;
+import com.sun.source.util.JavacTask;
+import org.springframework.stereotype.Component;
+
+import javax.tools.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles Java sources with the in-process javax.tools compiler straight into memory:
+ * no temp directories and no javac JVM to start.
+ */
+@Component
+public class InMemoryJavaCompiler {
+
+    public record Output(boolean success, Map<String, byte[]> classes, List<CompileDiagnostic> diagnostics, String text) {}
+
+    private static final List<String> OPTIONS = List.of("-proc:none", "-g", "-Xlint:none", "-encoding", "UTF-8");
+    private static final Pattern PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+    /** False on a JRE without the jdk.compiler module. */
+    public boolean isAvailable() {
+        return compiler != null;
+    }
+
+    /** Identifies the compiler and its options; part of the {@link CompileCache} key. */
+    public String version() {
+        return compiler == null ? "none" : Runtime.version() + " " + String.join(" ", OPTIONS);
+    }
+
+    /** @param sources file name (e.g. "Main.java") to source text */
+    public Output compile(Map<String, String> sources) {
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+        Map<String, ByteArrayOutputStream> classes = new LinkedHashMap<>();
+        List<JavaFileObject> units = new ArrayList<>();
+        sources.forEach((name, code) -> units.add(new Source(name, code)));
+
+        boolean success;
+        try (StandardJavaFileManager standard = compiler.getStandardFileManager(collector, null, StandardCharsets.UTF_8)) {
+            // Compile against the JDK only, never the application classpath
+            standard.setLocation(StandardLocation.CLASS_PATH, List.of());
+            JavaFileManager fileManager = new ForwardingJavaFileManager<>(standard) {
+                @Override
+                public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                           JavaFileObject.Kind kind, FileObject sibling) {
+                    return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+                        @Override
+                        public OutputStream openOutputStream() {
+                            ByteArrayOutputStream out = new ByteArrayOutputStream();
+                            classes.put(className, out);
+                            return out;
+                        }
+                    };
+                }
+            };
+            success = compiler.getTask(null, fileManager, collector, OPTIONS, null, units).call();
+        } catch (IOException e) {
+            return new Output(false, Map.of(), List.of(), "Compiler error: " + e.getMessage());
+        }
+
+        List<CompileDiagnostic> diagnostics = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (Diagnostic<? extends JavaFileObject> d : collector.getDiagnostics()) {
+            String file = d.getSource() == null ? "" : ((Source) d.getSource()).fileName;
+            CompileDiagnostic diagnostic = new CompileDiagnostic(file, d.getLineNumber(), d.getColumnNumber(),
+                    severity(d.getKind()), d.getMessage(Locale.ROOT));
+            diagnostics.add(diagnostic);
+            text.append(file).append(':').append(d.getLineNumber()).append(": ")
+                .append(diagnostic.getSeverity().toLowerCase(Locale.ROOT)).append(": ")
+                .append(diagnostic.getMessage()).append('\n');
+        }
+        Map<String, byte[]> bytes = new LinkedHashMap<>();
+        if (success) classes.forEach((name, out) -> bytes.put(name, out.toByteArray()));
+        return new Output(success, bytes, diagnostics, text.toString());
+    }
+
+    /**
+     * Type-checks units without generating classes and returns their diagnostics. Types the
+     * units use are resolved from sourcePath, read only as far as needed and not reported on,
+     * so a few edited files of a project can be checked without compiling all of it.
+     *
+     * @param units       file name to source text, the files to report on
+     * @param sourcePath  file name to source text, the rest of the project
+     */
+    public List<CompileDiagnostic> check(Map<String, String> units, Map<String, String> sourcePath) {
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+        List<JavaFileObject> compiled = new ArrayList<>();
+        units.forEach((name, code) -> compiled.add(new Source(name, code)));
+        try (StandardJavaFileManager standard = compiler.getStandardFileManager(collector, null, StandardCharsets.UTF_8)) {
+            standard.setLocation(StandardLocation.CLASS_PATH, List.of());
+            ProjectFileManager fileManager = new ProjectFileManager(standard, others(units, sourcePath), Map.of());
+            JavacTask task = (JavacTask) compiler.getTask(null, fileManager, collector, OPTIONS, null, compiled);
+            task.analyze();
+        } catch (IOException e) {
+            return List.of(new CompileDiagnostic("", 0, 0, "ERROR", "Compiler error: " + e.getMessage()));
+        }
+        return diagnostics(collector, units.keySet(), new StringBuilder());
+    }
+
+    /** A compile of part of a project, with the source file each class came from. */
+    public record ProjectOutput(Output output, Map<String, String> sourceOf) {}
+
+    /**
+     * Compiles units against classes already built from the rest of a project. Types not on
+     * classPath are resolved from sourcePath without classes being generated for them, so
+     * the files still to be compiled can be split into batches compiled side by side.
+     *
+     * @param units      file name to source text, the files to compile
+     * @param sourcePath file name to source text, files of the project not yet compiled
+     * @param classPath  binary class name to class file, the rest of the project
+     */
+    public ProjectOutput compile(Map<String, String> units, Map<String, String> sourcePath, Map<String, byte[]> classPath) {
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+        List<JavaFileObject> compiled = new ArrayList<>();
+        units.forEach((name, code) -> compiled.add(new Source(name, code)));
+        List<String> options = new ArrayList<>(OPTIONS);
+        options.add("-implicit:none");
+        ProjectFileManager fileManager;
+        boolean success;
+        try (StandardJavaFileManager standard = compiler.getStandardFileManager(collector, null, StandardCharsets.UTF_8)) {
+            standard.setLocation(StandardLocation.CLASS_PATH, List.of());
+            fileManager = new ProjectFileManager(standard, others(units, sourcePath), classPath);
+            success = compiler.getTask(null, fileManager, collector, options, null, compiled).call();
+        } catch (IOException e) {
+            return new ProjectOutput(new Output(false, Map.of(), List.of(), "Compiler error: " + e.getMessage()), Map.of());
+        }
+        StringBuilder text = new StringBuilder();
+        List<CompileDiagnostic> diagnostics = diagnostics(collector, units.keySet(), text);
+        Map<String, byte[]> bytes = new LinkedHashMap<>();
+        if (success) fileManager.classes.forEach((name, out) -> bytes.put(name, out.toByteArray()));
+        return new ProjectOutput(new Output(success, bytes, diagnostics, text.toString()), fileManager.sourceOf);
+    }
+
+    /** Binary name of the top-level class a source file declares, from its package and file name. */
+    public static String binaryName(String fileName, String code) {
+        return new Source(fileName, code).binaryName();
+    }
+
+    private static List<Source> others(Map<String, String> units, Map<String, String> sourcePath) {
+        List<Source> others = new ArrayList<>();
+        sourcePath.forEach((name, code) -> { if (!units.containsKey(name)) others.add(new Source(name, code)); });
+        return others;
+    }
+
+    // Diagnostics about the given files, or about no file, also appended to text
+    private static List<CompileDiagnostic> diagnostics(DiagnosticCollector<JavaFileObject> collector, Set<String> files, StringBuilder text) {
+        List<CompileDiagnostic> diagnostics = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> d : collector.getDiagnostics()) {
+            String file = d.getSource() instanceof Source s ? s.fileName : "";
+            if (!file.isEmpty() && !files.contains(file)) continue;
+            CompileDiagnostic diagnostic = new CompileDiagnostic(file, d.getLineNumber(), d.getColumnNumber(),
+                    severity(d.getKind()), d.getMessage(Locale.ROOT));
+            diagnostics.add(diagnostic);
+            text.append(file).append(':').append(d.getLineNumber()).append(": ")
+                .append(diagnostic.getSeverity().toLowerCase(Locale.ROOT)).append(": ")
+                .append(diagnostic.getMessage()).append('\n');
+        }
+        return diagnostics;
+    }
+
+    private static String severity(Diagnostic.Kind kind) {
+        return switch (kind) {
+            case ERROR -> "ERROR";
+            case WARNING, MANDATORY_WARNING -> "WARNING";
+            default -> "NOTE";
+        };
+    }
+
+    private static final class Source extends SimpleJavaFileObject {
+        final String fileName;
+        final String code;
+        final String packageName;
+
+        Source(String fileName, String code) {
+            super(URI.create("string:///" + fileName), Kind.SOURCE);
+            this.fileName = fileName;
+            this.code = code;
+            Matcher m = PACKAGE.matcher(code);
+            this.packageName = m.find() ? m.group(1) : "";
+        }
+
+        String binaryName() {
+            String simple = fileName.substring(fileName.lastIndexOf('/') + 1, fileName.length() - Kind.SOURCE.extension.length());
+            return packageName.isEmpty() ? simple : packageName + "." + simple;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+    private static final class ClassFile extends SimpleJavaFileObject {
+        final String binaryName;
+        final byte[] bytes;
+
+        ClassFile(String binaryName, byte[] bytes) {
+            super(URI.create("mem:///" + binaryName.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.binaryName = binaryName;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public InputStream openInputStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+    }
+
+    // Serves a project's other sources on the source path and its built classes on the class
+    // path from memory, and collects the classes compiled, noting which source each came from
+    private static final class ProjectFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final List<Source> sourcePath;
+        private final List<ClassFile> classPath = new ArrayList<>();
+        final Map<String, ByteArrayOutputStream> classes = new LinkedHashMap<>();
+        final Map<String, String> sourceOf = new HashMap<>();
+
+        ProjectFileManager(StandardJavaFileManager standard, List<Source> sourcePath, Map<String, byte[]> classPath) {
+            super(standard);
+            this.sourcePath = sourcePath;
+            classPath.forEach((name, bytes) -> this.classPath.add(new ClassFile(name, bytes)));
+        }
+
+        @Override
+        public boolean hasLocation(Location location) {
+            return location == StandardLocation.SOURCE_PATH || super.hasLocation(location);
+        }
+
+        @Override
+        public Iterable<JavaFileObject> list(Location location, String packageName,
+                                             Set<JavaFileObject.Kind> kinds, boolean recurse) throws IOException {
+            List<JavaFileObject> found = new ArrayList<>();
+            if (location == StandardLocation.SOURCE_PATH && kinds.contains(JavaFileObject.Kind.SOURCE)) {
+                for (Source s : sourcePath) {
+                    if (inPackage(s.packageName, packageName, recurse)) found.add(s);
+                }
+            } else if (location == StandardLocation.CLASS_PATH && kinds.contains(JavaFileObject.Kind.CLASS)) {
+                for (ClassFile c : classPath) {
+                    int dot = c.binaryName.lastIndexOf('.');
+                    if (inPackage(dot < 0 ? "" : c.binaryName.substring(0, dot), packageName, recurse)) found.add(c);
+                }
+            } else {
+                super.list(location, packageName, kinds, recurse).forEach(found::add);
+            }
+            return found;
+        }
+
+        private static boolean inPackage(String pkg, String packageName, boolean recurse) {
+            return pkg.equals(packageName) || (recurse && (packageName.isEmpty() || pkg.startsWith(packageName + ".")));
+        }
+
+        @Override
+        public String inferBinaryName(Location location, JavaFileObject file) {
+            if (file instanceof Source s) return s.binaryName();
+            if (file instanceof ClassFile c) return c.binaryName;
+            return super.inferBinaryName(location, file);
+        }
+
+        @Override
+        public boolean isSameFile(FileObject a, FileObject b) {
+            return a instanceof SimpleJavaFileObject || b instanceof SimpleJavaFileObject ? a == b : super.isSameFile(a, b);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                   JavaFileObject.Kind kind, FileObject sibling) {
+            if (sibling instanceof Source s) sourceOf.put(className, s.fileName);
+            return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    classes.put(className, out);
+                    return out;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.hyperide.backend.exec;
+
+import com.hyperide.backend.config.HyperideMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs Java submissions on a pool of pre-started {@link ExecutionWorker} JVMs, so a run
+ * costs an in-memory compile plus a class load instead of two cold JVM startups.
+ * Workers that hit a limit, leak threads or reach their run quota are replaced.
+ */
+@Service
+public class JavaExecutionPool implements MeterBinder {
+
+    @Autowired private InMemoryJavaCompiler compiler;
+    @Autowired private CompileCache compileCache;
+    @Autowired private ScratchSpace scratchSpace;
+    @Autowired private HyperideMetrics metrics;
+
+    @Value("${hyperide.exec.java.workers:4}")
+    private int workers;
+
+    @Value("${hyperide.exec.java.worker-heap-mb:128}")
+    private int workerHeapMb;
+
+    @Value("${hyperide.exec.java.max-runs-per-worker:100}")
+    private int maxRunsPerWorker;
+
+    @Value("${hyperide.exec.java.acquire-timeout-ms:10000}")
+    private long acquireTimeoutMs;
+
+    @Value("${hyperide.exec.time-limit-ms:5000}")
+    private long timeLimitMs;
+
+    @Value("${hyperide.exec.cpu-limit-ms:4000}")
+    private long cpuLimitMs;
+
+    @Value("${hyperide.exec.output-limit-bytes:65536}")
+    private int outputLimitBytes;
+
+    private final BlockingQueue<JavaWorker> idle = new LinkedBlockingQueue<>();
+    private final Set<JavaWorker> all = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger busy = new AtomicInteger();
+    private final AtomicLong recycled = new AtomicLong();
+    private final AtomicLong spawnFailures = new AtomicLong();
+
+    private ExecutorService spawner;
+    private ScheduledExecutorService watchdog;
+    private List<String> command;
+    private volatile boolean closed;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!compiler.isAvailable()) {
+            System.err.println("No system Java compiler (running on a JRE?): Java execution disabled.");
+            return;
+        }
+        spawner = Executors.newCachedThreadPool(daemon("java-worker-spawn"));
+        watchdog = Executors.newSingleThreadScheduledExecutor(daemon("java-worker-watchdog"));
+        command = List.of(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx" + workerHeapMb + "m", "-Xss1m", "-XX:MaxMetaspaceSize=64m",
+                "-XX:+UseSerialGC", "-XX:TieredStopAtLevel=1", "-XX:ActiveProcessorCount=1",
+                "-Dfile.encoding=UTF-8", "-Dstdout.encoding=UTF-8",
+                "-cp", extractWorkerClasses(scratchSpace.createDirectory("worker")).toString(), ExecutionWorker.class.getName());
+        for (int i = 0; i < workers; i++) spawnAsync();
+        // Warm the in-process compiler so the first real submission does not pay for it
+        spawner.execute(() -> compiler.compile(Map.of("Warmup.java",
+                "public class Warmup { public static void main(String[] a) { System.out.println(a.length); } }")));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        if (spawner != null) spawner.shutdownNow();
+        if (watchdog != null) watchdog.shutdownNow();
+        all.forEach(JavaWorker::destroy);
+    }
+
+    public RunLimits defaultLimits() {
+        return new RunLimits(timeLimitMs, cpuLimitMs, outputLimitBytes);
+    }
+
+    /** Compiles and runs a single-file program whose entry point is {@code className}. */
+    public ExecutionResult run(String className, String code, RunLimits limits, OutputListener listener) {
+        if (!compiler.isAvailable()) return ExecutionResult.of("UNAVAILABLE", "Java compiler not available on this server.");
+        long start = System.nanoTime();
+        Map<String, String> sources = Map.of(className + ".java", code);
+        InMemoryJavaCompiler.Output compiled = compileCache.get(sources);
+        boolean cached = compiled != null;
+        if (!cached) {
+            compiled = compiler.compile(sources);
+            compileCache.put(sources, compiled);
+        }
+        long compileMs = (System.nanoTime() - start) / 1_000_000;
+        if (!cached) metrics.recordCompile(compileMs);
+        ExecutionResult result = compiled.success()
+                ? execute(compiled.classes(), className, limits, listener)
+                : ExecutionResult.of("COMPILE_ERROR", compiled.text());
+        result.setCompileMs(compileMs);
+        result.setCompileCached(cached);
+        result.setDiagnostics(compiled.diagnostics());
+        return result;
+    }
+
+    /** Runs already compiled classes on a warm worker. */
+    public ExecutionResult execute(Map<String, byte[]> classes, String mainClass, RunLimits limits, OutputListener listener) {
+        if (command == null) return ExecutionResult.of("UNAVAILABLE", "Java execution is not available on this server.");
+        long start = System.nanoTime();
+        JavaWorker worker;
+        try {
+            worker = idle.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ExecutionResult.of("BUSY", "Interrupted while waiting for an execution worker.");
+        } finally {
+            metrics.recordWorkerAcquire("java", System.nanoTime() - start);
+        }
+        if (worker == null) return ExecutionResult.of("BUSY", "All execution workers are busy, try again shortly.");
+
+        busy.incrementAndGet();
+        try {
+            return worker.run(classes, mainClass, limits, listener, watchdog);
+        } finally {
+            busy.decrementAndGet();
+            release(worker);
+        }
+    }
+
+    private void release(JavaWorker worker) {
+        if (!closed && worker.isReusable(maxRunsPerWorker)) {
+            idle.offer(worker);
+            return;
+        }
+        worker.destroy();
+        all.remove(worker);
+        recycled.incrementAndGet();
+        if (!closed) spawnAsync();
+    }
+
+    private void spawnAsync() {
+        spawner.execute(() -> {
+            try {
+                JavaWorker worker = JavaWorker.start(command, scratchSpace.createDirectory("java-worker"));
+                all.add(worker);
+                if (closed) worker.destroy(); else idle.offer(worker);
+            } catch (IOException e) {
+                spawnFailures.incrementAndGet();
+                System.err.println("Failed to start execution worker: " + e.getMessage());
+                if (!closed) watchdog.schedule(this::spawnAsync, 1, TimeUnit.SECONDS);
+            }
+        });
+    }
+
+    // The app may run from a Boot jar, so copy the worker's classes to a plain directory
+    private static Path extractWorkerClasses(Path dir) throws IOException {
+        List<Class<?>> types = new ArrayList<>(List.of(ExecutionWorker.class.getDeclaredClasses()));
+        types.add(ExecutionWorker.class);
+        for (Class<?> type : types) {
+            String resource = type.getName().replace('.', '/') + ".class";
+            Path target = dir.resolve(resource);
+            Files.createDirectories(target.getParent());
+            try (InputStream in = ExecutionWorker.class.getClassLoader().getResourceAsStream(resource)) {
+                if (in == null) throw new IOException("Missing worker class " + resource);
+                Files.copy(in, target);
+            }
+        }
+        return dir;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.exec.workers", all, Set::size)
+                .description("Warm workers, idle or busy")
+                .tag("language", "java")
+                .register(registry);
+        Gauge.builder("hyperide.exec.workers.busy", busy, AtomicInteger::get)
+                .description("Workers running a program")
+                .tag("language", "java")
+                .register(registry);
+        FunctionCounter.builder("hyperide.exec.workers.recycled", recycled, AtomicLong::get)
+                .description("Workers replaced after a crash, a limit or their run budget")
+                .tag("language", "java")
+                .register(registry);
+        FunctionCounter.builder("hyperide.exec.workers.spawn.failures", spawnFailures, AtomicLong::get)
+                .description("Workers that failed to start")
+                .tag("language", "java")
+                .register(registry);
+    }
+}
@@ -0,0 +1,161 @@
+package com.hyperide.backend.exec;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Pool-side handle of one {@link ExecutionWorker} JVM. Not thread-safe: one run at a time. */
+final class JavaWorker {
+
+    private final Process process;
+    private final Path dir;
+    private final DataOutputStream requests;
+    private final DataInputStream responses;
+    private int runs;
+    private boolean reusable = true;
+
+    private JavaWorker(Process process, Path dir, SocketChannel socket) {
+        this.process = process;
+        this.dir = dir;
+        this.requests = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(socket), 1 << 16));
+        this.responses = new DataInputStream(new BufferedInputStream(Channels.newInputStream(socket), 1 << 16));
+    }
+
+    /**
+     * Starts a worker in its own scratch directory and blocks until it reports ready. The
+     * protocol runs over a socket the worker connects to before any program runs; its
+     * stdout, which programs can reach, is discarded.
+     */
+    static JavaWorker start(List<String> command, Path dir) throws IOException {
+        Path address = dir.resolve("pool.sock");
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(address));
+            server.configureBlocking(false);
+            List<String> line = new ArrayList<>(command);
+            line.add(address.toString());
+            Process process = new ProcessBuilder(line)
+                    .directory(dir.toFile())
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            process.getOutputStream().close();
+            SocketChannel socket = accept(server, process);
+            socket.configureBlocking(true);
+            JavaWorker worker = new JavaWorker(process, dir, socket);
+            if (worker.responses.read() != ExecutionWorker.READY) {
+                worker.destroy();
+                throw new IOException("Execution worker failed to start");
+            }
+            return worker;
+        } finally {
+            // Connected or not, nothing else may connect
+            Files.deleteIfExists(address);
+        }
+    }
+
+    private static SocketChannel accept(ServerSocketChannel server, Process process) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        try {
+            while (System.nanoTime() < deadline && process.isAlive()) {
+                SocketChannel socket = server.accept();
+                if (socket != null) return socket;
+                Thread.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        process.destroyForcibly();
+        throw new IOException("Execution worker did not connect");
+    }
+
+    ExecutionResult run(Map<String, byte[]> classes, String mainClass, RunLimits limits,
+                        OutputListener listener, ScheduledExecutorService watchdog) {
+        runs++;
+        long token = ThreadLocalRandom.current().nextLong();
+        WorkerOutput output = new WorkerOutput(limits.outputBytes());
+        ExecutionResult result = new ExecutionResult();
+        // Backstop in case the worker itself stops responding; it normally enforces limits itself
+        AtomicBoolean killed = new AtomicBoolean();
+        ScheduledFuture<?> kill = watchdog.schedule(() -> {
+            killed.set(true);
+            process.destroyForcibly();
+        }, limits.timeMs() + 2_000, TimeUnit.MILLISECONDS);
+
+        try {
+            requests.writeLong(token);
+            requests.writeInt(classes.size());
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                requests.writeUTF(entry.getKey());
+                requests.writeInt(entry.getValue().length);
+                requests.write(entry.getValue());
+            }
+            requests.writeUTF(mainClass);
+            requests.writeLong(limits.cpuMs());
+            requests.writeLong(limits.timeMs());
+            requests.writeInt(limits.outputBytes());
+            requests.flush();
+
+            if (output.readUntilDone(responses, listener)) {
+                if (responses.readLong() != token) throw new IOException("Done frame without this run's token");
+                result.setStatus(responses.readUTF());
+                result.setCpuMs(responses.readLong() / 1_000_000);
+                result.setRunMs(responses.readLong() / 1_000_000);
+                // Leftover threads could keep running into the next program's run
+                if (responses.readInt() > 0 || !"OK".equals(result.getStatus()) && !"EXCEPTION".equals(result.getStatus())) {
+                    reusable = false;
+                }
+            } else {
+                // Stream closed: the program called System.exit, or the worker died
+                reusable = false;
+                if (killed.get()) {
+                    result.setStatus("TIME_LIMIT");
+                } else if (process.waitFor(1, TimeUnit.SECONDS)) {
+                    result.setStatus("EXITED");
+                    result.setExitCode(process.exitValue());
+                } else {
+                    result.setStatus("CRASHED");
+                }
+            }
+        } catch (IOException e) {
+            // Includes frames the worker could not have sent: the stream can no longer be trusted
+            reusable = false;
+            result.setStatus(killed.get() ? "TIME_LIMIT" : "CRASHED");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reusable = false;
+            result.setStatus("CRASHED");
+        } finally {
+            kill.cancel(false);
+        }
+        result.setOutput(output.text());
+        return result;
+    }
+
+    boolean isReusable(int maxRuns) {
+        return reusable && runs < maxRuns && process.isAlive();
+    }
+
+    /** Kills the worker and whatever its programs started, and removes its directory. */
+    void destroy() {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+        try {
+            ScratchSpace.deleteTree(dir);
+        } catch (IOException e) {
+            System.err.println("Could not delete " + dir + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.hyperide.backend.exec;
+
+/** Receives program output as it is produced; stream is "stdout" or "stderr". */
+@FunctionalInterface
+public interface OutputListener {
+    OutputListener NONE = (stream, text) -> {};
+
+    void onOutput(String stream, String text);
+}
@@ -0,0 +1,316 @@
+package com.hyperide.backend.exec;
+
+import com.hyperide.backend.config.HyperideMetrics;
+import com.hyperide.backend.model.CompileDiagnostic;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Incremental builds of multi-file Java projects. The classes built from each source file
+ * are kept per project, in memory and evicted least recently used first past the byte
+ * budget. A build compiles only the files whose text changed since the last successful
+ * build, plus every file that depends on them directly or through others, against the
+ * classes kept for the rest. A file depends on another if it names a top-level class the
+ * other declares. Files to compile are split into batches that do not use each other's
+ * classes, compiled in parallel on a bounded pool shared by all builds.
+ */
+@Component
+public class ProjectBuilder implements MeterBinder {
+
+    /** Classes of the whole project if it compiled, and how many of its files were compiled to get them. */
+    public record Build(boolean success, Map<String, byte[]> classes, List<CompileDiagnostic> diagnostics,
+                        String text, int compiledFiles, int totalFiles) {}
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][\\w$]*");
+
+    @Autowired private InMemoryJavaCompiler compiler;
+    @Autowired private HyperideMetrics metrics;
+
+    @Value("${hyperide.exec.build.threads:4}")
+    private int threads;
+
+    @Value("${hyperide.exec.build.min-files-per-batch:16}")
+    private int minFilesPerBatch;
+
+    @Value("${hyperide.exec.build.cache-bytes:67108864}")
+    private long cacheBytes;
+
+    // What a successful build produced from one source file
+    private record Unit(String code, Set<String> declared, Map<String, byte[]> classes, long bytes) {}
+
+    private static final class Project {
+        final Map<String, Unit> units = new HashMap<>();
+        long bytes;
+    }
+
+    // By project key, in access order; guarded by itself. A build holds its project's lock.
+    private final LinkedHashMap<String, Project> projects = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private ExecutorService pool;
+
+    private final AtomicLong upToDate = new AtomicLong();
+    private final AtomicLong filesCompiled = new AtomicLong();
+    private final AtomicLong filesReused = new AtomicLong();
+    private final AtomicLong batchesCompiled = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger n = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "java-build-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public boolean isAvailable() {
+        return compiler.isAvailable();
+    }
+
+    /**
+     * Brings the project's classes up to date with sources (file path within the project to
+     * text) and returns all of them. Builds of one project run one at a time.
+     */
+    public Build build(String key, Map<String, String> sources) throws InterruptedException {
+        Project project;
+        synchronized (projects) {
+            project = projects.computeIfAbsent(key, k -> new Project());
+        }
+        long start = System.nanoTime();
+        synchronized (project) {
+            Build build = build(project, sources);
+            metrics.recordBuild(System.nanoTime() - start);
+            synchronized (projects) {
+                if (projects.get(key) == project) {
+                    bytes -= project.bytes;
+                    project.bytes = project.units.values().stream().mapToLong(Unit::bytes).sum();
+                    bytes += project.bytes;
+                }
+                evictIfNeeded(key);
+            }
+            return build;
+        }
+    }
+
+    // Caller holds the project's lock
+    private Build build(Project project, Map<String, String> sources) throws InterruptedException {
+        Set<String> changed = new TreeSet<>();
+        sources.forEach((file, code) -> {
+            Unit unit = project.units.get(file);
+            if (unit == null || !unit.code().equals(code)) changed.add(file);
+        });
+        Set<String> removed = new HashSet<>(project.units.keySet());
+        removed.removeAll(sources.keySet());
+
+        // Names whose meaning may have changed: what the changed and removed files declared before
+        Set<String> names = new HashSet<>();
+        for (String file : changed) {
+            Unit old = project.units.get(file);
+            if (old != null) names.addAll(old.declared());
+        }
+        for (String file : removed) names.addAll(project.units.remove(file).declared());
+        Set<String> compile = new TreeSet<>(changed);
+        compile.addAll(dependents(project, sources, names, changed));
+        if (compile.isEmpty()) {
+            upToDate.incrementAndGet();
+            filesReused.addAndGet(sources.size());
+            return new Build(true, allClasses(project), List.of(), "", 0, sources.size());
+        }
+
+        Map<String, byte[]> classPath = new HashMap<>();
+        project.units.forEach((file, unit) -> { if (!compile.contains(file)) classPath.putAll(unit.classes()); });
+        Map<String, String> pending = new HashMap<>();
+        for (String file : compile) pending.put(file, sources.get(file));
+
+        List<InMemoryJavaCompiler.ProjectOutput> outputs = compileBatches(batches(project, compile, sources), pending, classPath);
+        filesCompiled.addAndGet(compile.size());
+        filesReused.addAndGet(sources.size() - compile.size());
+
+        boolean success = true;
+        List<CompileDiagnostic> diagnostics = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (InMemoryJavaCompiler.ProjectOutput output : outputs) {
+            success &= output.output().success();
+            diagnostics.addAll(output.output().diagnostics());
+            text.append(output.output().text());
+        }
+        // Failed files are compiled again next time; the rest keep what they built
+        compile.forEach(project.units::remove);
+        if (success) {
+            Map<String, Map<String, byte[]>> byFile = new HashMap<>();
+            for (InMemoryJavaCompiler.ProjectOutput output : outputs) {
+                output.output().classes().forEach((name, bytes) -> byFile
+                        .computeIfAbsent(output.sourceOf().get(name), k -> new HashMap<>()).put(name, bytes));
+            }
+            for (String file : compile) {
+                Map<String, byte[]> classes = byFile.getOrDefault(file, Map.of());
+                Set<String> declared = new HashSet<>();
+                long size = 0;
+                for (Map.Entry<String, byte[]> c : classes.entrySet()) {
+                    declared.add(simpleName(c.getKey()));
+                    size += c.getValue().length;
+                }
+                project.units.put(file, new Unit(sources.get(file), declared, classes, size));
+            }
+        }
+        return new Build(success, success ? allClasses(project) : Map.of(), diagnostics, text.toString(), compile.size(), sources.size());
+    }
+
+    // Files that name one of the given classes, directly or through other dependents, or a
+    // class declared by a changed file that was never built (so may be new)
+    private static Set<String> dependents(Project project, Map<String, String> sources, Set<String> names, Set<String> changed) {
+        Set<String> found = new HashSet<>();
+        Set<String> frontier = new HashSet<>(names);
+        // New text may declare new names too, which files that did not compile before may need
+        for (String file : changed) {
+            if (!project.units.containsKey(file)) frontier.add(simpleName(InMemoryJavaCompiler.binaryName(file, sources.get(file))));
+        }
+        while (!frontier.isEmpty()) {
+            Pattern mentions = Pattern.compile("\\b(?:" + String.join("|", frontier.stream().map(Pattern::quote).toList()) + ")\\b");
+            frontier = new HashSet<>();
+            for (Map.Entry<String, String> source : sources.entrySet()) {
+                String file = source.getKey();
+                if (found.contains(file) || changed.contains(file)) continue;
+                if (!mentions.matcher(source.getValue()).find()) continue;
+                found.add(file);
+                Unit unit = project.units.get(file);
+                if (unit != null) frontier.addAll(unit.declared());
+            }
+        }
+        return found;
+    }
+
+    // Groups of files that name each other's classes, directly or not, go in the same batch
+    // so no batch has to read another's files as source; groups are spread over the batches
+    // largest first, each to the batch with the fewest files so far
+    private List<Set<String>> batches(Project project, Set<String> files, Map<String, String> sources) {
+        int count = Math.max(1, Math.min(threads, files.size() / Math.max(1, minFilesPerBatch)));
+        if (count == 1) return List.of(files);
+        Map<String, List<String>> declaredBy = new HashMap<>();
+        for (String file : files) {
+            Unit unit = project.units.get(file);
+            Set<String> declared = unit != null ? unit.declared()
+                    : Set.of(simpleName(InMemoryJavaCompiler.binaryName(file, sources.get(file))));
+            for (String name : declared) declaredBy.computeIfAbsent(name, k -> new ArrayList<>()).add(file);
+        }
+        Map<String, String> parent = new HashMap<>();
+        for (String file : files) parent.put(file, file);
+        for (String file : files) {
+            Matcher identifiers = IDENTIFIER.matcher(sources.get(file));
+            while (identifiers.find()) {
+                for (String other : declaredBy.getOrDefault(identifiers.group(), List.of())) union(parent, file, other);
+            }
+        }
+        Map<String, Set<String>> groups = new TreeMap<>();
+        for (String file : files) groups.computeIfAbsent(root(parent, file), k -> new TreeSet<>()).add(file);
+        List<Set<String>> sorted = new ArrayList<>(groups.values());
+        sorted.sort(Comparator.comparingInt((Set<String> g) -> g.size()).reversed());
+
+        List<Set<String>> batches = new ArrayList<>();
+        for (int i = 0; i < count; i++) batches.add(new TreeSet<>());
+        for (Set<String> group : sorted) {
+            batches.stream().min(Comparator.comparingInt(Set::size)).orElseThrow().addAll(group);
+        }
+        batches.removeIf(Set::isEmpty);
+        return batches;
+    }
+
+    private static String root(Map<String, String> parent, String file) {
+        String root = file;
+        while (!parent.get(root).equals(root)) root = parent.get(root);
+        parent.put(file, root);
+        return root;
+    }
+
+    private static void union(Map<String, String> parent, String a, String b) {
+        parent.put(root(parent, a), root(parent, b));
+    }
+
+    // Each batch compiles its own files and reads the other pending ones as source only
+    private List<InMemoryJavaCompiler.ProjectOutput> compileBatches(List<Set<String>> batches, Map<String, String> pending,
+                                                                    Map<String, byte[]> classPath) throws InterruptedException {
+        List<Future<InMemoryJavaCompiler.ProjectOutput>> futures = new ArrayList<>();
+        for (Set<String> batch : batches) {
+            Map<String, String> units = new LinkedHashMap<>();
+            for (String file : batch) units.put(file, pending.get(file));
+            futures.add(pool.submit(() -> compiler.compile(units, pending, classPath)));
+        }
+        batchesCompiled.addAndGet(batches.size());
+        List<InMemoryJavaCompiler.ProjectOutput> outputs = new ArrayList<>();
+        try {
+            for (Future<InMemoryJavaCompiler.ProjectOutput> future : futures) outputs.add(future.get());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Build failed", e.getCause());
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
+        return outputs;
+    }
+
+    private static Map<String, byte[]> allClasses(Project project) {
+        Map<String, byte[]> classes = new HashMap<>();
+        for (Unit unit : project.units.values()) classes.putAll(unit.classes());
+        return classes;
+    }
+
+    // Top-level class name without its package; nested classes count as their outer class
+    private static String simpleName(String binaryName) {
+        String simple = binaryName.substring(binaryName.lastIndexOf('.') + 1);
+        int nested = simple.indexOf('$');
+        return nested < 0 ? simple : simple.substring(0, nested);
+    }
+
+    // Caller holds the projects lock; the project just built is kept even if alone over budget
+    private void evictIfNeeded(String current) {
+        Iterator<Map.Entry<String, Project>> eldest = projects.entrySet().iterator();
+        while (bytes > cacheBytes && eldest.hasNext()) {
+            Map.Entry<String, Project> entry = eldest.next();
+            if (entry.getKey().equals(current)) continue;
+            bytes -= entry.getValue().bytes;
+            evictions.incrementAndGet();
+            eldest.remove();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.exec.build.bytes", this, ProjectBuilder::cachedBytes)
+                .description("Estimated heap held by the classes of built projects")
+                .register(registry);
+        counter(registry, "hyperide.exec.build.up.to.date", "Builds that found nothing to compile", upToDate);
+        counter(registry, "hyperide.exec.build.files.compiled", "Source files compiled by builds", filesCompiled);
+        counter(registry, "hyperide.exec.build.files.reused", "Source files whose classes builds reused", filesReused);
+        counter(registry, "hyperide.exec.build.batches", "Compiler batches run in parallel by builds", batchesCompiled);
+        counter(registry, "hyperide.exec.build.evictions", "Projects dropped to stay within the byte budget", evictions);
+    }
+
+    private long cachedBytes() {
+        synchronized (projects) {
+            return bytes;
+        }
+    }
+
+    private static void counter(MeterRegistry registry, String name, String description, AtomicLong count) {
+        FunctionCounter.builder(name, count, AtomicLong::get).description(description).register(registry);
+    }
+}
@@ -0,0 +1,185 @@
+package com.hyperide.backend.exec;
+
+import com.hyperide.backend.config.HyperideMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs Python submissions on a pool of pre-started interpreters (python_worker.py), so a
+ * run costs a fork of a warm process instead of an interpreter startup and the imports.
+ * Each program runs in its own child and leaves the interpreter clean; an interpreter
+ * that stops answering properly, or reaches its run quota, is replaced.
+ */
+@Service
+public class PythonExecutionPool implements MeterBinder {
+
+    private static final String SCRIPT = "python_worker.py";
+
+    @Autowired private ScratchSpace scratchSpace;
+    @Autowired private HyperideMetrics metrics;
+
+    @Value("${hyperide.exec.python.command:python}")
+    private String python;
+
+    @Value("${hyperide.exec.python.workers:4}")
+    private int workers;
+
+    @Value("${hyperide.exec.python.memory-mb:256}")
+    private int memoryMb;
+
+    @Value("${hyperide.exec.python.preload:math,random,re,collections,itertools,functools,json}")
+    private String[] preload;
+
+    @Value("${hyperide.exec.python.max-runs-per-worker:1000}")
+    private int maxRunsPerWorker;
+
+    @Value("${hyperide.exec.python.acquire-timeout-ms:10000}")
+    private long acquireTimeoutMs;
+
+    private final BlockingQueue<PythonWorker> idle = new LinkedBlockingQueue<>();
+    private final Set<PythonWorker> all = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger busy = new AtomicInteger();
+    private final AtomicLong recycled = new AtomicLong();
+    private final AtomicLong spawnFailures = new AtomicLong();
+
+    private ExecutorService spawner;
+    private ScheduledExecutorService watchdog;
+    private List<String> command;
+    private volatile boolean closed;
+
+    @PostConstruct
+    public void start() throws IOException {
+        spawner = Executors.newCachedThreadPool(daemon("python-worker-spawn"));
+        watchdog = Executors.newSingleThreadScheduledExecutor(daemon("python-worker-watchdog"));
+        List<String> line = new ArrayList<>(List.of(python,
+                extractScript(scratchSpace.createDirectory("python-worker")).toString(), Integer.toString(memoryMb)));
+        line.addAll(List.of(preload));
+        // The first one is started here, so a missing interpreter disables Python runs up front
+        PythonWorker first;
+        try {
+            first = PythonWorker.start(line, scratchSpace.createDirectory("python-run"));
+        } catch (IOException e) {
+            System.err.println("Python not available (" + e.getMessage() + "): Python execution disabled.");
+            return;
+        }
+        command = List.copyOf(line);
+        all.add(first);
+        idle.offer(first);
+        for (int i = 1; i < workers; i++) spawnAsync();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        spawner.shutdownNow();
+        watchdog.shutdownNow();
+        all.forEach(PythonWorker::destroy);
+    }
+
+    public ExecutionResult run(String code, RunLimits limits, OutputListener listener) {
+        if (command == null) return ExecutionResult.of("UNAVAILABLE", "Python is not available on this server.");
+        long start = System.nanoTime();
+        PythonWorker worker;
+        try {
+            worker = idle.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ExecutionResult.of("BUSY", "Interrupted while waiting for a Python worker.");
+        } finally {
+            metrics.recordWorkerAcquire("python", System.nanoTime() - start);
+        }
+        if (worker == null) return ExecutionResult.of("BUSY", "All Python workers are busy, try again shortly.");
+
+        busy.incrementAndGet();
+        try {
+            return worker.run(code, limits, listener, watchdog);
+        } finally {
+            busy.decrementAndGet();
+            release(worker);
+        }
+    }
+
+    private void release(PythonWorker worker) {
+        if (!closed && worker.isReusable(maxRunsPerWorker)) {
+            idle.offer(worker);
+            return;
+        }
+        worker.destroy();
+        all.remove(worker);
+        recycled.incrementAndGet();
+        if (!closed) spawnAsync();
+    }
+
+    private void spawnAsync() {
+        spawner.execute(() -> {
+            try {
+                PythonWorker worker = PythonWorker.start(command, scratchSpace.createDirectory("python-run"));
+                all.add(worker);
+                if (closed) worker.destroy(); else idle.offer(worker);
+            } catch (IOException e) {
+                spawnFailures.incrementAndGet();
+                System.err.println("Failed to start Python worker: " + e.getMessage());
+                if (!closed) watchdog.schedule(this::spawnAsync, 1, TimeUnit.SECONDS);
+            }
+        });
+    }
+
+    // The app may run from a Boot jar, so copy the script to a plain directory
+    private static Path extractScript(Path dir) throws IOException {
+        Path target = dir.resolve(SCRIPT);
+        try (InputStream in = PythonExecutionPool.class.getResourceAsStream(SCRIPT)) {
+            if (in == null) throw new IOException("Missing " + SCRIPT);
+            Files.copy(in, target);
+        }
+        return target;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    public boolean isAvailable() {
+        return command != null;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.exec.workers", all, Set::size)
+                .description("Warm workers, idle or busy")
+                .tag("language", "python")
+                .register(registry);
+        Gauge.builder("hyperide.exec.workers.busy", busy, AtomicInteger::get)
+                .description("Workers running a program")
+                .tag("language", "python")
+                .register(registry);
+        FunctionCounter.builder("hyperide.exec.workers.recycled", recycled, AtomicLong::get)
+                .description("Workers replaced after a crash, a limit or their run budget")
+                .tag("language", "python")
+                .register(registry);
+        FunctionCounter.builder("hyperide.exec.workers.spawn.failures", spawnFailures, AtomicLong::get)
+                .description("Workers that failed to start")
+                .tag("language", "python")
+                .register(registry);
+    }
+}
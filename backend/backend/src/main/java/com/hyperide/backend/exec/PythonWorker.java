@@ -0,0 +1,101 @@
+package com.hyperide.backend.exec;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Pool-side handle of one python_worker.py interpreter. Not thread-safe: one run at a time. */
+final class PythonWorker {
+
+    static final int READY = 'R';
+
+    private final Process process;
+    private final Path dir;
+    private final DataOutputStream requests;
+    private final DataInputStream responses;
+    private int runs;
+    private boolean reusable = true;
+
+    private PythonWorker(Process process, Path dir) {
+        this.process = process;
+        this.dir = dir;
+        this.requests = new DataOutputStream(new BufferedOutputStream(process.getOutputStream(), 1 << 16));
+        this.responses = new DataInputStream(new BufferedInputStream(process.getInputStream(), 1 << 16));
+    }
+
+    /** Starts an interpreter in its own scratch directory and blocks until it reports ready. */
+    static PythonWorker start(List<String> command, Path dir) throws IOException {
+        Process process = new ProcessBuilder(command)
+                .directory(dir.toFile())
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        PythonWorker worker = new PythonWorker(process, dir);
+        if (worker.responses.read() != READY) {
+            worker.destroy();
+            throw new IOException("Python worker failed to start");
+        }
+        return worker;
+    }
+
+    ExecutionResult run(String code, RunLimits limits, OutputListener listener, ScheduledExecutorService watchdog) {
+        runs++;
+        WorkerOutput output = new WorkerOutput(limits.outputBytes());
+        ExecutionResult result = new ExecutionResult();
+        // Backstop in case the interpreter itself stops responding; it normally enforces limits itself
+        AtomicBoolean killed = new AtomicBoolean();
+        ScheduledFuture<?> kill = watchdog.schedule(() -> {
+            killed.set(true);
+            destroy();
+        }, limits.timeMs() + 2_000, TimeUnit.MILLISECONDS);
+
+        try {
+            byte[] source = code.getBytes(StandardCharsets.UTF_8);
+            requests.writeInt(source.length);
+            requests.write(source);
+            requests.writeLong(limits.cpuMs());
+            requests.writeLong(limits.timeMs());
+            requests.writeInt(limits.outputBytes());
+            requests.flush();
+
+            if (output.readUntilDone(responses, listener)) {
+                result.setStatus(responses.readUTF());
+                result.setCpuMs(responses.readLong() / 1_000_000);
+                result.setRunMs(responses.readLong() / 1_000_000);
+                result.setExitCode(responses.readInt());
+                // False where the program ran in the interpreter itself rather than a fork of it
+                if (responses.readByte() == 0) reusable = false;
+            } else {
+                reusable = false;
+                result.setStatus(killed.get() ? "TIME_LIMIT" : "CRASHED");
+            }
+        } catch (IOException e) {
+            // Includes frames the interpreter could not have sent: the stream can no longer be trusted
+            reusable = false;
+            result.setStatus(killed.get() ? "TIME_LIMIT" : "CRASHED");
+        } finally {
+            kill.cancel(false);
+        }
+        result.setOutput(output.text());
+        return result;
+    }
+
+    boolean isReusable(int maxRuns) {
+        return reusable && runs < maxRuns && process.isAlive();
+    }
+
+    /** Kills the interpreter and any program process still running under it, and removes its directory. */
+    void destroy() {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+        try {
+            ScratchSpace.deleteTree(dir);
+        } catch (IOException e) {
+            System.err.println("Could not delete " + dir + ": " + e.getMessage());
+        }
+    }
+}
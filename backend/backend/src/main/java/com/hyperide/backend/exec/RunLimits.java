@@ -0,0 +1,4 @@
+package com.hyperide.backend.exec;
+
+/** Per-run limits. Memory is bounded separately by the worker JVM's -Xmx. */
+public record RunLimits(long timeMs, long cpuMs, int outputBytes) {}
@@ -0,0 +1,75 @@
+package com.hyperide.backend.exec;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * The only place the execution engine puts temporary files. It lives under the app's
+ * data directory rather than the shared system temp dir. Instances sharing that directory
+ * (they share a host, as the H2 database requires) each get a subdirectory named by their
+ * PID and wipe only their own, plus any left by an instance that is no longer running.
+ */
+@Component
+public class ScratchSpace {
+
+    @Value("${hyperide.exec.scratch-dir:hyperide_data/exec-tmp}")
+    private String dir;
+
+    private Path root;
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path base = Paths.get(dir).toAbsolutePath().normalize();
+        Files.createDirectories(base);
+        removeAbandoned(base);
+        root = base.resolve(Long.toString(ProcessHandle.current().pid()));
+        deleteTree(root);
+        Files.createDirectories(root);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        deleteTree(root);
+    }
+
+    public Path createFile(String prefix, String suffix) throws IOException {
+        return Files.createTempFile(root, prefix, suffix);
+    }
+
+    public Path createDirectory(String prefix) throws IOException {
+        return Files.createTempDirectory(root, prefix);
+    }
+
+    public static void deleteTree(Path path) throws IOException {
+        if (Files.notExists(path)) return;
+        try (Stream<Path> walk = Files.walk(path)) {
+            for (Path p : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    // What a crashed instance left behind: directories named by a PID no process has now
+    private static void removeAbandoned(Path base) {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(base,
+                p -> Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS) && p.getFileName().toString().matches("\\d{1,18}"))) {
+            for (Path p : entries) {
+                if (ProcessHandle.of(Long.parseLong(p.getFileName().toString())).isPresent()) continue;
+                try {
+                    deleteTree(p);
+                } catch (IOException e) {
+                    System.err.println("Could not remove stale " + p + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not sweep " + base + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.hyperide.backend.exec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** Decodes UTF-8 chunks, holding back a multi-byte character split across chunks. */
+final class Utf8Chunks {
+    private byte[] carry = new byte[0];
+
+    String decode(byte[] chunk) {
+        byte[] bytes = new byte[carry.length + chunk.length];
+        System.arraycopy(carry, 0, bytes, 0, carry.length);
+        System.arraycopy(chunk, 0, bytes, carry.length, chunk.length);
+        int end = bytes.length;
+        // Walk back over continuation bytes to the last lead byte and check it is complete
+        int i = end - 1;
+        while (i >= 0 && i > end - 4 && (bytes[i] & 0xC0) == 0x80) i--;
+        if (i >= 0) {
+            int lead = bytes[i] & 0xFF;
+            int need = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+            if (end - i < need) end = i;
+        }
+        carry = Arrays.copyOfRange(bytes, end, bytes.length);
+        return new String(bytes, 0, end, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,53 @@
+package com.hyperide.backend.exec;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Reads the output frames a worker streams during one run, up to its done frame. The
+ * worker runs untrusted code, so nothing in a frame is taken on trust: an unknown frame
+ * type, or a chunk that would take the run past its output budget, fails the read, and
+ * the pool must then treat the worker as crashed.
+ */
+final class WorkerOutput {
+
+    static final int STDOUT = 'O';
+    static final int STDERR = 'E';
+    static final int DONE = 'D';
+
+    private final StringBuilder text = new StringBuilder();
+    private final Utf8Chunks stdout = new Utf8Chunks(), stderr = new Utf8Chunks();
+    private long remaining;
+
+    WorkerOutput(int outputBytes) {
+        this.remaining = outputBytes;
+    }
+
+    /**
+     * Relays stdout and stderr chunks to the listener. True once the done frame's type
+     * byte has been read, with its fields left for the caller; false if the stream ended.
+     */
+    boolean readUntilDone(DataInputStream in, OutputListener listener) throws IOException {
+        while (true) {
+            int type = in.read();
+            if (type == DONE) return true;
+            if (type < 0) return false;
+            if (type != STDOUT && type != STDERR) throw new IOException("Unknown frame type " + type);
+            int length = in.readInt();
+            if (length < 0 || length > remaining) {
+                throw new IOException("Chunk of " + length + " bytes with " + remaining + " left of the output limit");
+            }
+            remaining -= length;
+            byte[] chunk = new byte[length];
+            in.readFully(chunk);
+            boolean out = type == STDOUT;
+            String decoded = (out ? stdout : stderr).decode(chunk);
+            text.append(decoded);
+            listener.onOutput(out ? "stdout" : "stderr", decoded);
+        }
+    }
+
+    String text() {
+        return text.toString();
+    }
+}
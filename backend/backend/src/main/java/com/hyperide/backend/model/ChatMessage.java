@@ -1,11 +1,16 @@
 package com.hyperide.backend.model;
 
 public class ChatMessage {
+    private long id;         // Position in the room's history, assigned by the server
+    private String room;
     private String sender;
     private String content;
     private String timestamp;
 
-    // Getters and Setters for all 3 fields
+    public long getId() { return id; }
+    public void setId(long id) { this.id = id; }
+    public String getRoom() { return room; }
+    public void setRoom(String room) { this.room = room; }
     public String getSender() { return sender; }
     public void setSender(String sender) { this.sender = sender; }
     public String getContent() { return content; }
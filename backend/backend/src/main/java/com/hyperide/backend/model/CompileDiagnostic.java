@@ -0,0 +1,15 @@
+package com.hyperide.backend.model;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CompileDiagnostic {
+    private String file;
+    private long line;
+    private long column;
+    private String severity; // ERROR, WARNING, NOTE
+    private String message;
+}
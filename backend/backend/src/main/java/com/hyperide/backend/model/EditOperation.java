@@ -0,0 +1,31 @@
+package com.hyperide.backend.model;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class EditOperation {
+    public static final String INSERT = "INSERT";
+    public static final String DELETE = "DELETE";
+
+    private String type;     // INSERT, DELETE
+    private int position;    // Character offset into the document
+    private String text;     // INSERT only
+    private int length;      // DELETE only
+
+    // Private so JSON binding goes through the setters and absent fields default to 0/null
+    private EditOperation(String type, int position, String text, int length) {
+        this.type = type;
+        this.position = position;
+        this.text = text;
+        this.length = length;
+    }
+
+    public static EditOperation insert(int position, String text) {
+        return new EditOperation(INSERT, position, text, 0);
+    }
+
+    public static EditOperation delete(int position, int length) {
+        return new EditOperation(DELETE, position, null, length);
+    }
+}
@@ -1,10 +1,15 @@
 package com.hyperide.backend.model;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class EditRequest {
     private String fileName;
-    private String content;
+    private String content;            // FULL replace, only used when ops is null
+    private List<EditOperation> ops;   // DELTA, applied in order on top of baseVersion
+    private Long baseVersion;          // Version the client's text is based on; a FULL without one overwrites unconditionally
+    private String clientId;
     private String user;
     private String role;
-}
\ No newline at end of file
+}
@@ -1,12 +1,25 @@
 package com.hyperide.backend.model;
-import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
 
 @Data
-@AllArgsConstructor
+@NoArgsConstructor
 public class EditResponse {
-    private String type;     // DELTA, ERROR, FULL
-    private String content;  // Can hold a String or List<CodeDelta>
+    private String type;     // DELTA, ERROR, FULL, LOCKED, CONFLICT; REJECTED to the sender only
+    private String content;  // FULL/CONFLICT text or error message
     private String user;
     private String fileName;
-}
\ No newline at end of file
+    private List<EditOperation> ops;  // DELTA only
+    private long baseVersion;
+    private long version;
+    private String clientId;
+
+    public EditResponse(String type, String content, String user, String fileName) {
+        this.type = type;
+        this.content = content;
+        this.user = user;
+        this.fileName = fileName;
+    }
+}
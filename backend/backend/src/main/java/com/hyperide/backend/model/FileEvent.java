@@ -0,0 +1,12 @@
+package com.hyperide.backend.model;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileEvent {
+    private String type;  // ADDED, REMOVED
+    private String path;
+}
@@ -0,0 +1,13 @@
+package com.hyperide.backend.model;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceEvent {
+    private String type;  // JOIN, MOVE, LEAVE
+    private String user;
+    private String file;  // File now being viewed; null for LEAVE
+}
@@ -0,0 +1,31 @@
+package com.hyperide.backend.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/** Progress of a queued run, published on /topic/run/{jobId} and returned by GET /api/run/jobs/{jobId}. */
+@Data
+@NoArgsConstructor
+public class RunEvent {
+    private String type;    // QUEUED, STARTED, OUTPUT, DONE, or SNAPSHOT for the REST view
+    private String jobId;
+    private String stream;  // stdout, stderr, or system for limit/exit notes
+    private String text;
+    private int offset;     // Position of text in the job's whole output, so clients can skip what they have
+    private int queued;     // Jobs ahead in the queue when this one was submitted
+    private String status;  // ExecutionResult status once DONE
+    private int exitCode;
+    private long queueWaitMs;
+    private long compileMs;
+    private boolean compileCached;
+    private long runMs;
+    private long cpuMs;
+    private List<CompileDiagnostic> diagnostics;
+
+    public RunEvent(String type, String jobId) {
+        this.type = type;
+        this.jobId = jobId;
+    }
+}
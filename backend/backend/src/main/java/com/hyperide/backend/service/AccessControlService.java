@@ -0,0 +1,249 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.model.User;
+import com.hyperide.backend.repository.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Who may read or write which workspace paths. Grants sit on the nodes of a trie keyed by
+ * path segment and cover everything below their node: each user owns their own folder,
+ * admins grant access to further files or folders, and the shared workspace grant at the
+ * root lets everyone into everything. A restricted folder (admin/) does not inherit grants
+ * from above it. Admins reach every path.
+ *
+ * A check walks the path's segments, so it costs the path's depth. Listing what a user can
+ * see starts from that user's grants rather than from the files.
+ */
+@Service
+public class AccessControlService implements MeterBinder {
+
+    public enum Access { NONE, READ, WRITE }
+
+    /** Grantee of grants that apply to every user. */
+    public static final String EVERYONE = "*";
+
+    /** A subtree a user can see: path and everything below it ("" is the root), except the excluded subtrees. */
+    public record Region(String path, List<String> excluded) {
+
+        /** True if the file would be listed as part of this region. */
+        public boolean contains(String file) {
+            if (!path.isEmpty() && !file.equals(path) && !file.startsWith(path + "/")) return false;
+            for (String skip : excluded) if (file.startsWith(skip + "/")) return false;
+            return true;
+        }
+    }
+
+    private static final class Node {
+        final Map<String, Node> children = new HashMap<>();
+        final Map<String, Access> grants = new HashMap<>();
+        boolean restricted;
+    }
+
+    @Autowired private UserRepository userRepository;
+
+    // What everyone may do outside restricted folders: write (everyone edits everything, the
+    // original behaviour), read, or none (only own folder and granted paths)
+    @Value("${hyperide.acl.shared-workspace:write}")
+    private String sharedWorkspace;
+
+    @Value("${hyperide.acl.restricted:admin}")
+    private String[] restrictedFolders;
+
+    private final Node root = new Node();
+    private final Set<String> admins = new HashSet<>();
+    // Node paths each grantee holds a grant on, so a user's grants can be replaced or listed
+    private final Map<String, Set<String>> grantsByUser = new HashMap<>();
+    private final List<String> restrictedPaths = new ArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong denied = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        for (String folder : restrictedFolders) {
+            List<String> segments = segments(folder);
+            if (segments == null || segments.isEmpty()) continue;
+            node(segments, true).restricted = true;
+            restrictedPaths.add(String.join("/", segments));
+        }
+        Access workspace = Access.valueOf(sharedWorkspace.trim().toUpperCase(Locale.ROOT));
+        if (workspace != Access.NONE) grant(EVERYONE, "", workspace);
+        for (User user : userRepository.findAll()) update(user);
+    }
+
+    /** Replaces a user's grants with those implied by its current record; called whenever a user is saved. */
+    public void update(User user) {
+        String name = user.getUsername();
+        if (name == null || name.isEmpty() || EVERYONE.equals(name)) return;
+        lock.writeLock().lock();
+        try {
+            for (String path : grantsByUser.getOrDefault(name, Set.of())) {
+                Node node = node(segments(path), false);
+                if (node != null) node.grants.remove(name);
+            }
+            grantsByUser.remove(name);
+            if ("ADMIN".equalsIgnoreCase(user.getRole())) admins.add(name);
+            else admins.remove(name);
+            grant(name, name, Access.WRITE);
+            for (String path : user.getAccessibleFiles()) grant(name, path, Access.WRITE);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isAdmin(String user) {
+        lock.readLock().lock();
+        try {
+            return user != null && admins.contains(user);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean canRead(String user, String path) {
+        return check(user, path, Access.READ);
+    }
+
+    public boolean canWrite(String user, String path) {
+        return check(user, path, Access.WRITE);
+    }
+
+    private boolean check(String user, String path, Access needed) {
+        checks.incrementAndGet();
+        boolean allowed = access(user, path).compareTo(needed) >= 0;
+        if (!allowed) denied.incrementAndGet();
+        return allowed;
+    }
+
+    public Access access(String user, String path) {
+        lock.readLock().lock();
+        try {
+            if (user != null && admins.contains(user)) return Access.WRITE;
+            List<String> segments = segments(path);
+            return segments == null ? Access.NONE : accessAt(user, segments);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** The subtrees a user can see, by path. Anonymous users (null) get only what everyone gets. */
+    public List<Region> view(String user) {
+        lock.readLock().lock();
+        try {
+            if (user != null && admins.contains(user)) return List.of(new Region("", List.of()));
+            Set<String> candidates = new TreeSet<>(grantsByUser.getOrDefault(EVERYONE, Set.of()));
+            if (user != null) candidates.addAll(grantsByUser.getOrDefault(user, Set.of()));
+            List<Region> regions = new ArrayList<>();
+            for (String path : candidates) {
+                List<String> segments = segments(path);
+                if (accessAt(user, segments) == Access.NONE) continue;
+                // Not a region of its own if it is already visible as part of its parent's
+                if (!segments.isEmpty() && !node(segments, false).restricted
+                        && accessAt(user, segments.subList(0, segments.size() - 1)) != Access.NONE) continue;
+                List<String> excluded = new ArrayList<>();
+                for (String restricted : restrictedPaths) {
+                    if (!path.isEmpty() && !restricted.startsWith(path + "/")) continue;
+                    if (accessAt(user, segments(restricted)) == Access.NONE) excluded.add(restricted);
+                }
+                regions.add(new Region(path, excluded));
+            }
+            return regions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- TRIE ---
+    // Caller holds the lock
+    private Access accessAt(String user, List<String> segments) {
+        Node node = root;
+        Access access = granted(node, user);
+        for (String segment : segments) {
+            node = node.children.get(segment);
+            if (node == null) break;
+            if (node.restricted) access = Access.NONE;
+            Access here = granted(node, user);
+            if (here.compareTo(access) > 0) access = here;
+        }
+        return access;
+    }
+
+    private static Access granted(Node node, String user) {
+        Access everyone = node.grants.getOrDefault(EVERYONE, Access.NONE);
+        Access own = user == null ? Access.NONE : node.grants.getOrDefault(user, Access.NONE);
+        return own.compareTo(everyone) > 0 ? own : everyone;
+    }
+
+    // Caller holds the write lock
+    private void grant(String grantee, String path, Access access) {
+        List<String> segments = segments(path);
+        if (segments == null) return;
+        node(segments, true).grants.merge(grantee, access, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+        grantsByUser.computeIfAbsent(grantee, k -> new HashSet<>()).add(String.join("/", segments));
+    }
+
+    private Node node(List<String> segments, boolean create) {
+        Node node = root;
+        for (String segment : segments) {
+            Node child = node.children.get(segment);
+            if (child == null) {
+                if (!create) return null;
+                child = new Node();
+                node.children.put(segment, child);
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    // Path segments with . and .. resolved, or null if the path climbs above the root
+    private static List<String> segments(String path) {
+        List<String> segments = new ArrayList<>();
+        if (path == null) return segments;
+        for (String segment : path.replace("\\", "/").split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) continue;
+            if (segment.equals("..")) {
+                if (segments.isEmpty()) return null;
+                segments.remove(segments.size() - 1);
+            } else {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.access.grants", this, AccessControlService::grantCount)
+                .description("Paths granted to users beyond their own folders")
+                .register(registry);
+        FunctionCounter.builder("hyperide.access.checks", checks, AtomicLong::get)
+                .description("Access checks made")
+                .register(registry);
+        FunctionCounter.builder("hyperide.access.denied", denied, AtomicLong::get)
+                .description("Access checks that refused the request")
+                .register(registry);
+    }
+
+    private int grantCount() {
+        lock.readLock().lock();
+        try {
+            return grantsByUser.values().stream().mapToInt(Set::size).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
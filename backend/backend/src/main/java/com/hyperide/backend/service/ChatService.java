@@ -0,0 +1,437 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.cluster.SharedState;
+import com.hyperide.backend.model.ChatMessage;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Chat rooms with history. Each room keeps its most recent messages in a ring buffer and
+ * every message in an append-only log under hyperide_data, so late joiners can page back
+ * through it. Posting only stamps and buffers a message; broadcasts go out in batches per
+ * window and the log is written off the inbound channel, and a per-user token bucket
+ * keeps a flood from one client from crowding out edits. Buckets left idle long enough to
+ * refill are dropped, so they do not pile up for every session that ever chatted.
+ */
+@Service
+public class ChatService implements MeterBinder {
+
+    public static final String DEFAULT_ROOM = "public";
+    public static final int MAX_PAGE = 200;
+
+    private static final Pattern ROOM_NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm");
+    private static final int MAX_CONTENT = 2000;
+    // Every this many messages the log offset is indexed, so a page is found without a full scan
+    private static final int INDEX_STRIDE = 64;
+    // Broadcast messages kept for the log while writes fail; beyond this the oldest are given up
+    private static final int MAX_UNLOGGED = 10_000;
+
+    private static final class Room {
+        final String name;
+        final Path log;
+        final ChatMessage[] recent; // Message id n sits at (n - 1) % length
+        long lastId;                // Ids only grow; one the log lost for good leaves a gap
+        final List<ChatMessage> unsent = new ArrayList<>();
+        // Written by the flusher only; the index is also read by history requests
+        final List<ChatMessage> unlogged = new ArrayList<>();
+        FileChannel writer;
+        boolean cutBack;            // A write failed part way: the log ends at logBytes
+        long logBytes;
+        final TreeMap<Long, Long> offsets = new TreeMap<>();
+
+        Room(String name, Path log, int capacity) {
+            this.name = name;
+            this.log = log;
+            this.recent = new ChatMessage[capacity];
+        }
+
+        // Caller holds the room's lock
+        long oldestRecent() {
+            return Math.max(1, lastId - recent.length + 1);
+        }
+    }
+
+    // Only read and written inside the buckets map's compute calls
+    private static final class Bucket {
+        double tokens;
+        long refilledAt;
+
+        Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.refilledAt = now;
+        }
+    }
+
+    @Autowired private SimpMessagingTemplate messagingTemplate;
+    @Autowired private JsonMapper jsonMapper;
+    @Autowired private SharedState sharedState;
+
+    @Value("${hyperide.chat.dir:hyperide_data/chat}")
+    private String dir;
+
+    // Instances sharing the data directory each number their rooms' messages, so each keeps
+    // its logs in a subdirectory by this name; it must stay the same across restarts
+    @Value("${hyperide.chat.instance:${server.port:8080}}")
+    private String instance;
+
+    @Value("${hyperide.chat.recent:200}")
+    private int recentPerRoom;
+
+    @Value("${hyperide.chat.batch-ms:100}")
+    private long batchMs;
+
+    @Value("${hyperide.chat.rate.burst:5}")
+    private int burst;
+
+    @Value("${hyperide.chat.rate.per-second:1}")
+    private double perSecond;
+
+    @Value("${hyperide.chat.max-rooms:100}")
+    private int maxRooms;
+
+    private Path root;
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    private final AtomicLong posted = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong logFailures = new AtomicLong();
+    private final AtomicLong logReads = new AtomicLong();
+
+    @PostConstruct
+    public void start() throws IOException {
+        root = Paths.get(dir).toAbsolutePath().normalize();
+        if (sharedState.isShared()) root = root.resolve(instance).normalize();
+        Files.createDirectories(root);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "chat-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, batchMs, batchMs, TimeUnit.MILLISECONDS);
+        if (perSecond > 0) { // Otherwise a bucket never refills, and dropping it would reset the limit
+            long refillMs = Math.max(1000, (long) (burst / perSecond * 1000));
+            flusher.scheduleWithFixedDelay(this::expireBuckets, refillMs, refillMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(2, TimeUnit.SECONDS);
+        flush();
+        for (Room room : rooms.values()) {
+            try {
+                if (room.writer != null) room.writer.close();
+            } catch (IOException e) {
+                System.err.println("Could not close chat log " + room.log + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public static boolean isValidRoom(String room) {
+        return room != null && ROOM_NAME.matcher(room).matches();
+    }
+
+    /**
+     * Stamps a message and queues it for the room's next broadcast. The rate key is whose
+     * rate it counts against: the session's user, or the session for a guest. Returns null
+     * if it was dropped: empty, an unknown room beyond the room limit, or over the rate.
+     */
+    public ChatMessage post(String roomName, String sender, String rateKey, String content) {
+        if (roomName == null || roomName.isEmpty()) roomName = DEFAULT_ROOM;
+        if (sender == null || sender.isEmpty() || content == null || content.isBlank()) return null;
+        if (!allow(rateKey)) {
+            rateLimited.incrementAndGet();
+            return null;
+        }
+        Room room = room(roomName);
+        if (room == null) return null;
+        ChatMessage message = new ChatMessage();
+        message.setRoom(room.name);
+        message.setSender(sender);
+        message.setContent(content.length() > MAX_CONTENT ? content.substring(0, MAX_CONTENT) : content);
+        message.setTimestamp(LocalTime.now().format(TIME));
+        synchronized (room) {
+            message.setId(++room.lastId);
+            room.recent[(int) ((message.getId() - 1) % room.recent.length)] = message;
+            room.unsent.add(message);
+        }
+        posted.incrementAndGet();
+        return message;
+    }
+
+    /**
+     * Up to limit messages before the given id (the latest ones if before is 0), oldest
+     * first. Recent ones come from memory, older ones from the room's log.
+     */
+    public List<ChatMessage> history(String roomName, long before, int limit) {
+        Room room = room(roomName);
+        if (room == null) return List.of();
+        limit = Math.max(1, Math.min(limit, MAX_PAGE));
+        List<ChatMessage> page = new ArrayList<>();
+        long from, to, oldestRecent;
+        synchronized (room) {
+            to = before <= 0 ? room.lastId + 1 : Math.min(before, room.lastId + 1);
+            from = Math.max(1, to - limit);
+            oldestRecent = room.oldestRecent();
+            for (long id = Math.max(from, oldestRecent); id < to; id++) {
+                ChatMessage message = room.recent[(int) ((id - 1) % room.recent.length)];
+                if (message != null && message.getId() == id) page.add(message);
+            }
+        }
+        if (from < oldestRecent) page.addAll(0, readLog(room, from, Math.min(to, oldestRecent)));
+        return page;
+    }
+
+    private boolean allow(String key) {
+        long now = System.nanoTime();
+        boolean[] allowed = new boolean[1];
+        // Atomic with expiry, which could otherwise drop a bucket just taken from
+        buckets.compute(key, (k, bucket) -> {
+            if (bucket == null) bucket = new Bucket(burst, now);
+            bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.refilledAt) / 1e9 * perSecond);
+            bucket.refilledAt = now;
+            if (bucket.tokens >= 1) {
+                bucket.tokens--;
+                allowed[0] = true;
+            }
+            return bucket;
+        });
+        return allowed[0];
+    }
+
+    // A bucket untouched for as long as it takes to refill is no different from a new one
+    private void expireBuckets() {
+        long now = System.nanoTime();
+        long refillNanos = (long) (burst / perSecond * 1e9);
+        for (String key : buckets.keySet()) {
+            buckets.computeIfPresent(key, (k, bucket) -> now - bucket.refilledAt >= refillNanos ? null : bucket);
+        }
+    }
+
+    private Room room(String name) {
+        if (!isValidRoom(name)) return null;
+        Room room = rooms.get(name);
+        if (room != null) return room;
+        synchronized (rooms) {
+            room = rooms.get(name);
+            if (room == null && rooms.size() < maxRooms) {
+                room = load(name);
+                rooms.put(name, room);
+            }
+            return room;
+        }
+    }
+
+    // --- LOG ---
+    // One JSON message per line, in id order. Loading a room rebuilds the offset index and
+    // the ring from it. A crash can only leave the last line half-written, so that is cut
+    // off; any other line that does not read, and ids that never made it, are skipped.
+    private Room load(String name) {
+        Room room = new Room(name, root.resolve(name + ".log"), recentPerRoom);
+        if (Files.notExists(room.log)) return room;
+        long length;
+        try (FileChannel channel = FileChannel.open(room.log, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            length = completeLength(channel);
+            if (channel.size() > length) channel.truncate(length);
+        } catch (IOException e) {
+            System.err.println("Could not repair chat log " + room.log + ": " + e.getMessage());
+            return room;
+        }
+        long offset = 0;
+        try (BufferedReader reader = Files.newBufferedReader(room.log, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                long start = offset;
+                offset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                ChatMessage message;
+                try {
+                    message = jsonMapper.readValue(line, ChatMessage.class);
+                } catch (JacksonException e) {
+                    continue;
+                }
+                if (message.getId() <= room.lastId) continue;
+                index(room, message.getId(), start);
+                room.lastId = message.getId();
+                room.recent[(int) ((message.getId() - 1) % room.recent.length)] = message;
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read chat log " + room.log + ": " + e.getMessage());
+        }
+        room.logBytes = length;
+        return room;
+    }
+
+    // Length up to and including the last line break
+    private static long completeLength(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long end = channel.size();
+        while (end > 0) {
+            long start = Math.max(0, end - buffer.capacity());
+            buffer.clear().limit((int) (end - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) break;
+            }
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') return start + i + 1;
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    // Indexes the first message of each stride that is in the log, gaps or not
+    private static void index(Room room, long id, long offset) {
+        synchronized (room.offsets) {
+            if (room.offsets.isEmpty() || (id - 1) / INDEX_STRIDE > (room.offsets.lastKey() - 1) / INDEX_STRIDE) {
+                room.offsets.put(id, offset);
+            }
+        }
+    }
+
+    private List<ChatMessage> readLog(Room room, long from, long to) {
+        long offset;
+        synchronized (room.offsets) {
+            Map.Entry<Long, Long> start = room.offsets.floorEntry(from);
+            if (start == null) return List.of();
+            offset = start.getValue();
+        }
+        logReads.incrementAndGet();
+        List<ChatMessage> messages = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(room.log, StandardOpenOption.READ)) {
+            channel.position(offset);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ChatMessage message;
+                try {
+                    message = jsonMapper.readValue(line, ChatMessage.class);
+                } catch (JacksonException e) {
+                    continue;
+                }
+                if (message.getId() >= to) break;
+                if (message.getId() >= from) messages.add(message);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read chat log " + room.log + ": " + e.getMessage());
+        }
+        return messages;
+    }
+
+    // Flusher thread only. Writes the messages not in the log yet, all or none: after a
+    // failed write the log is cut back to its last whole message before the next attempt.
+    private void append(Room room) throws IOException {
+        if (room.unlogged.isEmpty()) return;
+        if (room.writer == null) {
+            FileChannel writer = FileChannel.open(room.log, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (room.cutBack) writer.truncate(room.logBytes); else room.logBytes = writer.size();
+            writer.position(room.logBytes);
+            room.writer = writer;
+            room.cutBack = false;
+        }
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        long[] starts = new long[room.unlogged.size()];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = room.logBytes + lines.size();
+            lines.write((jsonMapper.writeValueAsString(room.unlogged.get(i)) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+            while (buffer.hasRemaining()) room.writer.write(buffer);
+        } catch (IOException e) {
+            try {
+                room.writer.close();
+            } catch (IOException ignored) {
+                // Reopened and cut back either way
+            }
+            room.writer = null;
+            room.cutBack = true;
+            throw e;
+        }
+        room.logBytes += lines.size();
+        for (int i = 0; i < starts.length; i++) index(room, room.unlogged.get(i).getId(), starts[i]);
+        room.unlogged.clear();
+    }
+
+    // --- BROADCAST ---
+    private void flush() {
+        for (Room room : rooms.values()) {
+            List<ChatMessage> batch;
+            synchronized (room) {
+                if (room.unsent.isEmpty()) continue;
+                batch = new ArrayList<>(room.unsent);
+                room.unsent.clear();
+            }
+            try {
+                messagingTemplate.convertAndSend("/topic/chat/" + room.name, batch);
+                batches.incrementAndGet();
+            } catch (RuntimeException e) {
+                System.err.println("Chat broadcast failed for " + room.name + ": " + e.getMessage());
+            }
+            room.unlogged.addAll(batch);
+            try {
+                append(room);
+            } catch (IOException | RuntimeException e) {
+                logFailures.incrementAndGet();
+                System.err.println("Chat log write failed for " + room.name + ": " + e.getMessage());
+                giveUpOldest(room);
+            }
+        }
+    }
+
+    // Ids are never reused, so while the log cannot be written newer messages queue up behind
+    // the unwritten ones; only past the limit are the oldest dropped, leaving a gap in the log
+    private static void giveUpOldest(Room room) {
+        int excess = room.unlogged.size() - MAX_UNLOGGED;
+        if (excess > 0) room.unlogged.subList(0, excess).clear();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.chat.rooms", rooms, Map::size)
+                .description("Chat rooms open on this instance")
+                .register(registry);
+        Gauge.builder("hyperide.chat.rate.buckets", buckets, Map::size)
+                .description("Users and guest sessions with a rate limit bucket held")
+                .register(registry);
+        counter(registry, "hyperide.chat.posted", "Messages posted", posted);
+        counter(registry, "hyperide.chat.rate.limited", "Messages refused by the per-user rate limit", rateLimited);
+        counter(registry, "hyperide.chat.batches", "Batches of messages broadcast", batches);
+        counter(registry, "hyperide.chat.log.reads", "History requests served from the log on disk", logReads);
+        counter(registry, "hyperide.chat.log.failures", "Chat log writes that failed", logFailures);
+    }
+
+    private static void counter(MeterRegistry registry, String name, String description, AtomicLong count) {
+        FunctionCounter.builder(name, count, AtomicLong::get).description(description).register(registry);
+    }
+}
@@ -0,0 +1,233 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.model.EditOperation;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Who contributed how much, per user and per file. Recording an edit only bumps striped
+ * counters on the edit lane: all-time totals in LongAdders, and for the last 5 minutes,
+ * hour and day a ring of time buckets each. Totals are added to a table in the datasource
+ * periodically and loaded back at startup; the windows start empty after a restart.
+ * Reading sums one user's counters per user shown, never the edits themselves.
+ */
+@Service
+public class ContributionService implements MeterBinder {
+
+    public enum Window {
+        MINUTES_5("5m", 10_000, 30),
+        HOUR("1h", 60_000, 60),
+        DAY("1d", 1_800_000, 48);
+
+        final String label;
+        final long bucketMs;
+        final int buckets;
+
+        Window(String label, long bucketMs, int buckets) {
+            this.label = label;
+            this.bucketMs = bucketMs;
+            this.buckets = buckets;
+        }
+
+        /** The window for a label such as "1h"; null for "all" or anything unknown. */
+        public static Window of(String label) {
+            for (Window w : values()) if (w.label.equalsIgnoreCase(label)) return w;
+            return null;
+        }
+    }
+
+    // Counts per time bucket; a slot is reset when its bucket comes round again
+    private static final class Ring {
+        final Window window;
+        final AtomicLongArray counts;
+        final AtomicLongArray epochs;
+
+        Ring(Window window) {
+            this.window = window;
+            this.counts = new AtomicLongArray(window.buckets);
+            this.epochs = new AtomicLongArray(window.buckets);
+        }
+
+        void add(long now, long n) {
+            long epoch = now / window.bucketMs;
+            int slot = (int) (epoch % window.buckets);
+            if (epochs.get(slot) != epoch) {
+                synchronized (this) {
+                    if (epochs.get(slot) != epoch) {
+                        counts.set(slot, 0);
+                        epochs.set(slot, epoch);
+                    }
+                }
+            }
+            counts.addAndGet(slot, n);
+        }
+
+        long sum(long now) {
+            long oldest = now / window.bucketMs - window.buckets;
+            long sum = 0;
+            for (int i = 0; i < window.buckets; i++) {
+                if (epochs.get(i) > oldest) sum += counts.get(i);
+            }
+            return sum;
+        }
+    }
+
+    private static final class Counter {
+        final LongAdder edits = new LongAdder();
+        final LongAdder charsAdded = new LongAdder();
+        final LongAdder charsRemoved = new LongAdder();
+        final Ring[] rings = new Ring[Window.values().length];
+        // Loaded from the table at startup; the adders count from there
+        long baseEdits, baseCharsAdded, baseCharsRemoved;
+        // Adder sums already added to the table; touched by the persister only
+        long savedEdits, savedCharsAdded, savedCharsRemoved;
+
+        Counter() {
+            for (Window w : Window.values()) rings[w.ordinal()] = new Ring(w);
+        }
+
+        void add(long now, long added, long removed) {
+            edits.increment();
+            charsAdded.add(added);
+            charsRemoved.add(removed);
+            for (Ring ring : rings) ring.add(now, 1);
+        }
+
+        long edits(Window window, long now) {
+            return window == null ? baseEdits + edits.sum() : rings[window.ordinal()].sum(now);
+        }
+    }
+
+    @Autowired private JdbcTemplate jdbc;
+
+    @Value("${hyperide.stats.persist-ms:30000}")
+    private long persistMs;
+
+    // File -> user -> counter, and each user's counter over all files
+    private final Map<String, Map<String, Counter>> byFile = new ConcurrentHashMap<>();
+    private final Map<String, Counter> byUser = new ConcurrentHashMap<>();
+    private ScheduledExecutorService persister;
+
+    private final AtomicLong persistFailures = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        jdbc.execute("CREATE TABLE IF NOT EXISTS hyperide_contribution ("
+                + "username VARCHAR(255) NOT NULL, path VARCHAR(1024) NOT NULL, edits BIGINT NOT NULL, "
+                + "chars_added BIGINT NOT NULL, chars_removed BIGINT NOT NULL, PRIMARY KEY (username, path))");
+        jdbc.query("SELECT username, path, edits, chars_added, chars_removed FROM hyperide_contribution", rs -> {
+            String user = rs.getString(1);
+            Counter file = counter(rs.getString(2), user);
+            Counter total = byUser.computeIfAbsent(user, k -> new Counter());
+            file.baseEdits = rs.getLong(3);
+            file.baseCharsAdded = rs.getLong(4);
+            file.baseCharsRemoved = rs.getLong(5);
+            total.baseEdits += file.baseEdits;
+            total.baseCharsAdded += file.baseCharsAdded;
+            total.baseCharsRemoved += file.baseCharsRemoved;
+        });
+        persister = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "contribution-persist");
+            t.setDaemon(true);
+            return t;
+        });
+        persister.scheduleWithFixedDelay(this::persist, persistMs, persistMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        persister.shutdown();
+        persister.awaitTermination(2, TimeUnit.SECONDS);
+        persist();
+    }
+
+    /** Counts an applied edit; called on the file's edit lane. */
+    public void record(String user, String path, List<EditOperation> ops) {
+        if (user == null || path == null) return;
+        long added = 0, removed = 0;
+        if (ops != null) {
+            for (EditOperation op : ops) {
+                if (EditOperation.INSERT.equals(op.getType())) added += op.getText() == null ? 0 : op.getText().length();
+                else removed += op.getLength();
+            }
+        }
+        long now = System.currentTimeMillis();
+        counter(path, user).add(now, added, removed);
+        byUser.computeIfAbsent(user, k -> new Counter()).add(now, added, removed);
+    }
+
+    /** Edits per user over the window (all time if null), in one file or across all files if file is null. */
+    public Map<String, Long> edits(Window window, String file) {
+        Map<String, Counter> counters = file == null ? byUser : byFile.getOrDefault(file, Map.of());
+        long now = System.currentTimeMillis();
+        Map<String, Long> edits = new TreeMap<>();
+        counters.forEach((user, counter) -> {
+            long n = counter.edits(window, now);
+            if (n > 0) edits.put(user, n);
+        });
+        return edits;
+    }
+
+    private Counter counter(String path, String user) {
+        return byFile.computeIfAbsent(path, k -> new ConcurrentHashMap<>()).computeIfAbsent(user, k -> new Counter());
+    }
+
+    // --- PERSISTENCE ---
+    // Adds what each counter gained since the last run, so instances sharing the table add up
+    private synchronized void persist() {
+        try {
+            for (Map.Entry<String, Map<String, Counter>> file : byFile.entrySet()) {
+                for (Map.Entry<String, Counter> entry : file.getValue().entrySet()) {
+                    Counter c = entry.getValue();
+                    long edits = c.edits.sum(), added = c.charsAdded.sum(), removed = c.charsRemoved.sum();
+                    if (edits == c.savedEdits) continue;
+                    long dEdits = edits - c.savedEdits, dAdded = added - c.savedCharsAdded, dRemoved = removed - c.savedCharsRemoved;
+                    int updated = jdbc.update("UPDATE hyperide_contribution SET edits = edits + ?, chars_added = chars_added + ?, "
+                            + "chars_removed = chars_removed + ? WHERE username = ? AND path = ?",
+                            dEdits, dAdded, dRemoved, entry.getKey(), file.getKey());
+                    if (updated == 0) {
+                        jdbc.update("INSERT INTO hyperide_contribution (username, path, edits, chars_added, chars_removed) VALUES (?, ?, ?, ?, ?)",
+                                entry.getKey(), file.getKey(), dEdits, dAdded, dRemoved);
+                    }
+                    c.savedEdits = edits;
+                    c.savedCharsAdded = added;
+                    c.savedCharsRemoved = removed;
+                }
+            }
+        } catch (RuntimeException e) {
+            // Unsaved gains stay in the adders and are retried next run
+            persistFailures.incrementAndGet();
+            System.err.println("Could not persist contribution stats: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.contributions.users", byUser, Map::size)
+                .description("Users with contributions recorded")
+                .register(registry);
+        FunctionCounter.builder("hyperide.contributions.edits", this, s -> s.byUser.values().stream().mapToLong(c -> c.edits(null, 0)).sum())
+                .description("Edits counted towards contributions")
+                .register(registry);
+        FunctionCounter.builder("hyperide.contributions.persist.failures", persistFailures, AtomicLong::get)
+                .description("Contribution saves that failed")
+                .register(registry);
+    }
+}
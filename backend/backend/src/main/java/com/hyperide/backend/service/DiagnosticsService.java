@@ -0,0 +1,275 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.config.HyperideMetrics;
+import com.hyperide.backend.exec.InMemoryJavaCompiler;
+import com.hyperide.backend.model.CompileDiagnostic;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Live compile errors for Java files, published on /topic/files/{path}/diagnostics as the
+ * file is edited. A project is the .java files of one directory; for each the service
+ * keeps the text it last checked and the diagnostics it got, on a single compiler thread.
+ * After edits to a project settle for the debounce delay, only the files whose text
+ * changed, plus the files that mention a changed file's class, are type-checked again,
+ * with the rest of the project resolved as source. The diagnostics of a text are computed
+ * once however many clients view or request them.
+ */
+@Service
+public class DiagnosticsService implements MeterBinder {
+
+    /** Diagnostics of a file at a document version (-1 if it was read from disk). */
+    public record FileDiagnostics(String path, long version, List<CompileDiagnostic> diagnostics) {}
+
+    private static final String SUFFIX = "/diagnostics";
+
+    @Autowired private InMemoryJavaCompiler compiler;
+    @Autowired private DocumentService documentService;
+    @Autowired private FileIndexService fileIndexService;
+    @Autowired private SimpMessagingTemplate messagingTemplate;
+    @Autowired private HyperideMetrics metrics;
+
+    @Value("${hyperide.diagnostics.debounce-ms:400}")
+    private long debounceMs;
+
+    @Value("${hyperide.diagnostics.max-wait-ms:2000}")
+    private long maxWaitMs;
+
+    @Value("${hyperide.diagnostics.max-units:200}")
+    private int maxUnits;
+
+    @Value("${hyperide.diagnostics.max-projects:32}")
+    private int maxProjects;
+
+    private record Unit(String code, long version, List<CompileDiagnostic> diagnostics) {}
+
+    private record Pending(ScheduledFuture<?> task, long since) {}
+
+    // Directory -> file name -> last checked; touched only on the compiler thread
+    private final LinkedHashMap<String, Map<String, Unit>> projects = new LinkedHashMap<>(16, 0.75f, true);
+    // Directories with a project, for the file event listener to check without the compiler thread
+    private final Set<String> known = ConcurrentHashMap.newKeySet();
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService compilerThread;
+
+    private final AtomicLong unitsChecked = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong tooLarge = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        compilerThread = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "diagnostics");
+            t.setDaemon(true);
+            return t;
+        });
+        // A file added to or removed from a project can fix or break the others
+        fileIndexService.addListener((type, path) -> {
+            if (known.contains(directoryOf(path))) changed(path);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compilerThread.shutdownNow();
+    }
+
+    public static String diagnosticsDestination(String path) {
+        return "/topic/files/" + DocumentService.normalize(path) + SUFFIX;
+    }
+
+    /**
+     * Schedules a check of the file's project once edits stop for the debounce delay, but
+     * no later than max-wait after the first of them, so continuous typing still gets
+     * results.
+     */
+    public void changed(String path) {
+        path = DocumentService.normalize(path);
+        if (!path.endsWith(".java") || !compiler.isAvailable()) return;
+        String dir = directoryOf(path);
+        long now = System.nanoTime();
+        pending.compute(dir, (k, previous) -> {
+            long since = now;
+            if (previous != null) {
+                if (now - previous.since() >= TimeUnit.MILLISECONDS.toNanos(maxWaitMs)) return previous;
+                if (!previous.task().cancel(false)) previous = null; // Already running; this edit needs another check
+                else since = previous.since();
+            }
+            ScheduledFuture<?> task = compilerThread.schedule(() -> {
+                // Leaves a check scheduled for edits made after this one started
+                pending.computeIfPresent(dir, (d, p) -> p.task().getDelay(TimeUnit.NANOSECONDS) > 0 ? p : null);
+                refresh(dir);
+            }, debounceMs, TimeUnit.MILLISECONDS);
+            return new Pending(task, since);
+        });
+    }
+
+    /**
+     * Current diagnostics of a Java file, checking its project first if anything in it
+     * changed since the last check. Null if the file is not part of a project that can be
+     * checked: missing, large, or in a directory over max-units files.
+     */
+    public FileDiagnostics get(String path) throws InterruptedException, TimeoutException {
+        String normalized = DocumentService.normalize(path);
+        if (!normalized.endsWith(".java") || !compiler.isAvailable()) return null;
+        String dir = directoryOf(normalized);
+        String name = normalized.substring(normalized.lastIndexOf('/') + 1);
+        Future<FileDiagnostics> result = compilerThread.submit(() -> {
+            Map<String, Unit> units = refresh(dir);
+            Unit unit = units == null ? null : units.get(name);
+            return unit == null ? null : new FileDiagnostics(normalized, unit.version(), unit.diagnostics());
+        });
+        try {
+            return result.get(30, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // --- CHECKING (compiler thread) ---
+    private Map<String, Unit> refresh(String dir) {
+        try {
+            Map<String, LiveDocument.Snapshot> current = read(dir);
+            if (current == null) {
+                tooLarge.incrementAndGet();
+                return null;
+            }
+            Map<String, Unit> units = projects.computeIfAbsent(dir, k -> {
+                known.add(k);
+                return new HashMap<>();
+            });
+            evictIfNeeded();
+            Set<String> changed = new TreeSet<>();
+            current.forEach((name, snapshot) -> {
+                Unit unit = units.get(name);
+                if (unit == null || !unit.code().equals(snapshot.content())) changed.add(name);
+            });
+            Set<String> removed = new TreeSet<>(units.keySet());
+            removed.removeAll(current.keySet());
+            removed.forEach(units::remove);
+            if (changed.isEmpty() && removed.isEmpty()) {
+                unchanged.incrementAndGet();
+                return units;
+            }
+            check(dir, units, current, changed, removed);
+            return units;
+        } catch (RuntimeException e) {
+            System.err.println("Diagnostics failed for " + dir + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void check(String dir, Map<String, Unit> units, Map<String, LiveDocument.Snapshot> current,
+                       Set<String> changed, Set<String> removed) {
+        // Files that name a changed or removed class may have gained or lost errors with it
+        Set<String> recheck = new TreeSet<>(changed);
+        List<Pattern> mentions = Stream.concat(changed.stream(), removed.stream())
+                .map(name -> Pattern.compile("\\b" + Pattern.quote(name.substring(0, name.length() - 5)) + "\\b"))
+                .toList();
+        current.forEach((name, snapshot) -> {
+            if (mentions.stream().anyMatch(p -> p.matcher(snapshot.content()).find())) recheck.add(name);
+        });
+
+        Map<String, String> sources = new HashMap<>();
+        current.forEach((name, snapshot) -> sources.put(name, snapshot.content()));
+        Map<String, String> checked = new HashMap<>();
+        for (String name : recheck) checked.put(name, sources.get(name));
+
+        long start = System.nanoTime();
+        List<CompileDiagnostic> diagnostics = compiler.check(checked, sources);
+        metrics.recordDiagnostics(System.nanoTime() - start);
+        unitsChecked.addAndGet(recheck.size());
+
+        Map<String, List<CompileDiagnostic>> byFile = new HashMap<>();
+        for (CompileDiagnostic d : diagnostics) byFile.computeIfAbsent(d.getFile(), k -> new ArrayList<>()).add(d);
+        for (String name : recheck) {
+            LiveDocument.Snapshot snapshot = current.get(name);
+            List<CompileDiagnostic> found = byFile.getOrDefault(name, List.of());
+            Unit previous = units.put(name, new Unit(snapshot.content(), snapshot.version(), found));
+            // Dependents whose diagnostics came out the same need no message
+            if (changed.contains(name) || previous == null || !previous.diagnostics().equals(found)) {
+                String path = dir.isEmpty() ? name : dir + "/" + name;
+                messagingTemplate.convertAndSend(diagnosticsDestination(path), new FileDiagnostics(path, snapshot.version(), found));
+                published.incrementAndGet();
+            }
+        }
+    }
+
+    // Text of each .java file in the directory, live if loaded; null if there are too many
+    private Map<String, LiveDocument.Snapshot> read(String dir) {
+        Path folder = documentService.resolve(dir);
+        if (folder == null || !Files.isDirectory(folder)) return Map.of();
+        List<Path> files;
+        try (Stream<Path> list = Files.list(folder)) {
+            files = list.filter(p -> p.getFileName().toString().endsWith(".java") && Files.isRegularFile(p)).toList();
+        } catch (IOException e) {
+            return Map.of();
+        }
+        if (files.size() > maxUnits) return null;
+        Map<String, LiveDocument.Snapshot> texts = new HashMap<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            String path = dir.isEmpty() ? name : dir + "/" + name;
+            LiveDocument doc = documentService.peek(path);
+            if (doc != null) {
+                texts.put(name, doc.snapshot());
+            } else if (!documentService.isLarge(path)) {
+                try {
+                    texts.put(name, new LiveDocument.Snapshot(Files.readString(file), -1));
+                } catch (IOException e) {
+                    // Deleted meanwhile, or not UTF-8: left out of the project
+                }
+            }
+        }
+        return texts;
+    }
+
+    private void evictIfNeeded() {
+        Iterator<String> eldest = projects.keySet().iterator();
+        while (projects.size() > maxProjects && eldest.hasNext()) {
+            known.remove(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    private static String directoryOf(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.diagnostics.projects", known, Set::size)
+                .description("Projects with diagnostics kept up to date")
+                .register(registry);
+        Gauge.builder("hyperide.diagnostics.pending", pending, Map::size)
+                .description("Projects waiting out the debounce before a check")
+                .register(registry);
+        counter(registry, "hyperide.diagnostics.units", "Files compiled by the checks", unitsChecked);
+        counter(registry, "hyperide.diagnostics.unchanged", "Checks skipped because nothing changed", unchanged);
+        counter(registry, "hyperide.diagnostics.published", "Diagnostics updates sent to clients", published);
+        counter(registry, "hyperide.diagnostics.too.large", "Projects not checked for having too many files", tooLarge);
+    }
+
+    private static void counter(MeterRegistry registry, String name, String description, AtomicLong count) {
+        FunctionCounter.builder(name, count, AtomicLong::get).description(description).register(registry);
+    }
+}
@@ -0,0 +1,138 @@
+package com.hyperide.backend.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of live documents bounded by an approximate byte budget rather than an
+ * entry count, so a handful of large files cannot crowd the heap any more than many
+ * small ones. Dirty documents are never evicted; they become evictable once the
+ * write-behind flusher has persisted them.
+ */
+@Component
+public class DocumentCache implements MeterBinder {
+
+    private static final class Entry {
+        final LiveDocument doc;
+        long weight;
+
+        Entry(LiveDocument doc) {
+            this.doc = doc;
+            this.weight = doc.weight();
+        }
+    }
+
+    @Value("${hyperide.cache.max-bytes:268435456}")
+    private long maxBytes;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalWeight;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong evictedBytes = new AtomicLong();
+
+    public LiveDocument get(String path) {
+        LiveDocument doc = peek(path);
+        (doc != null ? hits : misses).incrementAndGet();
+        return doc;
+    }
+
+    /** Same as {@link #get} but not counted in the hit/miss statistics. */
+    public synchronized LiveDocument peek(String path) {
+        Entry entry = entries.get(path);
+        return entry == null ? null : entry.doc;
+    }
+
+    /** Inserts doc unless another thread loaded the same path first; returns the winner. */
+    public synchronized LiveDocument putIfAbsent(String path, LiveDocument doc) {
+        Entry existing = entries.get(path);
+        if (existing != null) return existing.doc;
+        Entry entry = new Entry(doc);
+        entries.put(path, entry);
+        totalWeight += entry.weight;
+        evictIfNeeded();
+        return doc;
+    }
+
+    public synchronized LiveDocument remove(String path) {
+        Entry entry = entries.remove(path);
+        if (entry == null) return null;
+        totalWeight -= entry.weight;
+        return entry.doc;
+    }
+
+    /** Refreshes the weight of a document after it changed size. */
+    public synchronized void reweigh(String path) {
+        Entry entry = entries.get(path);
+        if (entry == null) return;
+        long weight = entry.doc.weight();
+        totalWeight += weight - entry.weight;
+        entry.weight = weight;
+        evictIfNeeded();
+    }
+
+    /** Evicts again after dirty entries have been persisted and unpinned. */
+    public synchronized void trim() {
+        evictIfNeeded();
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalWeight > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> next = it.next();
+            Entry entry = next.getValue();
+            if (!it.hasNext()) break; // Never evict the document that was just used
+            if (!entry.doc.retire()) continue; // Dirty: pinned until persisted
+            it.remove();
+            totalWeight -= entry.weight;
+            evictions.incrementAndGet();
+            evictedBytes.addAndGet(entry.weight);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weightBytes() {
+        return totalWeight;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.cache.documents", this, DocumentCache::size)
+                .description("Open documents held in memory")
+                .register(registry);
+        Gauge.builder("hyperide.cache.bytes", this, DocumentCache::weightBytes)
+                .description("Estimated heap held by open documents")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("hyperide.cache.requests", hits, AtomicLong::get)
+                .description("Document lookups, by whether the document was in memory")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("hyperide.cache.requests", misses, AtomicLong::get)
+                .description("Document lookups, by whether the document was in memory")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("hyperide.cache.evictions", evictions, AtomicLong::get)
+                .description("Documents evicted to stay within the byte budget")
+                .register(registry);
+        FunctionCounter.builder("hyperide.cache.evicted", evictedBytes, AtomicLong::get)
+                .description("Estimated heap freed by evictions")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+}
@@ -0,0 +1,386 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.cluster.SharedState;
+import com.hyperide.backend.config.HyperideMetrics;
+import com.hyperide.backend.model.EditOperation;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Owns the workspace on disk and the live in-memory documents that edits are applied to.
+ * When instances share state, every change to a document is sequenced through
+ * {@link SharedState} and a node's copy is brought up to the shared edit log first.
+ */
+@Service
+public class DocumentService {
+
+    public static final Path STORAGE_ROOT = Paths.get("hyperide_files").toAbsolutePath().normalize();
+
+    @Autowired private DocumentCache memoryCache;
+    @Autowired private SharedState sharedState;
+    @Autowired private EditJournal editJournal;
+    @Autowired private HyperideMetrics metrics;
+    @Autowired private LargeFileService largeFiles;
+
+    @PostConstruct
+    public void init() {
+        recover();
+        try {
+            Files.createDirectories(STORAGE_ROOT.resolve("admin"));
+            saveFileToDiskSync("admin/welcome.txt", "Welcome to the Admin Dashboard!\n// System operational.");
+        } catch (IOException e) { System.err.println("Failed to init storage."); }
+    }
+
+    public static String normalize(String requestedPath) {
+        return requestedPath.replace("\\", "/");
+    }
+
+    /** Resolves a workspace-relative path, or returns null if it escapes STORAGE_ROOT. */
+    public Path resolve(String requestedPath) {
+        Path targetPath = STORAGE_ROOT.resolve(normalize(requestedPath)).normalize();
+        return targetPath.startsWith(STORAGE_ROOT) ? targetPath : null;
+    }
+
+    /** Returns the live document for a path, loading it from disk (or empty) on a cache miss. */
+    public LiveDocument open(String requestedPath) {
+        String path = normalize(requestedPath);
+        if (resolve(path) == null) return null;
+        return sharedState.sequence(path, () -> {
+            while (true) {
+                try {
+                    LiveDocument doc = load(path);
+                    if (catchUp(path, doc)) return doc;
+                    if (catchUp(path, doc = load(path))) return doc;
+                    throw new IllegalStateException("Edit log of " + path + " does not follow on from disk");
+                } catch (LiveDocument.RetiredException e) {
+                    // Evicted while catching up; load again
+                }
+            }
+        });
+    }
+
+    private LiveDocument load(String path) {
+        LiveDocument doc = memoryCache.get(path);
+        if (doc != null) return doc;
+        Path targetPath = resolve(path);
+        if (largeFiles.isLarge(targetPath)) throw new IllegalStateException(path + " is a large file and read-only");
+        try {
+            doc = new LiveDocument(Files.exists(targetPath) ? Files.readString(targetPath) : "", persistedVersion(path));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load " + path, e);
+        }
+        return memoryCache.putIfAbsent(path, doc);
+    }
+
+    // Replays edits other nodes logged since this copy's version. A copy too far behind
+    // for the retained log is dropped, and false returned so the caller reloads it.
+    private boolean catchUp(String path, LiveDocument doc) {
+        if (!sharedState.isShared()) return true;
+        List<LiveDocument.AppliedEdit> missed = sharedState.editsSince(path, doc.getVersion());
+        for (LiveDocument.AppliedEdit edit : missed) {
+            if (!doc.catchUp(edit)) {
+                memoryCache.remove(path);
+                return false;
+            }
+        }
+        if (!missed.isEmpty()) memoryCache.reweigh(path);
+        return true;
+    }
+
+    // Makes an applied edit durable: in the file's journal on a single node, in the shared
+    // edit log when clustered. If the shared log refuses it, the local copy is ahead of the
+    // log, so it is dropped and the edit reported as not applied.
+    private LiveDocument.AppliedEdit logged(String path, LiveDocument.AppliedEdit applied) {
+        if (applied == null) return null;
+        if (!sharedState.isShared()) {
+            editJournal.append(path, applied);
+            return applied;
+        }
+        try {
+            sharedState.append(path, applied);
+            return applied;
+        } catch (RuntimeException e) {
+            System.err.println("Could not log edit to " + path + ": " + e.getMessage());
+            memoryCache.remove(path);
+            return null;
+        }
+    }
+
+    /**
+     * Applies a delta to the live document, see {@link LiveDocument#apply}. Retries on a
+     * freshly loaded copy if the cache evicted the document between lookup and apply.
+     */
+    public LiveDocument.AppliedEdit applyEdit(String requestedPath, long baseVersion, List<EditOperation> ops) {
+        String path = normalize(requestedPath);
+        return sharedState.sequence(path, () -> {
+            while (true) {
+                try {
+                    LiveDocument.AppliedEdit applied = logged(path, open(path).apply(baseVersion, ops));
+                    memoryCache.reweigh(path);
+                    return applied;
+                } catch (LiveDocument.RetiredException e) {
+                    // Evicted under us; it was clean, so reloading from disk loses nothing
+                }
+            }
+        });
+    }
+
+    public LiveDocument.AppliedEdit replaceContent(String requestedPath, String content) {
+        String path = normalize(requestedPath);
+        return sharedState.sequence(path, () -> {
+            while (true) {
+                try {
+                    LiveDocument.AppliedEdit applied = logged(path, open(path).replace(content));
+                    memoryCache.reweigh(path);
+                    return applied;
+                } catch (LiveDocument.RetiredException e) {
+                    // See applyEdit
+                }
+            }
+        });
+    }
+
+    /** Replaces the content only if it is still at {@code baseVersion}; null otherwise. */
+    public LiveDocument.AppliedEdit replaceContent(String requestedPath, long baseVersion, String content) {
+        String path = normalize(requestedPath);
+        return sharedState.sequence(path, () -> {
+            while (true) {
+                try {
+                    LiveDocument.AppliedEdit applied = logged(path, open(path).replace(baseVersion, content));
+                    if (applied != null) memoryCache.reweigh(path);
+                    return applied;
+                } catch (LiveDocument.RetiredException e) {
+                    // See applyEdit
+                }
+            }
+        });
+    }
+
+    public LiveDocument.Snapshot loadFile(String requestedPath) {
+        long start = System.nanoTime();
+        try {
+            return snapshotOf(normalize(requestedPath));
+        } finally {
+            metrics.recordFileLoad(System.nanoTime() - start);
+        }
+    }
+
+    private LiveDocument.Snapshot snapshotOf(String path) {
+        Path targetPath = resolve(path);
+        if (targetPath == null) return new LiveDocument.Snapshot("// Security Violation", 0);
+        if (memoryCache.peek(path) == null && !Files.exists(targetPath)) return new LiveDocument.Snapshot("", 0);
+        try {
+            return open(path).snapshot();
+        } catch (IllegalStateException e) {
+            e.printStackTrace();
+            return new LiveDocument.Snapshot("", 0);
+        }
+    }
+
+    public boolean exists(String requestedPath) {
+        String path = normalize(requestedPath);
+        Path targetPath = resolve(path);
+        return memoryCache.peek(path) != null || (targetPath != null && Files.exists(targetPath));
+    }
+
+    /**
+     * True if the file is over the large-file threshold on disk and not already live. Such
+     * files are read-only and served by {@link LargeFileService} instead of loaded.
+     */
+    public boolean isLarge(String requestedPath) {
+        String path = normalize(requestedPath);
+        return memoryCache.peek(path) == null && largeFiles.isLarge(resolve(path));
+    }
+
+    /** Live document for a path if it is loaded, without touching disk. */
+    public LiveDocument peek(String requestedPath) {
+        return memoryCache.peek(normalize(requestedPath));
+    }
+
+    /**
+     * Writes the current text of a loaded document to its file and marks that version
+     * persisted. Returns false if the document was unloaded or deleted in the meantime.
+     */
+    public boolean persist(String requestedPath) throws IOException {
+        String path = normalize(requestedPath);
+        try {
+            return sharedState.sequence(path, () -> {
+                LiveDocument doc = memoryCache.peek(path);
+                if (doc == null) return false;
+                synchronized (doc.ioLock) {
+                    if (memoryCache.peek(path) != doc) return false; // Deleted while we waited
+                    if (!catchUp(path, doc)) return false; // Others persisted past it long ago
+                    LiveDocument.Snapshot snapshot = doc.snapshot();
+                    try {
+                        snapshot(path, snapshot);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    doc.markPersisted(snapshot.version());
+                    sharedState.markPersisted(path, snapshot.version());
+                }
+                return true;
+            });
+        } catch (LiveDocument.RetiredException e) {
+            return false; // Evicted while catching up, so it was clean
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public void saveFileToDiskSync(String requestedPath, String content) {
+        String path = normalize(requestedPath);
+        if (resolve(path) == null) return;
+        // Skips reading a file that is about to be overwritten; shared copies must load it
+        // so the replace is logged against the content other nodes have
+        try {
+            if (!sharedState.isShared()) memoryCache.putIfAbsent(path, new LiveDocument("", persistedVersion(path)));
+            replaceContent(path, content);
+            persist(path);
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    // Version of the file on disk, so a document loaded again keeps counting upwards. Only
+    // clean documents leave the cache, so their journal has it; shared, the last any node persisted.
+    private long persistedVersion(String path) throws IOException {
+        return sharedState.isShared() ? sharedState.persistedVersion(path) : editJournal.lastVersion(path);
+    }
+
+    /** Deletes a file, or an empty directory. False if it is still there. */
+    public boolean delete(String requestedPath) {
+        String path = normalize(requestedPath);
+        Path targetPath = resolve(path);
+        if (targetPath == null) return false;
+        return sharedState.sequence(path, () -> {
+            LiveDocument doc = memoryCache.remove(path);
+            editJournal.forget(path); // First, so a crash in between cannot replay onto nothing
+            try {
+                if (doc == null) {
+                    Files.deleteIfExists(targetPath);
+                } else {
+                    synchronized (doc.ioLock) { Files.deleteIfExists(targetPath); }
+                }
+            } catch (IOException e) {
+                System.err.println("Could not delete " + path + ": " + e);
+                // Still on disk, so the open document stays, unsaved edits included
+                if (doc != null) memoryCache.putIfAbsent(path, doc);
+                return false;
+            }
+            sharedState.forget(path);
+            return true;
+        });
+    }
+
+    // Writes the file at this version. On a single node the journal is told first, so after
+    // a crash the file's version is known whether or not the rename happened, and is then
+    // compacted down to the edits the file does not contain yet.
+    private void snapshot(String path, LiveDocument.Snapshot snapshot) throws IOException {
+        if (sharedState.isShared()) {
+            writeAtomically(path, snapshot.content());
+            return;
+        }
+        long checksum = EditJournal.checksum(snapshot.content());
+        editJournal.beginSnapshot(path, snapshot.version(), checksum);
+        writeAtomically(path, snapshot.content());
+        editJournal.compact(path, snapshot.version(), checksum);
+    }
+
+    // --- RECOVERY ---
+    // Brings every journaled file up to its last acknowledged edit, and makes versions
+    // continue where they left off. Clustered nodes recover from the shared log instead.
+    private void recover() {
+        if (sharedState.isShared()) return;
+        try {
+            for (String path : editJournal.paths()) {
+                try {
+                    recover(path);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Could not recover " + path + " from its journal: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not list journals: " + e.getMessage());
+        }
+    }
+
+    private void recover(String path) throws IOException {
+        Path targetPath = resolve(path);
+        if (targetPath == null) {
+            editJournal.forget(path);
+            return;
+        }
+        EditJournal.Replay replay = editJournal.read(path);
+        String content = Files.exists(targetPath) ? Files.readString(targetPath) : null;
+        long checksum = EditJournal.checksum(content == null ? "" : content);
+        long version;
+        if (replay.snapshots().isEmpty()) {
+            // Never snapshotted: the edits apply to the file as it was before the first one
+            version = replay.edits().isEmpty() ? 0 : replay.edits().get(0).baseVersion();
+        } else {
+            EditJournal.SnapshotMark match = null;
+            for (EditJournal.SnapshotMark mark : replay.snapshots()) {
+                if (mark.checksum() == checksum) match = mark; // Latest match wins
+            }
+            if (match == null) {
+                if (content == null) { // Deleted outside the server
+                    editJournal.forget(path);
+                    return;
+                }
+                // Changed outside the server: it wins, and versions move on past the journal's
+                long last = replay.snapshots().get(replay.snapshots().size() - 1).version();
+                if (!replay.edits().isEmpty()) last = Math.max(last, replay.edits().get(replay.edits().size() - 1).version());
+                editJournal.compact(path, last + 1, checksum);
+                return;
+            }
+            version = match.version();
+        }
+        LiveDocument doc = new LiveDocument(content == null ? "" : content, version);
+        int replayed = 0;
+        for (LiveDocument.AppliedEdit edit : replay.edits()) {
+            if (edit.version() <= version) continue;
+            long before = doc.getVersion();
+            try {
+                if (!doc.catchUp(edit)) break;
+            } catch (IllegalArgumentException e) {
+                break;
+            }
+            if (doc.getVersion() > before) replayed++;
+        }
+        if (replayed > 0) {
+            snapshot(path, doc.snapshot());
+            editJournal.recordRecovery(replayed);
+        } else {
+            editJournal.compact(path, version, checksum);
+        }
+    }
+
+    // Temp file + rename so a crash mid-write never leaves a truncated file behind
+    private void writeAtomically(String path, String content) throws IOException {
+        Path targetPath = resolve(path);
+        if (targetPath == null) return;
+        long start = System.nanoTime();
+        Files.createDirectories(targetPath.getParent());
+        Path tmp = Files.createTempFile(targetPath.getParent(), "." + targetPath.getFileName(), ".tmp");
+        try {
+            Files.writeString(tmp, content);
+            try {
+                Files.move(tmp, targetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, targetPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+            metrics.recordDiskWrite(System.nanoTime() - start);
+        }
+    }
+}
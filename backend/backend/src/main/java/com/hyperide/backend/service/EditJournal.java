@@ -0,0 +1,305 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.model.EditOperation;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Per-file append-only journal of applied edits, so an edit is durable as soon as a small
+ * record is appended rather than when the whole file is next rewritten. Each record
+ * carries its version and a checksum; a torn record at the tail is cut off on read.
+ *
+ * Before the file itself is rewritten, a SNAPSHOT record with the new content's version
+ * and checksum is appended. After a crash the file's version is the snapshot whose
+ * checksum it matches, and the edits after it are replayed. Once the rewrite is done the
+ * journal is compacted down to that snapshot and any edits newer than it.
+ */
+@Service
+public class EditJournal implements MeterBinder {
+
+    public record SnapshotMark(long version, long checksum) {}
+
+    /** What a journal holds, in the order written; edits sorted by version. */
+    public record Replay(List<SnapshotMark> snapshots, List<LiveDocument.AppliedEdit> edits) {}
+
+    private static final String SUFFIX = ".journal";
+    private static final byte SNAPSHOT = 1;
+    private static final byte EDIT = 2;
+
+    @Value("${hyperide.journal.dir:hyperide_data/journal}")
+    private String dir;
+
+    // Force every append to the device, not just the OS; survives power loss, costs an fsync per edit
+    @Value("${hyperide.journal.fsync:false}")
+    private boolean fsync;
+
+    private Path root;
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    private final AtomicLong appends = new AtomicLong();
+    private final AtomicLong appendedBytes = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong recoveredFiles = new AtomicLong();
+    private final AtomicLong replayedEdits = new AtomicLong();
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(dir).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+    }
+
+    public static long checksum(String content) {
+        CRC32C crc = new CRC32C();
+        crc.update(content.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    /** Workspace paths that have a journal. */
+    public List<String> paths() throws IOException {
+        try (Stream<Path> walk = Files.walk(root)) {
+            return walk.filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+                    .map(p -> {
+                        String relative = root.relativize(p).toString().replace("\\", "/");
+                        return relative.substring(0, relative.length() - SUFFIX.length());
+                    })
+                    .toList();
+        }
+    }
+
+    public void append(String path, LiveDocument.AppliedEdit edit) {
+        try {
+            write(path, encodeEdit(edit));
+        } catch (IOException e) {
+            // Still in memory and written by the next snapshot; only crash safety is lost
+            failures.incrementAndGet();
+            System.err.println("Journal append failed for " + path + ": " + e.getMessage());
+        }
+    }
+
+    /** Records the version and checksum of content about to be written to the file. */
+    public void beginSnapshot(String path, long version, long checksum) throws IOException {
+        write(path, encodeSnapshot(version, checksum));
+    }
+
+    /** Rewrites the journal as the given snapshot plus the edits made after it. */
+    public void compact(String path, long version, long checksum) throws IOException {
+        withLock(path, () -> {
+            Path file = file(path);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(encodeSnapshot(version, checksum));
+            if (Files.exists(file)) {
+                for (LiveDocument.AppliedEdit edit : readLocked(path).edits()) {
+                    if (edit.version() > version) out.write(encodeEdit(edit));
+                }
+            }
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), "." + file.getFileName(), ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    channel.write(ByteBuffer.wrap(out.toByteArray()));
+                    if (fsync) channel.force(false);
+                }
+                try {
+                    Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            compactions.incrementAndGet();
+            return null;
+        });
+    }
+
+    /** Reads a journal up to the first torn or corrupt record, which is cut off. */
+    public Replay read(String path) throws IOException {
+        return withLock(path, () -> readLocked(path));
+    }
+
+    private Replay readLocked(String path) throws IOException {
+        Path file = file(path);
+        List<SnapshotMark> snapshots = new ArrayList<>();
+        List<LiveDocument.AppliedEdit> edits = new ArrayList<>();
+        if (Files.notExists(file)) return new Replay(snapshots, edits);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int good = 0;
+        try {
+            while (buffer.remaining() >= 8) {
+                int length = buffer.getInt();
+                long crc = Integer.toUnsignedLong(buffer.getInt());
+                if (length <= 0 || length > buffer.remaining()) break;
+                CRC32C check = new CRC32C();
+                check.update(bytes, buffer.position(), length);
+                if (check.getValue() != crc) break;
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, buffer.position(), length));
+                byte type = in.readByte();
+                if (type == SNAPSHOT) snapshots.add(new SnapshotMark(in.readLong(), in.readLong()));
+                else if (type == EDIT) edits.add(decodeEdit(in));
+                else break;
+                buffer.position(buffer.position() + length);
+                good = buffer.position();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Unreadable record: treat like a torn one
+        }
+        if (good < bytes.length) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(good);
+            }
+        }
+        edits.sort(Comparator.comparingLong(LiveDocument.AppliedEdit::version));
+        return new Replay(snapshots, edits);
+    }
+
+    /** Latest version a journal records, snapshot or edit; 0 without one. */
+    public long lastVersion(String path) throws IOException {
+        Replay replay = read(path);
+        long last = 0;
+        for (SnapshotMark mark : replay.snapshots()) last = Math.max(last, mark.version());
+        if (!replay.edits().isEmpty()) last = Math.max(last, replay.edits().get(replay.edits().size() - 1).version());
+        return last;
+    }
+
+    public void forget(String path) {
+        try {
+            withLock(path, () -> Files.deleteIfExists(file(path)));
+        } catch (IOException e) {
+            System.err.println("Could not delete journal of " + path + ": " + e.getMessage());
+        }
+    }
+
+    void recordRecovery(int edits) {
+        recoveredFiles.incrementAndGet();
+        replayedEdits.addAndGet(edits);
+    }
+
+    // --- RECORDS ---
+    private void write(String path, byte[] record) throws IOException {
+        withLock(path, () -> {
+            Path file = file(path);
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                channel.write(ByteBuffer.wrap(record));
+                if (fsync) channel.force(false);
+            }
+            appends.incrementAndGet();
+            appendedBytes.addAndGet(record.length);
+            return null;
+        });
+    }
+
+    private static byte[] encodeSnapshot(long version, long checksum) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(SNAPSHOT);
+        out.writeLong(version);
+        out.writeLong(checksum);
+        return frame(body.toByteArray());
+    }
+
+    private static byte[] encodeEdit(LiveDocument.AppliedEdit edit) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(EDIT);
+        out.writeLong(edit.baseVersion());
+        out.writeLong(edit.version());
+        out.writeInt(edit.ops().size());
+        for (EditOperation op : edit.ops()) {
+            boolean insert = EditOperation.INSERT.equals(op.getType());
+            out.writeBoolean(insert);
+            out.writeInt(op.getPosition());
+            if (insert) {
+                byte[] text = op.getText().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(text.length);
+                out.write(text);
+            } else {
+                out.writeInt(op.getLength());
+            }
+        }
+        return frame(body.toByteArray());
+    }
+
+    private static LiveDocument.AppliedEdit decodeEdit(DataInputStream in) throws IOException {
+        long base = in.readLong();
+        long version = in.readLong();
+        List<EditOperation> ops = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            boolean insert = in.readBoolean();
+            int position = in.readInt();
+            if (insert) {
+                byte[] text = new byte[in.readInt()];
+                in.readFully(text);
+                ops.add(EditOperation.insert(position, new String(text, StandardCharsets.UTF_8)));
+            } else {
+                ops.add(EditOperation.delete(position, in.readInt()));
+            }
+        }
+        return new LiveDocument.AppliedEdit(base, version, ops);
+    }
+
+    // Length and CRC32C of the body, so a torn or corrupt record is recognised
+    private static byte[] frame(byte[] body) {
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        return ByteBuffer.allocate(8 + body.length).putInt(body.length).putInt((int) crc.getValue()).put(body).array();
+    }
+
+    private Path file(String path) {
+        Path file = root.resolve(path + SUFFIX).normalize();
+        if (!file.startsWith(root)) throw new IllegalArgumentException("Bad path: " + path);
+        return file;
+    }
+
+    private interface JournalIo<T> {
+        T run() throws IOException;
+    }
+
+    // A path's lock is only in the map while someone holds or waits for it, so the map stays
+    // as small as the number of journals in use. One taken just before its holder dropped it
+    // is stale once acquired; the current one is taken instead.
+    private <T> T withLock(String path, JournalIo<T> io) throws IOException {
+        while (true) {
+            Object lock = locks.computeIfAbsent(path, k -> new Object());
+            synchronized (lock) {
+                if (locks.get(path) != lock) continue;
+                try {
+                    return io.run();
+                } finally {
+                    locks.remove(path, lock);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        counter(registry, "hyperide.journal.appends", "Edits appended to the journal", appends);
+        counter(registry, "hyperide.journal.appended.bytes", "Bytes appended to the journal", appendedBytes);
+        counter(registry, "hyperide.journal.compactions", "Journals cut back to the edits after a snapshot", compactions);
+        counter(registry, "hyperide.journal.failures", "Journal writes that failed", failures);
+        counter(registry, "hyperide.journal.recovered.files", "Files replayed from the journal at startup", recoveredFiles);
+        counter(registry, "hyperide.journal.replayed.edits", "Edits replayed from the journal at startup", replayedEdits);
+    }
+
+    private static void counter(MeterRegistry registry, String name, String description, AtomicLong count) {
+        FunctionCounter.builder(name, count, AtomicLong::get).description(description).register(registry);
+    }
+}
@@ -0,0 +1,99 @@
+package com.hyperide.backend.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs all work on a file one task at a time, in arrival order, on a single-threaded lane
+ * chosen by hashing the path. Different files spread over the lanes and proceed in
+ * parallel with no shared lock. Because a file's updates are also broadcast from its
+ * lane, every client sees that file's versions in order. A lane queues a bounded number of
+ * tasks; beyond that new ones are refused, so a flood of edits cannot grow the heap without
+ * limit, and the sender is told to try again.
+ */
+@Component
+public class EditSequencer implements MeterBinder {
+
+    @Value("${hyperide.edit.lanes:0}")
+    private int laneCount;
+
+    @Value("${hyperide.edit.lane-capacity:1000}")
+    private int laneCapacity;
+
+    private ThreadPoolExecutor[] lanes;
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        if (laneCount <= 0) laneCount = Runtime.getRuntime().availableProcessors();
+        lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            String name = "edit-lane-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(laneCapacity), r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor lane : lanes) lane.shutdown();
+        for (ThreadPoolExecutor lane : lanes) lane.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queues a task behind everything already queued for the same path. Throws
+     * RejectedExecutionException, leaving the task unqueued, if the lane is full.
+     */
+    public void submit(String path, Runnable task) {
+        ThreadPoolExecutor lane = lanes[Math.floorMod(DocumentService.normalize(path).hashCode(), lanes.length)];
+        try {
+            lane.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace(); // Keep the lane alive for the next edit
+                } finally {
+                    processed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.edit.queued", this, EditSequencer::queued)
+                .description("Edits waiting on their file's lane")
+                .register(registry);
+        FunctionCounter.builder("hyperide.edit.lane.tasks", processed, LongAdder::sum)
+                .description("Tasks run on the edit lanes")
+                .register(registry);
+        FunctionCounter.builder("hyperide.edit.lane.rejected", rejected, LongAdder::sum)
+                .description("Tasks refused because their lane was full")
+                .register(registry);
+    }
+
+    private int queued() {
+        int queued = 0;
+        for (ThreadPoolExecutor lane : lanes) queued += lane.getQueue().size();
+        return queued;
+    }
+}
@@ -0,0 +1,202 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.model.FileEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Sorted in-memory index of every file under STORAGE_ROOT. Built once at startup and
+ * kept current by the create/delete handlers and a WatchService for changes made
+ * outside the app. Every change is announced on /topic/files as a {@link FileEvent}.
+ */
+@Service
+public class FileIndexService {
+
+    @Autowired private SimpMessagingTemplate messagingTemplate;
+
+    private final NavigableSet<String> paths = new ConcurrentSkipListSet<>();
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+    private final List<BiConsumer<String, String>> listeners = new CopyOnWriteArrayList<>();
+    private WatchService watcher;
+    private Thread watcherThread;
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path root = DocumentService.STORAGE_ROOT;
+        Files.createDirectories(root);
+        watcher = root.getFileSystem().newWatchService();
+        // Register before scanning so nothing created in between is missed
+        scan(root, paths::add);
+        watcherThread = new Thread(this::watchLoop, "file-index-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        watcher.close();
+    }
+
+    /** Paths under {@code prefix} (all paths if empty), in sorted order. */
+    public Stream<String> list(String prefix) {
+        return range(prefix).stream();
+    }
+
+    /**
+     * Paths at or below {@code path} ("" for all) that start with {@code prefix}, except those
+     * at or below any of the excluded paths; used to list what a user can see, range by range.
+     */
+    public Stream<String> listTree(String path, List<String> excluded, String prefix) {
+        return tree(path, excluded, prefix).stream().flatMap(Collection::stream);
+    }
+
+    public int countTree(String path, List<String> excluded, String prefix) {
+        return tree(path, excluded, prefix).stream().mapToInt(Collection::size).sum();
+    }
+
+    public int count(String prefix) {
+        return range(prefix).size();
+    }
+
+    public boolean contains(String path) {
+        return paths.contains(DocumentService.normalize(path));
+    }
+
+    public void add(String path) {
+        path = DocumentService.normalize(path);
+        if (paths.add(path)) publish("ADDED", path);
+    }
+
+    /** Removes a file, or everything below it if it was a directory. */
+    public void remove(String path) {
+        path = DocumentService.normalize(path);
+        if (paths.remove(path)) publish("REMOVED", path);
+        for (String child : List.copyOf(range(path + "/"))) {
+            if (paths.remove(child)) publish("REMOVED", child);
+        }
+    }
+
+    /** Called with the event type and path of every change announced on /topic/files. */
+    public void addListener(BiConsumer<String, String> listener) {
+        listeners.add(listener);
+    }
+
+    // Sorted pieces of the tree: the path itself if it is a file, then the ranges between exclusions
+    private List<Collection<String>> tree(String path, List<String> excluded, String prefix) {
+        if (prefix == null) prefix = "";
+        List<Collection<String>> parts = new ArrayList<>();
+        if (!path.isEmpty() && path.startsWith(prefix) && paths.contains(path)) parts.add(List.of(path));
+        String dir = path.isEmpty() ? "" : path + "/";
+        String from;
+        if (prefix.startsWith(dir)) from = prefix;
+        else if (dir.startsWith(prefix)) from = dir;
+        else return parts;
+        NavigableSet<String> rest = range(from);
+        String skipped = null;
+        for (String skip : new TreeSet<>(excluded.stream().map(e -> e + "/").toList())) {
+            if (from.startsWith(skip)) return parts;
+            if (!skip.startsWith(from) || (skipped != null && skip.startsWith(skipped))) continue;
+            parts.add(rest.headSet(skip, false));
+            rest = rest.tailSet(successor(skip), true);
+            skipped = skip;
+        }
+        parts.add(rest);
+        return parts;
+    }
+
+    private NavigableSet<String> range(String prefix) {
+        if (prefix == null || prefix.isEmpty()) return paths;
+        return paths.subSet(prefix, true, successor(prefix), false);
+    }
+
+    // Smallest string greater than every string starting with prefix
+    private static String successor(String prefix) {
+        return prefix.substring(0, prefix.length() - 1) + (char) (prefix.charAt(prefix.length() - 1) + 1);
+    }
+
+    private void publish(String type, String path) {
+        messagingTemplate.convertAndSend("/topic/files", new FileEvent(type, path));
+        for (BiConsumer<String, String> listener : listeners) listener.accept(type, path);
+    }
+
+    // --- WATCH SERVICE ---
+    private void scan(Path dir, Consumer<String> found) throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) walk::iterator) {
+                if (Files.isDirectory(p)) register(p);
+                else if (Files.isRegularFile(p) && !isTempFile(p)) found.accept(relative(p));
+            }
+        }
+    }
+
+    private void register(Path dir) throws IOException {
+        WatchKey key = dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE);
+        synchronized (watchedDirs) { watchedDirs.put(key, dir); }
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir;
+            synchronized (watchedDirs) { dir = watchedDirs.get(key); }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                try {
+                    if (event.kind() == OVERFLOW) {
+                        rebuild();
+                    } else if (dir != null) {
+                        Path child = dir.resolve((Path) event.context());
+                        if (event.kind() == ENTRY_CREATE) {
+                            if (Files.isDirectory(child)) scan(child, this::add);
+                            else if (!isTempFile(child)) add(relative(child));
+                        } else if (event.kind() == ENTRY_DELETE) {
+                            remove(relative(child));
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("File index watcher: " + e.getMessage());
+                }
+            }
+            if (!key.reset()) {
+                synchronized (watchedDirs) { watchedDirs.remove(key); }
+            }
+        }
+    }
+
+    // Events were dropped: rescan, then apply and announce only the differences, so
+    // listings made meanwhile still see every file
+    private void rebuild() throws IOException {
+        Set<String> found = new HashSet<>();
+        scan(DocumentService.STORAGE_ROOT, found::add);
+        for (String p : paths) if (!found.contains(p) && paths.remove(p)) publish("REMOVED", p);
+        for (String p : found) add(p);
+    }
+
+    private static String relative(Path p) {
+        return DocumentService.STORAGE_ROOT.relativize(p).toString().replace("\\", "/");
+    }
+
+    // Write-behind temp files (see DocumentService.writeAtomically) are never listed
+    private static boolean isTempFile(Path p) {
+        String name = p.getFileName().toString();
+        return name.startsWith(".") && name.endsWith(".tmp");
+    }
+}
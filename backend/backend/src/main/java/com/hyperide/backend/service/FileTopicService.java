@@ -0,0 +1,133 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.config.HyperideMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-file update topics, /topic/files/{path}/updates, so an edit reaches only the
+ * sessions viewing that file instead of every connected client. Subscriptions are
+ * tracked from the STOMP session events, which also tells us who is viewing what. Answers
+ * only the sender needs go to its session alone, on /user/topic/edits.
+ */
+@Service
+public class FileTopicService implements MeterBinder {
+
+    private static final String PREFIX = "/topic/files/";
+    private static final String SUFFIX = "/updates";
+    private static final String REPLIES = "/topic/edits";
+
+    @Autowired private SimpMessagingTemplate messagingTemplate;
+    @Autowired private HyperideMetrics metrics;
+
+    // path -> viewing sessions, and session -> (subscription id -> path) to undo it
+    private final Map<String, Set<String>> viewers = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+
+    private final LongAdder broadcastDeliveries = new LongAdder();
+
+    public static String updatesDestination(String path) {
+        return PREFIX + DocumentService.normalize(path) + SUFFIX;
+    }
+
+    /** Sends to the file's subscribers and records how many that was. */
+    public void publishUpdate(String path, Object payload) {
+        path = DocumentService.normalize(path);
+        Set<String> subscribers = viewers.get(path);
+        int fanOut = subscribers == null ? 0 : subscribers.size();
+        metrics.recordFanOut(fanOut);
+        broadcastDeliveries.add(sessions.size()); // What the old global topic would have cost
+        messagingTemplate.convertAndSend(updatesDestination(path), payload);
+    }
+
+    /** Sends to one session's /user/topic/edits, whoever its user is, and to no other session. */
+    public void reply(String sessionId, Object payload) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(sessionId);
+        headers.setLeaveMutable(true);
+        // Addressed by session id as the user name, which the resolver takes as that session only
+        messagingTemplate.convertAndSendToUser(sessionId, REPLIES, payload, headers.getMessageHeaders());
+    }
+
+    /** Number of sessions currently subscribed to a file's updates. */
+    public int viewerCount(String path) {
+        Set<String> subscribers = viewers.get(DocumentService.normalize(path));
+        return subscribers == null ? 0 : subscribers.size();
+    }
+
+    // --- SESSION EVENTS ---
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        sessions.putIfAbsent(StompHeaderAccessor.wrap(event.getMessage()).getSessionId(), new ConcurrentHashMap<>());
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor headers = StompHeaderAccessor.wrap(event.getMessage());
+        String path = pathOf(headers.getDestination());
+        if (path == null) return;
+        sessions.computeIfAbsent(headers.getSessionId(), k -> new ConcurrentHashMap<>())
+                .put(headers.getSubscriptionId(), path);
+        viewers.compute(path, (k, set) -> {
+            if (set == null) set = ConcurrentHashMap.newKeySet();
+            set.add(headers.getSessionId());
+            return set;
+        });
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor headers = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = sessions.get(headers.getSessionId());
+        if (subscriptions == null) return;
+        String path = subscriptions.remove(headers.getSubscriptionId());
+        if (path != null && !subscriptions.containsValue(path)) removeViewer(path, headers.getSessionId());
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessions.remove(event.getSessionId());
+        if (subscriptions == null) return;
+        for (String path : subscriptions.values()) removeViewer(path, event.getSessionId());
+    }
+
+    private void removeViewer(String path, String sessionId) {
+        viewers.computeIfPresent(path, (k, set) -> {
+            set.remove(sessionId);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static String pathOf(String destination) {
+        if (destination == null || !destination.startsWith(PREFIX) || !destination.endsWith(SUFFIX)) return null;
+        if (destination.length() <= PREFIX.length() + SUFFIX.length()) return null;
+        return destination.substring(PREFIX.length(), destination.length() - SUFFIX.length());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.files.viewed", viewers, Map::size)
+                .description("Files at least one session is subscribed to")
+                .register(registry);
+        FunctionCounter.builder("hyperide.files.broadcast.deliveries", broadcastDeliveries, LongAdder::sum)
+                .description("Deliveries the updates would have cost on one global topic")
+                .register(registry);
+    }
+}
@@ -0,0 +1,122 @@
+package com.hyperide.backend.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Files too big to hold as live documents: above the threshold a file is not decoded
+ * into the document cache but read straight from disk, either streamed whole (with HTTP
+ * Range support) or a page at a time, so opening a 50 MB log costs a page-sized buffer
+ * rather than the whole file on the heap. Such files are read-only.
+ */
+@Service
+public class LargeFileService implements MeterBinder {
+
+    /** A slice of a file's bytes decoded as UTF-8, ending at a line break where possible. */
+    public record Page(long offset, long nextOffset, long fileSize, String text) {}
+
+    @Value("${hyperide.files.large-threshold-bytes:4194304}")
+    private long thresholdBytes;
+
+    @Value("${hyperide.files.page-bytes:262144}")
+    private int pageBytes;
+
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder pageBytesRead = new LongAdder();
+    private final LongAdder streams = new LongAdder();
+    private final LongAdder rangeRequests = new LongAdder();
+    private final LongAdder editsRejected = new LongAdder();
+
+    /** True if the file exists on disk and is over the threshold. */
+    public boolean isLarge(Path file) {
+        try {
+            return file != null && Files.size(file) > thresholdBytes;
+        } catch (IOException e) {
+            return false; // Missing: a new file starts empty
+        }
+    }
+
+    /**
+     * Reads up to maxBytes (the configured page size if 0 or more than it) from offset. An
+     * offset inside a UTF-8 character moves forward to the next one; the page ends after
+     * its last line break unless it has none or reaches the end of the file, and otherwise
+     * at a character boundary. nextOffset is where the following page starts.
+     */
+    public Page page(Path file, long offset, int maxBytes) throws IOException {
+        int limit = maxBytes <= 0 ? pageBytes : Math.min(maxBytes, pageBytes);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = Math.min(Math.max(0, offset), size);
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(limit, size - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) break; // Shrunk since we sized it
+            }
+            byte[] bytes = buffer.array();
+            int from = 0;
+            while (from < buffer.position() && isContinuation(bytes[from])) from++;
+            int to = buffer.position();
+            if (start + to < size) {
+                int lineEnd = to;
+                while (lineEnd > from && bytes[lineEnd - 1] != '\n') lineEnd--;
+                if (lineEnd > from) {
+                    to = lineEnd;
+                } else {
+                    // One long line: leave out a last character the page only has part of
+                    int lead = to - 1;
+                    while (lead > from && isContinuation(bytes[lead])) lead--;
+                    if (lead + sequenceLength(bytes[lead]) > to) to = lead;
+                }
+                if (to == from) to = buffer.position(); // Page smaller than a character: always move on
+            }
+            pages.increment();
+            pageBytesRead.add(to - from);
+            return new Page(start + from, start + to, size, new String(bytes, from, to - from, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    // Bytes in the UTF-8 sequence a lead byte starts
+    private static int sequenceLength(byte b) {
+        if ((b & 0x80) == 0) return 1;
+        if ((b & 0xE0) == 0xC0) return 2;
+        if ((b & 0xF0) == 0xE0) return 3;
+        return 4;
+    }
+
+    /** Counts a whole-file or ranged read of a large file served to a client. */
+    public void recordStream(boolean ranged) {
+        (ranged ? rangeRequests : streams).increment();
+    }
+
+    public void recordRejectedEdit() {
+        editsRejected.increment();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        counter(registry, "hyperide.files.large.pages", "Pages served from large files", pages);
+        counter(registry, "hyperide.files.large.page.bytes", "Bytes read for pages of large files", pageBytesRead);
+        counter(registry, "hyperide.files.large.streams", "Large files streamed whole", streams);
+        counter(registry, "hyperide.files.large.ranges", "Range requests on large files", rangeRequests);
+        counter(registry, "hyperide.files.large.edits.rejected", "Edits refused because the file is large", editsRejected);
+    }
+
+    private static void counter(MeterRegistry registry, String name, String description, LongAdder count) {
+        FunctionCounter.builder(name, count, LongAdder::sum).description(description).register(registry);
+    }
+}
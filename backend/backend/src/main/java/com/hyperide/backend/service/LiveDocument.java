@@ -0,0 +1,173 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.model.EditOperation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * In-memory text of one open file plus a version counter that is bumped by every
+ * applied edit. A short history of applied edits is kept so that clients a few
+ * versions behind can still be rebased instead of being forced into a FULL resync.
+ */
+public class LiveDocument {
+
+    private static final int HISTORY_LIMIT = 256;
+    private static final int OBJECT_OVERHEAD = 128;
+
+    public record AppliedEdit(long baseVersion, long version, List<EditOperation> ops) {}
+
+    public record Snapshot(String content, long version) {}
+
+    private final StringBuilder text;
+    private long version;
+    private long persistedVersion;
+    private boolean retired;
+    private final Deque<AppliedEdit> history = new ArrayDeque<>();
+    private long historyChars;
+
+    /** Serialises disk writes and deletes of this document without blocking edits. */
+    final Object ioLock = new Object();
+
+    public LiveDocument(String content) {
+        this(content, 0);
+    }
+
+    /** A document reloaded from disk continues from the version it had when it was unloaded. */
+    public LiveDocument(String content, long version) {
+        this.text = new StringBuilder(content);
+        this.version = version;
+        this.persistedVersion = version;
+    }
+
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(text.toString(), version);
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized boolean isDirty() {
+        return persistedVersion != version;
+    }
+
+    public synchronized void markPersisted(long persisted) {
+        persistedVersion = Math.max(persistedVersion, persisted);
+    }
+
+    /** Approximate heap footprint in bytes: UTF-16 text plus retained history. */
+    public synchronized long weight() {
+        return 2L * (text.length() + historyChars) + OBJECT_OVERHEAD;
+    }
+
+    /**
+     * Called by the cache before evicting. Dirty documents refuse, which pins them until
+     * they have been persisted. Once retired, edits are refused so the caller reloads.
+     */
+    synchronized boolean retire() {
+        if (persistedVersion != version) return false;
+        retired = true;
+        return true;
+    }
+
+    /** Thrown when an edit reaches a document the cache has already evicted. */
+    static class RetiredException extends RuntimeException {
+        RetiredException() { super(null, null, false, false); }
+    }
+
+    /**
+     * Applies {@code ops} written against {@code baseVersion}. Returns null when the
+     * base version is no longer covered by the history and the client must resync.
+     *
+     * @throws IllegalArgumentException if an op falls outside the document
+     */
+    public synchronized AppliedEdit apply(long baseVersion, List<EditOperation> ops) {
+        if (retired) throw new RetiredException();
+        if (baseVersion > version || baseVersion < 0) return null;
+        if (baseVersion < version) {
+            if (history.isEmpty() || history.peekFirst().baseVersion() > baseVersion) return null;
+            List<EditOperation> missed = new ArrayList<>();
+            for (AppliedEdit edit : history) {
+                if (edit.baseVersion() >= baseVersion) missed.addAll(edit.ops());
+            }
+            ops = OperationTransform.transform(ops, missed);
+        } else {
+            ops = OperationTransform.transform(ops, List.of());
+        }
+        validate(ops);
+        for (EditOperation op : ops) {
+            if (EditOperation.INSERT.equals(op.getType())) text.insert(op.getPosition(), op.getText());
+            else text.delete(op.getPosition(), op.getPosition() + op.getLength());
+        }
+        return record(ops);
+    }
+
+    /** Replaces the whole text; recorded as a delete+insert so later rebases still work. */
+    public synchronized AppliedEdit replace(String content) {
+        return replace(version, content);
+    }
+
+    /**
+     * Replaces the whole text if the writer saw the current version. Returns null for a
+     * stale write: a full replace cannot be rebased, it would silently undo newer edits.
+     */
+    public synchronized AppliedEdit replace(long baseVersion, String content) {
+        if (retired) throw new RetiredException();
+        if (baseVersion != version) return null;
+        List<EditOperation> ops = new ArrayList<>();
+        if (text.length() > 0) ops.add(EditOperation.delete(0, text.length()));
+        if (!content.isEmpty()) ops.add(EditOperation.insert(0, content));
+        text.setLength(0);
+        text.append(content);
+        return record(ops);
+    }
+
+    /**
+     * Replays an edit another node already applied and logged, leaving this copy as
+     * clean as it was: the node that made the edit is the one that persists it. Returns
+     * false if the edit does not follow on from this version, so the copy must reload.
+     */
+    public synchronized boolean catchUp(AppliedEdit edit) {
+        if (retired) throw new RetiredException();
+        if (edit.version() <= version) return true;
+        if (edit.baseVersion() != version) return false;
+        validate(edit.ops());
+        for (EditOperation op : edit.ops()) {
+            if (EditOperation.INSERT.equals(op.getType())) text.insert(op.getPosition(), op.getText());
+            else text.delete(op.getPosition(), op.getPosition() + op.getLength());
+        }
+        boolean clean = persistedVersion == version;
+        record(edit.ops());
+        if (clean) persistedVersion = version;
+        return true;
+    }
+
+    private void validate(List<EditOperation> ops) {
+        int length = text.length();
+        for (EditOperation op : ops) {
+            boolean insert = EditOperation.INSERT.equals(op.getType());
+            int end = op.getPosition() + (insert ? 0 : op.getLength());
+            if (op.getPosition() < 0 || end > length) {
+                throw new IllegalArgumentException("Edit out of range: " + op);
+            }
+            length += insert ? op.getText().length() : -op.getLength();
+        }
+    }
+
+    private AppliedEdit record(List<EditOperation> ops) {
+        AppliedEdit applied = new AppliedEdit(version, ++version, List.copyOf(ops));
+        history.addLast(applied);
+        historyChars += chars(applied);
+        if (history.size() > HISTORY_LIMIT) historyChars -= chars(history.removeFirst());
+        return applied;
+    }
+
+    private static long chars(AppliedEdit edit) {
+        long n = 0;
+        for (EditOperation op : edit.ops()) if (op.getText() != null) n += op.getText().length();
+        return n;
+    }
+}
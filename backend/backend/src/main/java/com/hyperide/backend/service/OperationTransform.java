@@ -0,0 +1,96 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.model.EditOperation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rebases INSERT/DELETE operations so that two edit sequences written against the
+ * same document version can be applied one after the other.
+ *
+ * <p>{@code transform(incoming, applied)} returns the incoming ops rewritten to apply
+ * on top of {@code applied}. When both sides insert at the same offset the already
+ * applied text stays first.
+ */
+public final class OperationTransform {
+
+    private OperationTransform() {}
+
+    public static List<EditOperation> transform(List<EditOperation> incoming, List<EditOperation> applied) {
+        return xform(clean(incoming), clean(applied))[0];
+    }
+
+    // Returns {a', b'} such that S + b + a' == S + a + b'
+    private static List<EditOperation>[] xform(List<EditOperation> a, List<EditOperation> b) {
+        if (a.isEmpty() || b.isEmpty()) return pair(a, b);
+        if (a.size() == 1 && b.size() == 1) return single(a.get(0), b.get(0));
+        if (a.size() > 1) {
+            List<EditOperation>[] head = xform(a.subList(0, 1), b);
+            List<EditOperation>[] tail = xform(a.subList(1, a.size()), head[1]);
+            return pair(concat(head[0], tail[0]), tail[1]);
+        }
+        List<EditOperation>[] head = xform(a, b.subList(0, 1));
+        List<EditOperation>[] tail = xform(head[0], b.subList(1, b.size()));
+        return pair(tail[0], concat(head[1], tail[1]));
+    }
+
+    private static List<EditOperation>[] single(EditOperation a, EditOperation b) {
+        boolean aIns = EditOperation.INSERT.equals(a.getType());
+        boolean bIns = EditOperation.INSERT.equals(b.getType());
+        int pa = a.getPosition(), pb = b.getPosition();
+
+        if (aIns && bIns) {
+            if (pa < pb) return pair(List.of(a), List.of(EditOperation.insert(pb + a.getText().length(), b.getText())));
+            return pair(List.of(EditOperation.insert(pa + b.getText().length(), a.getText())), List.of(b));
+        }
+        if (aIns) {
+            int endB = pb + b.getLength();
+            if (pa <= pb) return pair(List.of(a), List.of(EditOperation.delete(pb + a.getText().length(), b.getLength())));
+            if (pa >= endB) return pair(List.of(EditOperation.insert(pa - b.getLength(), a.getText())), List.of(b));
+            // Insert landed inside the deleted range: keep the text, delete around it
+            return pair(List.of(EditOperation.insert(pb, a.getText())), List.of(
+                    EditOperation.delete(pb, pa - pb),
+                    EditOperation.delete(pb + a.getText().length(), endB - pa)));
+        }
+        if (bIns) {
+            List<EditOperation>[] mirrored = single(b, a);
+            return pair(mirrored[1], mirrored[0]);
+        }
+        int endA = pa + a.getLength(), endB = pb + b.getLength();
+        int overlap = Math.max(0, Math.min(endA, endB) - Math.max(pa, pb));
+        return pair(
+                nonEmpty(EditOperation.delete(shift(pa, pb, endB), a.getLength() - overlap)),
+                nonEmpty(EditOperation.delete(shift(pb, pa, endA), b.getLength() - overlap)));
+    }
+
+    // Where offset x lands once [start, end) has been deleted
+    private static int shift(int x, int start, int end) {
+        if (x <= start) return x;
+        return x >= end ? x - (end - start) : start;
+    }
+
+    private static List<EditOperation> clean(List<EditOperation> ops) {
+        List<EditOperation> out = new ArrayList<>();
+        for (EditOperation op : ops) {
+            if (EditOperation.INSERT.equals(op.getType()) && op.getText() != null && !op.getText().isEmpty()) out.add(op);
+            else if (EditOperation.DELETE.equals(op.getType()) && op.getLength() > 0) out.add(op);
+        }
+        return out;
+    }
+
+    private static List<EditOperation> nonEmpty(EditOperation delete) {
+        return delete.getLength() > 0 ? List.of(delete) : List.of();
+    }
+
+    private static List<EditOperation> concat(List<EditOperation> x, List<EditOperation> y) {
+        List<EditOperation> out = new ArrayList<>(x);
+        out.addAll(y);
+        return out;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<EditOperation>[] pair(List<EditOperation> a, List<EditOperation> b) {
+        return new List[] { a, b };
+    }
+}
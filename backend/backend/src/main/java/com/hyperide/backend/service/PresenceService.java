@@ -0,0 +1,177 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.cluster.SharedState;
+import com.hyperide.backend.model.PresenceEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Who is looking at which file. Clients send heartbeats; a user whose heartbeats stop
+ * for the TTL, or whose session disconnects, is dropped. Instead of the whole map, only
+ * JOIN/MOVE/LEAVE changes go out on /topic/presence, batched per window with repeated
+ * changes to one user collapsed, so traffic follows activity rather than user count.
+ * What this node has published is mirrored to {@link SharedState}, so the snapshot for
+ * new clients includes users connected to other nodes.
+ */
+@Service
+public class PresenceService implements MeterBinder {
+
+    private static final class Entry {
+        final String sessionId;
+        final String file;
+        volatile long lastSeen;
+
+        Entry(String sessionId, String file, long lastSeen) {
+            this.sessionId = sessionId;
+            this.file = file;
+            this.lastSeen = lastSeen;
+        }
+    }
+
+    @Autowired private SimpMessagingTemplate messagingTemplate;
+    @Autowired private SharedState sharedState;
+
+    @Value("${hyperide.presence.ttl-ms:45000}")
+    private long ttlMs;
+
+    @Value("${hyperide.presence.batch-ms:250}")
+    private long batchMs;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Users whose state may differ from what was last broadcast
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+    // This node's users as clients know them from the broadcasts so far
+    private final Map<String, String> published = new ConcurrentHashMap<>();
+
+    private final AtomicLong heartbeats = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong diffs = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "presence");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, batchMs, batchMs, TimeUnit.MILLISECONDS);
+        long sweepMs = Math.max(1000, ttlMs / 3);
+        scheduler.scheduleWithFixedDelay(this::expire, sweepMs, sweepMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public void heartbeat(String sessionId, String user, String file) {
+        if (user == null || user.isEmpty()) return;
+        if (file == null) file = "";
+        heartbeats.incrementAndGet();
+        long now = System.currentTimeMillis();
+        Entry previous = entries.get(user);
+        if (previous != null && Objects.equals(previous.file, file) && previous.sessionId.equals(sessionId)) {
+            previous.lastSeen = now; // Plain keep-alive: nothing to broadcast
+            return;
+        }
+        entries.put(user, new Entry(sessionId, file, now));
+        changed.add(user);
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        // A user's newer tab keeps them present when an older one closes
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (e.getValue().sessionId.equals(event.getSessionId()) && entries.remove(e.getKey(), e.getValue())) {
+                changed.add(e.getKey());
+            }
+        }
+    }
+
+    /** Current user -> file map across all nodes, consistent with the diffs broadcast so far. */
+    public Map<String, String> snapshot() {
+        return new TreeMap<>(sharedState.presence(ttlMs));
+    }
+
+    private void expire() {
+        // Keeps our users alive in the shared view; a crashed node's users age out of it
+        mirror(() -> sharedState.refreshPresence(published.keySet()));
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (e.getValue().lastSeen < cutoff && entries.remove(e.getKey(), e.getValue())) {
+                expired.incrementAndGet();
+                changed.add(e.getKey());
+            }
+        }
+    }
+
+    private void flush() {
+        if (changed.isEmpty()) return;
+        List<PresenceEvent> batch = new ArrayList<>();
+        for (Iterator<String> it = changed.iterator(); it.hasNext(); ) {
+            String user = it.next();
+            it.remove();
+            Entry entry = entries.get(user);
+            String before = published.get(user);
+            String now = entry == null ? null : entry.file;
+            if (Objects.equals(before, now)) continue; // Changed and changed back within the window
+            if (now == null) {
+                published.remove(user);
+                mirror(() -> sharedState.removePresence(user));
+                batch.add(new PresenceEvent("LEAVE", user, null));
+            } else {
+                published.put(user, now);
+                mirror(() -> sharedState.putPresence(user, now));
+                batch.add(new PresenceEvent(before == null ? "JOIN" : "MOVE", user, now));
+            }
+        }
+        if (batch.isEmpty()) return;
+        batches.incrementAndGet();
+        diffs.addAndGet(batch.size());
+        messagingTemplate.convertAndSend("/topic/presence", batch);
+    }
+
+    // A store outage must not kill the scheduled task; the next refresh or change repairs it
+    private static void mirror(Runnable update) {
+        try {
+            update.run();
+        } catch (RuntimeException e) {
+            System.err.println("Presence not shared: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.presence.users", entries, Map::size)
+                .description("Users present")
+                .register(registry);
+        counter(registry, "hyperide.presence.heartbeats", "Heartbeats received", heartbeats);
+        counter(registry, "hyperide.presence.batches", "Presence batches broadcast", batches);
+        counter(registry, "hyperide.presence.diffs", "Presence changes broadcast", diffs);
+        counter(registry, "hyperide.presence.expired", "Users dropped after their heartbeats stopped", expired);
+    }
+
+    private static void counter(MeterRegistry registry, String name, String description, AtomicLong count) {
+        FunctionCounter.builder(name, count, AtomicLong::get).description(description).register(registry);
+    }
+}
@@ -0,0 +1,344 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.config.HyperideMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.MalformedInputException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Full-text and symbol search over the workspace, backed by a {@link TrigramIndex}. The
+ * index is built in the background at startup and kept current from the edit path and
+ * the file index's create/delete events: changed paths are queued and re-read on the
+ * indexer thread after a short delay, so a burst of keystrokes costs one re-index. A
+ * query narrows the workspace to candidate files through the index and then checks the
+ * text of each, from the live document if it is loaded and from disk otherwise, without
+ * loading it into the document cache. Large files are not indexed. A regex query gets a
+ * time limit, since a pattern that backtracks badly could otherwise hold a request thread
+ * for as long as it likes.
+ */
+@Service
+public class SearchService implements MeterBinder {
+
+    public enum Kind { TEXT, SYMBOL }
+
+    /** A matching line, 1-based, cut to a readable length. */
+    public record Hit(int line, String text) {}
+
+    public record Result(String path, int score, int matches, List<Hit> lines) {}
+
+    /**
+     * One page of results, best first. total counts the files checked that match; when
+     * truncated, more files were candidates than a query checks and the query should be
+     * narrowed. indexing is true while the startup build is still running.
+     */
+    public record Response(String query, int total, boolean truncated, boolean indexing, List<Result> results) {}
+
+    private static final int MAX_LINE = 200;
+    private static final Set<String> NOT_METHODS = Set.of("if", "for", "while", "switch", "catch", "return", "new", "else", "try", "do", "synchronized");
+    private static final Pattern JAVA_TYPE = Pattern.compile("\\b(?:class|interface|enum|record)\\s+([A-Za-z_$][\\w$]*)");
+    private static final Pattern JAVA_METHOD = Pattern.compile("^\\s*(?:[\\w<>\\[\\],.?@]+\\s+)+([A-Za-z_$][\\w$]*)\\s*\\([^;]*$", Pattern.MULTILINE);
+    private static final Pattern PYTHON_DEF = Pattern.compile("^\\s*(?:def|class)\\s+([A-Za-z_]\\w*)", Pattern.MULTILINE);
+
+    @Autowired private DocumentService documentService;
+    @Autowired private FileIndexService fileIndexService;
+    @Autowired private LargeFileService largeFileService;
+    @Autowired private HyperideMetrics metrics;
+
+    @Value("${hyperide.search.index-delay-ms:1000}")
+    private long indexDelayMs;
+
+    @Value("${hyperide.search.max-candidates:2000}")
+    private int maxCandidates;
+
+    @Value("${hyperide.search.lines-per-file:3}")
+    private int linesPerFile;
+
+    @Value("${hyperide.search.regex-time-limit-ms:2000}")
+    private long regexTimeLimitMs;
+
+    private final TrigramIndex index = new TrigramIndex();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private volatile boolean building = true;
+    private ScheduledExecutorService indexer;
+
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final LongAdder candidatesChecked = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        indexer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "search-index");
+            t.setDaemon(true);
+            return t;
+        });
+        // Listening first, so files created while the build runs are queued rather than missed
+        fileIndexService.addListener((type, path) -> changed(path));
+        indexer.execute(this::build);
+        indexer.scheduleWithFixedDelay(this::drain, indexDelayMs, indexDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexer.shutdownNow();
+    }
+
+    /** Queues a path to be re-read into the index, or dropped from it if gone. */
+    public void changed(String path) {
+        pending.add(DocumentService.normalize(path));
+    }
+
+    private void build() {
+        long start = System.nanoTime();
+        fileIndexService.list("").forEach(this::reindex);
+        building = false;
+        System.out.println("Search index built: " + indexed.get() + " files in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    private void drain() {
+        for (Iterator<String> it = pending.iterator(); it.hasNext(); ) {
+            String path = it.next();
+            it.remove();
+            reindex(path);
+        }
+    }
+
+    private void reindex(String path) {
+        try {
+            String text = read(path);
+            if (text == null) {
+                index.remove(path);
+                return;
+            }
+            index.put(path, text, symbols(path, text));
+            indexed.incrementAndGet();
+        } catch (RuntimeException e) {
+            System.err.println("Search index: could not index " + path + ": " + e.getMessage());
+        }
+    }
+
+    // Current text of a file without loading it as a live document; null if missing, large or not text
+    private String read(String path) {
+        LiveDocument doc = documentService.peek(path);
+        if (doc != null) return doc.snapshot().content();
+        Path file = documentService.resolve(path);
+        if (file == null || !Files.isRegularFile(file) || largeFileService.isLarge(file)) {
+            if (file != null && Files.isRegularFile(file)) skipped.incrementAndGet();
+            return null;
+        }
+        try {
+            String text = Files.readString(file);
+            if (text.indexOf('\0') >= 0) {
+                skipped.incrementAndGet();
+                return null;
+            }
+            return text;
+        } catch (MalformedInputException e) {
+            skipped.incrementAndGet(); // Binary, or not UTF-8
+            return null;
+        } catch (CharacterCodingException e) {
+            skipped.incrementAndGet();
+            return null;
+        } catch (IOException e) {
+            return null; // Deleted since it was queued
+        }
+    }
+
+    // Declared type, method and function names, found by pattern rather than parsing
+    static List<String> symbols(String path, String text) {
+        Set<String> names = new LinkedHashSet<>();
+        if (path.endsWith(".py")) {
+            for (Matcher m = PYTHON_DEF.matcher(text); m.find(); ) names.add(m.group(1));
+        } else if (path.endsWith(".java")) {
+            for (Matcher m = JAVA_TYPE.matcher(text); m.find(); ) names.add(m.group(1));
+            for (Matcher m = JAVA_METHOD.matcher(text); m.find(); ) {
+                if (!NOT_METHODS.contains(m.group(1))) names.add(m.group(1));
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    // --- QUERIES ---
+    /**
+     * Searches the files accepted by visible for the query, as a substring or a regex.
+     * Throws IllegalArgumentException for an invalid regex, or one with no literal text of
+     * three characters or more that every match must contain, since such a query cannot use
+     * the index, or for a regex that runs past its time limit.
+     */
+    public Response search(String query, boolean regex, boolean caseSensitive, Kind kind,
+                           Predicate<String> visible, int page, int size) {
+        long start = System.nanoTime();
+        try {
+            List<String> literals = regex ? TrigramIndex.requiredLiterals(query) : List.of(query);
+            if (literals.isEmpty() || literals.get(0).length() < 3) {
+                throw new IllegalArgumentException(regex
+                        ? "Regex must contain at least 3 literal characters outside groups, classes and alternations."
+                        : "Query must be at least 3 characters.");
+            }
+            Pattern pattern;
+            try {
+                int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+                pattern = Pattern.compile(regex ? query : Pattern.quote(query), flags | Pattern.MULTILINE);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid regex: " + e.getDescription());
+            }
+            String needle = query.toLowerCase(Locale.ROOT);
+            TrigramIndex.Candidates candidates = index.candidates(literals, visible, maxCandidates);
+            candidatesChecked.add(candidates.files().size());
+
+            // One limit for the whole query, however many files it checks
+            long deadline = regex ? start + TimeUnit.MILLISECONDS.toNanos(regexTimeLimitMs) : Long.MAX_VALUE;
+            List<Result> results = new ArrayList<>();
+            try {
+                for (TrigramIndex.Candidate candidate : candidates.files()) {
+                    boolean declares = candidate.symbols().stream().anyMatch(s -> s.toLowerCase(Locale.ROOT).contains(needle));
+                    if (kind == Kind.SYMBOL && (regex || !declares)) continue;
+                    String text = read(candidate.path());
+                    if (text == null) continue;
+                    Result result = match(candidate, text, regex ? new Deadline(text, deadline) : text, pattern, regex ? null : needle);
+                    if (result != null) results.add(result);
+                }
+            } catch (Deadline.Passed e) {
+                timedOut.increment();
+                throw new IllegalArgumentException("Regex took longer than " + regexTimeLimitMs + " ms; make it more specific.");
+            }
+            results.sort(Comparator.comparingInt(Result::score).reversed().thenComparing(Result::path));
+            int from = Math.min(results.size(), page * size);
+            List<Result> paged = results.subList(from, Math.min(results.size(), from + size));
+            return new Response(query, results.size(), candidates.truncated(), building, List.copyOf(paged));
+        } finally {
+            metrics.recordSearch(System.nanoTime() - start);
+        }
+    }
+
+    // Scores a file: how often it matches (up to 20), plus 10 if the name contains the query
+    // and 25 if it declares a symbol of exactly that name (8 if one containing it)
+    private Result match(TrigramIndex.Candidate candidate, String text, CharSequence input, Pattern pattern, String needle) {
+        Matcher m = pattern.matcher(input);
+        int matches = 0;
+        List<Hit> lines = new ArrayList<>();
+        int line = 1;
+        int scanned = 0;
+        int lastLine = -1;
+        while (m.find()) {
+            matches++;
+            if (lines.size() >= linesPerFile) continue;
+            for (; scanned < m.start(); scanned++) if (text.charAt(scanned) == '\n') line++;
+            if (line == lastLine) continue;
+            lastLine = line;
+            int lineStart = text.lastIndexOf('\n', Math.max(0, m.start() - 1)) + 1;
+            if (m.start() == 0) lineStart = 0;
+            int lineEnd = text.indexOf('\n', m.start());
+            if (lineEnd < 0) lineEnd = text.length();
+            String shown = text.substring(lineStart, Math.min(lineEnd, lineStart + MAX_LINE)).strip();
+            lines.add(new Hit(line, shown));
+        }
+        if (matches == 0) return null;
+        int score = Math.min(matches, 20);
+        if (needle != null) {
+            String name = candidate.path().substring(candidate.path().lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+            if (name.contains(needle)) score += 10;
+            int symbolScore = 0;
+            for (String symbol : candidate.symbols()) {
+                String s = symbol.toLowerCase(Locale.ROOT);
+                if (s.equals(needle)) symbolScore = 25;
+                else if (s.contains(needle)) symbolScore = Math.max(symbolScore, 8);
+            }
+            score += symbolScore;
+        }
+        return new Result(candidate.path(), score, matches, lines);
+    }
+
+    /**
+     * Text that the regex engine reads through, failing once the deadline passes or the
+     * thread is interrupted. The clock is checked every few thousand characters read, which
+     * is cheap next to matching and still frequent enough to stop runaway backtracking.
+     */
+    static final class Deadline implements CharSequence {
+
+        /** Thrown out of the matcher; no stack trace, as it only unwinds to search. */
+        static final class Passed extends RuntimeException {
+            Passed() {
+                super(null, null, false, false);
+            }
+        }
+
+        private final CharSequence text;
+        private final long deadline;
+        private int reads;
+
+        Deadline(CharSequence text, long deadline) {
+            this.text = text;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ((++reads & 0xFFF) == 0 && (System.nanoTime() - deadline > 0 || Thread.currentThread().isInterrupted())) {
+                throw new Passed();
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new Deadline(text.subSequence(start, end), deadline);
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.search.files", index, TrigramIndex::files)
+                .description("Files in the search index")
+                .register(registry);
+        Gauge.builder("hyperide.search.postings", index, TrigramIndex::postings)
+                .description("File ids held in the index's posting lists")
+                .register(registry);
+        Gauge.builder("hyperide.search.pending", pending, Set::size)
+                .description("Changed files waiting to be indexed again")
+                .register(registry);
+        FunctionCounter.builder("hyperide.search.skipped", skipped, AtomicLong::get)
+                .description("Files left out of the index: large, binary or unreadable")
+                .register(registry);
+        FunctionCounter.builder("hyperide.search.candidates", candidatesChecked, LongAdder::sum)
+                .description("Candidate files the queries read and matched")
+                .register(registry);
+        FunctionCounter.builder("hyperide.search.regex.timeouts", timedOut, LongAdder::sum)
+                .description("Regex queries stopped at their time limit")
+                .register(registry);
+    }
+}
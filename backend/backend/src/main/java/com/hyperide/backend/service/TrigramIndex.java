@@ -0,0 +1,251 @@
+package com.hyperide.backend.service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Inverted index from case-folded trigrams to the files containing them. A file that
+ * changes is indexed again under a new id and its old id is left dead, so posting lists
+ * only ever grow at the end and stay sorted; once dead ids outnumber live ones the lists
+ * are filtered and ids renumbered. A lookup intersects the lists of a query's trigrams,
+ * which yields files that may match; the caller checks the text itself.
+ */
+final class TrigramIndex {
+
+    /** A file that contains every trigram of a query, with the symbols it declares. */
+    record Candidate(String path, List<String> symbols) {}
+
+    record Candidates(List<Candidate> files, boolean truncated) {}
+
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<String, Integer> idOf = new HashMap<>();
+    // By id; null once dead
+    private final ArrayList<String> paths = new ArrayList<>();
+    private final ArrayList<List<String>> symbols = new ArrayList<>();
+    private int dead;
+    private long postingCount;
+
+    void put(String path, CharSequence text, List<String> declared) {
+        long[] grams = trigrams(text);
+        lock.writeLock().lock();
+        try {
+            kill(path);
+            int id = paths.size();
+            paths.add(path);
+            symbols.add(List.copyOf(declared));
+            idOf.put(path, id);
+            for (long gram : grams) postings.computeIfAbsent(gram, k -> new Postings()).add(id);
+            postingCount += grams.length;
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String path) {
+        lock.writeLock().lock();
+        try {
+            kill(path);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void kill(String path) {
+        Integer old = idOf.remove(path);
+        if (old == null) return;
+        paths.set(old, null);
+        symbols.set(old, null);
+        dead++;
+    }
+
+    /**
+     * Live files containing every trigram of every literal, accepted by the filter, in id
+     * order, at most limit of them. Literals must be at least three characters.
+     */
+    Candidates candidates(List<String> literals, Predicate<String> filter, int limit) {
+        Set<Long> grams = new HashSet<>();
+        for (String literal : literals) for (long gram : trigrams(literal)) grams.add(gram);
+        if (grams.isEmpty()) throw new IllegalArgumentException("Nothing to look up: literals must be at least 3 characters");
+        lock.readLock().lock();
+        try {
+            List<Postings> lists = new ArrayList<>();
+            for (long gram : grams) {
+                Postings p = postings.get(gram);
+                if (p == null) return new Candidates(List.of(), false);
+                lists.add(p);
+            }
+            lists.sort(Comparator.comparingInt(p -> p.size));
+            List<Candidate> files = new ArrayList<>();
+            Postings rarest = lists.get(0);
+            int[] cursors = new int[lists.size()];
+            next:
+            for (int i = 0; i < rarest.size; i++) {
+                int id = rarest.ids[i];
+                String path = paths.get(id);
+                if (path == null) continue;
+                for (int l = 1; l < lists.size(); l++) {
+                    Postings other = lists.get(l);
+                    int c = cursors[l];
+                    while (c < other.size && other.ids[c] < id) c++;
+                    cursors[l] = c;
+                    if (c == other.size) break next;
+                    if (other.ids[c] != id) continue next;
+                }
+                if (!filter.test(path)) continue;
+                if (files.size() == limit) return new Candidates(files, true);
+                files.add(new Candidate(path, symbols.get(id)));
+            }
+            return new Candidates(files, false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Drops dead ids from every list and renumbers the live ones densely, in the same order
+    private void compactIfNeeded() {
+        if (dead < 10_000 || dead < idOf.size()) return;
+        int[] renumbered = new int[paths.size()];
+        ArrayList<String> livePaths = new ArrayList<>(idOf.size());
+        ArrayList<List<String>> liveSymbols = new ArrayList<>(idOf.size());
+        for (int id = 0; id < paths.size(); id++) {
+            String path = paths.get(id);
+            renumbered[id] = path == null ? -1 : livePaths.size();
+            if (path == null) continue;
+            idOf.put(path, livePaths.size());
+            livePaths.add(path);
+            liveSymbols.add(symbols.get(id));
+        }
+        postingCount = 0;
+        for (Iterator<Postings> it = postings.values().iterator(); it.hasNext(); ) {
+            Postings p = it.next();
+            int kept = 0;
+            for (int i = 0; i < p.size; i++) {
+                int id = renumbered[p.ids[i]];
+                if (id >= 0) p.ids[kept++] = id;
+            }
+            p.size = kept;
+            if (kept == 0) it.remove();
+            else if (kept < p.ids.length / 4) p.ids = Arrays.copyOf(p.ids, Math.max(4, kept * 2));
+            postingCount += kept;
+        }
+        paths.clear();
+        paths.addAll(livePaths);
+        symbols.clear();
+        symbols.addAll(liveSymbols);
+        dead = 0;
+    }
+
+    /** Distinct case-folded trigrams of the text, sorted, each packed as three 16-bit chars. */
+    static long[] trigrams(CharSequence text) {
+        int n = text.length() - 2;
+        if (n <= 0) return new long[0];
+        long[] grams = new long[n];
+        long window = ((long) fold(text.charAt(0)) << 16) | fold(text.charAt(1));
+        for (int i = 0; i < n; i++) {
+            window = ((window << 16) | fold(text.charAt(i + 2))) & 0xFFFF_FFFF_FFFFL;
+            grams[i] = window;
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) if (i == 0 || grams[i] != grams[i - 1]) grams[distinct++] = grams[i];
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * Literal runs a regex match must contain, longest first, for narrowing its candidates
+     * through the index. Conservative: only text outside groups and classes counts, a
+     * quantified character is left out, and any alternation means nothing is required.
+     */
+    static List<String> requiredLiterals(String regex) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '|') return List.of();
+            if (c == '\\' && i + 1 < regex.length()) {
+                char escaped = regex.charAt(++i);
+                if (depth == 0 && !Character.isLetterOrDigit(escaped)) {
+                    run.append(escaped);
+                    continue;
+                }
+                if (escaped == 'Q') { // \Q...\E quotes everything in between
+                    int end = regex.indexOf("\\E", i + 1);
+                    String quoted = regex.substring(i + 1, end < 0 ? regex.length() : end);
+                    if (depth == 0) run.append(quoted);
+                    i = end < 0 ? regex.length() : end + 1;
+                    continue;
+                }
+                flush(run, literals);
+            } else if (c == '[') {
+                flush(run, literals);
+                int end = i + 1;
+                if (end < regex.length() && regex.charAt(end) == '^') end++;
+                if (end < regex.length() && regex.charAt(end) == ']') end++;
+                while (end < regex.length() && regex.charAt(end) != ']') end += regex.charAt(end) == '\\' ? 2 : 1;
+                i = end;
+            } else if (c == '(') {
+                flush(run, literals);
+                depth++;
+            } else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+            } else if (c == '*' || c == '?' || c == '{') {
+                if (run.length() > 0) run.setLength(run.length() - 1); // Optional or repeated from zero times
+                flush(run, literals);
+                if (c == '{') while (i < regex.length() && regex.charAt(i) != '}') i++;
+            } else if (c == '+' || c == '.' || c == '^' || c == '$') {
+                flush(run, literals);
+            } else if (depth == 0) {
+                run.append(c);
+            }
+        }
+        flush(run, literals);
+        literals.removeIf(l -> l.length() < 3);
+        literals.sort(Comparator.comparingInt(String::length).reversed());
+        return literals;
+    }
+
+    private static void flush(StringBuilder run, List<String> literals) {
+        if (run.length() > 0) literals.add(run.toString());
+        run.setLength(0);
+    }
+
+    /** Live files in the index. */
+    int files() {
+        lock.readLock().lock();
+        try {
+            return idOf.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Ids held across all posting lists, dead ones included until the next compaction. */
+    long postings() {
+        lock.readLock().lock();
+        try {
+            return postingCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
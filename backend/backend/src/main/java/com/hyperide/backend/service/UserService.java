@@ -0,0 +1,220 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.config.HyperideMetrics;
+import com.hyperide.backend.model.User;
+import com.hyperide.backend.repository.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * User lookups and password hashing for the login and register paths. Users are cached
+ * by name so repeated lookups skip the users join with their accessible files, and every
+ * change goes through here or calls invalidate. BCrypt runs on a small bounded pool: a
+ * login storm queues there, and beyond the queue is refused, instead of taking every
+ * request thread's CPU.
+ */
+@Service
+public class UserService implements MeterBinder {
+
+    private static final class Entry {
+        final User user;
+        final long loadedAt;
+
+        Entry(User user, long loadedAt) {
+            this.user = user;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    @Autowired private UserRepository userRepository;
+    @Autowired private PasswordEncoder passwordEncoder;
+    @Autowired private AccessControlService accessControlService;
+    @Autowired private HyperideMetrics metrics;
+
+    @Value("${hyperide.auth.cache.max-users:10000}")
+    private int maxUsers;
+
+    // Bounds staleness when another instance changes a user
+    @Value("${hyperide.auth.cache.ttl-ms:300000}")
+    private long ttlMs;
+
+    @Value("${hyperide.auth.hash.threads:0}")
+    private int hashThreads;
+
+    @Value("${hyperide.auth.hash.queue-capacity:256}")
+    private int hashQueueCapacity;
+
+    @Value("${hyperide.auth.hash.timeout-ms:10000}")
+    private long hashTimeoutMs;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> cache = new LinkedHashMap<>(256, 0.75f, true);
+    private ThreadPoolExecutor hashPool;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong hashRejected = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        int n = hashThreads > 0 ? hashThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicLong ids = new AtomicLong();
+        hashPool = new ThreadPoolExecutor(n, n, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(hashQueueCapacity), r -> {
+            Thread t = new Thread(r, "auth-hash-" + ids.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        hashPool.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashPool.shutdownNow();
+    }
+
+    /** The user as last loaded; a read-only copy, so changes go through the repository and invalidate. */
+    public Optional<User> find(String username) {
+        if (username == null) return Optional.empty();
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            Entry entry = cache.get(username);
+            if (entry != null && now - entry.loadedAt < ttlMs) {
+                hits.incrementAndGet();
+                return Optional.of(entry.user);
+            }
+        }
+        misses.incrementAndGet();
+        Optional<User> user = userRepository.findByUsername(username).map(UserService::readOnlyCopy);
+        user.ifPresent(u -> {
+            synchronized (cache) {
+                cache.put(username, new Entry(u, now));
+                Iterator<Entry> lru = cache.values().iterator();
+                while (cache.size() > maxUsers && lru.hasNext()) {
+                    lru.next();
+                    lru.remove();
+                }
+            }
+        });
+        return user;
+    }
+
+    public boolean exists(String username) {
+        return find(username).isPresent();
+    }
+
+    /**
+     * The user if the password matches.
+     * @throws RejectedExecutionException if the hashing pool is saturated
+     */
+    public Optional<User> authenticate(String username, String password) {
+        Optional<User> user = find(username);
+        if (user.isEmpty() || password == null || user.get().getPassword() == null) return Optional.empty();
+        String hash = user.get().getPassword();
+        return hash(() -> passwordEncoder.matches(password, hash)) ? user : Optional.empty();
+    }
+
+    /** @throws RejectedExecutionException if the hashing pool is saturated */
+    public String encode(String password) {
+        return hash(() -> passwordEncoder.encode(password));
+    }
+
+    /** Saves a new or changed user, drops its cached copy and brings its access grants up to date. */
+    public User save(User user) {
+        User saved = userRepository.save(user);
+        invalidate(user.getUsername());
+        accessControlService.update(saved);
+        return saved;
+    }
+
+    public void invalidate(String username) {
+        synchronized (cache) {
+            if (cache.remove(username) != null) invalidations.incrementAndGet();
+        }
+    }
+
+    private <T> T hash(Callable<T> work) {
+        Future<T> future;
+        try {
+            future = hashPool.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    return work.call();
+                } finally {
+                    metrics.recordHash(System.nanoTime() - start);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            hashRejected.incrementAndGet();
+            throw e;
+        }
+        try {
+            return future.get(hashTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            hashRejected.incrementAndGet();
+            throw new RejectedExecutionException("Password hashing timed out");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted waiting for password hashing");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    // Detached from any persistence context, with a set that cannot be changed by accident
+    private static User readOnlyCopy(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setUsername(user.getUsername());
+        copy.setPassword(user.getPassword());
+        copy.setRole(user.getRole());
+        copy.setDbAccess(user.isDbAccess());
+        copy.setPasswordResetRequested(user.isPasswordResetRequested());
+        copy.setAccessibleFiles(Set.copyOf(user.getAccessibleFiles()));
+        return copy;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.auth.cache.users", this, UserService::cachedUsers)
+                .description("Users held in the login cache")
+                .register(registry);
+        FunctionCounter.builder("hyperide.auth.cache.requests", hits, AtomicLong::get)
+                .description("User lookups, by whether the cache had the user")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("hyperide.auth.cache.requests", misses, AtomicLong::get)
+                .description("User lookups, by whether the cache had the user")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("hyperide.auth.cache.invalidations", invalidations, AtomicLong::get)
+                .description("Cached users dropped because they changed")
+                .register(registry);
+        Gauge.builder("hyperide.auth.hash.queued", hashPool, pool -> pool.getQueue().size())
+                .description("Password checks waiting for a hashing thread")
+                .register(registry);
+        FunctionCounter.builder("hyperide.auth.hash.rejected", hashRejected, AtomicLong::get)
+                .description("Password checks refused because the hashing pool was full or too slow")
+                .register(registry);
+    }
+
+    private int cachedUsers() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
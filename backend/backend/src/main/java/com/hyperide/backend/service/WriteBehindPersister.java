@@ -0,0 +1,119 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.config.HyperideMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Takes disk writes off the edit path. Edits only mark their document dirty; a single
+ * background thread writes each dirty document once per flush, however many edits it
+ * received in between. Each write is also the snapshot the file's {@link EditJournal} is
+ * compacted to.
+ */
+@Service
+public class WriteBehindPersister implements MeterBinder {
+
+    @Autowired private DocumentService documentService;
+    @Autowired private DocumentCache documentCache;
+    @Autowired private HyperideMetrics metrics;
+
+    @Value("${hyperide.persist.flush-interval-ms:5000}")
+    private long flushIntervalMs;
+
+    @Value("${hyperide.persist.max-pending-edits:500}")
+    private int maxPendingEdits;
+
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger pendingEdits = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private final AtomicLong filesWritten = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Records that a document changed. Flushes early once enough edits pile up. */
+    public void markDirty(String path) {
+        dirty.add(DocumentService.normalize(path));
+        if (pendingEdits.incrementAndGet() >= maxPendingEdits && !flusher.isShutdown()
+                && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /** Writes every dirty document. Runs on the flusher thread, or the caller on shutdown. */
+    public synchronized void flush() {
+        flushRequested.set(false);
+        pendingEdits.set(0);
+        if (dirty.isEmpty()) return;
+        long start = System.nanoTime();
+        for (String path : dirty) {
+            dirty.remove(path);
+            try {
+                if (documentService.persist(path)) filesWritten.incrementAndGet();
+            } catch (IOException e) {
+                writeFailures.incrementAndGet();
+                dirty.add(path); // Retry on the next flush
+                System.err.println("Write-behind failed for " + path + ": " + e.getMessage());
+            }
+        }
+        documentCache.trim(); // Persisted documents are no longer pinned
+        metrics.recordFlush(System.nanoTime() - start);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) { e.printStackTrace(); }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        // Drain whatever is left, including edits that arrived during shutdown
+        for (int attempt = 0; attempt < 3 && !dirty.isEmpty(); attempt++) flush();
+        if (!dirty.isEmpty()) System.err.println("Write-behind shut down with " + dirty.size() + " unsaved files: " + dirty);
+    }
+
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hyperide.persist.queued", dirty, Set::size)
+                .description("Dirty files waiting for the write-behind flush")
+                .register(registry);
+        FunctionCounter.builder("hyperide.persist.files", filesWritten, AtomicLong::get)
+                .description("Files written by the write-behind flush")
+                .register(registry);
+        FunctionCounter.builder("hyperide.persist.failures", writeFailures, AtomicLong::get)
+                .description("Write-behind writes that failed and were retried")
+                .register(registry);
+    }
+}
@@ -0,0 +1,296 @@
+"""Pre-started interpreter of PythonExecutionPool.
+
+Reads programs from stdin and streams their output back on stdout, framed like the Java
+ExecutionWorker (big-endian, as Java's DataInput/DataOutput):
+
+    request:  int length, UTF-8 code, long cpuLimitMs, long timeLimitMs, int outputLimitBytes
+    response: 'O'|'E' int length, bytes      stdout / stderr chunk, any number
+              'D' UTF status, long cpuNanos, long wallNanos, int exitCode, byte reusable
+
+Where the platform can fork, each program runs in a child forked from this warm process:
+it starts with the interpreter and the preloaded modules ready, and whatever it changes
+goes away with it. The child gets the memory and CPU limits and none of the protocol's
+descriptors: its stdout and stderr are pipes this process reads, frames and cuts off at
+the output limit, and the time limit is enforced here by killing its process group.
+Elsewhere the program runs in this process, which answers once and exits, and the pool
+starts a fresh interpreter in its place.
+
+Usage: python_worker.py memoryLimitMb [module to preload]...
+"""
+import builtins
+import io
+import linecache
+import os
+import select
+import signal
+import struct
+import sys
+import threading
+import time
+import traceback
+
+try:
+    import resource
+except ImportError:
+    resource = None
+
+STDOUT, STDERR, DONE, READY = b'O', b'E', b'D', b'R'
+STATUSES = {'OK', 'EXITED', 'EXCEPTION', 'MEMORY_LIMIT', 'CPU_LIMIT', 'TIME_LIMIT', 'OUTPUT_LIMIT'}
+FILENAME = 'main.py'
+MAX_CHUNK = 1 << 16
+
+protocol = -1
+requests = None
+budget = 0
+report = None
+
+
+def send(data):
+    view = memoryview(data)
+    while view:
+        view = view[os.write(protocol, view):]
+
+
+def relay(kind, data):
+    """Sends output as protocol chunks, up to the run's byte budget. False once that is spent."""
+    global budget
+    allowed = min(len(data), max(budget, 0))
+    budget -= len(data)
+    for off in range(0, allowed, MAX_CHUNK):
+        chunk = data[off:min(off + MAX_CHUNK, allowed)]
+        send(kind + struct.pack('>i', len(chunk)) + chunk)
+    return budget >= 0
+
+
+class Capped(io.RawIOBase):
+    """Relays writes of a program running in this process; ends the run once the budget is spent."""
+
+    def __init__(self, kind):
+        self.kind = kind
+
+    def writable(self):
+        return True
+
+    def write(self, b):
+        data = bytes(b)
+        if not relay(self.kind, data):
+            finish('OUTPUT_LIMIT', 0, flush=False)
+        return len(data)
+
+
+def finish(status, exit_code, flush=True):
+    if flush:
+        for stream in (sys.stdout, sys.stderr):
+            try:
+                stream.flush()
+            except BaseException:
+                pass  # Interrupted mid-print: that output is lost
+    report(status, exit_code)
+    os._exit(0)
+
+
+def execute(code, cpu_ms, time_ms, out, err):
+    """Runs a program in this process, writing to out and err, and reports how it ended. Never returns."""
+    sys.stdout = io.TextIOWrapper(io.BufferedWriter(out, 8192),
+                                  encoding='utf-8', errors='backslashreplace', line_buffering=True)
+    sys.stderr = io.TextIOWrapper(io.BufferedWriter(err, 8192),
+                                  encoding='utf-8', errors='backslashreplace', line_buffering=True)
+    sys.argv = [FILENAME]
+    if cpu_ms > 0 and hasattr(signal, 'setitimer'):
+        signal.signal(signal.SIGPROF, lambda signum, frame: finish('CPU_LIMIT', 0))
+        signal.setitimer(signal.ITIMER_PROF, cpu_ms / 1000)
+    if time_ms > 0:
+        timer = threading.Timer(time_ms / 1000, finish, ('TIME_LIMIT', 0))
+        timer.daemon = True
+        timer.start()
+    # Lets tracebacks show the offending lines
+    linecache.cache[FILENAME] = (len(code), None, code.splitlines(True), FILENAME)
+
+    status, exit_code = 'OK', 0
+    try:
+        program = compile(code, FILENAME, 'exec')
+        exec(program, {'__name__': '__main__', '__builtins__': builtins})
+        # Like interpreter shutdown: the program's own threads are waited for
+        for thread in threading.enumerate():
+            if thread is not threading.current_thread() and not thread.daemon:
+                thread.join()
+    except SystemExit as e:
+        if e.code is None or isinstance(e.code, int):
+            exit_code = e.code or 0
+        else:
+            print(e.code, file=sys.stderr)
+            exit_code = 1
+        status = 'OK' if exit_code == 0 else 'EXITED'
+    except BaseException as e:
+        status, exit_code = ('MEMORY_LIMIT' if isinstance(e, MemoryError) else 'EXCEPTION'), 1
+        try:
+            # Starts the traceback at the program's own frames
+            traceback.print_exception(type(e), e, e.__traceback__.tb_next)
+        except BaseException:
+            pass
+    finish(status, exit_code)
+
+
+def run_forked(code, cpu_ms, time_ms, output_limit, memory_mb):
+    global budget
+    status_r, status_w = os.pipe()
+    out_r, out_w = os.pipe()
+    err_r, err_w = os.pipe()
+    start = time.monotonic_ns()
+    pid = os.fork()
+    if pid == 0:
+        global report
+        # The program reaches the pool only through output this process frames
+        for fd in (protocol, requests.fileno(), status_r, out_r, err_r):
+            os.close(fd)
+        os.dup2(out_w, 1)
+        os.dup2(err_w, 2)
+        os.close(out_w)
+        os.close(err_w)
+        os.setpgid(0, 0)
+        if resource is not None:
+            if memory_mb > 0:
+                resource.setrlimit(resource.RLIMIT_AS, (memory_mb << 20, memory_mb << 20))
+            # Backstop for a loop in C code, which the CPU timer's handler cannot interrupt
+            seconds = cpu_ms // 1000 + 1
+            resource.setrlimit(resource.RLIMIT_CPU, (seconds, seconds + 1))
+        report = lambda status, exit_code: os.write(status_w, ('%s %d' % (status, exit_code)).encode())
+        execute(code, cpu_ms, 0, io.FileIO(1, 'wb', closefd=False), io.FileIO(2, 'wb', closefd=False))
+
+    for fd in (status_w, out_w, err_w):
+        os.close(fd)
+    try:
+        os.setpgid(pid, pid)  # Also here, in case the child has not got that far yet
+    except OSError:
+        pass
+    budget = output_limit
+    deadline = start + time_ms * 1_000_000
+    kinds = {out_r: STDOUT, err_r: STDERR}
+    pending = [status_r, out_r, err_r]
+    answer, timed_out, overflowed = b'', False, False
+    while pending and not overflowed:
+        # Once the child has exited, only output already in the pipes is still read
+        wait = (deadline - time.monotonic_ns()) / 1e9 if status_r in pending else 0
+        if status_r in pending and wait <= 0:
+            timed_out = True
+            break
+        ready = select.select(pending, [], [], wait)[0]
+        if not ready and status_r not in pending:
+            break
+        for fd in ready:
+            data = os.read(fd, MAX_CHUNK)
+            if not data:
+                pending.remove(fd)
+            elif fd == status_r:
+                answer = (answer + data)[:64]
+            elif not relay(kinds[fd], data):
+                overflowed = True
+                break
+    for fd in (status_r, out_r, err_r):
+        os.close(fd)
+    if timed_out or overflowed:
+        kill_group(pid)
+    _, wait_status, usage = os.wait4(pid, 0)
+    wall = time.monotonic_ns() - start
+    # Whatever the program started and left running
+    kill_group(pid)
+
+    if timed_out:
+        status, exit_code = 'TIME_LIMIT', 128 + signal.SIGKILL
+    elif overflowed:
+        status, exit_code = 'OUTPUT_LIMIT', 0
+    elif answer:
+        status, exit_code = parse_answer(answer)
+    elif os.WIFSIGNALED(wait_status):
+        signum = os.WTERMSIG(wait_status)
+        status, exit_code = ('CPU_LIMIT' if signum == signal.SIGXCPU else 'CRASHED'), 128 + signum
+    else:
+        # The program called os._exit
+        status, exit_code = 'EXITED', os.WEXITSTATUS(wait_status)
+    done(status, int((usage.ru_utime + usage.ru_stime) * 1e9), wall, exit_code, True)
+
+
+def parse_answer(answer):
+    """The child's status report, which the program itself could have written."""
+    try:
+        status, exit_code = answer.decode().split()
+        exit_code = int(exit_code)
+    except ValueError:
+        return 'CRASHED', 1
+    if status not in STATUSES or not -2 ** 31 <= exit_code < 2 ** 31:
+        return 'CRASHED', 1
+    return status, exit_code
+
+
+def kill_group(pid):
+    try:
+        os.killpg(pid, signal.SIGKILL)
+    except OSError:
+        pass
+
+
+def run_here(code, cpu_ms, time_ms, output_limit):
+    global report, budget
+    budget = output_limit
+    start, cpu = time.monotonic_ns(), time.process_time_ns()
+    report = lambda status, exit_code: done(status, time.process_time_ns() - cpu,
+                                            time.monotonic_ns() - start, exit_code, False)
+    execute(code, cpu_ms, time_ms, Capped(STDOUT), Capped(STDERR))
+
+
+def done(status, cpu_nanos, wall_nanos, exit_code, reusable):
+    status = status.encode()
+    send(DONE + struct.pack('>H', len(status)) + status
+         + struct.pack('>qqib', cpu_nanos, wall_nanos, exit_code, 1 if reusable else 0))
+
+
+def read_exactly(stream, n):
+    data = stream.read(n)
+    if len(data) < n:
+        sys.exit(0)  # The pool closed our stdin
+    return data
+
+
+def warm_up():
+    namespace = {}
+    exec(compile('s = " ".join(f"{i:d}" for i in range(2000))\nd = {}\n'
+                 'for w in s.split(): d[w[-1:]] = d.get(w[-1:], 0) + 1\n', FILENAME, 'exec'), namespace)
+    io.StringIO().write(str(len(namespace['d'])))
+
+
+def main():
+    global protocol, requests
+    memory_mb = int(sys.argv[1])
+    protocol = os.dup(1)
+    requests = os.fdopen(os.dup(0), 'rb')
+    if sys.platform == 'win32':
+        import msvcrt
+        msvcrt.setmode(protocol, os.O_BINARY)
+        msvcrt.setmode(requests.fileno(), os.O_BINARY)
+    # Programs and whatever they start must not read or write the protocol pipes directly
+    devnull = os.open(os.devnull, os.O_RDWR)
+    os.dup2(devnull, 0)
+    os.dup2(devnull, 1)
+    sys.stdin = io.StringIO()
+    del sys.path[0]  # This script's directory
+    for name in sys.argv[2:]:
+        try:
+            __import__(name)
+        except (ImportError, ValueError):
+            pass
+    warm_up()
+    send(READY)
+
+    forking = hasattr(os, 'fork')
+    while True:
+        length, = struct.unpack('>i', read_exactly(requests, 4))
+        code = read_exactly(requests, length).decode('utf-8', 'replace')
+        cpu_ms, time_ms, output_limit = struct.unpack('>qqi', read_exactly(requests, 20))
+        if forking:
+            run_forked(code, cpu_ms, time_ms, output_limit, memory_mb)
+        else:
+            run_here(code, cpu_ms, time_ms, output_limit)
+
+
+if __name__ == '__main__':
+    main()
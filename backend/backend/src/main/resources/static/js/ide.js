@@ -4,6 +4,34 @@ let editorInstance = null;
 let isApplyingNetworkUpdate = false;
 let pieChartInstance = null;
 let liveStatsInterval = null;
+let fileList = [];
+
+// --- DELTA EDIT STATE ---
+const clientId = Math.random().toString(36).slice(2);
+let editFile = "";      // File the version and queued ops below belong to
+let docVersion = 0;     // Server version the editor content is based on
+let inFlight = null;    // Ops sent to the server and not yet acknowledged
+let inFlightBase = 0;
+let outbox = [];        // Local ops waiting for the in-flight batch to be acknowledged
+let resyncPending = false;
+let debounceTimer;
+let largeFile = null;   // { path, nextOffset, done, loading } while a read-only large file is open
+
+let watchedFile = "";
+let fileSubscription = null;
+let diagnosticsSubscription = null; // Compile errors of the watched file, from /topic/files/{path}/diagnostics
+let runSubscription = null; // STOMP subscription for the run currently shown in the terminal
+let presence = {};          // user -> file being viewed
+let presenceInterval = null;
+let socketConnectedOnce = false;
+
+// --- CHAT STATE ---
+const chatRoom = "public";
+let chatReady = false;      // History shown; until then live batches wait in chatBacklog
+let chatBacklog = [];
+let chatLastId = 0;         // Newest message shown
+let chatFirstId = 0;        // Oldest message shown, for paging back
+let chatLoadingOlder = false;
 
 window.monacoReady.then(() => {
     
@@ -12,63 +40,26 @@ window.monacoReady.then(() => {
         value: '// Booting Workspace...', language: 'java', theme: 'vs-dark', automaticLayout: true
     });
 
-    let debounceTimer;
-    editorInstance.onDidChangeModelContent(() => {
-        if (isApplyingNetworkUpdate || !activeFile) return;
+    editorInstance.onDidChangeModelContent((e) => {
+        if (isApplyingNetworkUpdate || !editFile) return;
+        // Offsets refer to the model before this change; applying from the end keeps them valid
+        const changes = [...e.changes].sort((a, b) => b.rangeOffset - a.rangeOffset);
+        changes.forEach(c => {
+            if (c.rangeLength > 0) outbox.push({ type: "DELETE", position: c.rangeOffset, length: c.rangeLength });
+            if (c.text) outbox.push({ type: "INSERT", position: c.rangeOffset, text: c.text });
+        });
         clearTimeout(debounceTimer);
-        debounceTimer = setTimeout(() => {
-            if (stompClient && stompClient.connected) {
-                // FULL PAYLOAD SYNC
-                stompClient.send("/app/edit", {}, JSON.stringify({
-                    fileName: activeFile, 
-                    content: editorInstance.getValue(),
-                    user: currentUser, 
-                    role: currentRole 
-                }));
-            }
-        }, 300); // Back to 300ms debounce for full payloads
+        debounceTimer = setTimeout(flushEdits, 50); // Deltas are small, so batch only briefly
     });
 
-    // 2. Initialize WebSocket Connection
-    const socket = new SockJS('/ws');
-    stompClient = Stomp.over(socket);
-    stompClient.debug = null;
-
-    stompClient.connect({}, function () {
-        
-        stompClient.subscribe('/topic/updates', function (msg) {
-            const body = JSON.parse(msg.body);
-            if (body.type === "ERROR" && body.user === currentUser) {
-                alert("SERVER: " + body.content);
-                return;
-            }
-            if (body.fileName !== activeFile || body.user === currentUser) return;
-
-            if (body.type === "UPDATE" && editorInstance) {
-                isApplyingNetworkUpdate = true;
-                editorInstance.setValue(body.content);
-                isApplyingNetworkUpdate = false;
-            }
-        });
-
-        stompClient.subscribe('/topic/files', () => fetchFiles());
-        stompClient.subscribe('/topic/public', function (msg) { displayChatMessage(JSON.parse(msg.body)); });
-        
-        stompClient.subscribe('/topic/presence', function (msg) {
-            if (currentRole === 'ADMIN') {
-                const presence = JSON.parse(msg.body);
-                let html = "";
-                for (const [user, file] of Object.entries(presence)) {
-                    html += `<div style="margin-bottom:5px;"><b>${user}</b> ➡️ <span style="color:#007acc;">${file}</span></div>`;
-                }
-                const monitor = document.getElementById('adminMonitor');
-                if(monitor) monitor.innerHTML = html || "No active users.";
-            }
-        });
-
-        fetchFiles();
+    // Large files load their next page as the view nears the end of what is loaded
+    editorInstance.onDidScrollChange((e) => {
+        if (largeFile && e.scrollTop + editorInstance.getLayoutInfo().height > e.scrollHeight - 2000) loadNextPage();
     });
 
+    // 2. Initialize WebSocket Connection
+    connectSocket();
+
     // 3. UI Events
     document.getElementById('btnChatToggle').onclick = () => {
         document.getElementById('chatPanel').classList.toggle('open');
@@ -80,17 +71,20 @@ window.monacoReady.then(() => {
         const input = document.getElementById('chatInput');
         if (input.value.trim() && stompClient && stompClient.connected) {
             const prefix = currentRole === 'ADMIN' ? '[ADMIN] ' : '';
-            stompClient.send("/app/chat.send", {}, JSON.stringify({ sender: currentUser, content: prefix + input.value.trim() }));
+            stompClient.send("/app/chat.send", {}, JSON.stringify({ room: chatRoom, sender: currentUser, content: prefix + input.value.trim() }));
             input.value = '';
         }
     }
     document.getElementById('btnSendChat').onclick = sendChat;
     document.getElementById('chatInput').onkeydown = (e) => { if (e.key === 'Enter') sendChat(); };
+    document.getElementById('chatMessages').onscroll = (e) => { if (e.target.scrollTop === 0) loadOlderChat(); };
 
     document.getElementById('btnSave').onclick = () => {
         if (!activeFile) return;
         const link = document.createElement("a");
-        link.href = URL.createObjectURL(new Blob([editorInstance.getValue()], { type: "text/plain" }));
+        // A large file may be only partly loaded; the server streams all of it
+        link.href = largeFile ? `/api/editor/content?path=${encodeURIComponent(largeFile.path)}`
+            : URL.createObjectURL(new Blob([editorInstance.getValue()], { type: "text/plain" }));
         link.download = activeFile.split('/').pop();
         link.click();
     };
@@ -108,10 +102,24 @@ window.monacoReady.then(() => {
             const folder = currentRole === 'ADMIN' ? 'admin' : currentUser;
             stompClient.send("/app/files.create", {}, JSON.stringify({ name: file.name, creator: folder, role: currentRole }));
             setTimeout(() => {
-                activeFile = `${folder}/${file.name}`;
+                activeFile = editFile = `${folder}/${file.name}`;
+                leaveLargeFile();
+                isApplyingNetworkUpdate = true;
                 editorInstance.setValue(ev.target.result);
+                isApplyingNetworkUpdate = false;
+                // Uploads replace the whole file, so they go out as a FULL edit against the
+                // current version; the server rejects it if someone edited in between
+                inFlight = [];
+                outbox = [];
+                watchFile(editFile);
+                fetch(`/api/editor/content?path=${encodeURIComponent(editFile)}`).then(res => {
+                    docVersion = Number(res.headers.get("X-Doc-Version") || 0);
+                    stompClient.send("/app/edit", {}, JSON.stringify({
+                        fileName: editFile, content: ev.target.result, baseVersion: docVersion,
+                        clientId: clientId, user: currentUser, role: currentRole
+                    }));
+                });
                 pingPresence();
-                fetchFiles();
             }, 500);
         };
         reader.readAsText(file);
@@ -130,44 +138,60 @@ window.monacoReady.then(() => {
     // DIRECT BROWSER COMPILER CALL
     // DIRECT BROWSER COMPILER CALL (With Strict Versioning)
     // ROUTED BACKEND COMPILER CALL
-    document.getElementById('btnRun').onclick = async () => {
+    document.getElementById('btnRun').onclick = async (e) => {
         if (!activeFile) return alert("Select a file to run.");
         const terminal = document.getElementById('terminalOutput');
         terminal.innerText = "Routing to Secure Backend Compiler...\n";
-        
+        if (runSubscription) runSubscription.unsubscribe();
+
         const isPython = activeFile.endsWith(".py");
         const payload = {
             language: isPython ? "python" : "java",
-            version: isPython ? "3.10.0" : "15.0.2", 
             files: [{ content: editorInstance.getValue() }]
         };
+        // Shift+click runs the file's whole folder as a project, with this file as the entry point
+        if (e.shiftKey && !isPython && activeFile.includes('/')) {
+            payload.project = activeFile.substring(0, activeFile.lastIndexOf('/'));
+            payload.main = activeFile;
+        }
 
         try {
-            // FIX: We are now sending the code to YOUR Spring Boot server (/api/run)
-            const response = await fetch("/api/run", {
-                method: "POST", 
-                headers: { "Content-Type": "application/json" }, 
+            // Runs are queued on the server; output streams on /topic/run/{jobId}
+            const response = await fetch("/api/run/jobs", {
+                method: "POST",
+                headers: { "Content-Type": "application/json" },
                 body: JSON.stringify(payload)
             });
-            
-            const textResponse = await response.text();
-            
-            try {
-                const data = JSON.parse(textResponse);
-                
-                if (data.compile && data.compile.code !== 0) {
-                    terminal.innerText = "COMPILE ERROR:\n" + data.compile.output;
-                } else if (data.run && data.run.output) {
-                    terminal.innerText = data.run.output;
-                } else {
-                    terminal.innerText = "Execution Complete (No Output)";
-                }
-            } catch (parseErr) {
-                terminal.innerText = "Proxy Error:\n" + textResponse;
+            const data = await response.json();
+            if (!response.ok) {
+                terminal.innerText = data.error || ("Run rejected (" + response.status + ")");
+                return;
             }
-            
-        } catch (err) { 
-            terminal.innerText = "SERVER DISCONNECTED: " + err.message + "\nEnsure your Spring Boot backend is running."; 
+            terminal.innerText = data.queued > 0 ? `Queued behind ${data.queued} run(s)...\n` : "";
+            let output = "";
+            let started = false;
+            const show = (ev) => {
+                if (ev.text) {
+                    // Events can repeat what the snapshot already returned; keep only the new part
+                    const end = ev.offset + ev.text.length;
+                    if (end > output.length) output += ev.text.slice(output.length - ev.offset);
+                }
+                if (ev.type !== 'SNAPSHOT' || ev.status !== 'QUEUED') started = true;
+                if (started) terminal.innerText = output;
+                if (ev.type === 'DONE' || (ev.type === 'SNAPSHOT' && ev.status !== 'QUEUED' && ev.status !== 'RUNNING')) {
+                    terminal.innerText = output || "Execution Complete (No Output)";
+                    const timing = `queued ${ev.queueWaitMs} ms, ` + (ev.compileCached ? "compile cached, " : ev.compileMs ? `compiled ${ev.compileMs} ms, ` : "") + `ran ${ev.runMs} ms`;
+                    terminal.title = timing;
+                    if (runSubscription) { runSubscription.unsubscribe(); runSubscription = null; }
+                }
+            };
+            const jobId = data.jobId;
+            runSubscription = stompClient.subscribe('/topic/run/' + jobId, (msg) => show(JSON.parse(msg.body)));
+            // Catch up on anything sent before the subscription was in place
+            const snapshot = await fetch('/api/run/jobs/' + jobId);
+            if (snapshot.ok && runSubscription) show(await snapshot.json());
+        } catch (err) {
+            terminal.innerText = "SERVER DISCONNECTED: " + err.message + "\nEnsure your Spring Boot backend is running.";
         }
     };
 
@@ -185,19 +209,22 @@ window.monacoReady.then(() => {
 
 // --- HELPER FUNCTIONS ---
 function fetchFiles() {
-    fetch('/api/files').then(res => res.json()).then(data => {
-        renderFileList(data);
-        if (!data.includes(activeFile) && data.length > 0) {
-            activeFile = data[0];
-            loadFileContent(activeFile);
-            pingPresence();
-        } else if (data.length === 0 && editorInstance) {
-            activeFile = "";
-            isApplyingNetworkUpdate = true;
-            editorInstance.setValue("// Workspace empty. Click + CREATE to begin.");
-            isApplyingNetworkUpdate = false;
-        }
-    });
+    fetch('/api/files').then(res => res.json()).then(showFiles);
+}
+
+function showFiles(data) {
+    fileList = data;
+    renderFileList(data);
+    if (!data.includes(activeFile) && data.length > 0) {
+        activeFile = data[0];
+        loadFileContent(activeFile);
+        pingPresence();
+    } else if (data.length === 0 && editorInstance) {
+        activeFile = editFile = "";
+        isApplyingNetworkUpdate = true;
+        editorInstance.setValue("// Workspace empty. Click + CREATE to begin.");
+        isApplyingNetworkUpdate = false;
+    }
 }
 
 function renderFileList(files) {
@@ -231,30 +258,307 @@ function renderFileList(files) {
     });
 }
 
+// Updates for the open file arrive on its own topic, /topic/files/{path}/updates
+function onFileUpdate(msg) {
+    const body = JSON.parse(msg.body);
+    if (body.type === "ERROR" && body.user === currentUser) {
+        alert("SERVER: " + body.content);
+    }
+    if (body.fileName !== editFile || !editorInstance) return;
+    const mine = body.clientId === clientId;
+
+    if ((body.type === "ERROR" || body.type === "LOCKED") && mine) {
+        // Rejected ops were never applied on the server
+        loadFileContent(editFile);
+    } else if (body.type === "DELTA" && mine) {
+        inFlight = null;
+        if (resyncPending || body.baseVersion !== inFlightBase) {
+            // Server rebased our ops over edits we never saw, so our text has drifted
+            loadFileContent(editFile);
+        } else {
+            docVersion = body.version;
+            flushEdits();
+        }
+    } else if (body.type === "DELTA") {
+        if (!inFlight && outbox.length === 0 && body.baseVersion === docVersion) {
+            applyRemoteOps(body.ops);
+            docVersion = body.version;
+        } else if (body.version > docVersion) {
+            resyncPending = true;
+            if (!inFlight) loadFileContent(editFile);
+        }
+    } else if ((body.type === "FULL" || (body.type === "CONFLICT" && mine)) && (mine || (!inFlight && outbox.length === 0))) {
+        // CONFLICT: our write was stale and not applied; adopt the server's text
+        if (editorInstance.getValue() !== body.content) {
+            isApplyingNetworkUpdate = true;
+            editorInstance.setValue(body.content);
+            isApplyingNetworkUpdate = false;
+        }
+        docVersion = body.version;
+        inFlight = null;
+        outbox = [];
+        resyncPending = false;
+    } else if (body.type === "FULL" && !mine) {
+        resyncPending = true;
+    }
+}
+
+// Connects, subscribes and keeps reconnecting after the connection drops
+function connectSocket() {
+    const socket = new SockJS('/ws');
+    stompClient = Stomp.over(socket);
+    stompClient.debug = null;
+    // Same interval as the server's STOMP heartbeats, so a dead connection is noticed on both ends
+    stompClient.heartbeat.outgoing = 10000;
+    stompClient.heartbeat.incoming = 10000;
+
+    stompClient.connect({}, function () {
+        const reconnected = socketConnectedOnce;
+        socketConnectedOnce = true;
+        watchedFile = ""; // Subscriptions do not survive a reconnect
+        watchFile(editFile);
+        if (reconnected && editFile) loadFileContent(editFile); // Updates sent while we were away are lost
+
+        // Edits the server was too busy to queue come back to this session alone, not applied
+        stompClient.subscribe('/user/topic/edits', function (msg) {
+            const body = JSON.parse(msg.body);
+            if (body.type !== "REJECTED" || body.clientId !== clientId || body.fileName !== editFile || !inFlight) return;
+            outbox = inFlight.concat(outbox);
+            inFlight = null;
+            if (resyncPending) loadFileContent(editFile);
+            else setTimeout(flushEdits, 500);
+        });
+
+        stompClient.subscribe('/topic/files', function (msg) {
+            const event = JSON.parse(msg.body);
+            if (currentRole !== 'ADMIN' && event.path.startsWith('admin/')) return;
+            if (event.type === "ADDED" && !fileList.includes(event.path)) {
+                fileList.push(event.path);
+                fileList.sort();
+                showFiles(fileList);
+            } else if (event.type === "REMOVED" && fileList.includes(event.path)) {
+                showFiles(fileList.filter(p => p !== event.path));
+            }
+        });
+        // Chat arrives in batches; history is loaded after subscribing so nothing falls in between
+        chatReady = false;
+        chatBacklog = [];
+        stompClient.subscribe(`/topic/chat/${chatRoom}`, function (msg) {
+            const batch = JSON.parse(msg.body);
+            if (chatReady) batch.forEach(displayChatMessage);
+            else chatBacklog.push(...batch);
+        });
+        loadChatHistory();
+        
+        // Presence arrives as batches of JOIN/MOVE/LEAVE changes on top of the /api/presence snapshot
+        stompClient.subscribe('/topic/presence', function (msg) {
+            JSON.parse(msg.body).forEach(ev => {
+                if (ev.type === 'LEAVE') delete presence[ev.user];
+                else presence[ev.user] = ev.file;
+            });
+            renderPresence();
+        });
+        fetch('/api/presence').then(res => res.json()).then(snapshot => {
+            presence = snapshot;
+            renderPresence();
+        });
+        pingPresence();
+        clearInterval(presenceInterval);
+        presenceInterval = setInterval(pingPresence, 15000); // Heartbeat; the server expires silent users
+
+        fetchFiles();
+    }, function () {
+        // The server closes sessions that stop reading (see hyperide.ws.send-time-limit-ms)
+        setTimeout(connectSocket, 2000);
+    });
+}
+
+// Only the file being viewed is subscribed, so edits elsewhere never reach this client
+function watchFile(path) {
+    if (!stompClient || !stompClient.connected || path === watchedFile) return;
+    if (fileSubscription) fileSubscription.unsubscribe();
+    if (diagnosticsSubscription) diagnosticsSubscription.unsubscribe();
+    fileSubscription = path ? stompClient.subscribe(`/topic/files/${path}/updates`, onFileUpdate) : null;
+    diagnosticsSubscription = path && path.endsWith('.java')
+        ? stompClient.subscribe(`/topic/files/${path}/diagnostics`, (msg) => showDiagnostics(JSON.parse(msg.body)))
+        : null;
+    watchedFile = path;
+}
+
+// Compile errors as editor markers; a new result replaces the previous one
+function showDiagnostics(result) {
+    if (!editorInstance || !result || result.path !== editFile) return;
+    const model = editorInstance.getModel();
+    const severities = { ERROR: monaco.MarkerSeverity.Error, WARNING: monaco.MarkerSeverity.Warning };
+    monaco.editor.setModelMarkers(model, 'javac', result.diagnostics.map(d => {
+        const line = Math.min(Math.max(1, d.line), model.getLineCount());
+        const column = Math.max(1, d.column);
+        const word = model.getWordAtPosition({ lineNumber: line, column: column });
+        return {
+            severity: severities[d.severity] || monaco.MarkerSeverity.Info,
+            message: d.message,
+            startLineNumber: line, startColumn: column,
+            endLineNumber: line, endColumn: word ? word.endColumn : column + 1
+        };
+    }));
+}
+
+function loadDiagnostics(path) {
+    if (editorInstance) monaco.editor.setModelMarkers(editorInstance.getModel(), 'javac', []);
+    if (!path.endsWith('.java')) return;
+    fetch(`/api/diagnostics?path=${encodeURIComponent(path)}`)
+        .then(res => res.ok ? res.json() : null)
+        .then(showDiagnostics)
+        .catch(() => {}); // Markers are a convenience; the next edit brings fresh ones
+}
+
 function loadFileContent(path) {
     if (!path) return;
+    clearTimeout(debounceTimer);
+    flushEdits(); // Best effort: don't drop ops still queued for the file we are leaving
+    watchFile(path); // Before fetching, so no update between the fetch and the subscription is lost
     fetch(`/api/editor/content?path=${encodeURIComponent(path)}`)
-        .then(res => res.text())
-        .then(text => {
-            if (editorInstance) {
-                isApplyingNetworkUpdate = true;
-                editorInstance.setValue(text);
-                monaco.editor.setModelLanguage(editorInstance.getModel(), path.endsWith('.py') ? 'python' : 'java');
-                isApplyingNetworkUpdate = false;
+        .then(res => {
+            if (res.headers.get("X-Large-File")) {
+                if (res.body) res.body.cancel(); // Read it in pages instead
+                openLargeFile(path);
+                return;
             }
+            return Promise.all([res.text(), res.headers.get("X-Doc-Version")]).then(([text, version]) => {
+                leaveLargeFile();
+                if (editorInstance) {
+                    isApplyingNetworkUpdate = true;
+                    editorInstance.setValue(text);
+                    monaco.editor.setModelLanguage(editorInstance.getModel(), path.endsWith('.py') ? 'python' : 'java');
+                    isApplyingNetworkUpdate = false;
+                }
+                editFile = path;
+                docVersion = Number(version || 0);
+                inFlight = null;
+                outbox = [];
+                resyncPending = false;
+                loadDiagnostics(path);
+            });
         });
 }
 
-function displayChatMessage(msg) {
-    const box = document.getElementById('chatMessages');
+// Large files are read-only: no edits are tracked (editFile stays empty) and the text
+// arrives a page at a time from /api/editor/page
+function openLargeFile(path) {
+    largeFile = { path: path, nextOffset: 0, done: false, loading: false };
+    editFile = "";
+    inFlight = null;
+    outbox = [];
+    resyncPending = false;
+    if (!editorInstance) return;
+    isApplyingNetworkUpdate = true;
+    editorInstance.setValue("");
+    monaco.editor.setModelLanguage(editorInstance.getModel(), path.endsWith('.py') ? 'python' : 'plaintext');
+    monaco.editor.setModelMarkers(editorInstance.getModel(), 'javac', []);
+    isApplyingNetworkUpdate = false;
+    editorInstance.updateOptions({ readOnly: true });
+    loadNextPage();
+}
+
+function leaveLargeFile() {
+    if (!largeFile) return;
+    largeFile = null;
+    if (editorInstance) editorInstance.updateOptions({ readOnly: false });
+}
+
+function loadNextPage() {
+    const file = largeFile;
+    if (!file || file.loading || file.done) return;
+    file.loading = true;
+    fetch(`/api/editor/page?path=${encodeURIComponent(file.path)}&offset=${file.nextOffset}`)
+        .then(res => res.ok ? res.json() : Promise.reject(res.status))
+        .then(page => {
+            if (largeFile !== file || !editorInstance) return; // Another file was opened meanwhile
+            const model = editorInstance.getModel();
+            const end = model.getFullModelRange().getEndPosition();
+            isApplyingNetworkUpdate = true;
+            model.applyEdits([{ range: new monaco.Range(end.lineNumber, end.column, end.lineNumber, end.column), text: page.text }]);
+            isApplyingNetworkUpdate = false;
+            file.nextOffset = page.nextOffset;
+            file.done = page.nextOffset >= page.fileSize;
+        })
+        .catch(() => { file.done = true; }) // Stop paging; reopening the file retries
+        .finally(() => { file.loading = false; });
+}
+
+function flushEdits() {
+    if (inFlight || outbox.length === 0 || !editFile || !stompClient || !stompClient.connected) return;
+    inFlight = outbox;
+    inFlightBase = docVersion;
+    outbox = [];
+    stompClient.send("/app/edit", {}, JSON.stringify({
+        fileName: editFile, baseVersion: docVersion, ops: inFlight, clientId: clientId, user: currentUser, role: currentRole
+    }));
+}
+
+function applyRemoteOps(ops) {
+    const model = editorInstance.getModel();
+    isApplyingNetworkUpdate = true;
+    ops.forEach(op => {
+        const start = model.getPositionAt(op.position);
+        const end = op.type === "DELETE" ? model.getPositionAt(op.position + op.length) : start;
+        model.applyEdits([{
+            range: new monaco.Range(start.lineNumber, start.column, end.lineNumber, end.column),
+            text: op.type === "INSERT" ? op.text : ""
+        }]);
+    });
+    isApplyingNetworkUpdate = false;
+}
+
+function loadChatHistory() {
+    fetch(`/api/chat/${chatRoom}/history?limit=50`).then(res => res.json()).then(history => {
+        document.getElementById('chatMessages').innerHTML = '';
+        chatLastId = 0;
+        chatFirstId = history.length ? history[0].id : 0;
+        history.concat(chatBacklog).forEach(displayChatMessage);
+        chatBacklog = [];
+        chatReady = true;
+    });
+}
+
+function loadOlderChat() {
+    if (chatLoadingOlder || chatFirstId <= 1) return;
+    chatLoadingOlder = true;
+    fetch(`/api/chat/${chatRoom}/history?before=${chatFirstId}&limit=50`).then(res => res.json()).then(older => {
+        const box = document.getElementById('chatMessages');
+        const height = box.scrollHeight;
+        older.reverse().forEach(msg => box.insertBefore(chatMessageElement(msg), box.firstChild));
+        if (older.length) chatFirstId = older[older.length - 1].id;
+        box.scrollTop = box.scrollHeight - height; // Keep the view where it was
+    }).finally(() => { chatLoadingOlder = false; });
+}
+
+function chatMessageElement(msg) {
     const div = document.createElement('div');
     div.className = 'chat-msg';
     const color = msg.content.startsWith('[ADMIN]') ? '#ff4d4d' : (msg.sender === currentUser ? '#007acc' : '#e0ab18');
     div.innerHTML = `<b style="color: ${color}">${msg.sender}:</b> ${msg.content} <span style="font-size:9px; color:#555; float:right;">${msg.timestamp}</span>`;
-    box.appendChild(div);
+    return div;
+}
+
+function displayChatMessage(msg) {
+    if (msg.id <= chatLastId) return; // Already shown by the history that overlapped a batch
+    chatLastId = msg.id;
+    const box = document.getElementById('chatMessages');
+    box.appendChild(chatMessageElement(msg));
     box.scrollTop = box.scrollHeight;
 }
 
+function renderPresence() {
+    if (currentRole !== 'ADMIN') return;
+    let html = "";
+    for (const [user, file] of Object.entries(presence)) {
+        html += `<div style="margin-bottom:5px;"><b>${user}</b> ➡️ <span style="color:#007acc;">${file}</span></div>`;
+    }
+    const monitor = document.getElementById('adminMonitor');
+    if (monitor) monitor.innerHTML = html || "No active users.";
+}
+
 function pingPresence() {
     if (stompClient && stompClient.connected && activeFile) {
         stompClient.send("/app/presence", {}, JSON.stringify({ user: currentUser, file: activeFile }));
@@ -0,0 +1,55 @@
+package com.hyperide.backend.config;
+
+import com.hyperide.backend.service.AccessControlService;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TopicAccessInterceptorTests {
+
+	private static TopicAccessInterceptor interceptor(AccessControlService acl) {
+		TopicAccessInterceptor interceptor = new TopicAccessInterceptor();
+		ReflectionTestUtils.setField(interceptor, "accessControlService", acl);
+		return interceptor;
+	}
+
+	private static Message<byte[]> subscribe(String user, String destination) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+		accessor.setDestination(destination);
+		accessor.setSessionId("s1");
+		if (user != null) accessor.setUser(new SessionUserInterceptor.SessionUser(user));
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+
+	@Test
+	void fileTopicsNeedReadAccess() {
+		AccessControlService acl = mock(AccessControlService.class);
+		when(acl.canRead("alice", "alice/a.txt")).thenReturn(true);
+		TopicAccessInterceptor interceptor = interceptor(acl);
+
+		Message<byte[]> own = subscribe("alice", "/topic/files/alice/a.txt/updates");
+		assertSame(own, interceptor.preSend(own, null));
+		assertNull(interceptor.preSend(subscribe("alice", "/topic/files/admin/notes.txt/updates"), null));
+		assertNull(interceptor.preSend(subscribe("alice", "/topic/files/admin/notes.txt/diagnostics"), null));
+		assertNull(interceptor.preSend(subscribe(null, "/topic/files/alice/a.txt/updates"), null));
+		verify(acl, times(2)).canRead("alice", "admin/notes.txt");
+	}
+
+	@Test
+	void otherTopicsAreLeftAlone() {
+		AccessControlService acl = mock(AccessControlService.class);
+		TopicAccessInterceptor interceptor = interceptor(acl);
+
+		Message<byte[]> files = subscribe(null, "/topic/files");
+		assertSame(files, interceptor.preSend(files, null));
+		Message<byte[]> chat = subscribe(null, "/topic/chat/general");
+		assertSame(chat, interceptor.preSend(chat, null));
+		verifyNoInteractions(acl);
+	}
+}
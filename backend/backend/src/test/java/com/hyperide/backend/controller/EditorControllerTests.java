@@ -0,0 +1,191 @@
+package com.hyperide.backend.controller;
+
+import com.hyperide.backend.cluster.SharedState;
+import com.hyperide.backend.config.HyperideMetrics;
+import com.hyperide.backend.config.SessionUserInterceptor;
+import com.hyperide.backend.exec.ExecutionJob;
+import com.hyperide.backend.exec.ExecutionService;
+import com.hyperide.backend.model.User;
+import com.hyperide.backend.model.EditOperation;
+import com.hyperide.backend.model.EditRequest;
+import com.hyperide.backend.model.EditResponse;
+import com.hyperide.backend.service.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class EditorControllerTests {
+
+	private EditorController controller;
+	private AccessControlService acl;
+	private EditSequencer sequencer;
+	private SharedState sharedState;
+	private FileTopicService fileTopicService;
+	private DocumentService documents;
+	private ContributionService contributions;
+
+	@BeforeEach
+	void setUp() {
+		HyperideMetrics metrics = new HyperideMetrics();
+		ReflectionTestUtils.setField(metrics, "registry", new SimpleMeterRegistry());
+		metrics.init();
+		// Runs each task at once, on the caller's thread
+		sequencer = mock(EditSequencer.class);
+		doAnswer(call -> {
+			call.<Runnable>getArgument(1).run();
+			return null;
+		}).when(sequencer).submit(anyString(), any());
+		documents = mock(DocumentService.class);
+		when(documents.resolve(anyString())).thenReturn(Path.of("unused"));
+		acl = mock(AccessControlService.class);
+		when(acl.canWrite("root", "admin/notes.txt")).thenReturn(true);
+		when(acl.isAdmin("root")).thenReturn(true);
+		sharedState = mock(SharedState.class);
+		fileTopicService = mock(FileTopicService.class);
+		contributions = mock(ContributionService.class);
+
+		controller = new EditorController();
+		ReflectionTestUtils.setField(controller, "metrics", metrics);
+		ReflectionTestUtils.setField(controller, "editSequencer", sequencer);
+		ReflectionTestUtils.setField(controller, "documentService", documents);
+		ReflectionTestUtils.setField(controller, "accessControlService", acl);
+		ReflectionTestUtils.setField(controller, "sharedState", sharedState);
+		ReflectionTestUtils.setField(controller, "fileTopicService", fileTopicService);
+		ReflectionTestUtils.setField(controller, "contributionService", contributions);
+		ReflectionTestUtils.setField(controller, "writeBehindPersister", mock(WriteBehindPersister.class));
+		ReflectionTestUtils.setField(controller, "searchService", mock(SearchService.class));
+		ReflectionTestUtils.setField(controller, "diagnosticsService", mock(DiagnosticsService.class));
+	}
+
+	private static SimpMessageHeaderAccessor session(String user) {
+		SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create();
+		headers.setSessionId("s1");
+		if (user != null) headers.setUser(new SessionUserInterceptor.SessionUser(user));
+		return headers;
+	}
+
+	private EditResponse published() {
+		return published("admin/notes.txt");
+	}
+
+	private EditResponse published(String path) {
+		ArgumentCaptor<Object> response = ArgumentCaptor.forClass(Object.class);
+		verify(fileTopicService).publishUpdate(eq(path), response.capture());
+		return (EditResponse) response.getValue();
+	}
+
+	@Test
+	void editsTakeTheUserFromTheSessionNotThePayload() {
+		EditRequest request = new EditRequest();
+		request.setFileName("admin/notes.txt");
+		request.setContent("taken over");
+		request.setUser("root");
+		request.setRole("ADMIN");
+
+		controller.handleEdit(request, session("bob"));
+
+		EditResponse response = published();
+		assertEquals("ERROR", response.getType());
+		assertEquals("bob", response.getUser());
+		verify(acl).canWrite("bob", "admin/notes.txt");
+		verify(sharedState, never()).claimLock(anyString(), anyString());
+	}
+
+	@Test
+	void guestsCannotEdit() {
+		EditRequest request = new EditRequest();
+		request.setFileName("admin/notes.txt");
+		request.setContent("x");
+		request.setUser("root");
+
+		controller.handleEdit(request, session(null));
+
+		assertEquals("ERROR", published().getType());
+		verify(sharedState, never()).claimLock(anyString(), anyString());
+	}
+
+	@Test
+	void contributionsAreCreditedToTheSessionUser() {
+		List<EditOperation> ops = List.of(EditOperation.insert(0, "hi"));
+		when(acl.canWrite("bob", "bob/a.txt")).thenReturn(true);
+		when(sharedState.claimLock("bob/a.txt", "bob")).thenReturn("bob");
+		when(documents.applyEdit("bob/a.txt", 0, ops)).thenReturn(new LiveDocument.AppliedEdit(0, 1, ops));
+		EditRequest request = new EditRequest();
+		request.setFileName("bob/a.txt");
+		request.setOps(ops);
+		request.setBaseVersion(0L);
+		request.setUser("alice");
+
+		controller.handleEdit(request, session("bob"));
+
+		EditResponse response = published("bob/a.txt");
+		assertEquals("DELTA", response.getType());
+		assertEquals("bob", response.getUser());
+		verify(contributions).record("bob", "bob/a.txt", ops);
+	}
+
+	@Test
+	void presenceIsForTheSessionUser() {
+		PresenceService presence = mock(PresenceService.class);
+		ReflectionTestUtils.setField(controller, "presenceService", presence);
+
+		controller.updatePresence(Map.of("user", "root", "file", "bob/a.txt"), session("bob"));
+		controller.updatePresence(Map.of("user", "root", "file", "bob/a.txt"), session(null));
+
+		verify(presence).heartbeat("s1", "bob", "bob/a.txt");
+		verify(presence).heartbeat("s1", null, "bob/a.txt");
+		verify(presence, never()).heartbeat(anyString(), eq("root"), anyString());
+	}
+
+	@Test
+	void editsAFullLaneCannotTakeAreRejectedToTheSenderOnly() {
+		doThrow(new RejectedExecutionException()).when(sequencer).submit(anyString(), any());
+		EditRequest request = new EditRequest();
+		request.setFileName("bob/a.txt");
+		request.setOps(List.of(EditOperation.insert(0, "hi")));
+		request.setBaseVersion(7L);
+		request.setClientId("tab-1");
+
+		controller.handleEdit(request, session("bob"));
+
+		ArgumentCaptor<Object> reply = ArgumentCaptor.forClass(Object.class);
+		verify(fileTopicService).reply(eq("s1"), reply.capture());
+		EditResponse rejected = (EditResponse) reply.getValue();
+		assertEquals("REJECTED", rejected.getType());
+		assertEquals("tab-1", rejected.getClientId());
+		assertEquals(7, rejected.getBaseVersion());
+		verify(fileTopicService, never()).publishUpdate(anyString(), any());
+	}
+
+	@Test
+	void runsAreShownToTheirOwnerOnly() {
+		ExecutionService executions = mock(ExecutionService.class);
+		ReflectionTestUtils.setField(controller, "executionService", executions);
+		ExecutionJob job = mock(ExecutionJob.class);
+		when(job.getOwner()).thenReturn("bob");
+		when(executions.get("job-1")).thenReturn(job);
+		MockHttpSession bob = new MockHttpSession();
+		User user = new User();
+		user.setUsername("bob");
+		bob.setAttribute("user", user);
+
+		assertEquals(200, controller.getRun("job-1", bob).getStatusCode().value());
+		assertEquals(404, controller.getRun("job-1", new MockHttpSession()).getStatusCode().value());
+		assertEquals(404, controller.getRun("job-2", bob).getStatusCode().value());
+	}
+}
@@ -0,0 +1,41 @@
+package com.hyperide.backend.exec;
+
+import com.hyperide.backend.config.HyperideMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ExecutionServiceTests {
+
+	@Test
+	void shutdownFinishesRunsStillQueued() {
+		HyperideMetrics metrics = new HyperideMetrics();
+		ReflectionTestUtils.setField(metrics, "registry", new SimpleMeterRegistry());
+		metrics.init();
+		ExecutionService service = new ExecutionService();
+		ReflectionTestUtils.setField(service, "messagingTemplate", mock(SimpMessagingTemplate.class));
+		ReflectionTestUtils.setField(service, "metrics", metrics);
+		ReflectionTestUtils.setField(service, "runners", 0); // Nothing leaves the queue
+		ReflectionTestUtils.setField(service, "maxQueuedJobs", 8);
+		ReflectionTestUtils.setField(service, "maxQueuedJobsPerUser", 4);
+		ReflectionTestUtils.setField(service, "retainJobs", 10);
+		ReflectionTestUtils.setField(service, "flushIntervalMs", 50L);
+		service.start();
+
+		ExecutionJob queued = service.submit("alice", "python", "print(1)");
+		assertFalse(queued.completion().isDone());
+		service.shutdown();
+
+		assertTrue(queued.completion().isDone());
+		assertEquals("UNAVAILABLE", queued.completion().join().getStatus());
+		assertEquals(ExecutionJob.State.DONE, queued.getState());
+		assertEquals(0, service.queueDepth());
+
+		ExecutionJob late = service.submit("alice", "python", "print(2)");
+		assertEquals("UNAVAILABLE", late.completion().join().getStatus());
+	}
+}
@@ -0,0 +1,34 @@
+package com.hyperide.backend.exec;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FairJobQueueTests {
+
+	@Test
+	void servesOwnersRoundRobin() throws InterruptedException {
+		FairJobQueue<String> queue = new FairJobQueue<>(10, 5);
+		queue.offer("alice", "a1");
+		queue.offer("alice", "a2");
+		queue.offer("alice", "a3");
+		queue.offer("bob", "b1");
+		StringBuilder order = new StringBuilder();
+		for (int i = 0; i < 4; i++) order.append(queue.poll(0, TimeUnit.MILLISECONDS)).append(' ');
+		assertEquals("a1 b1 a2 a3 ", order.toString());
+		assertNull(queue.poll(0, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	void refusesOffersBeyondBounds() {
+		FairJobQueue<String> queue = new FairJobQueue<>(3, 2);
+		assertTrue(queue.offer("alice", "a1"));
+		assertTrue(queue.offer("alice", "a2"));
+		assertFalse(queue.offer("alice", "a3"));
+		assertTrue(queue.offer("bob", "b1"));
+		assertFalse(queue.offer("carol", "c1"));
+		assertEquals(3, queue.size());
+	}
+}
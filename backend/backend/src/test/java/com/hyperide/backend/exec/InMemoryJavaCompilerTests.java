@@ -0,0 +1,32 @@
+package com.hyperide.backend.exec;
+
+import com.hyperide.backend.model.CompileDiagnostic;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryJavaCompilerTests {
+
+	@Test
+	void checkResolvesTheRestOfTheProjectFromSource() {
+		InMemoryJavaCompiler compiler = new InMemoryJavaCompiler();
+		Map<String, String> project = Map.of(
+				"Main.java", "package app;\npublic class Main {\n    int n = new Helper().twice(2);\n    String s = new Helper().missing();\n}\n",
+				"Helper.java", "package app;\npublic class Helper {\n    int twice(int x) { return 2 * x; }\n    int broken() { return \"\"; }\n}\n");
+
+		List<CompileDiagnostic> diagnostics = compiler.check(Map.of("Main.java", project.get("Main.java")), project);
+
+		// Only Main is reported on: its missing call, not Helper's own error
+		assertEquals(1, diagnostics.size());
+		CompileDiagnostic error = diagnostics.get(0);
+		assertEquals("Main.java", error.getFile());
+		assertEquals(4, error.getLine());
+		assertEquals("ERROR", error.getSeverity());
+		assertTrue(error.getMessage().contains("missing"));
+
+		assertTrue(compiler.check(Map.of("Main.java", "package app;\npublic class Main { Helper h; }\n"), project).isEmpty());
+	}
+}
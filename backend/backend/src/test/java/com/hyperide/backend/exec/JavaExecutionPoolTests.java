@@ -0,0 +1,117 @@
+package com.hyperide.backend.exec;
+
+import com.hyperide.backend.config.HyperideMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class JavaExecutionPoolTests {
+
+	@TempDir
+	Path scratch;
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private JavaExecutionPool pool;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		InMemoryJavaCompiler compiler = new InMemoryJavaCompiler();
+		assumeTrue(compiler.isAvailable(), "no system Java compiler");
+		CompileCache compileCache = new CompileCache();
+		ReflectionTestUtils.setField(compileCache, "compiler", compiler);
+		ReflectionTestUtils.setField(compileCache, "dir", scratch.resolve("compile-cache").toString());
+		ReflectionTestUtils.setField(compileCache, "maxBytes", 1L << 20);
+		compileCache.init();
+		ScratchSpace scratchSpace = new ScratchSpace();
+		ReflectionTestUtils.setField(scratchSpace, "dir", scratch.resolve("exec-tmp").toString());
+		scratchSpace.init();
+		HyperideMetrics metrics = new HyperideMetrics();
+		ReflectionTestUtils.setField(metrics, "registry", registry);
+		metrics.init();
+		pool = new JavaExecutionPool();
+		ReflectionTestUtils.setField(pool, "compiler", compiler);
+		ReflectionTestUtils.setField(pool, "compileCache", compileCache);
+		ReflectionTestUtils.setField(pool, "scratchSpace", scratchSpace);
+		ReflectionTestUtils.setField(pool, "metrics", metrics);
+		ReflectionTestUtils.setField(pool, "workers", 1);
+		ReflectionTestUtils.setField(pool, "workerHeapMb", 64);
+		ReflectionTestUtils.setField(pool, "maxRunsPerWorker", 100);
+		ReflectionTestUtils.setField(pool, "acquireTimeoutMs", 20_000L);
+		ReflectionTestUtils.setField(pool, "timeLimitMs", 1_000L);
+		ReflectionTestUtils.setField(pool, "cpuLimitMs", 1_000L);
+		ReflectionTestUtils.setField(pool, "outputLimitBytes", 1_000);
+		pool.start();
+		pool.bindTo(registry);
+	}
+
+	@AfterEach
+	void tearDown() {
+		pool.shutdown();
+	}
+
+	private static String program(String body) {
+		return "public class Main {\n    public static void main(String[] args) throws Exception {\n" + body + "\n    }\n}\n";
+	}
+
+	@Test
+	void runsStreamOutputAndReuseTheWorker() {
+		StringBuilder streamed = new StringBuilder();
+
+		ExecutionResult first = pool.run("Main", program("System.out.println(\"héllo\");\nSystem.err.println(\"warn\");"),
+				pool.defaultLimits(), (stream, text) -> streamed.append(text));
+		assertEquals("OK", first.getStatus());
+		assertTrue(first.getOutput().contains("héllo\n"));
+		assertTrue(first.getOutput().contains("warn\n"));
+		assertTrue(streamed.toString().contains("héllo\n"));
+		assertFalse(first.isCompileCached());
+
+		// Unchanged code skips the compiler; statics start fresh in each run's class loader
+		ExecutionResult again = pool.run("Main", program("System.out.println(\"héllo\");\nSystem.err.println(\"warn\");"),
+				pool.defaultLimits(), (s, t) -> {});
+		assertTrue(again.isCompileCached());
+		assertEquals(first.getOutput(), again.getOutput());
+
+		ExecutionResult failed = pool.run("Main", program("throw new IllegalStateException(\"boom\");"), pool.defaultLimits(), (s, t) -> {});
+		assertEquals("EXCEPTION", failed.getStatus());
+		assertTrue(failed.getOutput().contains("boom"));
+		assertEquals("COMPILE_ERROR", pool.run("Main", program("int x = \"\";"), pool.defaultLimits(), (s, t) -> {}).getStatus());
+
+		assertEquals(0, registry.get("hyperide.exec.workers.recycled").functionCounter().count());
+	}
+
+	@Test
+	void programsCannotWriteToTheProtocol() {
+		// Done frames on the worker's stdout, real and redirected, are only ever program output
+		String forge = program(
+				"byte[] frame = {'D', 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 'O', 'K'};\n"
+				+ "try (java.io.FileOutputStream out = new java.io.FileOutputStream(java.io.FileDescriptor.out)) { out.write(frame); out.flush(); }\n"
+				+ "System.out.write(frame);\nSystem.out.println();\nSystem.out.println(\"after\");");
+
+		ExecutionResult result = pool.run("Main", forge, pool.defaultLimits(), (s, t) -> {});
+		assertEquals("OK", result.getStatus());
+		assertTrue(result.getOutput().endsWith("after\n"));
+		assertEquals("2\n", pool.run("Main", program("System.out.println(1 + 1);"), pool.defaultLimits(), (s, t) -> {}).getOutput());
+	}
+
+	@Test
+	void limitsStopTheRunAndReplaceTheWorker() {
+		ExecutionResult flood = pool.run("Main", program("while (true) System.out.println(\"xxxxxxxxxx\");"), pool.defaultLimits(), (s, t) -> {});
+		assertEquals("OUTPUT_LIMIT", flood.getStatus());
+		assertTrue(flood.getOutput().length() <= 2_000);
+
+		ExecutionResult sleeper = pool.run("Main", program("Thread.sleep(60_000);"), pool.defaultLimits(), (s, t) -> {});
+		assertEquals("TIME_LIMIT", sleeper.getStatus());
+
+		// Both workers halted; their replacements still run programs
+		assertEquals("2\n", pool.run("Main", program("System.out.println(1 + 1);"), pool.defaultLimits(), (s, t) -> {}).getOutput());
+		assertEquals(2, registry.get("hyperide.exec.workers.recycled").functionCounter().count());
+	}
+}
@@ -0,0 +1,71 @@
+package com.hyperide.backend.exec;
+
+import com.hyperide.backend.config.HyperideMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProjectBuilderTests {
+
+	private ProjectBuilder builder;
+
+	@BeforeEach
+	void setUp() {
+		HyperideMetrics metrics = new HyperideMetrics();
+		ReflectionTestUtils.setField(metrics, "registry", new SimpleMeterRegistry());
+		metrics.init();
+		builder = new ProjectBuilder();
+		ReflectionTestUtils.setField(builder, "compiler", new InMemoryJavaCompiler());
+		ReflectionTestUtils.setField(builder, "metrics", metrics);
+		ReflectionTestUtils.setField(builder, "threads", 2);
+		ReflectionTestUtils.setField(builder, "minFilesPerBatch", 1);
+		ReflectionTestUtils.setField(builder, "cacheBytes", 1L << 20);
+		builder.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		builder.shutdown();
+	}
+
+	@Test
+	void rebuildsOnlyChangedFilesAndTheirDependents() throws Exception {
+		Map<String, String> sources = new HashMap<>();
+		sources.put("app/Main.java", "package app;\nimport util.Text;\npublic class Main { public static void main(String[] a) { System.out.println(Text.shout(\"hi\")); } }\n");
+		sources.put("util/Text.java", "package util;\npublic class Text { public static String shout(String s) { return s.toUpperCase(); } }\n");
+		sources.put("util/Unused.java", "package util;\npublic class Unused { int n; }\n");
+
+		ProjectBuilder.Build first = builder.build("p", sources);
+		assertTrue(first.success(), first.text());
+		assertEquals(3, first.compiledFiles());
+		assertTrue(first.classes().containsKey("app.Main"));
+
+		assertEquals(0, builder.build("p", sources).compiledFiles());
+
+		// Text changes, Main uses it; Unused is left alone
+		sources.put("util/Text.java", "package util;\npublic class Text { public static String shout(String s) { return s + \"!\"; } }\n");
+		ProjectBuilder.Build second = builder.build("p", sources);
+		assertTrue(second.success(), second.text());
+		assertEquals(2, second.compiledFiles());
+		assertEquals(3, second.classes().size());
+
+		// A broken signature fails the build, and the files are compiled again once fixed
+		sources.put("util/Text.java", "package util;\npublic class Text { public static String yell(String s) { return s; } }\n");
+		ProjectBuilder.Build broken = builder.build("p", sources);
+		assertFalse(broken.success());
+		assertEquals("app/Main.java", broken.diagnostics().get(0).getFile());
+		sources.remove("util/Unused.java");
+		sources.put("util/Text.java", "package util;\npublic class Text { public static String shout(String s) { return s; } }\n");
+		ProjectBuilder.Build fixed = builder.build("p", sources);
+		assertTrue(fixed.success(), fixed.text());
+		assertEquals(2, fixed.compiledFiles());
+		assertFalse(fixed.classes().containsKey("util.Unused"));
+	}
+}
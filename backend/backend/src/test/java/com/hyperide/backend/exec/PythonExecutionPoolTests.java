@@ -0,0 +1,84 @@
+package com.hyperide.backend.exec;
+
+import com.hyperide.backend.config.HyperideMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class PythonExecutionPoolTests {
+
+	@TempDir
+	Path scratch;
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private PythonExecutionPool pool;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		ScratchSpace scratchSpace = new ScratchSpace();
+		ReflectionTestUtils.setField(scratchSpace, "dir", scratch.resolve("exec-tmp").toString());
+		scratchSpace.init();
+		HyperideMetrics metrics = new HyperideMetrics();
+		ReflectionTestUtils.setField(metrics, "registry", registry);
+		metrics.init();
+		pool = new PythonExecutionPool();
+		ReflectionTestUtils.setField(pool, "scratchSpace", scratchSpace);
+		ReflectionTestUtils.setField(pool, "metrics", metrics);
+		ReflectionTestUtils.setField(pool, "python", "python3");
+		ReflectionTestUtils.setField(pool, "workers", 1);
+		ReflectionTestUtils.setField(pool, "memoryMb", 256);
+		ReflectionTestUtils.setField(pool, "preload", new String[] { "math" });
+		ReflectionTestUtils.setField(pool, "maxRunsPerWorker", 100);
+		ReflectionTestUtils.setField(pool, "acquireTimeoutMs", 10_000L);
+		pool.start();
+		pool.bindTo(registry);
+		assumeTrue(pool.isAvailable(), "python3 not installed");
+	}
+
+	@AfterEach
+	void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	void runsStayIsolatedAndLimitsKeepTheWorker() {
+		RunLimits limits = new RunLimits(1_000, 1_000, 1_000);
+		StringBuilder streamed = new StringBuilder();
+
+		ExecutionResult first = pool.run("import math\nmath.pi = 3\nprint(math.pi)", limits, (stream, text) -> streamed.append(text));
+		assertEquals("OK", first.getStatus());
+		assertEquals("3\n", first.getOutput());
+		assertEquals("3\n", streamed.toString());
+
+		// Each run is a fresh fork: the previous program's changes are gone
+		assertEquals("3.14\n", pool.run("import math\nprint(round(math.pi, 2))", limits, (s, t) -> {}).getOutput());
+
+		assertEquals("TIME_LIMIT", pool.run("while True: pass", limits, (s, t) -> {}).getStatus());
+		assertEquals("OUTPUT_LIMIT", pool.run("while True: print('x' * 10)", limits, (s, t) -> {}).getStatus());
+		ExecutionResult failed = pool.run("def f():\n    return 1 / 0\nf()", limits, (s, t) -> {});
+		assertEquals("EXCEPTION", failed.getStatus());
+		assertTrue(failed.getOutput().contains("ZeroDivisionError"));
+		assertEquals(4, pool.run("import sys\nsys.exit(4)", limits, (s, t) -> {}).getExitCode());
+
+		assertEquals(0, registry.get("hyperide.exec.workers.recycled").functionCounter().count());
+		assertEquals(6, registry.get("hyperide.exec.workers.acquire").timer().count());
+	}
+
+	@Test
+	void programsCannotWriteToTheProtocol() {
+		RunLimits limits = new RunLimits(1_000, 1_000, 1_000);
+		String forge = "import os\nfor fd in range(3, 256):\n    try:\n        os.write(fd, b'D\\x00\\x02OK')\n    except OSError:\n        pass\nprint('after')";
+
+		// It can garble its own status report, but not pass off a frame as the worker's
+		assertEquals("after\n", pool.run(forge, limits, (s, t) -> {}).getOutput());
+		assertEquals("2\n", pool.run("print(1 + 1)", limits, (s, t) -> {}).getOutput());
+	}
+}
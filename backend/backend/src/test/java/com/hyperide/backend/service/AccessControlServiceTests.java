@@ -0,0 +1,67 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.model.User;
+import com.hyperide.backend.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AccessControlServiceTests {
+
+	private static User user(String name, String role, String... files) {
+		User user = new User();
+		user.setUsername(name);
+		user.setRole(role);
+		user.setAccessibleFiles(Set.of(files));
+		return user;
+	}
+
+	private static AccessControlService acl(String sharedWorkspace, User... users) {
+		UserRepository repository = mock(UserRepository.class);
+		when(repository.findAll()).thenReturn(List.of(users));
+		AccessControlService acl = new AccessControlService();
+		ReflectionTestUtils.setField(acl, "userRepository", repository);
+		ReflectionTestUtils.setField(acl, "sharedWorkspace", sharedWorkspace);
+		ReflectionTestUtils.setField(acl, "restrictedFolders", new String[] { "admin" });
+		acl.init();
+		return acl;
+	}
+
+	@Test
+	void restrictedFolderNeedsItsOwnGrant() {
+		AccessControlService acl = acl("write", user("alice", "USER", "admin/notes.txt"), user("bob", "USER"), user("root", "ADMIN"));
+
+		assertTrue(acl.canWrite("bob", "alice/a.txt"));
+		assertFalse(acl.canRead("bob", "admin/notes.txt"));
+		assertFalse(acl.canRead("bob", "bob/../admin/notes.txt"));
+		assertTrue(acl.canWrite("alice", "admin/notes.txt"));
+		assertFalse(acl.canRead("alice", "admin/other.txt"));
+		assertTrue(acl.canWrite("root", "admin/other.txt"));
+
+		assertEquals(List.of(new AccessControlService.Region("", List.of("admin"))), acl.view("bob"));
+		assertEquals(List.of(new AccessControlService.Region("", List.of("admin")),
+				new AccessControlService.Region("admin/notes.txt", List.of())), acl.view("alice"));
+	}
+
+	@Test
+	void privateWorkspaceFollowsGrantUpdates() {
+		AccessControlService acl = acl("none", user("alice", "USER"), user("bob", "USER"));
+		assertFalse(acl.canRead("bob", "alice/a.txt"));
+		assertEquals(List.of(new AccessControlService.Region("bob", List.of())), acl.view("bob"));
+
+		acl.update(user("bob", "USER", "alice/shared"));
+		assertTrue(acl.canWrite("bob", "alice/shared/x.py"));
+		assertFalse(acl.canRead("bob", "alice/a.txt"));
+		assertEquals(2, acl.view("bob").size());
+
+		acl.update(user("bob", "USER"));
+		assertFalse(acl.canRead("bob", "alice/shared/x.py"));
+		assertTrue(acl.view(null).isEmpty());
+	}
+}
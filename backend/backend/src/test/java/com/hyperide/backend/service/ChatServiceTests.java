@@ -0,0 +1,127 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.cluster.SharedState;
+import com.hyperide.backend.model.ChatMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ChatServiceTests {
+
+	private static final JsonMapper JSON = JsonMapper.builder().build();
+
+	@TempDir
+	Path dir;
+
+	private ChatService chat() throws Exception {
+		ChatService chat = new ChatService();
+		ReflectionTestUtils.setField(chat, "messagingTemplate", mock(SimpMessagingTemplate.class));
+		ReflectionTestUtils.setField(chat, "jsonMapper", JSON);
+		ReflectionTestUtils.setField(chat, "sharedState", mock(SharedState.class));
+		ReflectionTestUtils.setField(chat, "dir", dir.toString());
+		ReflectionTestUtils.setField(chat, "instance", "8080");
+		ReflectionTestUtils.setField(chat, "recentPerRoom", 2); // So history also comes from the log
+		ReflectionTestUtils.setField(chat, "batchMs", 3_600_000L); // Flushed by the tests instead
+		ReflectionTestUtils.setField(chat, "burst", 100);
+		ReflectionTestUtils.setField(chat, "perSecond", 1.0);
+		ReflectionTestUtils.setField(chat, "maxRooms", 10);
+		chat.start();
+		return chat;
+	}
+
+	private static String line(long id, String content) {
+		ChatMessage message = new ChatMessage();
+		message.setId(id);
+		message.setRoom("public");
+		message.setSender("alice");
+		message.setContent(content);
+		return JSON.writeValueAsString(message);
+	}
+
+	private static List<Long> ids(List<ChatMessage> messages) {
+		return messages.stream().map(ChatMessage::getId).toList();
+	}
+
+	private static void flush(ChatService chat) {
+		ReflectionTestUtils.invokeMethod(chat, "flush");
+	}
+
+	@Test
+	void loadCutsATornTailAndSkipsBadLinesAndGaps() throws Exception {
+		Path log = dir.resolve("public.log");
+		String whole = line(1, "one") + "\n" + "{not json\n" + line(2, "two") + "\n" + line(5, "five") + "\n";
+		String torn = line(6, "torn");
+		Files.writeString(log, whole + torn.substring(0, torn.length() / 2));
+
+		ChatService chat = chat();
+		assertEquals(List.of(1L, 2L, 5L), ids(chat.history("public", 0, 10)));
+		assertEquals(whole, Files.readString(log));
+
+		ChatMessage next = chat.post("public", "alice", "alice", "six");
+		assertEquals(6, next.getId());
+		flush(chat);
+		chat.shutdown();
+
+		ChatService reloaded = chat();
+		assertEquals(List.of(1L, 2L, 5L, 6L), ids(reloaded.history("public", 0, 10)));
+		assertEquals(List.of(2L, 5L), ids(reloaded.history("public", 6, 4)));
+		reloaded.shutdown();
+	}
+
+	@Test
+	void failedWriteIsRetriedAfterCuttingTheLogBack() throws Exception {
+		ChatService chat = chat();
+		chat.post("public", "alice", "alice", "one");
+		flush(chat);
+		Object room = ((Map<?, ?>) ReflectionTestUtils.getField(chat, "rooms")).get("public");
+		((FileChannel) ReflectionTestUtils.getField(room, "writer")).close(); // The next write fails
+
+		chat.post("public", "alice", "alice", "two");
+		flush(chat);
+		assertEquals(1, ((AtomicLong) ReflectionTestUtils.getField(chat, "logFailures")).get());
+		assertTrue((Boolean) ReflectionTestUtils.getField(room, "cutBack"));
+		// What a write that failed part way through leaves behind
+		Path log = dir.resolve("public.log");
+		Files.writeString(log, line(2, "two").substring(0, 10), StandardOpenOption.APPEND);
+
+		chat.post("public", "alice", "alice", "three");
+		flush(chat);
+		chat.shutdown();
+
+		List<String> lines = Files.readAllLines(log);
+		assertEquals(List.of(line(1, "one"), line(2, "two"), line(3, "three")),
+				lines.stream().map(l -> JSON.readValue(l, ChatMessage.class)).map(m -> line(m.getId(), m.getContent())).toList());
+	}
+
+	@Test
+	void rateIsLimitedPerKeyAndIdleBucketsExpire() throws Exception {
+		ChatService chat = chat();
+		ReflectionTestUtils.setField(chat, "burst", 2);
+		assertNotNull(chat.post("public", "guest", "session:a", "1"));
+		assertNotNull(chat.post("public", "guest", "session:a", "2"));
+		assertNull(chat.post("public", "guest", "session:a", "3"));
+		assertNotNull(chat.post("public", "guest", "session:b", "1"));
+		Map<?, ?> buckets = (Map<?, ?>) ReflectionTestUtils.getField(chat, "buckets");
+		assertEquals(2, buckets.size());
+
+		ReflectionTestUtils.invokeMethod(chat, "expireBuckets");
+		assertEquals(2, buckets.size());
+		ReflectionTestUtils.setField(chat, "perSecond", 1e12); // Both have had time to refill
+		ReflectionTestUtils.invokeMethod(chat, "expireBuckets");
+		assertTrue(buckets.isEmpty());
+		chat.shutdown();
+	}
+}
@@ -0,0 +1,118 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.model.EditOperation;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentCacheTests {
+
+	private static LiveDocument document(int chars) {
+		return new LiveDocument("x".repeat(chars));
+	}
+
+	private static DocumentCache cache(long maxBytes) {
+		DocumentCache cache = new DocumentCache();
+		ReflectionTestUtils.setField(cache, "maxBytes", maxBytes);
+		return cache;
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedToStayWithinTheByteBudget() {
+		long weight = document(1000).weight();
+		DocumentCache cache = cache(2 * weight + weight / 2);
+		cache.putIfAbsent("a", document(1000));
+		cache.putIfAbsent("b", document(1000));
+		cache.get("a");
+		cache.putIfAbsent("c", document(1000));
+
+		assertNotNull(cache.peek("a"));
+		assertNull(cache.peek("b"));
+		assertNotNull(cache.peek("c"));
+		assertEquals(2 * weight, cache.weightBytes());
+
+		// One large document displaces several small ones
+		cache.putIfAbsent("big", document(2000));
+		assertEquals(1, cache.size());
+		assertNotNull(cache.peek("big"));
+		assertTrue(cache.weightBytes() <= 2 * weight + weight / 2);
+	}
+
+	@Test
+	void growingDocumentIsReweighedAndEvictsOthers() {
+		long weight = document(1000).weight();
+		DocumentCache cache = cache(2 * weight + weight / 2);
+		cache.putIfAbsent("a", document(1000));
+		LiveDocument b = cache.putIfAbsent("b", document(1000));
+		b.replace("x".repeat(1500));
+		b.markPersisted(b.getVersion());
+		cache.reweigh("b");
+
+		assertNull(cache.peek("a"));
+		assertEquals(b.weight(), cache.weightBytes());
+	}
+
+	@Test
+	void dirtyDocumentsArePinnedUntilPersisted() {
+		long weight = document(1000).weight();
+		DocumentCache cache = cache(2 * weight + weight / 2);
+		LiveDocument dirty = cache.putIfAbsent("a", document(1000));
+		dirty.apply(0, List.of(EditOperation.insert(0, "!")));
+		cache.reweigh("a");
+		cache.putIfAbsent("b", document(1000));
+		cache.putIfAbsent("c", document(1000));
+
+		// The dirty document is the least recently used but is skipped
+		assertSame(dirty, cache.peek("a"));
+		assertNull(cache.peek("b"));
+		assertNotNull(cache.peek("c"));
+
+		cache.putIfAbsent("d", document(1000));
+		assertSame(dirty, cache.peek("a"));
+		assertNull(cache.peek("c"));
+
+		// Over budget with nothing evictable but the pinned document and the newest one
+		cache.get("d");
+		ReflectionTestUtils.setField(cache, "maxBytes", weight + weight / 2);
+		cache.trim();
+		assertEquals(2, cache.size());
+		assertEquals(dirty.weight() + weight, cache.weightBytes());
+
+		dirty.markPersisted(dirty.getVersion());
+		cache.trim();
+		assertNull(cache.peek("a"));
+		assertNotNull(cache.peek("d"));
+		assertEquals(weight, cache.weightBytes());
+		// An edit still holding the evicted document is refused so the caller reloads
+		assertThrows(LiveDocument.RetiredException.class, () -> dirty.apply(1, List.of(EditOperation.insert(0, "?"))));
+	}
+
+	@Test
+	void mostRecentlyUsedDocumentIsNeverEvicted() {
+		DocumentCache cache = cache(document(10).weight());
+		LiveDocument first = cache.putIfAbsent("a", document(1000));
+		assertSame(first, cache.peek("a"));
+		assertEquals(1, cache.size());
+
+		LiveDocument second = cache.putIfAbsent("b", document(1000));
+		assertNull(cache.peek("a"));
+		assertSame(second, cache.peek("b"));
+
+		cache.trim();
+		assertSame(second, cache.peek("b"));
+		assertEquals(second.weight(), cache.weightBytes());
+	}
+
+	@Test
+	void putIfAbsentKeepsTheFirstLoad() {
+		DocumentCache cache = cache(Long.MAX_VALUE);
+		LiveDocument first = cache.putIfAbsent("a", document(10));
+		assertSame(first, cache.putIfAbsent("a", document(10)));
+		assertEquals(first.weight(), cache.weightBytes());
+		assertSame(first, cache.remove("a"));
+		assertEquals(0, cache.weightBytes());
+	}
+}
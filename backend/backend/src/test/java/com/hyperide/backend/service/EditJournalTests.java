@@ -0,0 +1,83 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.model.EditOperation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EditJournalTests {
+
+	@TempDir
+	Path dir;
+
+	private EditJournal journal;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		journal = new EditJournal();
+		ReflectionTestUtils.setField(journal, "dir", dir.toString());
+		journal.init();
+	}
+
+	private static LiveDocument.AppliedEdit insert(long base, String text) {
+		return new LiveDocument.AppliedEdit(base, base + 1, List.of(EditOperation.insert(0, text)));
+	}
+
+	@Test
+	void cutsOffTornTailRecord() throws Exception {
+		journal.append("alice/a.txt", insert(0, "x"));
+		journal.append("alice/a.txt", insert(1, "y"));
+		Path file = dir.resolve("alice/a.txt.journal");
+		Files.write(file, new byte[] { 0, 0, 0, 40, 1, 2 }, StandardOpenOption.APPEND);
+
+		EditJournal.Replay replay = journal.read("alice/a.txt");
+		assertEquals(2, replay.edits().size());
+		assertEquals("y", replay.edits().get(1).ops().get(0).getText());
+		assertEquals(List.of("alice/a.txt"), journal.paths());
+		journal.append("alice/a.txt", insert(2, "z"));
+		assertEquals(3, journal.read("alice/a.txt").edits().size());
+	}
+
+	@Test
+	void compactionKeepsOnlyEditsAfterTheSnapshot() throws Exception {
+		journal.append("a.txt", insert(0, "x"));
+		journal.beginSnapshot("a.txt", 1, EditJournal.checksum("x"));
+		journal.append("a.txt", insert(1, "y"));
+		journal.compact("a.txt", 1, EditJournal.checksum("x"));
+
+		EditJournal.Replay replay = journal.read("a.txt");
+		assertEquals(List.of(new EditJournal.SnapshotMark(1, EditJournal.checksum("x"))), replay.snapshots());
+		assertEquals(1, replay.edits().size());
+		assertEquals(2, replay.edits().get(0).version());
+		assertEquals(2, journal.lastVersion("a.txt"));
+		journal.compact("a.txt", 2, EditJournal.checksum("yx"));
+		assertEquals(2, journal.lastVersion("a.txt"));
+		journal.forget("a.txt");
+		assertEquals(0, journal.lastVersion("a.txt"));
+	}
+
+	@Test
+	void concurrentAppendsStayWholeAndLeaveNoLocksBehind() throws Exception {
+		Thread[] writers = new Thread[8];
+		for (int t = 0; t < writers.length; t++) {
+			int first = t * 100;
+			writers[t] = new Thread(() -> {
+				for (int i = first; i < first + 100; i++) journal.append("a.txt", insert(i, "x"));
+			});
+			writers[t].start();
+		}
+		for (Thread writer : writers) writer.join();
+
+		assertEquals(800, journal.read("a.txt").edits().size());
+		assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(journal, "locks")).isEmpty());
+	}
+}
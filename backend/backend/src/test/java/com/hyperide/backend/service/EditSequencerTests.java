@@ -0,0 +1,45 @@
+package com.hyperide.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EditSequencerTests {
+
+	@Test
+	void fullLaneRefusesInsteadOfQueuing() throws Exception {
+		EditSequencer sequencer = new EditSequencer();
+		ReflectionTestUtils.setField(sequencer, "laneCount", 1);
+		ReflectionTestUtils.setField(sequencer, "laneCapacity", 2);
+		sequencer.start();
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger ran = new AtomicInteger();
+
+		sequencer.submit("a.txt", () -> {
+			running.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			ran.incrementAndGet();
+		});
+		assertTrue(running.await(5, TimeUnit.SECONDS));
+		sequencer.submit("a.txt", ran::incrementAndGet);
+		sequencer.submit("b.txt", ran::incrementAndGet);
+		assertThrows(RejectedExecutionException.class, () -> sequencer.submit("a.txt", ran::incrementAndGet));
+
+		release.countDown();
+		while (ran.get() < 3) Thread.sleep(10);
+		sequencer.submit("a.txt", ran::incrementAndGet); // Room again once the lane has drained
+		sequencer.shutdown();
+		assertEquals(4, ran.get());
+	}
+}
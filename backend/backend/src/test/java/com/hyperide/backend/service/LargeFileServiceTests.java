@@ -0,0 +1,62 @@
+package com.hyperide.backend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LargeFileServiceTests {
+
+	@TempDir
+	Path dir;
+
+	private LargeFileService service;
+
+	@BeforeEach
+	void setUp() {
+		service = new LargeFileService();
+		ReflectionTestUtils.setField(service, "thresholdBytes", 16L);
+		ReflectionTestUtils.setField(service, "pageBytes", 10);
+	}
+
+	@Test
+	void pagesEndAtLineBreaksAndCoverTheFile() throws Exception {
+		Path file = dir.resolve("log.txt");
+		String text = "one\ntwo\nthree\nfour five six\n7";
+		Files.writeString(file, text);
+		assertTrue(service.isLarge(file));
+		assertFalse(service.isLarge(dir.resolve("missing.txt")));
+
+		StringBuilder read = new StringBuilder();
+		long offset = 0;
+		LargeFileService.Page page = service.page(file, 0, 0);
+		assertEquals("one\ntwo\n", page.text());
+		while (offset < text.length()) {
+			page = service.page(file, offset, 0);
+			assertTrue(page.nextOffset() > offset);
+			read.append(page.text());
+			offset = page.nextOffset();
+		}
+		assertEquals(text, read.toString());
+	}
+
+	@Test
+	void neverSplitsAMultiByteCharacter() throws Exception {
+		Path file = dir.resolve("wide.txt");
+		String text = "ééééééééééééé"; // 2 bytes each, no line breaks
+		Files.writeString(file, text);
+
+		LargeFileService.Page first = service.page(file, 0, 9);
+		assertEquals("éééé", first.text());
+		assertEquals(8, first.nextOffset());
+		// An offset inside a character starts at the next one
+		assertEquals(4, service.page(file, 3, 4).offset());
+		assertEquals(text.getBytes(StandardCharsets.UTF_8).length, first.fileSize());
+	}
+}
@@ -0,0 +1,64 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.model.EditOperation;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveDocumentTests {
+
+	@Test
+	void appliesDeltaOnCurrentVersion() {
+		LiveDocument doc = new LiveDocument("hello world");
+		LiveDocument.AppliedEdit edit = doc.apply(0, List.of(EditOperation.delete(0, 5), EditOperation.insert(0, "goodbye")));
+		assertEquals(1, edit.version());
+		assertEquals("goodbye world", doc.snapshot().content());
+	}
+
+	@Test
+	void rebasesStaleEditOverConcurrentOnes() {
+		LiveDocument doc = new LiveDocument("abcdef");
+		doc.apply(0, List.of(EditOperation.insert(0, "XY")));
+		doc.apply(1, List.of(EditOperation.delete(4, 2)));          // "XYabef"
+		LiveDocument.AppliedEdit edit = doc.apply(0, List.of(EditOperation.delete(1, 4), EditOperation.insert(1, "!")));
+		assertEquals(2, edit.baseVersion());
+		assertEquals("XYa!f", doc.snapshot().content());
+	}
+
+	@Test
+	void concurrentInsertsAtSameOffsetKeepAppliedTextFirst() {
+		LiveDocument doc = new LiveDocument("ab");
+		doc.apply(0, List.of(EditOperation.insert(1, "1")));
+		doc.apply(0, List.of(EditOperation.insert(1, "2")));
+		assertEquals("a12b", doc.snapshot().content());
+	}
+
+	@Test
+	void rejectsUnknownBaseAndOutOfRangeOps() {
+		LiveDocument doc = new LiveDocument("abc");
+		assertNull(doc.apply(5, List.of(EditOperation.insert(0, "x"))));
+		assertThrows(IllegalArgumentException.class, () -> doc.apply(0, List.of(EditOperation.delete(2, 5))));
+		assertEquals("abc", doc.snapshot().content());
+	}
+
+	@Test
+	void rejectsStaleFullReplace() {
+		LiveDocument doc = new LiveDocument("abc", 7);
+		doc.apply(7, List.of(EditOperation.insert(3, "d")));
+		assertNull(doc.replace(7, "overwritten"));
+		assertEquals("abcd", doc.snapshot().content());
+		assertEquals(9, doc.replace(8, "xyz").version());
+	}
+
+	@Test
+	void catchesUpWithLoggedEditsInOrderOnly() {
+		LiveDocument doc = new LiveDocument("ab", 3);
+		assertTrue(doc.catchUp(new LiveDocument.AppliedEdit(3, 4, List.of(EditOperation.insert(2, "c")))));
+		assertTrue(doc.catchUp(new LiveDocument.AppliedEdit(3, 4, List.of(EditOperation.insert(2, "c")))));
+		assertFalse(doc.catchUp(new LiveDocument.AppliedEdit(5, 6, List.of(EditOperation.insert(0, "x")))));
+		assertEquals(new LiveDocument.Snapshot("abc", 4), doc.snapshot());
+		assertFalse(doc.isDirty());
+	}
+}
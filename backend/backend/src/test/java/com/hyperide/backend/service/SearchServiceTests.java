@@ -0,0 +1,56 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.config.HyperideMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SearchServiceTests {
+
+	private static final String BACKTRACKS = "start" + "a".repeat(40) + "!\nend";
+
+	private SearchService search;
+
+	@BeforeEach
+	void setUp() {
+		HyperideMetrics metrics = new HyperideMetrics();
+		ReflectionTestUtils.setField(metrics, "registry", new SimpleMeterRegistry());
+		metrics.init();
+		DocumentService documents = mock(DocumentService.class);
+		when(documents.peek("a/slow.txt")).thenReturn(new LiveDocument(BACKTRACKS));
+		when(documents.peek("a/Main.java")).thenReturn(new LiveDocument("class Main {\n  void start() {}\n}\n"));
+
+		search = new SearchService();
+		ReflectionTestUtils.setField(search, "documentService", documents);
+		ReflectionTestUtils.setField(search, "metrics", metrics);
+		ReflectionTestUtils.setField(search, "maxCandidates", 100);
+		ReflectionTestUtils.setField(search, "linesPerFile", 3);
+		ReflectionTestUtils.setField(search, "regexTimeLimitMs", 200L);
+		TrigramIndex index = (TrigramIndex) ReflectionTestUtils.getField(search, "index");
+		index.put("a/slow.txt", BACKTRACKS, List.of());
+		index.put("a/Main.java", "class Main {\n  void start() {}\n}\n", List.of("Main", "start"));
+	}
+
+	@Test
+	void regexMatchesWithinTheLimit() {
+		SearchService.Response response = search.search("void \\w+\\(", true, true, SearchService.Kind.TEXT, p -> true, 0, 10);
+		assertEquals(1, response.total());
+		assertEquals("a/Main.java", response.results().get(0).path());
+		assertEquals(2, response.results().get(0).lines().get(0).line());
+	}
+
+	@Test
+	void backtrackingRegexIsStoppedAtTheLimit() {
+		long start = System.nanoTime();
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+				() -> search.search("start(.*a){12}end", true, true, SearchService.Kind.TEXT, p -> true, 0, 10));
+		assertTrue(e.getMessage().contains("200 ms"));
+		assertTrue(System.nanoTime() - start < 5_000_000_000L);
+	}
+}
@@ -0,0 +1,45 @@
+package com.hyperide.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrigramIndexTests {
+
+	private static List<String> paths(TrigramIndex.Candidates candidates) {
+		return candidates.files().stream().map(TrigramIndex.Candidate::path).toList();
+	}
+
+	@Test
+	void candidatesFollowUpdatesAndRemovals() {
+		TrigramIndex index = new TrigramIndex();
+		index.put("a/Main.java", "class Main { void run() {} }", List.of("Main", "run"));
+		index.put("a/util.py", "def helper():\n    return 42", List.of("helper"));
+		index.put("b/notes.txt", "Remember the MAIN thing", List.of());
+
+		assertEquals(List.of("a/Main.java", "b/notes.txt"), paths(index.candidates(List.of("main"), p -> true, 10)));
+		assertEquals(List.of("a/Main.java"), paths(index.candidates(List.of("main"), p -> p.startsWith("a/"), 10)));
+		assertEquals(List.of("Main", "run"), index.candidates(List.of("class"), p -> true, 10).files().get(0).symbols());
+
+		index.put("b/notes.txt", "nothing to see", List.of());
+		index.remove("a/util.py");
+		assertEquals(List.of("a/Main.java"), paths(index.candidates(List.of("main"), p -> true, 10)));
+		assertTrue(index.candidates(List.of("helper"), p -> true, 10).files().isEmpty());
+
+		TrigramIndex.Candidates limited = index.candidates(List.of("nothing", "see"), p -> true, 0);
+		assertTrue(limited.truncated());
+		assertThrows(IllegalArgumentException.class, () -> index.candidates(List.of("ab"), p -> true, 10));
+	}
+
+	@Test
+	void requiredLiteralsAreConservative() {
+		assertEquals(List.of("public void ", "load"), TrigramIndex.requiredLiterals("public void \\w+load"));
+		assertEquals(List.of("Service"), TrigramIndex.requiredLiterals("[A-Z]\\w*Service"));
+		assertEquals(List.of("colo"), TrigramIndex.requiredLiterals("colou?r"));
+		assertEquals(List.of("a.b(c)"), TrigramIndex.requiredLiterals("\\Qa.b(c)\\E"));
+		assertEquals(List.of(), TrigramIndex.requiredLiterals("foo|bar"));
+		assertEquals(List.of("end"), TrigramIndex.requiredLiterals("(optional)?end"));
+	}
+}
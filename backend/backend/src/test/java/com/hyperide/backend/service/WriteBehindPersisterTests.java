@@ -0,0 +1,94 @@
+package com.hyperide.backend.service;
+
+import com.hyperide.backend.config.HyperideMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class WriteBehindPersisterTests {
+
+	private WriteBehindPersister persister;
+	private DocumentService documents;
+	private DocumentCache cache;
+	private SimpleMeterRegistry registry;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		registry = new SimpleMeterRegistry();
+		HyperideMetrics metrics = new HyperideMetrics();
+		ReflectionTestUtils.setField(metrics, "registry", registry);
+		metrics.init();
+		documents = mock(DocumentService.class);
+		when(documents.persist(anyString())).thenReturn(true);
+		cache = mock(DocumentCache.class);
+
+		persister = new WriteBehindPersister();
+		ReflectionTestUtils.setField(persister, "documentService", documents);
+		ReflectionTestUtils.setField(persister, "documentCache", cache);
+		ReflectionTestUtils.setField(persister, "metrics", metrics);
+		// Only the edit count or shutdown can trigger a flush in these tests
+		ReflectionTestUtils.setField(persister, "flushIntervalMs", 3_600_000L);
+		ReflectionTestUtils.setField(persister, "maxPendingEdits", 3);
+		persister.bindTo(registry);
+		persister.start();
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		persister.shutdown();
+	}
+
+	@Test
+	void flushesOnceMaxPendingEditsPileUp() throws IOException {
+		persister.markDirty("a.txt");
+		persister.markDirty("a.txt");
+		verify(documents, after(200).never()).persist(anyString());
+
+		persister.markDirty("b.txt");
+		verify(documents, timeout(2000)).persist("a.txt");
+		verify(documents, timeout(2000)).persist("b.txt");
+		// The dirty file is written once however many edits it received
+		verify(documents, times(1)).persist("a.txt");
+		verify(cache, timeout(2000)).trim();
+		assertEquals(2, registry.get("hyperide.persist.files").functionCounter().count());
+		assertEquals(0, registry.get("hyperide.persist.queued").gauge().value());
+	}
+
+	@Test
+	void countRestartsAfterEachFlush() throws IOException {
+		for (int i = 0; i < 3; i++) persister.markDirty("a.txt");
+		verify(documents, timeout(2000)).persist("a.txt");
+
+		persister.markDirty("a.txt");
+		persister.markDirty("a.txt");
+		verify(documents, after(200).times(1)).persist("a.txt");
+	}
+
+	@Test
+	void shutdownDrainsDirtyDocuments() throws Exception {
+		when(documents.persist("b.txt")).thenThrow(new IOException("disk full")).thenReturn(true);
+		persister.markDirty("a.txt");
+		persister.markDirty("b\\c.txt");
+		persister.markDirty("b.txt");
+		verify(documents, timeout(2000)).persist("b.txt");
+		persister.markDirty("c.txt");
+
+		persister.shutdown();
+
+		verify(documents, times(1)).persist("a.txt");
+		verify(documents, times(1)).persist("b/c.txt");
+		// The failed write is retried before shutdown gives up
+		verify(documents, times(2)).persist("b.txt");
+		verify(documents, times(1)).persist("c.txt");
+		assertEquals(1, registry.get("hyperide.persist.failures").functionCounter().count());
+		assertEquals(0, registry.get("hyperide.persist.queued").gauge().value());
+	}
+}
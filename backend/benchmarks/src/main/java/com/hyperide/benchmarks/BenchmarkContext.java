@@ -0,0 +1,70 @@
+package com.hyperide.benchmarks;
+
+import com.hyperide.backend.BackendApplication;
+import com.hyperide.backend.service.DocumentService;
+import com.hyperide.backend.service.EditSequencer;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A full backend in the benchmark JVM, with the workspace generated first. Data that is
+ * not the workspace (database, journal, caches) goes to a temp dir, and no Java workers
+ * are started. The workspace itself is ./hyperide_files, which the backend fixes
+ * relative to the working directory; run benchmarks from an empty one.
+ */
+final class BenchmarkContext implements AutoCloseable {
+
+    final ConfigurableApplicationContext spring;
+    final List<String> files;
+    private final Path data;
+
+    private BenchmarkContext(ConfigurableApplicationContext spring, List<String> files, Path data) {
+        this.spring = spring;
+        this.files = files;
+        this.data = data;
+    }
+
+    /** Generates a workspace of the given size, then starts the backend with extra "key=value" properties. */
+    static BenchmarkContext start(int files, int fileBytes, String... properties) throws IOException {
+        List<String> paths = WorkspaceGenerator.generate(DocumentService.STORAGE_ROOT, files, fileBytes, 42);
+        Path data = Files.createTempDirectory("hyperide-bench");
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                "--hyperide.journal.dir=" + data.resolve("journal"),
+                "--hyperide.chat.dir=" + data.resolve("chat"),
+                "--hyperide.exec.compile-cache.dir=" + data.resolve("compile-cache"),
+                "--hyperide.exec.scratch-dir=" + data.resolve("exec-tmp"),
+                "--hyperide.exec.java.workers=0"));
+        for (String property : properties) args.add("--" + property);
+        ConfigurableApplicationContext spring = SpringApplication.run(BackendApplication.class, args.toArray(String[]::new));
+        return new BenchmarkContext(spring, paths, data);
+    }
+
+    <T> T bean(Class<T> type) {
+        return spring.getBean(type);
+    }
+
+    /** Waits until everything queued on the path's edit lane so far has run. */
+    void drainLane(String path) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        bean(EditSequencer.class).submit(path, () -> done.complete(null));
+        done.join();
+    }
+
+    @Override
+    public void close() throws IOException {
+        spring.close();
+        WorkspaceGenerator.delete(data);
+        WorkspaceGenerator.delete(DocumentService.STORAGE_ROOT);
+    }
+}
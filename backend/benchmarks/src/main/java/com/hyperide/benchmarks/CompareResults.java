@@ -0,0 +1,80 @@
+package com.hyperide.benchmarks;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH result files written with "-rf json": for each benchmark and parameter
+ * combination, the score before and after, the change, and whether the change is larger
+ * than the two runs' error margins together (otherwise it is reported as noise).
+ *
+ *     java -cp benchmarks.jar com.hyperide.benchmarks.CompareResults before.json after.json
+ */
+public final class CompareResults {
+
+    record Score(double value, double error, String unit, String mode) {}
+
+    private CompareResults() {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: CompareResults <before.json> <after.json>");
+            System.exit(2);
+        }
+        Map<String, Score> before = read(new File(args[0]));
+        Map<String, Score> after = read(new File(args[1]));
+
+        System.out.printf("%-70s %14s %14s %9s  %s%n", "Benchmark", "Before", "After", "Change", "");
+        for (Map.Entry<String, Score> e : after.entrySet()) {
+            Score b = before.get(e.getKey());
+            Score a = e.getValue();
+            if (b == null) {
+                System.out.printf("%-70s %14s %14.3f %9s  new (%s)%n", e.getKey(), "-", a.value(), "", a.unit());
+                continue;
+            }
+            double change = b.value() == 0 ? 0 : (a.value() - b.value()) / b.value() * 100;
+            boolean significant = Math.abs(a.value() - b.value()) > errorOf(a) + errorOf(b);
+            // Throughput is better when higher; the time modes are better when lower
+            boolean better = "thrpt".equals(a.mode()) == a.value() > b.value();
+            String verdict = !significant ? "noise" : better ? "better" : "WORSE";
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%%  %s (%s)%n", e.getKey(), b.value(), a.value(), change, verdict, a.unit());
+        }
+        for (String key : before.keySet()) {
+            if (!after.containsKey(key)) System.out.printf("%-70s only in %s%n", key, args[0]);
+        }
+    }
+
+    private static double errorOf(Score score) {
+        return Double.isNaN(score.error()) ? 0 : score.error();
+    }
+
+    // JMH writes "NaN" as a string when a run has too few iterations for an error margin
+    private static double number(JsonNode node) {
+        return node.isNumber() ? node.asDouble() : Double.parseDouble(node.asString());
+    }
+
+    /** Results keyed by benchmark name plus its parameters, e.g. "EditBenchmark.handleEdit docSize=1000". */
+    static Map<String, Score> read(File file) {
+        JsonNode results = JsonMapper.builder().build().readTree(file);
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode result : results) {
+            String name = result.get("benchmark").asString();
+            StringBuilder key = new StringBuilder(name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1));
+            JsonNode params = result.get("params");
+            if (params != null) {
+                Map<String, String> sorted = new TreeMap<>();
+                for (Map.Entry<String, JsonNode> p : params.properties()) sorted.put(p.getKey(), p.getValue().asString());
+                sorted.forEach((k, v) -> key.append(' ').append(k).append('=').append(v));
+            }
+            JsonNode metric = result.get("primaryMetric");
+            scores.put(key.toString(), new Score(number(metric.get("score")), number(metric.get("scoreError")),
+                    metric.get("scoreUnit").asString(), result.get("mode").asString()));
+        }
+        return scores;
+    }
+}
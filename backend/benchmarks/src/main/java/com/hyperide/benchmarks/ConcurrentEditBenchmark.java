@@ -0,0 +1,90 @@
+package com.hyperide.benchmarks;
+
+import com.hyperide.backend.controller.EditorController;
+import com.hyperide.backend.model.EditOperation;
+import com.hyperide.backend.model.EditRequest;
+import com.hyperide.backend.service.DocumentService;
+import com.hyperide.backend.service.LiveDocument;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Several clients editing at once, each on a file of its own (spread over the edit lanes)
+ * or all on one shared file (one lane, with edits sent against a version others have
+ * already moved past, so they are transformed). Each operation waits for its own edit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ConcurrentEditBenchmark {
+
+    private static final int DOC_SIZE = 10_000;
+    private static final int THREADS = 16; // Files set up; at most this many benchmark threads
+
+    @Param({"distinct", "shared"})
+    public String mode;
+
+    private BenchmarkContext context;
+    private EditorController controller;
+    private DocumentService documents;
+    private final AtomicInteger nextClient = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Client {
+        String user;
+        String path;
+        final Random random = new Random();
+        int position = -1;
+
+        @Setup(Level.Trial)
+        public void setUp(ConcurrentEditBenchmark benchmark) {
+            int id = benchmark.nextClient.getAndIncrement();
+            user = "client" + id;
+            path = "distinct".equals(benchmark.mode) ? "bench/doc" + (id % THREADS) + ".txt" : "bench/shared.txt";
+            random.setSeed(id);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkContext.start(0, 0);
+        controller = context.bean(EditorController.class);
+        documents = context.bean(DocumentService.class);
+        for (int i = 0; i < THREADS; i++) {
+            documents.saveFileToDiskSync("bench/doc" + i + ".txt", WorkspaceGenerator.content(new Random(i), DOC_SIZE));
+        }
+        documents.saveFileToDiskSync("bench/shared.txt", WorkspaceGenerator.content(new Random(42), DOC_SIZE));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        context.close();
+    }
+
+    @Benchmark
+    public void handleEdit(Client client) {
+        LiveDocument doc = documents.peek(client.path);
+        EditRequest request = new EditRequest();
+        request.setFileName(client.path);
+        request.setUser(client.user);
+        request.setBaseVersion(doc == null ? documents.loadFile(client.path).version() : doc.getVersion());
+        // First half of the document only, so concurrent deletes never push it out of range
+        if (client.position < 0) {
+            client.position = client.random.nextInt(DOC_SIZE / 2);
+            request.setOps(List.of(EditOperation.insert(client.position, "x")));
+        } else {
+            request.setOps(List.of(EditOperation.delete(client.position, 1)));
+            client.position = -1;
+        }
+        controller.handleEdit(request);
+        context.drainLane(client.path);
+    }
+}
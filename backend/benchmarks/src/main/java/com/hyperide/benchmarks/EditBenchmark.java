@@ -0,0 +1,69 @@
+package com.hyperide.benchmarks;
+
+import com.hyperide.backend.controller.EditorController;
+import com.hyperide.backend.model.EditOperation;
+import com.hyperide.backend.model.EditRequest;
+import com.hyperide.backend.service.DocumentService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One client editing one file through handleEdit, at several document sizes. Each
+ * operation is a single-character insert or delete, sent at the current version, and
+ * waits until its lane has applied and published it. Inserts and deletes alternate at
+ * one position, so the document keeps its size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EditBenchmark {
+
+    private static final String PATH = "bench/doc.txt";
+
+    @Param({"1000", "100000", "1000000"})
+    public int docSize;
+
+    private BenchmarkContext context;
+    private EditorController controller;
+    private final Random random = new Random(7);
+    private long version;
+    private int position = -1;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkContext.start(0, 0);
+        controller = context.bean(EditorController.class);
+        DocumentService documents = context.bean(DocumentService.class);
+        documents.saveFileToDiskSync(PATH, WorkspaceGenerator.content(new Random(42), docSize));
+        version = documents.loadFile(PATH).version();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        context.close();
+    }
+
+    @Benchmark
+    public void handleEdit() {
+        EditRequest request = new EditRequest();
+        request.setFileName(PATH);
+        request.setUser("bench");
+        request.setBaseVersion(version);
+        if (position < 0) {
+            position = random.nextInt(docSize);
+            request.setOps(List.of(EditOperation.insert(position, "x")));
+        } else {
+            request.setOps(List.of(EditOperation.delete(position, 1)));
+            position = -1;
+        }
+        controller.handleEdit(request);
+        context.drainLane(PATH);
+        version++;
+    }
+}
@@ -0,0 +1,54 @@
+package com.hyperide.benchmarks;
+
+import com.hyperide.backend.controller.EditorController;
+import com.hyperide.backend.model.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpSession;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getFiles for a regular user over workspaces of 1k to 100k files: the whole listing
+ * (size=0, as older clients ask for it) and the first page of 100.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileListBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int files;
+
+    @Param({"0", "100"})
+    public int pageSize;
+
+    private BenchmarkContext context;
+    private EditorController controller;
+    private final MockHttpSession session = new MockHttpSession();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkContext.start(files, 256);
+        controller = context.bean(EditorController.class);
+        User user = new User();
+        user.setUsername("u000");
+        user.setRole("USER");
+        session.setAttribute("user", user);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        context.close();
+    }
+
+    @Benchmark
+    public List<String> getFiles() {
+        ResponseEntity<List<String>> response = controller.getFiles(null, 0, pageSize, session);
+        return response.getBody();
+    }
+}
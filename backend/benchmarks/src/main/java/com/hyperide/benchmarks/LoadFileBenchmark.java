@@ -0,0 +1,54 @@
+package com.hyperide.benchmarks;
+
+import com.hyperide.backend.service.DocumentService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * loadFile round-robin over a set of files, either all resident in the document cache
+ * ("hit") or with a cache too small to keep any of them, so every load reads the file
+ * from disk ("miss").
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadFileBenchmark {
+
+    private static final int FILES = 1000;
+    private static final int FILE_BYTES = 4096;
+
+    @Param({"hit", "miss"})
+    public String cache;
+
+    private BenchmarkContext context;
+    private DocumentService documents;
+    private List<String> paths;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = "miss".equals(cache)
+                ? BenchmarkContext.start(FILES, FILE_BYTES, "hyperide.cache.max-bytes=1")
+                : BenchmarkContext.start(FILES, FILE_BYTES);
+        documents = context.bean(DocumentService.class);
+        paths = context.files;
+        for (String path : paths) documents.loadFile(path);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        context.close();
+    }
+
+    @Benchmark
+    public String loadFile() {
+        String path = paths.get(next);
+        next = (next + 1) % paths.size();
+        return documents.loadFile(path).content();
+    }
+}
@@ -0,0 +1,68 @@
+package com.hyperide.benchmarks;
+
+import com.hyperide.backend.controller.AuthController;
+import com.hyperide.backend.model.User;
+import com.hyperide.backend.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logins through AuthController by many threads at once, like a class all signing in at
+ * the start of a lesson, round-robin over a set of users. The user lookup either hits
+ * the user cache ("hit") or, with a cache of one, goes to the database every time
+ * ("miss"); either way each login is a BCrypt check on the bounded hashing pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class LoginBenchmark {
+
+    private static final int USERS = 100;
+    private static final String PASSWORD = "Benchmark1!";
+
+    @Param({"hit", "miss"})
+    public String cache;
+
+    private BenchmarkContext context;
+    private AuthController auth;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = "miss".equals(cache)
+                ? BenchmarkContext.start(0, 0, "hyperide.auth.cache.max-users=1")
+                : BenchmarkContext.start(0, 0);
+        auth = context.bean(AuthController.class);
+        UserService users = context.bean(UserService.class);
+        // One hash for everyone: each takes BCrypt's full cost, and only checking them is measured
+        String hash = users.encode(PASSWORD);
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setUsername("login" + i);
+            user.setPassword(hash);
+            user.setRole("USER");
+            users.save(user);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        context.close();
+    }
+
+    @Benchmark
+    public ResponseEntity<?> login() {
+        User request = new User();
+        request.setUsername("login" + ThreadLocalRandom.current().nextInt(USERS));
+        request.setPassword(PASSWORD);
+        ResponseEntity<?> response = auth.login(request);
+        if (response.getStatusCode().value() != 200) throw new IllegalStateException("Login failed: " + response.getStatusCode());
+        return response;
+    }
+}
@@ -0,0 +1,75 @@
+package com.hyperide.benchmarks;
+
+import com.hyperide.backend.config.WebSocketTransportStats;
+import com.hyperide.backend.service.PresenceService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One presence batch fanned out to N subscribers of /topic/presence: a handful of users
+ * move between files, the batch is flushed, and the operation ends once the outbound
+ * channel has handed a copy to every subscriber. Subscribers are registered with the
+ * simple broker directly, without sockets, so this measures the server's side of the
+ * fan-out; the batch timer is pushed out so only the benchmark flushes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PresenceBenchmark {
+
+    private static final int MOVERS = 10;
+
+    @Param({"10", "100", "1000"})
+    public int subscribers;
+
+    private BenchmarkContext context;
+    private PresenceService presence;
+    private WebSocketTransportStats transport;
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkContext.start(0, 0, "hyperide.presence.batch-ms=3600000");
+        presence = context.bean(PresenceService.class);
+        transport = context.bean(WebSocketTransportStats.class);
+        SimpleBrokerMessageHandler broker = context.bean(SimpleBrokerMessageHandler.class);
+        for (int i = 0; i < subscribers; i++) {
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            headers.setSessionId("s" + i);
+            headers.setSubscriptionId("sub-0");
+            headers.setDestination("/topic/presence");
+            headers.setLeaveMutable(true);
+            Message<byte[]> subscribe = MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+            broker.getSubscriptionRegistry().registerSubscription(subscribe);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        context.close();
+    }
+
+    @Benchmark
+    public void flushBatch() {
+        round++;
+        for (int i = 0; i < MOVERS; i++) {
+            presence.heartbeat("m" + i, "mover" + i, "u000/d00/f" + ((round + i) % 100) + ".java");
+        }
+        ReflectionTestUtils.invokeMethod(presence, "flush");
+        while (outboundPending() > 0) Thread.onSpinWait();
+    }
+
+    private long outboundPending() {
+        return transport.outbound().pending();
+    }
+}
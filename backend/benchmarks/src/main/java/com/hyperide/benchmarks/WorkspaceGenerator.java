@@ -0,0 +1,75 @@
+package com.hyperide.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Builds a synthetic workspace: users' folders, each with sub-folders of source files,
+ * with content drawn from a seeded random, so the same arguments always give the same
+ * tree. Benchmarks call it before starting the backend; it can also be run on its own:
+ *
+ *     java -cp benchmarks.jar com.hyperide.benchmarks.WorkspaceGenerator hyperide_files 10000 2048 42
+ */
+public final class WorkspaceGenerator {
+
+    public static final int FILES_PER_FOLDER = 100;
+    public static final int FOLDERS_PER_USER = 10;
+
+    private static final String[] LINES = {
+            "public class Main {", "    public static void main(String[] args) {", "        int total = 0;",
+            "        for (int i = 0; i < 10; i++) total += i;", "        System.out.println(total);", "    }", "}",
+            "def solve(xs):", "    return sorted(set(xs))", "print(solve([3, 1, 2]))", "// TODO: edge cases", ""
+    };
+
+    private WorkspaceGenerator() {}
+
+    /** Deletes root and fills it with the given number of files; returns their workspace paths in creation order. */
+    public static List<String> generate(Path root, int files, int fileBytes, long seed) throws IOException {
+        delete(root);
+        Random random = new Random(seed);
+        List<String> paths = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            int folder = i / FILES_PER_FOLDER;
+            String path = String.format("u%03d/d%02d/f%05d.%s", folder / FOLDERS_PER_USER, folder % FOLDERS_PER_USER, i,
+                    random.nextBoolean() ? "java" : "py");
+            Path file = root.resolve(path);
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, content(random, fileBytes));
+            paths.add(path);
+        }
+        return paths;
+    }
+
+    /** Text of about the given length, made of source-like lines. */
+    public static String content(Random random, int bytes) {
+        StringBuilder text = new StringBuilder(bytes + 64);
+        while (text.length() < bytes) text.append(LINES[random.nextInt(LINES.length)]).append('\n');
+        text.setLength(bytes);
+        return text.toString();
+    }
+
+    public static void delete(Path root) throws IOException {
+        if (Files.notExists(root)) return;
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: WorkspaceGenerator <dir> <files> [fileBytes=2048] [seed=42]");
+            System.exit(2);
+        }
+        int fileBytes = args.length > 2 ? Integer.parseInt(args[2]) : 2048;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        List<String> paths = generate(Paths.get(args[0]), Integer.parseInt(args[1]), fileBytes, seed);
+        System.out.println("Generated " + paths.size() + " files under " + args[0]);
+    }
+}
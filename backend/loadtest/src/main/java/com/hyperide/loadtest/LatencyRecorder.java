@@ -0,0 +1,55 @@
+package com.hyperide.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Latency samples in microseconds, kept in full so percentiles are exact. Samples since
+ * the last {@link #interval()} are also kept apart, for the progress lines.
+ */
+final class LatencyRecorder {
+
+    /** Percentiles of a set of samples, in milliseconds. */
+    record Summary(int count, double p50, double p90, double p99, double p999, double max) {
+        @Override
+        public String toString() {
+            if (count == 0) return "n=0";
+            return String.format("n=%d p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f ms", count, p50, p90, p99, p999, max);
+        }
+    }
+
+    private long[] all = new long[1024];
+    private int allCount;
+    private long[] recent = new long[1024];
+    private int recentCount;
+
+    synchronized void record(long nanos) {
+        long micros = nanos / 1000;
+        if (allCount == all.length) all = Arrays.copyOf(all, all.length * 2);
+        all[allCount++] = micros;
+        if (recentCount == recent.length) recent = Arrays.copyOf(recent, recent.length * 2);
+        recent[recentCount++] = micros;
+    }
+
+    /** Samples since the previous call, and starts a new interval. */
+    synchronized Summary interval() {
+        Summary summary = summarize(recent, recentCount);
+        recentCount = 0;
+        return summary;
+    }
+
+    synchronized Summary total() {
+        return summarize(all, allCount);
+    }
+
+    private static Summary summarize(long[] samples, int count) {
+        if (count == 0) return new Summary(0, 0, 0, 0, 0, 0);
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return new Summary(count, at(sorted, 0.5), at(sorted, 0.9), at(sorted, 0.99), at(sorted, 0.999), sorted[count - 1] / 1000.0);
+    }
+
+    private static double at(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+}
@@ -0,0 +1,42 @@
+package com.hyperide.loadtest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counters shared by all simulated users. */
+final class LoadStats {
+
+    // --- SESSIONS ---
+    final AtomicInteger connected = new AtomicInteger();
+    final LongAdder connectFailures = new LongAdder();
+    final LongAdder disconnects = new LongAdder();   // Sessions lost after connecting: transport errors, server closes
+    final LongAdder stompErrors = new LongAdder();   // ERROR frames and failed message handling
+
+    // --- SENT ---
+    final LongAdder editsSent = new LongAdder();
+    final LongAdder editsSkipped = new LongAdder();  // Tick while the user's previous edit was unacknowledged
+    final LongAdder presenceSent = new LongAdder();
+    final LongAdder chatSent = new LongAdder();
+
+    // --- RECEIVED ---
+    final LongAdder editsAcked = new LongAdder();
+    final LongAdder editsLost = new LongAdder();    // No broadcast within 10s of sending
+    final LongAdder editRejects = new LongAdder();   // CONFLICT, LOCKED or ERROR for the user's own edit
+    final LongAdder updatesReceived = new LongAdder();
+    final LongAdder presenceReceived = new LongAdder();
+    final LongAdder chatReceived = new LongAdder();
+
+    // Own edit sent -> own copy of its broadcast back
+    final LatencyRecorder editLatency = new LatencyRecorder();
+    // Edit sent -> broadcast received by another user viewing the file
+    final LatencyRecorder fanOutLatency = new LatencyRecorder();
+    final LatencyRecorder chatLatency = new LatencyRecorder();
+
+    long received() {
+        return updatesReceived.sum() + presenceReceived.sum() + chatReceived.sum();
+    }
+
+    long sent() {
+        return editsSent.sum() + presenceSent.sum() + chatSent.sum();
+    }
+}
@@ -0,0 +1,275 @@
+package com.hyperide.loadtest;
+
+import org.springframework.messaging.converter.JacksonJsonMessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Drives simulated users (see {@link SimulatedUser}) against a running backend over
+ * SockJS/STOMP, the same way the editor connects: each logs in first, registering on the
+ * first run, and opens its STOMP session from that HTTP session, since the server takes
+ * the editing user from there. Reports edit-to-broadcast latency,
+ * message throughput and lost sessions. Users connect over the ramp-up, then all send
+ * traffic for the duration; progress is printed as it runs and a summary at the end,
+ * together with what the server's /actuator/prometheus counted over the run.
+ *
+ * The generator needs CPU too: run it on another machine than the backend when looking
+ * for the server's limits, or check its own load isn't what is being measured.
+ */
+public final class LoadTest {
+
+    static final String PASSWORD = "Load#test1";
+
+    // Kept so the level set on it is not lost to garbage collection
+    private static final Logger SOCKJS_LOG = Logger.getLogger("org.springframework.web.socket.sockjs.client");
+
+    private final LoadTestOptions options;
+    private final LoadStats stats = new LoadStats();
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final List<SimulatedUser> users = new ArrayList<>();
+
+    private long lastReportNanos;
+    private long lastSent;
+    private long lastReceived;
+
+    private LoadTest(LoadTestOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].matches("-+(help|h)")) {
+            System.out.print(LoadTestOptions.usage());
+            return;
+        }
+        LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(LoadTestOptions.usage());
+            System.exit(2);
+            return;
+        }
+        new LoadTest(options).run();
+        System.exit(0);
+    }
+
+    private void run() throws InterruptedException {
+        Map<String, Double> serverBefore = serverStats();
+
+        ThreadPoolTaskScheduler heartbeats = new ThreadPoolTaskScheduler();
+        heartbeats.setPoolSize(2);
+        heartbeats.setThreadNamePrefix("stomp-heartbeat-");
+        heartbeats.initialize();
+        WebSocketStompClient client = new WebSocketStompClient(new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        client.setMessageConverter(new JacksonJsonMessageConverter());
+        client.setTaskScheduler(heartbeats);
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+                    Thread t = new Thread(r, "load");
+                    t.setDaemon(true);
+                    return t;
+                });
+        long start = System.nanoTime();
+        lastReportNanos = start;
+        scheduler.scheduleAtFixedRate(() -> progress(start), options.reportSeconds(), options.reportSeconds(), TimeUnit.SECONDS);
+
+        // --- RAMP-UP ---
+        System.out.printf("Connecting %d users to %s over %ds%n", options.users(), options.url(), options.rampSeconds());
+        long gapNanos = options.users() == 0 ? 0 : TimeUnit.SECONDS.toNanos(options.rampSeconds()) / options.users();
+        for (int i = 0; i < options.users(); i++) {
+            SimulatedUser user = new SimulatedUser(i, options.users(), options.viewers(), stats);
+            users.add(user);
+            // Off the ramp's thread: logging in is a blocking HTTP call
+            scheduler.execute(() -> {
+                String sessionCookie = login(user);
+                if (sessionCookie == null) {
+                    stats.connectFailures.increment();
+                    return;
+                }
+                user.connect(client, options.url(), sessionCookie).whenComplete((session, error) -> {
+                    if (error != null) {
+                        stats.connectFailures.increment();
+                        return;
+                    }
+                    // Off the connection's thread: opening the file is a blocking HTTP call
+                    scheduler.execute(() -> {
+                        open(user, sessionCookie);
+                        user.start(scheduler, options);
+                    });
+                });
+            });
+            TimeUnit.NANOSECONDS.sleep(start + gapNanos * (i + 1) - System.nanoTime());
+        }
+
+        // --- STEADY STATE ---
+        System.out.printf("Ramp-up done, %d connected; running for %ds%n", stats.connected.get(), options.durationSeconds());
+        LatencyRecorder.Summary rampEdits = stats.editLatency.total();
+        long steadyStart = System.nanoTime();
+        long sentBefore = stats.sent();
+        long receivedBefore = stats.received();
+        TimeUnit.SECONDS.sleep(options.durationSeconds());
+        long steadyNanos = System.nanoTime() - steadyStart;
+        long steadySent = stats.sent() - sentBefore;
+        long steadyReceived = stats.received() - receivedBefore;
+
+        users.forEach(SimulatedUser::stop);
+        TimeUnit.SECONDS.sleep(2); // Let broadcasts of the last edits arrive
+        scheduler.shutdownNow();
+
+        report(steadySent, steadyReceived, steadyNanos, rampEdits.count());
+        reportServer(serverBefore, serverStats());
+
+        // Broadcasts still arriving as sessions close would each log an error
+        SOCKJS_LOG.setLevel(Level.OFF);
+        users.forEach(SimulatedUser::disconnect);
+        heartbeats.shutdown();
+    }
+
+    // The login page's form; a successful login redirects to the editor. Returns the session
+    // cookie, or null if the login failed
+    private String login(SimulatedUser user) {
+        try {
+            submit("/doRegister", user.name); // Refused once the user exists, which is fine
+            HttpResponse<Void> response = submit("/doLogin", user.name);
+            if (response.statusCode() == 302 && response.headers().firstValue("Location").orElse("").endsWith("/ide")) {
+                for (String cookie : response.headers().allValues("Set-Cookie")) {
+                    if (cookie.startsWith("JSESSIONID=")) return cookie.split(";", 2)[0];
+                }
+            }
+            System.err.println("Logging in " + user.name + " returned " + response.statusCode());
+        } catch (Exception e) {
+            System.err.println("Logging in " + user.name + " failed: " + e.getMessage());
+        }
+        return null;
+    }
+
+    private HttpResponse<Void> submit(String path, String username) throws Exception {
+        String form = "username=" + URLEncoder.encode(username, StandardCharsets.UTF_8)
+                + "&password=" + URLEncoder.encode(PASSWORD, StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(options.url() + path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .timeout(Duration.ofSeconds(30)).build();
+        return http.send(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    // Fetches the file the way the editor does on opening it; a new file is empty at version 0
+    private void open(SimulatedUser user, String sessionCookie) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(options.url() + "/api/editor/content?path="
+                    + URLEncoder.encode(user.file, StandardCharsets.UTF_8)))
+                    .header("Cookie", sessionCookie)
+                    .timeout(Duration.ofSeconds(10)).build();
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 200) {
+                user.opened(response.body(), response.headers().firstValueAsLong("X-Doc-Version").orElse(0));
+                return;
+            }
+            System.err.println("Opening " + user.file + " returned " + response.statusCode());
+        } catch (Exception e) {
+            System.err.println("Opening " + user.file + " failed: " + e.getMessage());
+        }
+        user.opened("", 0); // Edits will conflict once and resync from the server's reply
+    }
+
+    // --- REPORTING ---
+    private void progress(long start) {
+        long now = System.nanoTime();
+        double seconds = (now - lastReportNanos) / 1e9;
+        long sent = stats.sent();
+        long received = stats.received();
+        System.out.printf("[%4ds] users=%d/%d sent=%.0f/s received=%.0f/s edit %s | fan-out p99=%.1f ms | rejects=%d lost=%d disconnects=%d%n",
+                TimeUnit.NANOSECONDS.toSeconds(now - start), stats.connected.get(), options.users(),
+                (sent - lastSent) / seconds, (received - lastReceived) / seconds,
+                stats.editLatency.interval(), stats.fanOutLatency.interval().p99(),
+                stats.editRejects.sum(), stats.editsLost.sum(), stats.disconnects.sum());
+        lastReportNanos = now;
+        lastSent = sent;
+        lastReceived = received;
+    }
+
+    private void report(long sent, long received, long nanos, int rampEditCount) {
+        double seconds = nanos / 1e9;
+        System.out.println();
+        System.out.println("=== Summary ===");
+        System.out.printf("Users:          %d requested, %d connected at end, %d failed to connect, %d disconnected, %d STOMP errors%n",
+                options.users(), stats.connected.get(), stats.connectFailures.sum(), stats.disconnects.sum(), stats.stompErrors.sum());
+        System.out.printf("Throughput:     %.0f msg/s sent, %.0f msg/s received (steady state, %.0fs)%n", sent / seconds, received / seconds, seconds);
+        System.out.printf("Edits:          %d sent, %d acknowledged, %d rejected, %d lost, %d ticks skipped waiting for an ack%n",
+                stats.editsSent.sum(), stats.editsAcked.sum(), stats.editRejects.sum(), stats.editsLost.sum(), stats.editsSkipped.sum());
+        System.out.printf("Presence:       %d heartbeats sent, %d changes received%n", stats.presenceSent.sum(), stats.presenceReceived.sum());
+        System.out.printf("Chat:           %d sent, %d received%n", stats.chatSent.sum(), stats.chatReceived.sum());
+        System.out.println("Edit -> own broadcast:    " + stats.editLatency.total() + " (incl. " + rampEditCount + " during ramp-up)");
+        System.out.println("Edit -> viewer broadcast: " + stats.fanOutLatency.total());
+        System.out.println("Chat -> own broadcast:    " + stats.chatLatency.total());
+    }
+
+    private void reportServer(Map<String, Double> before, Map<String, Double> after) {
+        if (before == null || after == null) {
+            System.out.println("Server:         /actuator/prometheus unavailable");
+            return;
+        }
+        System.out.printf("Server:         %.0f slow-consumer disconnects, %.0f transport errors, %.0f no-CONNECT disconnects during the run%n",
+                delta(before, after, "hyperide_stomp_slow_consumer_disconnects_total"),
+                delta(before, after, "hyperide_stomp_transport_errors_total"),
+                delta(before, after, "hyperide_stomp_no_connect_disconnects_total"));
+        for (String channel : List.of("inbound", "outbound")) {
+            String tag = "{channel=\"" + channel + "\"}";
+            double handled = delta(before, after, "hyperide_ws_channel_handle_seconds_count" + tag);
+            double seconds = delta(before, after, "hyperide_ws_channel_handle_seconds_sum" + tag);
+            System.out.printf("Server %-8s %.0f rejected during the run, %.0f queued at the end, avg handling %.2f ms%n", channel + ":",
+                    delta(before, after, "hyperide_ws_channel_rejected_total" + tag),
+                    after.getOrDefault("hyperide_ws_channel_pending" + tag, 0.0),
+                    handled == 0 ? 0.0 : seconds * 1000 / handled);
+        }
+    }
+
+    private static double delta(Map<String, Double> before, Map<String, Double> after, String series) {
+        return after.getOrDefault(series, 0.0) - before.getOrDefault(series, 0.0);
+    }
+
+    // Series name with its labels, as written in the Prometheus text format, to value
+    private Map<String, Double> serverStats() {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(options.url() + "/actuator/prometheus"))
+                    .timeout(Duration.ofSeconds(5)).build();
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) return null;
+            Map<String, Double> series = new HashMap<>();
+            for (String line : response.body().split("\n")) {
+                int space = line.lastIndexOf(' ');
+                if (line.startsWith("#") || space < 0) continue;
+                try {
+                    series.put(line.substring(0, space).replace(",}", "}"), Double.parseDouble(line.substring(space + 1)));
+                } catch (NumberFormatException e) {
+                    // Not a sample line
+                }
+            }
+            return series;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.hyperide.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Command line options, each "-name=value". Rates are per simulated user per second;
+ * 0 turns that kind of traffic off.
+ */
+record LoadTestOptions(String url, int users, int rampSeconds, int durationSeconds, int viewers,
+                       double editRate, double presenceRate, double chatRate, int reportSeconds) {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+    private static final Map<String, String> HELP = new LinkedHashMap<>();
+    static {
+        option("url", "http://localhost:8080", "Backend base URL; STOMP goes to {url}/ws");
+        option("users", "100", "Simulated users, one STOMP session each");
+        option("ramp", "10", "Seconds over which users connect");
+        option("duration", "60", "Seconds of traffic once all users are connected");
+        option("viewers", "2", "Other users' files each user also has open");
+        option("edit-rate", "2", "Edits per user per second, to the user's own file");
+        option("presence-rate", "0.2", "Presence heartbeats per user per second");
+        option("chat-rate", "0.05", "Chat messages per user per second");
+        option("report", "5", "Seconds between progress lines");
+    }
+
+    private static void option(String name, String defaultValue, String help) {
+        DEFAULTS.put(name, defaultValue);
+        HELP.put(name, help);
+    }
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            String name = arg.startsWith("-") && eq > 0 ? arg.substring(arg.startsWith("--") ? 2 : 1, eq) : null;
+            if (name == null || !DEFAULTS.containsKey(name)) throw new IllegalArgumentException("Unknown option: " + arg);
+            values.put(name, arg.substring(eq + 1));
+        }
+        return new LoadTestOptions(
+                values.get("url").replaceAll("/+$", ""),
+                Integer.parseInt(values.get("users")),
+                Integer.parseInt(values.get("ramp")),
+                Integer.parseInt(values.get("duration")),
+                Integer.parseInt(values.get("viewers")),
+                Double.parseDouble(values.get("edit-rate")),
+                Double.parseDouble(values.get("presence-rate")),
+                Double.parseDouble(values.get("chat-rate")),
+                Integer.parseInt(values.get("report")));
+    }
+
+    static String usage() {
+        StringBuilder text = new StringBuilder("Usage: java -jar loadtest.jar [-name=value ...]\nOptions and defaults:\n");
+        DEFAULTS.forEach((name, value) -> text.append(String.format("  -%-28s %s%n", name + "=" + value, HELP.get(name))));
+        return text.toString();
+    }
+}
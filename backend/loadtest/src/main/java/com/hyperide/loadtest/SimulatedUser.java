@@ -0,0 +1,269 @@
+package com.hyperide.loadtest;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import tools.jackson.databind.JsonNode;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One simulated editor on its own STOMP session. It types into its own file, has a few
+ * other users' files open, sends presence heartbeats and chats, each at its own rate.
+ * Like the real editor it keeps one edit in flight: the next is sent at the version its
+ * broadcast came back with, and a tick while waiting is skipped.
+ *
+ * An edit's clientId carries its send time, so whoever receives the broadcast (the sender
+ * or a viewer in this JVM) can measure how long it took.
+ */
+final class SimulatedUser extends StompSessionHandlerAdapter {
+
+    static final String FOLDER = "loadtest";
+    static final String CHAT_ROOM = "loadtest";
+    private static final int MAX_DOC = 2000; // Deletes win above this size, so documents stay small
+    private static final long LOST_AFTER_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final String[] TYPED = {"x", "int ", "i++;", "\n", "    ", "return ", "}", "(a, b)"};
+
+    final String name;
+    final String file;
+    private final List<String> viewing;
+    private final LoadStats stats;
+
+    private volatile StompSession session;
+    private final AtomicBoolean inFlight = new AtomicBoolean();
+    private volatile long inFlightSince;
+    private volatile long version;
+    private volatile int length;
+    private final List<ScheduledFuture<?>> tasks = new ArrayList<>();
+
+    SimulatedUser(int id, int users, int viewers, LoadStats stats) {
+        this.name = String.format("load%04d", id);
+        this.file = fileOf(id);
+        this.viewing = new ArrayList<>();
+        for (int i = 1; i <= Math.min(viewers, users - 1); i++) viewing.add(fileOf((id + i) % users));
+        this.stats = stats;
+    }
+
+    private static String fileOf(int id) {
+        return FOLDER + String.format("/load%04d.txt", id);
+    }
+
+    /** Connects as the user logged in to the given HTTP session. */
+    CompletableFuture<StompSession> connect(WebSocketStompClient client, String url, String sessionCookie) {
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        headers.add(HttpHeaders.COOKIE, sessionCookie);
+        return client.connectAsync(url + "/ws", headers, this);
+    }
+
+    @Override
+    public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+        this.session = session;
+        stats.connected.incrementAndGet();
+        session.subscribe("/topic/files/" + file + "/updates", handler(this::onOwnUpdate));
+        session.subscribe("/user/topic/edits", handler(this::onRejected));
+        for (String other : viewing) session.subscribe("/topic/files/" + other + "/updates", handler(this::onViewedUpdate));
+        session.subscribe("/topic/presence", handler(batch -> stats.presenceReceived.add(batch.size())));
+        session.subscribe("/topic/chat/" + CHAT_ROOM, handler(this::onChat));
+        send("/app/files.create", Map.of("name", file.substring(FOLDER.length() + 1), "creator", FOLDER));
+    }
+
+    /** Where the file stands before the first edit, as the editor reads it on opening. */
+    void opened(String content, long version) {
+        this.length = content.length();
+        this.version = version;
+    }
+
+    /** Starts this user's traffic; each kind begins at a random point in its period. */
+    void start(ScheduledExecutorService scheduler, LoadTestOptions options) {
+        schedule(scheduler, options.editRate(), this::edit);
+        schedule(scheduler, options.presenceRate(), this::presence);
+        schedule(scheduler, options.chatRate(), this::chat);
+    }
+
+    private void schedule(ScheduledExecutorService scheduler, double perSecond, Runnable task) {
+        if (perSecond <= 0) return;
+        long periodMicros = (long) (1_000_000 / perSecond);
+        long delay = ThreadLocalRandom.current().nextLong(periodMicros);
+        synchronized (tasks) {
+            tasks.add(scheduler.scheduleAtFixedRate(task, delay, periodMicros, TimeUnit.MICROSECONDS));
+        }
+    }
+
+    void stop() {
+        synchronized (tasks) {
+            tasks.forEach(t -> t.cancel(false));
+            tasks.clear();
+        }
+    }
+
+    void disconnect() {
+        StompSession s = session;
+        session = null;
+        if (s != null && s.isConnected()) s.disconnect();
+    }
+
+    // --- TRAFFIC ---
+    private void edit() {
+        if (!inFlight.compareAndSet(false, true)) {
+            if (System.nanoTime() - inFlightSince < LOST_AFTER_NANOS) {
+                stats.editsSkipped.increment();
+                return;
+            }
+            stats.editsLost.increment(); // No broadcast came back; carry on from the version we have
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<String, Object> op;
+        int len = length;
+        if (len > MAX_DOC || (len > 0 && random.nextInt(5) == 0)) {
+            int position = random.nextInt(len);
+            op = Map.of("type", "DELETE", "position", position, "length", Math.min(1 + random.nextInt(5), len - position));
+        } else {
+            op = Map.of("type", "INSERT", "position", random.nextInt(len + 1), "text", TYPED[random.nextInt(TYPED.length)]);
+        }
+        inFlightSince = System.nanoTime();
+        String clientId = name + ":" + inFlightSince;
+        if (send("/app/edit", Map.of("fileName", file, "user", name, "baseVersion", version, "clientId", clientId, "ops", List.of(op)))) {
+            stats.editsSent.increment();
+        } else {
+            inFlight.set(false);
+        }
+    }
+
+    private void presence() {
+        // Mostly on their own file, sometimes glancing at one they have open
+        String at = viewing.isEmpty() || ThreadLocalRandom.current().nextInt(4) > 0
+                ? file : viewing.get(ThreadLocalRandom.current().nextInt(viewing.size()));
+        if (send("/app/presence", Map.of("user", name, "file", at))) stats.presenceSent.increment();
+    }
+
+    private void chat() {
+        if (send("/app/chat.send", Map.of("room", CHAT_ROOM, "sender", name, "content", "ping " + System.nanoTime()))) {
+            stats.chatSent.increment();
+        }
+    }
+
+    // Sends on this session are serialized; the transport does not allow concurrent writes
+    private synchronized boolean send(String destination, Object payload) {
+        StompSession s = session;
+        if (s == null || !s.isConnected()) return false;
+        try {
+            s.send(destination, payload);
+            return true;
+        } catch (RuntimeException e) {
+            stats.stompErrors.increment();
+            return false;
+        }
+    }
+
+    // --- RECEIVED ---
+    private void onOwnUpdate(JsonNode update) {
+        stats.updatesReceived.increment();
+        String clientId = text(update, "clientId");
+        if (clientId == null || !clientId.startsWith(name + ":")) return; // Not an answer to one of ours
+        String type = text(update, "type");
+        if ("DELTA".equals(type)) {
+            stats.editsAcked.increment();
+            int delta = 0;
+            for (JsonNode op : update.path("ops")) {
+                delta += "INSERT".equals(text(op, "type")) ? text(op, "text").length() : -op.path("length").asInt();
+            }
+            length = Math.max(0, length + delta);
+            version = update.path("version").asLong();
+        } else {
+            // CONFLICT carries the current document to start over from; LOCKED and ERROR nothing
+            stats.editRejects.increment();
+            if ("CONFLICT".equals(type)) {
+                String content = text(update, "content");
+                length = content == null ? 0 : content.length();
+                version = update.path("version").asLong();
+            }
+        }
+        stats.editLatency.record(System.nanoTime() - sentAt(clientId));
+        inFlight.set(false);
+    }
+
+    // An edit the server's lane had no room for; nothing was applied, so the next tick sends again
+    private void onRejected(JsonNode reply) {
+        String clientId = text(reply, "clientId");
+        if (clientId == null || !clientId.startsWith(name + ":")) return;
+        stats.editRejects.increment();
+        inFlight.set(false);
+    }
+
+    private void onViewedUpdate(JsonNode update) {
+        stats.updatesReceived.increment();
+        String clientId = text(update, "clientId");
+        if (clientId != null && "DELTA".equals(text(update, "type"))) {
+            stats.fanOutLatency.record(System.nanoTime() - sentAt(clientId));
+        }
+    }
+
+    private void onChat(JsonNode batch) {
+        for (JsonNode message : batch) {
+            stats.chatReceived.increment();
+            String content = text(message, "content");
+            if (name.equals(text(message, "sender")) && content != null && content.startsWith("ping ")) {
+                stats.chatLatency.record(System.nanoTime() - Long.parseLong(content.substring(5)));
+            }
+        }
+    }
+
+    private static long sentAt(String clientId) {
+        return Long.parseLong(clientId.substring(clientId.lastIndexOf(':') + 1));
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asString();
+    }
+
+    private StompFrameHandler handler(java.util.function.Consumer<JsonNode> consumer) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return JsonNode.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                consumer.accept((JsonNode) payload);
+            }
+        };
+    }
+
+    // --- FAILURES ---
+    @Override
+    public void handleException(StompSession session, StompCommand command, StompHeaders headers, byte[] payload, Throwable exception) {
+        stats.stompErrors.increment();
+    }
+
+    @Override
+    public void handleFrame(StompHeaders headers, Object payload) {
+        stats.stompErrors.increment(); // ERROR frame; the server closes the session after it
+    }
+
+    @Override
+    public void handleTransportError(StompSession session, Throwable exception) {
+        // Also called when the connection is lost; a session that never connected is counted by the caller
+        if (this.session != null) {
+            this.session = null;
+            stats.connected.decrementAndGet();
+            stats.disconnects.increment();
+        }
+        inFlight.set(false);
+    }
+}